@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -420,6 +421,54 @@ public class ZipEntry implements ZipConstants, Cloneable {
         }
     }
 
+    /*
+     * Internal constructor.  Creates a new ZipEntry from the central directory
+     * record at the given offset of a mapped archive.  The buffer must be in
+     * little-endian order and is read with absolute gets only, so concurrent
+     * callers may share it.  If the caller has already matched the name it
+     * passes it in, saving the decoding.
+     */
+    ZipEntry(ByteBuffer cen, int offset, String knownName) throws ZipException {
+        if (cen.getInt(offset) != (int) CENSIG) {
+            throw new ZipException(Messages.getString("archive.3A"));
+        }
+
+        compressionMethod = cen.getShort(offset + CENHOW) & 0xffff;
+        time = cen.getShort(offset + CENTIM) & 0xffff;
+        modDate = cen.getShort(offset + CENTIM + 2) & 0xffff;
+        crc = cen.getInt(offset + CENCRC) & 0xffffffffL;
+        compressedSize = cen.getInt(offset + CENSIZ) & 0xffffffffL;
+        size = cen.getInt(offset + CENLEN) & 0xffffffffL;
+        nameLen = cen.getShort(offset + CENNAM) & 0xffff;
+        int extraLen = cen.getShort(offset + CENEXT) & 0xffff;
+        int commentLen = cen.getShort(offset + CENCOM) & 0xffff;
+        mLocalHeaderRelOffset = cen.getInt(offset + CENOFF) & 0xffffffffL;
+
+        int pos = offset + CENHDR;
+        name = knownName != null ? knownName : decodeLatin1(cen, pos, nameLen);
+        pos += nameLen;
+        if (extraLen > 0) {
+            extra = new byte[extraLen];
+            for (int i = 0; i < extraLen; i++) {
+                extra[i] = cen.get(pos + i);
+            }
+        }
+        pos += extraLen;
+        comment = commentLen > 0 ? decodeLatin1(cen, pos, commentLen) : null;
+    }
+
+    /*
+     * Decodes ISO-8859-1 bytes straight from the buffer; see the note on the
+     * character set in the stream based constructor.
+     */
+    static String decodeLatin1(ByteBuffer buf, int offset, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buf.get(offset + i) & 0xff);
+        }
+        return new String(chars);
+    }
+
     private void myReadFully(InputStream in, byte[] b) throws IOException {
         int len = b.length;
         int off = 0;
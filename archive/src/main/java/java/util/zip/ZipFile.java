@@ -22,11 +22,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import org.apache.harmony.archive.internal.nls.Messages;
 
 /**
@@ -39,6 +43,11 @@ import org.apache.harmony.archive.internal.nls.Messages;
  * Use {@code ZipOutputStream} if you want to create an archive.
  * <p>
  * A temporary ZIP file can be marked for automatic deletion upon closing it.
+ * <p>
+ * When the system property {@code org.apache.harmony.archive.zip.mapped} is
+ * {@code true} the archive is memory mapped instead. The central directory is
+ * then indexed by name on first lookup, entry names are only decoded when an
+ * entry is handed out, and entry data is read without any locking.
  *
  * @see ZipEntry
  * @see ZipOutputStream
@@ -55,6 +64,11 @@ public class ZipFile implements ZipConstants {
      */
     public static final int OPEN_DELETE = 4;
 
+    /**
+     * The system property selecting the memory mapped mode.
+     */
+    static final String MAPPED_PROPERTY = "org.apache.harmony.archive.zip.mapped"; //$NON-NLS-1$
+
     private final String fileName;
 
     private File fileToDeleteOnClose;
@@ -66,6 +80,12 @@ public class ZipFile implements ZipConstants {
     private final LinkedHashMap<String, ZipEntry> mEntries
             = new LinkedHashMap<String, ZipEntry>();
 
+    /*
+     * The mapped central directory; null unless the archive is mapped, in
+     * which case mEntries stays empty.
+     */
+    private MappedDirectory mMapped;
+
     /**
      * Constructs a new {@code ZipFile} with the specified file.
      *
@@ -145,6 +165,9 @@ public class ZipFile implements ZipConstants {
         if (raf != null) { // Only close initialized instances
             synchronized(raf) {
                 mRaf = null;
+                // The mapping itself is left to the collector: unmapping it
+                // here would pull the pages from under streams still reading.
+                mMapped = null;
                 raf.close();
             }
             if (fileToDeleteOnClose != null) {
@@ -175,6 +198,25 @@ public class ZipFile implements ZipConstants {
      */
     public Enumeration<? extends ZipEntry> entries() {
         checkNotClosed();
+        final MappedDirectory mapped = mMapped;
+        if (mapped != null) {
+            return new Enumeration<ZipEntry>() {
+                int next;
+
+                public boolean hasMoreElements() {
+                    checkNotClosed();
+                    return next < mapped.size();
+                }
+
+                public ZipEntry nextElement() {
+                    checkNotClosed();
+                    if (next >= mapped.size()) {
+                        throw new NoSuchElementException();
+                    }
+                    return mapped.entryOfName(next++);
+                }
+            };
+        }
         final Iterator<ZipEntry> iterator = mEntries.values().iterator();
 
         return new Enumeration<ZipEntry>() {
@@ -205,6 +247,15 @@ public class ZipFile implements ZipConstants {
             throw new NullPointerException();
         }
 
+        MappedDirectory mapped = mMapped;
+        if (mapped != null) {
+            ZipEntry ze = mapped.getEntry(entryName);
+            if (ze == null) {
+                ze = mapped.getEntry(entryName + "/");
+            }
+            return ze;
+        }
+
         ZipEntry ze = mEntries.get(entryName);
         if (ze == null) {
             ze = mEntries.get(entryName + "/");
@@ -232,6 +283,16 @@ public class ZipFile implements ZipConstants {
             return null;
         }
 
+        MappedDirectory mapped = mMapped;
+        if (mapped != null) {
+            InputStream in = mapped.getInputStream(entry);
+            if (entry.compressionMethod == ZipEntry.DEFLATED) {
+                int bufSize = Math.max(1024, (int)Math.min(entry.getSize(), 65535L));
+                return new ZipInflaterInputStream(in, new Inflater(true), bufSize, entry);
+            }
+            return in;
+        }
+
         /*
          * Create a ZipInputStream at the right part of the file.
          */
@@ -273,7 +334,8 @@ public class ZipFile implements ZipConstants {
      */
     public int size() {
         checkNotClosed();
-        return mEntries.size();
+        MappedDirectory mapped = mMapped;
+        return mapped != null ? mapped.size() : mEntries.size();
     }
 
     /**
@@ -290,54 +352,44 @@ public class ZipFile implements ZipConstants {
      * it though, so we're in good company if this fails.
      */
     private void readCentralDir() throws IOException {
+        long length = mRaf.length();
+        if (length < ENDHDR) {
+            throw new ZipException(Messages.getString("archive.37"));
+        }
+
+        if (length <= Integer.MAX_VALUE && isMappedModeRequested()) {
+            ByteBuffer map = mRaf.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, length);
+            mMapped = new MappedDirectory(map);
+            return;
+        }
+
         /*
          * Scan back, looking for the End Of Central Directory field.  If
          * the archive doesn't have a comment, we'll hit it on the first
-         * try.
+         * try.  The whole area that may hold it is read in one go and
+         * scanned in memory rather than seeking to every candidate offset.
          *
          * No need to synchronize mRaf here -- we only do this when we
          * first open the Zip file.
          */
-        long scanOffset = mRaf.length() - ENDHDR;
-        if (scanOffset < 0) {
-            throw new ZipException(Messages.getString("archive.37"));
-        }
-
-        long stopOffset = scanOffset - 65536;
-        if (stopOffset < 0) {
-            stopOffset = 0;
-        }
-
-        while (true) {
-            mRaf.seek(scanOffset);
-            if (ZipEntry.readIntLE(mRaf) == 101010256L) {
-                break;
-            }
-
-            scanOffset--;
-            if (scanOffset < stopOffset) {
+        long tailOffset = Math.max(0, length - ENDHDR - 65536);
+        byte[] tail = new byte[(int) (length - tailOffset)];
+        mRaf.seek(tailOffset);
+        mRaf.readFully(tail);
+
+        int eocd = tail.length - ENDHDR;
+        while (getIntLE(tail, eocd) != ENDSIG) {
+            if (--eocd < 0) {
                 throw new ZipException(Messages.getString("archive.38"));
             }
         }
 
-        /*
-         * Found it, read the EOCD.
-         *
-         * For performance we want to use buffered I/O when reading the
-         * file.  We wrap a buffered stream around the random-access file
-         * object.  If we just read from the RandomAccessFile we'll be
-         * doing a read() system call every time.
-         */
-        RAFStream rafs = new RAFStream(mRaf, mRaf.getFilePointer());
-        BufferedInputStream bin = new BufferedInputStream(rafs, ENDHDR);
-
-        int diskNumber = ler.readShortLE(bin);
-        int diskWithCentralDir = ler.readShortLE(bin);
-        int numEntries = ler.readShortLE(bin);
-        int totalNumEntries = ler.readShortLE(bin);
-        /*centralDirSize =*/ ler.readIntLE(bin);
-        long centralDirOffset = ler.readIntLE(bin);
-        /*commentLen =*/ ler.readShortLE(bin);
+        int diskNumber = getShortLE(tail, eocd + 4);
+        int diskWithCentralDir = getShortLE(tail, eocd + 6);
+        int numEntries = getShortLE(tail, eocd + ENDSUB);
+        int totalNumEntries = getShortLE(tail, eocd + ENDTOT);
+        long centralDirOffset = getIntLE(tail, eocd + ENDOFF);
 
         if (numEntries != totalNumEntries ||
             diskNumber != 0 ||
@@ -352,8 +404,8 @@ public class ZipFile implements ZipConstants {
          * At most it will be 6 bytes away (one or two bytes for empty block, 4 bytes for
          * empty block signature).  
          */
-        scanOffset = centralDirOffset;
-        stopOffset = scanOffset + 6;
+        long scanOffset = centralDirOffset;
+        long stopOffset = scanOffset + 6;
         
         while (true) {
             mRaf.seek(scanOffset);
@@ -368,14 +420,313 @@ public class ZipFile implements ZipConstants {
         }
         
         // If CDE is found then go and read all the entries
-        rafs = new RAFStream(mRaf, scanOffset);
-        bin = new BufferedInputStream(rafs, 4096);
+        RAFStream rafs = new RAFStream(mRaf, scanOffset);
+        BufferedInputStream bin = new BufferedInputStream(rafs, 4096);
         for (int i = 0; i < numEntries; i++) {
             ZipEntry newEntry = new ZipEntry(ler, bin);
             mEntries.put(newEntry.getName(), newEntry);
         }
     }
 
+    private static boolean isMappedModeRequested() {
+        String mapped = AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                return System.getProperty(MAPPED_PROPERTY);
+            }
+        });
+        return Boolean.valueOf(mapped).booleanValue();
+    }
+
+    static int getShortLE(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+    }
+
+    static long getIntLE(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8)
+                | ((b[off + 2] & 0xff) << 16)
+                | ((b[off + 3] << 24) & 0xffffffffL);
+    }
+
+    /**
+     * The central directory of a memory mapped archive.
+     *
+     * <p>Opening only locates the records; ZipEntry objects are created when
+     * they are asked for.  The name index is an open addressing table of
+     * entry numbers, built on the first lookup, enumeration or count.  Names
+     * are hashed from the raw bytes, which gives String.hashCode() of the
+     * ISO-8859-1 decoding, and compared byte by byte, so a lookup decodes at
+     * most the name it returns.
+     *
+     * <p>The map is only ever read with absolute gets and duplicated for
+     * streams, so it is shared by all threads without locking.
+     */
+    static final class MappedDirectory {
+
+        final ByteBuffer map;
+        final int numEntries;
+
+        /* offset of every central directory record, in archive order */
+        private final int[] offsets;
+
+        /*
+         * name hash of every entry, the last entry of every name in the order
+         * the names first appear, and the index table; built lazily
+         */
+        private int[] hashes;
+        private int[] names;
+        private volatile int[] table;
+
+        MappedDirectory(ByteBuffer map) throws ZipException {
+            this.map = map;
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            int length = map.limit();
+            int stop = Math.max(0, length - ENDHDR - 65536);
+            int eocd = length - ENDHDR;
+            while (map.getInt(eocd) != (int) ENDSIG) {
+                if (--eocd < stop) {
+                    throw new ZipException(Messages.getString("archive.38"));
+                }
+            }
+
+            int diskNumber = map.getShort(eocd + 4) & 0xffff;
+            int diskWithCentralDir = map.getShort(eocd + 6) & 0xffff;
+            numEntries = map.getShort(eocd + ENDSUB) & 0xffff;
+            int totalNumEntries = map.getShort(eocd + ENDTOT) & 0xffff;
+            long centralDirOffset = map.getInt(eocd + ENDOFF) & 0xffffffffL;
+            if (numEntries != totalNumEntries ||
+                diskNumber != 0 ||
+                diskWithCentralDir != 0) {
+                throw new ZipException(Messages.getString("archive.39"));
+            }
+
+            /*
+             * Same Z_SYNC_FLUSH allowance as the file based reader.  Walking
+             * the records only reads their three length fields, and it lets a
+             * damaged directory fail here rather than on some later lookup.
+             */
+            long pos = centralDirOffset;
+            while (pos > length - CENHDR || map.getInt((int) pos) != (int) CENSIG) {
+                if (++pos > centralDirOffset + 6) {
+                    throw new ZipException(Messages.getString("archive.3A"));
+                }
+            }
+            offsets = new int[numEntries];
+            for (int i = 0; i < numEntries; i++) {
+                if (pos > length - CENHDR || map.getInt((int) pos) != (int) CENSIG) {
+                    throw new ZipException(Messages.getString("archive.3A"));
+                }
+                offsets[i] = (int) pos;
+                pos += CENHDR + (map.getShort((int) pos + CENNAM) & 0xffff)
+                        + (map.getShort((int) pos + CENEXT) & 0xffff)
+                        + (map.getShort((int) pos + CENCOM) & 0xffff);
+            }
+        }
+
+        ZipEntry getEntry(String name) {
+            int[] tab = table;
+            if (tab == null) {
+                tab = buildTable();
+            }
+            int h = name.hashCode();
+            int mask = tab.length - 1;
+            for (int slot = spread(h) & mask; tab[slot] != 0; slot = (slot + 1) & mask) {
+                int index = tab[slot] - 1;
+                if (hashes[index] == h && nameEquals(offsets[index], name)) {
+                    return entryAt(index, name);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the number of names. Like the LinkedHashMap of the file
+         * based reader, records of a name already seen are not counted.
+         */
+        int size() {
+            if (table == null) {
+                buildTable();
+            }
+            return names.length;
+        }
+
+        /**
+         * Returns the entry of the name that appears at the given position
+         * among the names, which is the last record of that name.
+         */
+        ZipEntry entryOfName(int position) {
+            if (table == null) {
+                buildTable();
+            }
+            return entryAt(names[position], null);
+        }
+
+        ZipEntry entryAt(int index, String knownName) {
+            try {
+                return new ZipEntry(map, offsets[index], knownName);
+            } catch (ZipException e) {
+                // every record was checked when the archive was opened
+                throw new InternalError(e.getMessage());
+            }
+        }
+
+        /**
+         * Returns a stream over the stored bytes of the entry.
+         */
+        InputStream getInputStream(ZipEntry entry) throws ZipException {
+            // As in the file based reader, the extra length is taken from the
+            // local header since it may differ from the central one.
+            long start = entry.mLocalHeaderRelOffset + LOCHDR;
+            if (start > map.limit()) {
+                throw new ZipException(Messages.getString("archive.3A"));
+            }
+            start += entry.nameLen
+                    + (map.getShort((int) entry.mLocalHeaderRelOffset + LOCEXT) & 0xffff);
+            long end = start + entry.compressedSize;
+            if (end > map.limit()) {
+                throw new ZipException(Messages.getString("archive.3A"));
+            }
+            ByteBuffer data = map.duplicate();
+            data.limit((int) end);
+            data.position((int) start);
+            return new ByteBufferStream(data);
+        }
+
+        private synchronized int[] buildTable() {
+            int[] tab = table;
+            if (tab != null) {
+                return tab;
+            }
+            int capacity = 16;
+            while (capacity < numEntries * 2) {
+                capacity <<= 1;
+            }
+            int[] h = new int[numEntries];
+            int[] order = new int[numEntries];
+            // the position in order of the name of every entry
+            int[] position = new int[numEntries];
+            int count = 0;
+            tab = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < numEntries; i++) {
+                int off = offsets[i];
+                int nameLen = map.getShort(off + CENNAM) & 0xffff;
+                int hash = 0;
+                for (int j = off + CENHDR, end = j + nameLen; j < end; j++) {
+                    hash = 31 * hash + (map.get(j) & 0xff);
+                }
+                h[i] = hash;
+                int slot = spread(hash) & mask;
+                int other = -1;
+                while (tab[slot] != 0) {
+                    // Like the LinkedHashMap of the file based reader, a
+                    // later record of the same name replaces the earlier one
+                    // and keeps its position.
+                    other = tab[slot] - 1;
+                    if (h[other] == hash && sameName(offsets[other], off, nameLen)) {
+                        break;
+                    }
+                    other = -1;
+                    slot = (slot + 1) & mask;
+                }
+                tab[slot] = i + 1;
+                if (other < 0) {
+                    position[i] = count;
+                    order[count++] = i;
+                } else {
+                    position[i] = position[other];
+                    order[position[i]] = i;
+                }
+            }
+            if (count < numEntries) {
+                int[] shorter = new int[count];
+                System.arraycopy(order, 0, shorter, 0, count);
+                order = shorter;
+            }
+            hashes = h;
+            names = order;
+            table = tab;
+            return tab;
+        }
+
+        private boolean nameEquals(int off, String name) {
+            int nameLen = map.getShort(off + CENNAM) & 0xffff;
+            if (nameLen != name.length()) {
+                return false;
+            }
+            off += CENHDR;
+            for (int i = 0; i < nameLen; i++) {
+                if ((map.get(off + i) & 0xff) != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean sameName(int off1, int off2, int nameLen) {
+            if ((map.getShort(off1 + CENNAM) & 0xffff) != nameLen) {
+                return false;
+            }
+            for (int i = CENHDR; i < CENHDR + nameLen; i++) {
+                if (map.get(off1 + i) != map.get(off2 + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int spread(int h) {
+            h ^= (h >>> 20) ^ (h >>> 12);
+            return h ^ (h >>> 7) ^ (h >>> 4);
+        }
+    }
+
+    /**
+     * A stream over a private view of the mapped archive.  Reading needs no
+     * locking since no state is shared with other streams.
+     */
+    static class ByteBufferStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        ByteBufferStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            int count = (int) Math.min(n, mBuffer.remaining());
+            mBuffer.position(mBuffer.position() + count);
+            return count;
+        }
+    }
+
     /**
      * Wrap a stream around a RandomAccessFile.  The RandomAccessFile is shared
      * among all streams returned by getInputStream(), so we have to synchronize
@@ -22,9 +22,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import tests.support.Support_PlatformFile;
 import tests.support.resource.Support_Resources;
@@ -356,6 +358,115 @@ public class ZipFileTest extends junit.framework.TestCase {
         is.close();
     }
 
+    /**
+     * @tests java.util.zip.ZipFile memory mapped mode
+     */
+    public void test_mappedMode() throws IOException {
+        System.setProperty("org.apache.harmony.archive.zip.mapped", "true");
+        ZipFile mapped;
+        try {
+            mapped = new ZipFile(tempFileName);
+        } finally {
+            System.clearProperty("org.apache.harmony.archive.zip.mapped");
+        }
+        try {
+            assertEquals(zfile.size(), mapped.size());
+            Enumeration<? extends ZipEntry> expected = zfile.entries();
+            Enumeration<? extends ZipEntry> actual = mapped.entries();
+            while (expected.hasMoreElements()) {
+                ZipEntry ze = expected.nextElement();
+                ZipEntry me = actual.nextElement();
+                assertEquals(ze.getName(), me.getName());
+                assertEquals(ze.getCrc(), me.getCrc());
+                assertEquals(ze.getCompressedSize(), me.getCompressedSize());
+
+                ZipEntry found = mapped.getEntry(ze.getName());
+                assertNotNull("Could not obtain ZipEntry: " + ze.getName(), found);
+                assertEquals(ze.getSize(), found.getSize());
+
+                InputStream in = zfile.getInputStream(ze);
+                byte[] expectedBytes = getAllBytesFromStream(in);
+                in.close();
+                in = mapped.getInputStream(found);
+                byte[] actualBytes = getAllBytesFromStream(in);
+                in.close();
+                assertTrue("Data differs for " + ze.getName(),
+                        Arrays.equals(expectedBytes, actualBytes));
+            }
+            assertFalse(actual.hasMoreElements());
+            assertNotNull(mapped.getEntry("testdir1"));
+            assertNull(mapped.getEntry("File7.txt"));
+        } finally {
+            mapped.close();
+        }
+        try {
+            mapped.getEntry("File1.txt");
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ee) {
+            // expected
+        }
+    }
+
+    /**
+     * @tests java.util.zip.ZipFile duplicate entry names in both modes
+     */
+    public void test_duplicateNames() throws IOException {
+        File f = File.createTempFile("duplicate", ".zip");
+        f.deleteOnExit();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(bytes);
+        String[] names = { "dup1", "other", "dup2" };
+        for (int i = 0; i < names.length; i++) {
+            zos.putNextEntry(new ZipEntry(names[i]));
+            zos.write(names[i].getBytes("ISO-8859-1"));
+            zos.closeEntry();
+        }
+        zos.close();
+        // ZipOutputStream refuses a name twice, so rename dup2 afterwards
+        byte[] data = bytes.toByteArray();
+        for (int i = 0; i + 4 <= data.length; i++) {
+            if (data[i] == 'd' && data[i + 1] == 'u' && data[i + 2] == 'p'
+                    && data[i + 3] == '2') {
+                data[i + 3] = '1';
+            }
+        }
+        FileOutputStream fos = new FileOutputStream(f);
+        fos.write(data);
+        fos.close();
+
+        for (int mode = 0; mode < 2; mode++) {
+            ZipFile zf;
+            if (mode == 0) {
+                zf = new ZipFile(f);
+            } else {
+                System.setProperty("org.apache.harmony.archive.zip.mapped", "true");
+                try {
+                    zf = new ZipFile(f);
+                } finally {
+                    System.clearProperty("org.apache.harmony.archive.zip.mapped");
+                }
+            }
+            try {
+                // the first name keeps its position, the last record wins
+                assertEquals(2, zf.size());
+                Enumeration<? extends ZipEntry> entries = zf.entries();
+                ZipEntry ze = entries.nextElement();
+                assertEquals("dup1", ze.getName());
+                InputStream in = zf.getInputStream(ze);
+                assertEquals("dup2", new String(getAllBytesFromStream(in), "ISO-8859-1"));
+                in.close();
+                assertEquals("other", entries.nextElement().getName());
+                assertFalse(entries.hasMoreElements());
+                in = zf.getInputStream(zf.getEntry("dup1"));
+                assertEquals("dup2", new String(getAllBytesFromStream(in), "ISO-8859-1"));
+                in.close();
+            } finally {
+                zf.close();
+            }
+        }
+        f.delete();
+    }
+
 	/**
 	 * Sets up the fixture, for example, open a network connection. This method
 	 * is called before a test is executed.
@@ -5,12 +5,18 @@
  */
 
 package java.util.concurrent;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.*;
 import java.util.*;
 import java.io.Serializable;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import sun.misc.Unsafe;
 
 /**
  * A hash table supporting full concurrency of retrievals and
@@ -54,6 +60,18 @@ import java.io.ObjectOutputStream;
  * a good idea to provide estimates of expected table sizes in
  * constructors.
  *
+ * <p> When the system property
+ * <tt>org.apache.harmony.concurrent.hashmap.bins</tt> is set to
+ * <tt>true</tt>, maps are instead backed by a single table that is
+ * not partitioned into segments. Updates lock only the bin they
+ * modify, and insertions into empty bins take no lock at all, so the
+ * allowed concurrency grows with the table and the
+ * <tt>concurrencyLevel</tt> argument is only used as a sizing hint.
+ * The table is resized incrementally by the threads that update it,
+ * and bins holding many keys with colliding hash codes are kept as
+ * balanced trees. The property is read once, when the first map is
+ * created, and does not change the serialized form.
+ *
  * <p>This class and its views and iterators implement all of the
  * <em>optional</em> methods of the {@link Map} and {@link Iterator}
  * interfaces.
@@ -77,6 +95,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
     /*
      * The basic strategy is to subdivide the table among Segments,
      * each of which itself is a concurrently readable hash table.
+     * Alternatively, when BinTable.ENABLED, there are no segments and
+     * all operations are delegated to a BinTable; see there.
      */
 
     /* ---------------- Constants -------------- */
@@ -135,10 +155,17 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
     final int segmentShift;
 
     /**
-     * The segments, each of which is a specialized hash table
+     * The segments, each of which is a specialized hash table.
+     * Null if this map uses a bin table.
      */
     final Segment<K,V>[] segments;
 
+    /**
+     * The bin table holding the mappings, or null if this map uses
+     * segments. Set in readObject through Unsafe.
+     */
+    final transient BinTable<K,V> bins;
+
     transient Set<K> keySet;
     transient Set<Map.Entry<K,V>> entrySet;
     transient Collection<V> values;
@@ -561,6 +588,1532 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
     }
 
 
+    /* ---------------- Bin Table -------------- */
+
+    /**
+     * The table used instead of segments when the system property
+     * {@code org.apache.harmony.concurrent.hashmap.bins} is
+     * {@code true}. There is a single table of bins that grows with
+     * the map, so concurrency among writers grows with it, and there
+     * is no per-segment lock or table.
+     *
+     * Overview:
+     *
+     * Each bin holds a list of Nodes. The first node of a bin is
+     * installed with a CAS when the bin is empty; all other updates
+     * of a bin lock its first node, rechecking after locking that it
+     * is still the first. Retrievals take no locks: they read bins
+     * with volatile reads, and node values and next fields are
+     * volatile.
+     *
+     * Nodes with negative hash fields are special: a ForwardingNode
+     * (hash MOVED) marks a bin that has been moved to the next table
+     * during a resize, and a TreeBin (hash TREEBIN) heads a bin that
+     * has been converted to a red-black tree. A bin is treeified when
+     * it reaches TREEIFY_THRESHOLD nodes, which with random hash codes
+     * happens almost never; it guards against many keys with equal or
+     * badly distributed hash codes. Keys that are Comparable of their
+     * own class are ordered by compareTo within the tree, others by
+     * identity hash code.
+     *
+     * The table is resized when the count reaches 0.75 of its length.
+     * The thread that notices this allocates a table twice as large
+     * and starts moving bins from the high end, a stride at a time,
+     * leaving a ForwardingNode in each moved bin. Other writers that
+     * hit a ForwardingNode, or that also find the table overfull, join
+     * in by claiming further strides (helpTransfer), so a resize never
+     * stalls a single writer for the whole table. Readers that hit a
+     * ForwardingNode follow it to the new table. Since the table
+     * length is a power of two, each bin splits into the same index
+     * and the index plus the old length, and the tail of a list that
+     * keeps its index can be reused without copying.
+     *
+     * The element count is kept in a LongAdder, so that size updates
+     * do not become a point of contention themselves.
+     *
+     * The design follows the JSR166 work on a table-wide,
+     * non-segmented ConcurrentHashMap by Doug Lea.
+     */
+    static final class BinTable<K,V> {
+
+        /**
+         * Whether new maps use a bin table rather than segments, read
+         * once from the system property.
+         */
+        static final boolean ENABLED =
+            AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+                public Boolean run() {
+                    return Boolean.valueOf(Boolean.getBoolean(
+                        "org.apache.harmony.concurrent.hashmap.bins"));
+                }
+            }).booleanValue();
+
+        /** The largest table capacity. */
+        static final int MAXIMUM_CAPACITY = 1 << 30;
+
+        /** The default initial table capacity. */
+        static final int DEFAULT_CAPACITY = 16;
+
+        /** The bin count at which a list is converted to a tree. */
+        static final int TREEIFY_THRESHOLD = 8;
+
+        /** The bin count at which a tree is split back into a list. */
+        static final int UNTREEIFY_THRESHOLD = 6;
+
+        /**
+         * The smallest table capacity for which bins are treeified.
+         * Smaller tables are resized instead.
+         */
+        static final int MIN_TREEIFY_CAPACITY = 64;
+
+        /** Minimum number of bins a resizing thread claims at once. */
+        private static final int MIN_TRANSFER_STRIDE = 16;
+
+        /** Number of bits used for the generation stamp in sizeCtl. */
+        private static final int RESIZE_STAMP_BITS = 16;
+
+        /** Maximum number of threads that can help resize. */
+        private static final int MAX_RESIZERS = (1 << (32 - RESIZE_STAMP_BITS)) - 1;
+
+        /** Bit shift for recording the size stamp in sizeCtl. */
+        private static final int RESIZE_STAMP_SHIFT = 32 - RESIZE_STAMP_BITS;
+
+        /* Hash fields of special nodes */
+        static final int MOVED = -1;
+        static final int TREEBIN = -2;
+        static final int HASH_BITS = 0x7fffffff; // usable bits of normal node hash
+
+        /** Number of CPUS, to place bounds on some sizings */
+        static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * The array of bins, lazily initialized. Length is always a
+         * power of two.
+         */
+        volatile Node<K,V>[] table;
+
+        /**
+         * The next table to use; non-null only while resizing.
+         */
+        private volatile Node<K,V>[] nextTable;
+
+        /**
+         * Table initialization and resizing control. When negative,
+         * the table is being initialized (-1) or resized (the resize
+         * stamp in the high bits plus one more than the number of
+         * active resizers in the low bits). Otherwise, while table is
+         * null, holds the initial table size to use, and after that
+         * the element count at which to resize.
+         */
+        private volatile int sizeCtl;
+
+        /**
+         * The next table index (plus one) to split while resizing.
+         */
+        private volatile int transferIndex;
+
+        /** The number of mappings. */
+        private final LongAdder count = new LongAdder();
+
+        BinTable(int initialCapacity, float loadFactor, int concurrencyLevel) {
+            if (initialCapacity < concurrencyLevel)   // Use at least as many bins
+                initialCapacity = concurrencyLevel;   // as estimated threads
+            long size = (long)(1.0 + (long)initialCapacity / loadFactor);
+            this.sizeCtl = (size >= (long)MAXIMUM_CAPACITY) ?
+                MAXIMUM_CAPACITY : tableSizeFor((int)size);
+        }
+
+        /**
+         * Spreads higher bits of the hash to lower ones and clears the
+         * sign bit, which is reserved for special nodes. Collisions
+         * among hashes that differ only in bits above the table mask
+         * are left to the tree bins to handle.
+         */
+        static int spread(int h) {
+            return (h ^ (h >>> 16)) & HASH_BITS;
+        }
+
+        /**
+         * Returns a power of two table size for the given desired
+         * capacity.
+         */
+        static int tableSizeFor(int c) {
+            int n = c - 1;
+            n |= n >>> 1;
+            n |= n >>> 2;
+            n |= n >>> 4;
+            n |= n >>> 8;
+            n |= n >>> 16;
+            return (n < 0) ? 1 : (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+        }
+
+        /**
+         * Returns x's Class if it is of the form "class C implements
+         * Comparable<C>", else null.
+         */
+        static Class<?> comparableClassFor(Object x) {
+            if (x instanceof Comparable) {
+                Class<?> c; Type[] ts, as; Type t; ParameterizedType p;
+                if ((c = x.getClass()) == String.class) // bypass checks
+                    return c;
+                if ((ts = c.getGenericInterfaces()) != null) {
+                    for (int i = 0; i < ts.length; ++i) {
+                        if (((t = ts[i]) instanceof ParameterizedType) &&
+                            ((p = (ParameterizedType)t).getRawType() ==
+                             Comparable.class) &&
+                            (as = p.getActualTypeArguments()) != null &&
+                            as.length == 1 && as[0] == c) // type arg is c
+                            return c;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns k.compareTo(x) if x matches kc (k's screened
+         * comparable class), else 0.
+         */
+        @SuppressWarnings("unchecked")
+        static int compareComparables(Class<?> kc, Object k, Object x) {
+            return (x == null || x.getClass() != kc ? 0 :
+                    ((Comparable<Object>)k).compareTo(x));
+        }
+
+        /**
+         * Returns the stamp bits for resizing a table of size n. Must
+         * be negative when shifted left by RESIZE_STAMP_SHIFT.
+         */
+        static int resizeStamp(int n) {
+            return Integer.numberOfLeadingZeros(n) | (1 << (RESIZE_STAMP_BITS - 1));
+        }
+
+        /* ---------------- Table element access -------------- */
+
+        @SuppressWarnings("unchecked")
+        static <K,V> Node<K,V> tabAt(Node<K,V>[] tab, int i) {
+            return (Node<K,V>)unsafe.getObjectVolatile(tab, ((long)i << ASHIFT) + ABASE);
+        }
+
+        static <K,V> boolean casTabAt(Node<K,V>[] tab, int i,
+                                      Node<K,V> c, Node<K,V> v) {
+            return unsafe.compareAndSwapObject(tab, ((long)i << ASHIFT) + ABASE, c, v);
+        }
+
+        static <K,V> void setTabAt(Node<K,V>[] tab, int i, Node<K,V> v) {
+            unsafe.putObjectVolatile(tab, ((long)i << ASHIFT) + ABASE, v);
+        }
+
+        @SuppressWarnings("unchecked")
+        static <K,V> Node<K,V>[] newTable(int n) {
+            return (Node<K,V>[])new Node<?,?>[n];
+        }
+
+        /* ---------------- Map operations -------------- */
+
+        V get(Object key) {
+            Node<K,V>[] tab; Node<K,V> e, p; int n, eh; K ek;
+            int h = spread(key.hashCode());
+            if ((tab = table) != null && (n = tab.length) > 0 &&
+                (e = tabAt(tab, (n - 1) & h)) != null) {
+                if ((eh = e.hash) == h) {
+                    if ((ek = e.key) == key || (ek != null && key.equals(ek)))
+                        return e.val;
+                }
+                else if (eh < 0)
+                    return (p = e.find(h, key)) != null ? p.val : null;
+                while ((e = e.next) != null) {
+                    if (e.hash == h &&
+                        ((ek = e.key) == key || (ek != null && key.equals(ek))))
+                        return e.val;
+                }
+            }
+            return null;
+        }
+
+        V putVal(K key, V value, boolean onlyIfAbsent) {
+            if (key == null || value == null) throw new NullPointerException();
+            int hash = spread(key.hashCode());
+            int binCount = 0;
+            for (Node<K,V>[] tab = table;;) {
+                Node<K,V> f; int n, i, fh;
+                if (tab == null || (n = tab.length) == 0)
+                    tab = initTable();
+                else if ((f = tabAt(tab, i = (n - 1) & hash)) == null) {
+                    if (casTabAt(tab, i, null,
+                                 new Node<K,V>(hash, key, value, null)))
+                        break;                   // no lock when adding to empty bin
+                }
+                else if ((fh = f.hash) == MOVED)
+                    tab = helpTransfer(tab, f);
+                else {
+                    V oldVal = null;
+                    synchronized (f) {
+                        if (tabAt(tab, i) == f) {
+                            if (fh >= 0) {
+                                binCount = 1;
+                                for (Node<K,V> e = f;; ++binCount) {
+                                    K ek;
+                                    if (e.hash == hash &&
+                                        ((ek = e.key) == key ||
+                                         (ek != null && key.equals(ek)))) {
+                                        oldVal = e.val;
+                                        if (!onlyIfAbsent)
+                                            e.val = value;
+                                        break;
+                                    }
+                                    Node<K,V> pred = e;
+                                    if ((e = e.next) == null) {
+                                        pred.next = new Node<K,V>(hash, key,
+                                                                  value, null);
+                                        break;
+                                    }
+                                }
+                            }
+                            else if (f instanceof TreeBin) {
+                                Node<K,V> p;
+                                binCount = 2;
+                                if ((p = ((TreeBin<K,V>)f).putTreeVal(hash, key,
+                                                                      value)) != null) {
+                                    oldVal = p.val;
+                                    if (!onlyIfAbsent)
+                                        p.val = value;
+                                }
+                            }
+                        }
+                    }
+                    if (binCount != 0) {
+                        if (binCount >= TREEIFY_THRESHOLD)
+                            treeifyBin(tab, i);
+                        if (oldVal != null)
+                            return oldVal;
+                        break;
+                    }
+                }
+            }
+            addCount(1L, binCount);
+            return null;
+        }
+
+        /**
+         * Replaces node value with v, conditional upon match of cv if
+         * non-null. If resulting value is null, deletes.
+         */
+        V replaceNode(Object key, V value, Object cv) {
+            int hash = spread(key.hashCode());
+            for (Node<K,V>[] tab = table;;) {
+                Node<K,V> f; int n, i, fh;
+                if (tab == null || (n = tab.length) == 0 ||
+                    (f = tabAt(tab, i = (n - 1) & hash)) == null)
+                    break;
+                else if ((fh = f.hash) == MOVED)
+                    tab = helpTransfer(tab, f);
+                else {
+                    V oldVal = null;
+                    boolean validated = false;
+                    synchronized (f) {
+                        if (tabAt(tab, i) == f) {
+                            if (fh >= 0) {
+                                validated = true;
+                                for (Node<K,V> e = f, pred = null;;) {
+                                    K ek;
+                                    if (e.hash == hash &&
+                                        ((ek = e.key) == key ||
+                                         (ek != null && key.equals(ek)))) {
+                                        V ev = e.val;
+                                        if (cv == null || cv == ev ||
+                                            (ev != null && cv.equals(ev))) {
+                                            oldVal = ev;
+                                            if (value != null)
+                                                e.val = value;
+                                            else if (pred != null)
+                                                pred.next = e.next;
+                                            else
+                                                setTabAt(tab, i, e.next);
+                                        }
+                                        break;
+                                    }
+                                    pred = e;
+                                    if ((e = e.next) == null)
+                                        break;
+                                }
+                            }
+                            else if (f instanceof TreeBin) {
+                                validated = true;
+                                TreeBin<K,V> t = (TreeBin<K,V>)f;
+                                TreeNode<K,V> r, p;
+                                if ((r = t.root) != null &&
+                                    (p = r.findTreeNode(hash, key, null)) != null) {
+                                    V pv = p.val;
+                                    if (cv == null || cv == pv ||
+                                        (pv != null && cv.equals(pv))) {
+                                        oldVal = pv;
+                                        if (value != null)
+                                            p.val = value;
+                                        else if (t.removeTreeNode(p))
+                                            setTabAt(tab, i, untreeify(t.first));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    if (validated) {
+                        if (oldVal != null) {
+                            if (value == null)
+                                addCount(-1L, -1);
+                            return oldVal;
+                        }
+                        break;
+                    }
+                }
+            }
+            return null;
+        }
+
+        boolean containsValue(Object value) {
+            Node<K,V>[] t = table;
+            if (t != null) {
+                Traverser<K,V> it = new Traverser<K,V>(t, t.length, 0, t.length);
+                for (Node<K,V> p; (p = it.advance()) != null; ) {
+                    V v;
+                    if ((v = p.val) == value || (v != null && value.equals(v)))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        void clear() {
+            long delta = 0L; // negative number of deletions
+            int i = 0;
+            Node<K,V>[] tab = table;
+            while (tab != null && i < tab.length) {
+                int fh;
+                Node<K,V> f = tabAt(tab, i);
+                if (f == null)
+                    ++i;
+                else if ((fh = f.hash) == MOVED) {
+                    tab = helpTransfer(tab, f);
+                    i = 0; // restart
+                }
+                else {
+                    synchronized (f) {
+                        if (tabAt(tab, i) == f) {
+                            Node<K,V> p = (fh >= 0 ? f :
+                                           (f instanceof TreeBin) ?
+                                           ((TreeBin<K,V>)f).first : null);
+                            while (p != null) {
+                                --delta;
+                                p = p.next;
+                            }
+                            setTabAt(tab, i++, null);
+                        }
+                    }
+                }
+            }
+            if (delta != 0L)
+                addCount(delta, -1);
+        }
+
+        long sumCount() {
+            return count.sum();
+        }
+
+        Traverser<K,V> traverser() {
+            Node<K,V>[] t = table;
+            int f = (t == null) ? 0 : t.length;
+            return new Traverser<K,V>(t, f, 0, f);
+        }
+
+        /* ---------------- Table Initialization and Resizing -------------- */
+
+        /**
+         * Initializes table, using the size recorded in sizeCtl.
+         */
+        private Node<K,V>[] initTable() {
+            Node<K,V>[] tab; int sc;
+            while ((tab = table) == null || tab.length == 0) {
+                if ((sc = sizeCtl) < 0)
+                    Thread.yield(); // lost initialization race; just spin
+                else if (unsafe.compareAndSwapInt(this, SIZECTL, sc, -1)) {
+                    try {
+                        if ((tab = table) == null || tab.length == 0) {
+                            int n = (sc > 0) ? sc : DEFAULT_CAPACITY;
+                            table = tab = BinTable.<K,V>newTable(n);
+                            sc = n - (n >>> 2);
+                        }
+                    } finally {
+                        sizeCtl = sc;
+                    }
+                    break;
+                }
+            }
+            return tab;
+        }
+
+        /**
+         * Adds to count, and if table is too small and not already
+         * resizing, initiates transfer. If already resizing, helps
+         * perform transfer if work is available. Rechecks occupancy
+         * after a transfer to see if another resize is already needed
+         * because resizings are lagging additions.
+         *
+         * @param x the count to add
+         * @param check if <0, don't check resize
+         */
+        private void addCount(long x, int check) {
+            count.add(x);
+            if (check >= 0) {
+                Node<K,V>[] tab, nt; int n, sc;
+                long s = sumCount();
+                while (s >= (long)(sc = sizeCtl) && (tab = table) != null &&
+                       (n = tab.length) < MAXIMUM_CAPACITY) {
+                    int rs = resizeStamp(n) << RESIZE_STAMP_SHIFT;
+                    if (sc < 0) {
+                        if (sc == rs + MAX_RESIZERS || sc == rs + 1 ||
+                            (nt = nextTable) == null || transferIndex <= 0)
+                            break;
+                        if (unsafe.compareAndSwapInt(this, SIZECTL, sc, sc + 1))
+                            transfer(tab, nt);
+                    }
+                    else if (unsafe.compareAndSwapInt(this, SIZECTL, sc, rs + 2))
+                        transfer(tab, null);
+                    s = sumCount();
+                }
+            }
+        }
+
+        /**
+         * Helps transfer if a resize is in progress.
+         */
+        private Node<K,V>[] helpTransfer(Node<K,V>[] tab, Node<K,V> f) {
+            Node<K,V>[] nextTab; int sc;
+            if (tab != null && (f instanceof ForwardingNode) &&
+                (nextTab = ((ForwardingNode<K,V>)f).nextTable) != null) {
+                int rs = resizeStamp(tab.length) << RESIZE_STAMP_SHIFT;
+                while (nextTab == nextTable && table == tab &&
+                       (sc = sizeCtl) < 0) {
+                    if (sc == rs + MAX_RESIZERS || sc == rs + 1 ||
+                        transferIndex <= 0)
+                        break;
+                    if (unsafe.compareAndSwapInt(this, SIZECTL, sc, sc + 1)) {
+                        transfer(tab, nextTab);
+                        break;
+                    }
+                }
+                return nextTab;
+            }
+            return table;
+        }
+
+        /**
+         * Tries to presize table to accommodate the given number of
+         * elements.
+         *
+         * @param size number of elements (doesn't need to be perfectly accurate)
+         */
+        void tryPresize(int size) {
+            int c = (size >= (MAXIMUM_CAPACITY >>> 1)) ? MAXIMUM_CAPACITY :
+                tableSizeFor(size + (size >>> 1) + 1);
+            int sc;
+            while ((sc = sizeCtl) >= 0) {
+                Node<K,V>[] tab = table; int n;
+                if (tab == null || (n = tab.length) == 0) {
+                    n = (sc > c) ? sc : c;
+                    if (unsafe.compareAndSwapInt(this, SIZECTL, sc, -1)) {
+                        try {
+                            if (table == tab) {
+                                table = BinTable.<K,V>newTable(n);
+                                sc = n - (n >>> 2);
+                            }
+                        } finally {
+                            sizeCtl = sc;
+                        }
+                    }
+                }
+                else if (c <= sc || n >= MAXIMUM_CAPACITY)
+                    break;
+                else if (tab == table) {
+                    int rs = resizeStamp(n);
+                    if (unsafe.compareAndSwapInt(this, SIZECTL, sc,
+                                                 (rs << RESIZE_STAMP_SHIFT) + 2))
+                        transfer(tab, null);
+                }
+            }
+        }
+
+        /**
+         * Moves and/or copies the nodes in each bin to new table. See
+         * above for explanation.
+         */
+        private void transfer(Node<K,V>[] tab, Node<K,V>[] nextTab) {
+            int n = tab.length, stride;
+            if ((stride = (NCPU > 1) ? (n >>> 3) / NCPU : n) < MIN_TRANSFER_STRIDE)
+                stride = MIN_TRANSFER_STRIDE; // subdivide range
+            if (nextTab == null) {            // initiating
+                try {
+                    nextTab = BinTable.<K,V>newTable(n << 1);
+                } catch (Throwable ex) {      // try to cope with OOME
+                    sizeCtl = Integer.MAX_VALUE;
+                    return;
+                }
+                nextTable = nextTab;
+                transferIndex = n;
+            }
+            int nextn = nextTab.length;
+            ForwardingNode<K,V> fwd = new ForwardingNode<K,V>(nextTab);
+            boolean advance = true;
+            boolean finishing = false; // to ensure sweep before committing nextTab
+            for (int i = 0, bound = 0;;) {
+                Node<K,V> f; int fh;
+                while (advance) {
+                    int nextIndex, nextBound;
+                    if (--i >= bound || finishing)
+                        advance = false;
+                    else if ((nextIndex = transferIndex) <= 0) {
+                        i = -1;
+                        advance = false;
+                    }
+                    else if (unsafe.compareAndSwapInt
+                             (this, TRANSFERINDEX, nextIndex,
+                              nextBound = (nextIndex > stride ?
+                                           nextIndex - stride : 0))) {
+                        bound = nextBound;
+                        i = nextIndex - 1;
+                        advance = false;
+                    }
+                }
+                if (i < 0 || i >= n || i + n >= nextn) {
+                    int sc;
+                    if (finishing) {
+                        nextTable = null;
+                        table = nextTab;
+                        sizeCtl = (n << 1) - (n >>> 1);
+                        return;
+                    }
+                    if (unsafe.compareAndSwapInt(this, SIZECTL, sc = sizeCtl, sc - 1)) {
+                        if ((sc - 2) != resizeStamp(n) << RESIZE_STAMP_SHIFT)
+                            return;
+                        finishing = advance = true;
+                        i = n; // recheck before commit
+                    }
+                }
+                else if ((f = tabAt(tab, i)) == null)
+                    advance = casTabAt(tab, i, null, fwd);
+                else if ((fh = f.hash) == MOVED)
+                    advance = true; // already processed
+                else {
+                    synchronized (f) {
+                        if (tabAt(tab, i) == f) {
+                            Node<K,V> ln, hn;
+                            if (fh >= 0) {
+                                int runBit = fh & n;
+                                Node<K,V> lastRun = f;
+                                for (Node<K,V> p = f.next; p != null; p = p.next) {
+                                    int b = p.hash & n;
+                                    if (b != runBit) {
+                                        runBit = b;
+                                        lastRun = p;
+                                    }
+                                }
+                                if (runBit == 0) {
+                                    ln = lastRun;
+                                    hn = null;
+                                }
+                                else {
+                                    hn = lastRun;
+                                    ln = null;
+                                }
+                                for (Node<K,V> p = f; p != lastRun; p = p.next) {
+                                    int ph = p.hash; K pk = p.key; V pv = p.val;
+                                    if ((ph & n) == 0)
+                                        ln = new Node<K,V>(ph, pk, pv, ln);
+                                    else
+                                        hn = new Node<K,V>(ph, pk, pv, hn);
+                                }
+                                setTabAt(nextTab, i, ln);
+                                setTabAt(nextTab, i + n, hn);
+                                setTabAt(tab, i, fwd);
+                                advance = true;
+                            }
+                            else if (f instanceof TreeBin) {
+                                TreeBin<K,V> t = (TreeBin<K,V>)f;
+                                TreeNode<K,V> lo = null, loTail = null;
+                                TreeNode<K,V> hi = null, hiTail = null;
+                                int lc = 0, hc = 0;
+                                for (Node<K,V> e = t.first; e != null; e = e.next) {
+                                    int h = e.hash;
+                                    TreeNode<K,V> p = new TreeNode<K,V>
+                                        (h, e.key, e.val, null, null);
+                                    if ((h & n) == 0) {
+                                        if ((p.prev = loTail) == null)
+                                            lo = p;
+                                        else
+                                            loTail.next = p;
+                                        loTail = p;
+                                        ++lc;
+                                    }
+                                    else {
+                                        if ((p.prev = hiTail) == null)
+                                            hi = p;
+                                        else
+                                            hiTail.next = p;
+                                        hiTail = p;
+                                        ++hc;
+                                    }
+                                }
+                                ln = (lc <= UNTREEIFY_THRESHOLD) ? untreeify(lo) :
+                                    (hc != 0) ? new TreeBin<K,V>(lo) : t;
+                                hn = (hc <= UNTREEIFY_THRESHOLD) ? untreeify(hi) :
+                                    (lc != 0) ? new TreeBin<K,V>(hi) : t;
+                                setTabAt(nextTab, i, ln);
+                                setTabAt(nextTab, i + n, hn);
+                                setTabAt(tab, i, fwd);
+                                advance = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /* ---------------- Conversion from/to TreeBins -------------- */
+
+        /**
+         * Replaces all linked nodes in bin at given index unless table is
+         * too small, in which case resizes instead.
+         */
+        private void treeifyBin(Node<K,V>[] tab, int index) {
+            Node<K,V> b; int n;
+            if (tab != null) {
+                if ((n = tab.length) < MIN_TREEIFY_CAPACITY)
+                    tryPresize(n << 1);
+                else if ((b = tabAt(tab, index)) != null && b.hash >= 0) {
+                    synchronized (b) {
+                        if (tabAt(tab, index) == b) {
+                            TreeNode<K,V> hd = null, tl = null;
+                            for (Node<K,V> e = b; e != null; e = e.next) {
+                                TreeNode<K,V> p =
+                                    new TreeNode<K,V>(e.hash, e.key, e.val,
+                                                      null, null);
+                                if ((p.prev = tl) == null)
+                                    hd = p;
+                                else
+                                    tl.next = p;
+                                tl = p;
+                            }
+                            setTabAt(tab, index, new TreeBin<K,V>(hd));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns a list of non-TreeNodes replacing those in given list.
+         */
+        static <K,V> Node<K,V> untreeify(Node<K,V> b) {
+            Node<K,V> hd = null, tl = null;
+            for (Node<K,V> q = b; q != null; q = q.next) {
+                Node<K,V> p = new Node<K,V>(q.hash, q.key, q.val, null);
+                if (tl == null)
+                    hd = p;
+                else
+                    tl.next = p;
+                tl = p;
+            }
+            return hd;
+        }
+
+        // Unsafe mechanics
+        private static final long SIZECTL;
+        private static final long TRANSFERINDEX;
+        private static final long ABASE;
+        private static final int ASHIFT;
+
+        static {
+            try {
+                SIZECTL = unsafe.objectFieldOffset
+                    (BinTable.class.getDeclaredField("sizeCtl"));
+                TRANSFERINDEX = unsafe.objectFieldOffset
+                    (BinTable.class.getDeclaredField("transferIndex"));
+                ABASE = unsafe.arrayBaseOffset(Node[].class);
+                int scale = unsafe.arrayIndexScale(Node[].class);
+                if ((scale & (scale - 1)) != 0)
+                    throw new Error("data type scale not a power of two");
+                ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * Key-value entry of a BinTable. Unlike HashEntry, the value and
+     * next fields are mutable, and are only written while holding the
+     * lock of the first node of the bin. Subclasses with negative hash
+     * fields are special nodes that are never exported.
+     */
+    static class Node<K,V> {
+        final int hash;
+        final K key;
+        volatile V val;
+        volatile Node<K,V> next;
+
+        Node(int hash, K key, V val, Node<K,V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.val = val;
+            this.next = next;
+        }
+
+        /**
+         * Virtualized support for map.get(); overridden in subclasses.
+         */
+        Node<K,V> find(int h, Object k) {
+            Node<K,V> e = this;
+            if (k != null) {
+                do {
+                    K ek;
+                    if (e.hash == h &&
+                        ((ek = e.key) == k || (ek != null && k.equals(ek))))
+                        return e;
+                } while ((e = e.next) != null);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A node inserted at head of bins during transfer operations.
+     */
+    static final class ForwardingNode<K,V> extends Node<K,V> {
+        final Node<K,V>[] nextTable;
+
+        ForwardingNode(Node<K,V>[] tab) {
+            super(BinTable.MOVED, null, null, null);
+            this.nextTable = tab;
+        }
+
+        Node<K,V> find(int h, Object k) {
+            // loop to avoid arbitrarily deep recursion on forwarding nodes
+            outer: for (Node<K,V>[] tab = nextTable;;) {
+                Node<K,V> e; int n;
+                if (k == null || tab == null || (n = tab.length) == 0 ||
+                    (e = BinTable.tabAt(tab, (n - 1) & h)) == null)
+                    return null;
+                for (;;) {
+                    int eh; K ek;
+                    if ((eh = e.hash) == h &&
+                        ((ek = e.key) == k || (ek != null && k.equals(ek))))
+                        return e;
+                    if (eh < 0) {
+                        if (e instanceof ForwardingNode) {
+                            tab = ((ForwardingNode<K,V>)e).nextTable;
+                            continue outer;
+                        }
+                        else
+                            return e.find(h, k);
+                    }
+                    if ((e = e.next) == null)
+                        return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Nodes for use in TreeBins.
+     */
+    static final class TreeNode<K,V> extends Node<K,V> {
+        TreeNode<K,V> parent;  // red-black tree links
+        TreeNode<K,V> left;
+        TreeNode<K,V> right;
+        TreeNode<K,V> prev;    // needed to unlink next upon deletion
+        boolean red;
+
+        TreeNode(int hash, K key, V val, Node<K,V> next,
+                 TreeNode<K,V> parent) {
+            super(hash, key, val, next);
+            this.parent = parent;
+        }
+
+        Node<K,V> find(int h, Object k) {
+            return findTreeNode(h, k, null);
+        }
+
+        /**
+         * Returns the TreeNode (or null if not found) for the given key
+         * starting at given root.
+         */
+        final TreeNode<K,V> findTreeNode(int h, Object k, Class<?> kc) {
+            if (k != null) {
+                TreeNode<K,V> p = this;
+                do {
+                    int ph, dir; K pk; TreeNode<K,V> q;
+                    TreeNode<K,V> pl = p.left, pr = p.right;
+                    if ((ph = p.hash) > h)
+                        p = pl;
+                    else if (ph < h)
+                        p = pr;
+                    else if ((pk = p.key) == k || (pk != null && k.equals(pk)))
+                        return p;
+                    else if (pl == null)
+                        p = pr;
+                    else if (pr == null)
+                        p = pl;
+                    else if ((kc != null ||
+                              (kc = BinTable.comparableClassFor(k)) != null) &&
+                             (dir = BinTable.compareComparables(kc, k, pk)) != 0)
+                        p = (dir < 0) ? pl : pr;
+                    else if ((q = pr.findTreeNode(h, k, kc)) != null)
+                        return q;
+                    else
+                        p = pl;
+                } while (p != null);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * TreeNodes used at the heads of bins. TreeBins do not hold user
+     * keys or values, but instead point to list of TreeNodes and
+     * their root. They also maintain a parasitic read-write lock
+     * forcing writers (who hold bin lock) to wait for readers (who do
+     * not) to complete before tree restructuring operations. Readers
+     * that find a writer active fall back to a linear scan of the
+     * nodes, which stay consistent since writers only prepend.
+     */
+    static final class TreeBin<K,V> extends Node<K,V> {
+        TreeNode<K,V> root;
+        volatile TreeNode<K,V> first;
+        volatile Thread waiter;
+        volatile int lockState;
+        // values for lockState
+        static final int WRITER = 1; // set while holding write lock
+        static final int WAITER = 2; // set when waiting for write lock
+        static final int READER = 4; // increment value for setting read lock
+
+        /**
+         * Tie-breaking utility for ordering insertions when equal
+         * hashCodes and non-comparable. We don't require a total
+         * order, just a consistent insertion rule to maintain
+         * equivalence across rebalancings.
+         */
+        static int tieBreakOrder(Object a, Object b) {
+            int d;
+            if (a == null || b == null ||
+                (d = a.getClass().getName().
+                 compareTo(b.getClass().getName())) == 0)
+                d = (System.identityHashCode(a) <= System.identityHashCode(b) ?
+                     -1 : 1);
+            return d;
+        }
+
+        /**
+         * Creates bin with initial set of nodes headed by b.
+         */
+        TreeBin(TreeNode<K,V> b) {
+            super(BinTable.TREEBIN, null, null, null);
+            this.first = b;
+            TreeNode<K,V> r = null;
+            for (TreeNode<K,V> x = b, next; x != null; x = next) {
+                next = (TreeNode<K,V>)x.next;
+                x.left = x.right = null;
+                if (r == null) {
+                    x.parent = null;
+                    x.red = false;
+                    r = x;
+                }
+                else {
+                    K k = x.key;
+                    int h = x.hash;
+                    Class<?> kc = null;
+                    for (TreeNode<K,V> p = r;;) {
+                        int dir, ph;
+                        K pk = p.key;
+                        if ((ph = p.hash) > h)
+                            dir = -1;
+                        else if (ph < h)
+                            dir = 1;
+                        else if ((kc == null &&
+                                  (kc = BinTable.comparableClassFor(k)) == null) ||
+                                 (dir = BinTable.compareComparables(kc, k, pk)) == 0)
+                            dir = tieBreakOrder(k, pk);
+                        TreeNode<K,V> xp = p;
+                        if ((p = (dir <= 0) ? p.left : p.right) == null) {
+                            x.parent = xp;
+                            if (dir <= 0)
+                                xp.left = x;
+                            else
+                                xp.right = x;
+                            r = balanceInsertion(r, x);
+                            break;
+                        }
+                    }
+                }
+            }
+            this.root = r;
+        }
+
+        /**
+         * Acquires write lock for tree restructuring.
+         */
+        private void lockRoot() {
+            if (!unsafe.compareAndSwapInt(this, LOCKSTATE, 0, WRITER))
+                contendedLock(); // offload to separate method
+        }
+
+        /**
+         * Releases write lock for tree restructuring.
+         */
+        private void unlockRoot() {
+            lockState = 0;
+        }
+
+        /**
+         * Possibly blocks awaiting root lock.
+         */
+        private void contendedLock() {
+            boolean waiting = false;
+            for (int s;;) {
+                if (((s = lockState) & ~WAITER) == 0) {
+                    if (unsafe.compareAndSwapInt(this, LOCKSTATE, s, WRITER)) {
+                        if (waiting)
+                            waiter = null;
+                        return;
+                    }
+                }
+                else if ((s & WAITER) == 0) {
+                    if (unsafe.compareAndSwapInt(this, LOCKSTATE, s, s | WAITER)) {
+                        waiting = true;
+                        waiter = Thread.currentThread();
+                    }
+                }
+                else if (waiting)
+                    LockSupport.park();
+            }
+        }
+
+        /**
+         * Drops a read lock, waking a waiting writer if this was the
+         * last reader.
+         */
+        private void releaseReadLock() {
+            for (int s;;) {
+                if (unsafe.compareAndSwapInt(this, LOCKSTATE, s = lockState,
+                                             s - READER)) {
+                    Thread w;
+                    if (s == (READER|WAITER) && (w = waiter) != null)
+                        LockSupport.unpark(w);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns matching node or null if none. Tries to search
+         * using tree comparisons from root, but continues linear
+         * search when lock not available.
+         */
+        Node<K,V> find(int h, Object k) {
+            if (k != null) {
+                for (Node<K,V> e = first; e != null; ) {
+                    int s; K ek;
+                    if (((s = lockState) & (WAITER|WRITER)) != 0) {
+                        if (e.hash == h &&
+                            ((ek = e.key) == k || (ek != null && k.equals(ek))))
+                            return e;
+                        e = e.next;
+                    }
+                    else if (unsafe.compareAndSwapInt(this, LOCKSTATE, s,
+                                                      s + READER)) {
+                        TreeNode<K,V> r, p;
+                        try {
+                            p = ((r = root) == null ? null :
+                                 r.findTreeNode(h, k, null));
+                        } finally {
+                            releaseReadLock();
+                        }
+                        return p;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Finds or adds a node.
+         * @return null if added
+         */
+        TreeNode<K,V> putTreeVal(int h, K k, V v) {
+            Class<?> kc = null;
+            boolean searched = false;
+            for (TreeNode<K,V> p = root;;) {
+                int dir, ph; K pk;
+                if (p == null) {
+                    first = root = new TreeNode<K,V>(h, k, v, null, null);
+                    break;
+                }
+                else if ((ph = p.hash) > h)
+                    dir = -1;
+                else if (ph < h)
+                    dir = 1;
+                else if ((pk = p.key) == k || (pk != null && k.equals(pk)))
+                    return p;
+                else if ((kc == null &&
+                          (kc = BinTable.comparableClassFor(k)) == null) ||
+                         (dir = BinTable.compareComparables(kc, k, pk)) == 0) {
+                    if (!searched) {
+                        TreeNode<K,V> q, ch;
+                        searched = true;
+                        if (((ch = p.left) != null &&
+                             (q = ch.findTreeNode(h, k, kc)) != null) ||
+                            ((ch = p.right) != null &&
+                             (q = ch.findTreeNode(h, k, kc)) != null))
+                            return q;
+                    }
+                    dir = tieBreakOrder(k, pk);
+                }
+
+                TreeNode<K,V> xp = p;
+                if ((p = (dir <= 0) ? p.left : p.right) == null) {
+                    TreeNode<K,V> x, f = first;
+                    first = x = new TreeNode<K,V>(h, k, v, f, xp);
+                    if (f != null)
+                        f.prev = x;
+                    if (dir <= 0)
+                        xp.left = x;
+                    else
+                        xp.right = x;
+                    if (!xp.red)
+                        x.red = true;
+                    else {
+                        lockRoot();
+                        try {
+                            root = balanceInsertion(root, x);
+                        } finally {
+                            unlockRoot();
+                        }
+                    }
+                    break;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Removes the given node, that must be present before this
+         * call. This is messier than typical red-black deletion code
+         * because we cannot swap the contents of an interior node
+         * with a leaf successor that is pinned by "next" pointers
+         * that are accessible independently of lock. So instead we
+         * swap the tree linkages.
+         *
+         * @return true if now too small, so should be untreeified
+         */
+        boolean removeTreeNode(TreeNode<K,V> p) {
+            TreeNode<K,V> next = (TreeNode<K,V>)p.next;
+            TreeNode<K,V> pred = p.prev;  // unlink traversal pointers
+            TreeNode<K,V> r, rl;
+            if (pred == null)
+                first = next;
+            else
+                pred.next = next;
+            if (next != null)
+                next.prev = pred;
+            if (first == null) {
+                root = null;
+                return true;
+            }
+            if ((r = root) == null || r.right == null || // too small
+                (rl = r.left) == null || rl.left == null)
+                return true;
+            lockRoot();
+            try {
+                TreeNode<K,V> replacement;
+                TreeNode<K,V> pl = p.left;
+                TreeNode<K,V> pr = p.right;
+                if (pl != null && pr != null) {
+                    TreeNode<K,V> s = pr, sl;
+                    while ((sl = s.left) != null) // find successor
+                        s = sl;
+                    boolean c = s.red; s.red = p.red; p.red = c; // swap colors
+                    TreeNode<K,V> sr = s.right;
+                    TreeNode<K,V> pp = p.parent;
+                    if (s == pr) { // p was s's direct parent
+                        p.parent = s;
+                        s.right = p;
+                    }
+                    else {
+                        TreeNode<K,V> sp = s.parent;
+                        if ((p.parent = sp) != null) {
+                            if (s == sp.left)
+                                sp.left = p;
+                            else
+                                sp.right = p;
+                        }
+                        if ((s.right = pr) != null)
+                            pr.parent = s;
+                    }
+                    p.left = null;
+                    if ((p.right = sr) != null)
+                        sr.parent = p;
+                    if ((s.left = pl) != null)
+                        pl.parent = s;
+                    if ((s.parent = pp) == null)
+                        r = s;
+                    else if (p == pp.left)
+                        pp.left = s;
+                    else
+                        pp.right = s;
+                    if (sr != null)
+                        replacement = sr;
+                    else
+                        replacement = p;
+                }
+                else if (pl != null)
+                    replacement = pl;
+                else if (pr != null)
+                    replacement = pr;
+                else
+                    replacement = p;
+                if (replacement != p) {
+                    TreeNode<K,V> pp = replacement.parent = p.parent;
+                    if (pp == null)
+                        r = replacement;
+                    else if (p == pp.left)
+                        pp.left = replacement;
+                    else
+                        pp.right = replacement;
+                    p.left = p.right = p.parent = null;
+                }
+
+                root = (p.red) ? r : balanceDeletion(r, replacement);
+
+                if (p == replacement) {  // detach pointers
+                    TreeNode<K,V> pp;
+                    if ((pp = p.parent) != null) {
+                        if (p == pp.left)
+                            pp.left = null;
+                        else if (p == pp.right)
+                            pp.right = null;
+                        p.parent = null;
+                    }
+                }
+            } finally {
+                unlockRoot();
+            }
+            return false;
+        }
+
+        /* ------------------------------------------------------------ */
+        // Red-black tree methods, all adapted from CLR
+
+        static <K,V> TreeNode<K,V> rotateLeft(TreeNode<K,V> root,
+                                              TreeNode<K,V> p) {
+            TreeNode<K,V> r, pp, rl;
+            if (p != null && (r = p.right) != null) {
+                if ((rl = p.right = r.left) != null)
+                    rl.parent = p;
+                if ((pp = r.parent = p.parent) == null)
+                    (root = r).red = false;
+                else if (pp.left == p)
+                    pp.left = r;
+                else
+                    pp.right = r;
+                r.left = p;
+                p.parent = r;
+            }
+            return root;
+        }
+
+        static <K,V> TreeNode<K,V> rotateRight(TreeNode<K,V> root,
+                                               TreeNode<K,V> p) {
+            TreeNode<K,V> l, pp, lr;
+            if (p != null && (l = p.left) != null) {
+                if ((lr = p.left = l.right) != null)
+                    lr.parent = p;
+                if ((pp = l.parent = p.parent) == null)
+                    (root = l).red = false;
+                else if (pp.right == p)
+                    pp.right = l;
+                else
+                    pp.left = l;
+                l.right = p;
+                p.parent = l;
+            }
+            return root;
+        }
+
+        static <K,V> TreeNode<K,V> balanceInsertion(TreeNode<K,V> root,
+                                                    TreeNode<K,V> x) {
+            x.red = true;
+            for (TreeNode<K,V> xp, xpp, xppl, xppr;;) {
+                if ((xp = x.parent) == null) {
+                    x.red = false;
+                    return x;
+                }
+                else if (!xp.red || (xpp = xp.parent) == null)
+                    return root;
+                if (xp == (xppl = xpp.left)) {
+                    if ((xppr = xpp.right) != null && xppr.red) {
+                        xppr.red = false;
+                        xp.red = false;
+                        xpp.red = true;
+                        x = xpp;
+                    }
+                    else {
+                        if (x == xp.right) {
+                            root = rotateLeft(root, x = xp);
+                            xpp = (xp = x.parent) == null ? null : xp.parent;
+                        }
+                        if (xp != null) {
+                            xp.red = false;
+                            if (xpp != null) {
+                                xpp.red = true;
+                                root = rotateRight(root, xpp);
+                            }
+                        }
+                    }
+                }
+                else {
+                    if (xppl != null && xppl.red) {
+                        xppl.red = false;
+                        xp.red = false;
+                        xpp.red = true;
+                        x = xpp;
+                    }
+                    else {
+                        if (x == xp.left) {
+                            root = rotateRight(root, x = xp);
+                            xpp = (xp = x.parent) == null ? null : xp.parent;
+                        }
+                        if (xp != null) {
+                            xp.red = false;
+                            if (xpp != null) {
+                                xpp.red = true;
+                                root = rotateLeft(root, xpp);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        static <K,V> TreeNode<K,V> balanceDeletion(TreeNode<K,V> root,
+                                                   TreeNode<K,V> x) {
+            for (TreeNode<K,V> xp, xpl, xpr;;) {
+                if (x == null || x == root)
+                    return root;
+                else if ((xp = x.parent) == null) {
+                    x.red = false;
+                    return x;
+                }
+                else if (x.red) {
+                    x.red = false;
+                    return root;
+                }
+                else if ((xpl = xp.left) == x) {
+                    if ((xpr = xp.right) != null && xpr.red) {
+                        xpr.red = false;
+                        xp.red = true;
+                        root = rotateLeft(root, xp);
+                        xpr = (xp = x.parent) == null ? null : xp.right;
+                    }
+                    if (xpr == null)
+                        x = xp;
+                    else {
+                        TreeNode<K,V> sl = xpr.left, sr = xpr.right;
+                        if ((sr == null || !sr.red) &&
+                            (sl == null || !sl.red)) {
+                            xpr.red = true;
+                            x = xp;
+                        }
+                        else {
+                            if (sr == null || !sr.red) {
+                                if (sl != null)
+                                    sl.red = false;
+                                xpr.red = true;
+                                root = rotateRight(root, xpr);
+                                xpr = (xp = x.parent) == null ?
+                                    null : xp.right;
+                            }
+                            if (xpr != null) {
+                                xpr.red = (xp == null) ? false : xp.red;
+                                if ((sr = xpr.right) != null)
+                                    sr.red = false;
+                            }
+                            if (xp != null) {
+                                xp.red = false;
+                                root = rotateLeft(root, xp);
+                            }
+                            x = root;
+                        }
+                    }
+                }
+                else { // symmetric
+                    if (xpl != null && xpl.red) {
+                        xpl.red = false;
+                        xp.red = true;
+                        root = rotateRight(root, xp);
+                        xpl = (xp = x.parent) == null ? null : xp.left;
+                    }
+                    if (xpl == null)
+                        x = xp;
+                    else {
+                        TreeNode<K,V> sl = xpl.left, sr = xpl.right;
+                        if ((sl == null || !sl.red) &&
+                            (sr == null || !sr.red)) {
+                            xpl.red = true;
+                            x = xp;
+                        }
+                        else {
+                            if (sl == null || !sl.red) {
+                                if (sr != null)
+                                    sr.red = false;
+                                xpl.red = true;
+                                root = rotateLeft(root, xpl);
+                                xpl = (xp = x.parent) == null ?
+                                    null : xp.left;
+                            }
+                            if (xpl != null) {
+                                xpl.red = (xp == null) ? false : xp.red;
+                                if ((sl = xpl.left) != null)
+                                    sl.red = false;
+                            }
+                            if (xp != null) {
+                                xp.red = false;
+                                root = rotateRight(root, xp);
+                            }
+                            x = root;
+                        }
+                    }
+                }
+            }
+        }
+
+        private static final long LOCKSTATE;
+
+        static {
+            try {
+                LOCKSTATE = unsafe.objectFieldOffset
+                    (TreeBin.class.getDeclaredField("lockState"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * Records the table, its length, and current traversal index for a
+     * traverser that must process a region of a forwarded table before
+     * proceeding with current table.
+     */
+    static final class TableStack<K,V> {
+        int length;
+        int index;
+        Node<K,V>[] tab;
+        TableStack<K,V> next;
+    }
+
+    /**
+     * Encapsulates traversal of a BinTable for iterators and
+     * containsValue.
+     *
+     * Each bin is visited once even across a concurrent resize: when a
+     * ForwardingNode is met, the two bins of the next table that the
+     * bin was split into are visited (recursively, if they have been
+     * forwarded too) before going on in the current table.
+     */
+    static final class Traverser<K,V> {
+        Node<K,V>[] tab;        // current table; updated if resized
+        Node<K,V> next;         // the next entry to use
+        TableStack<K,V> stack, spare; // to save/restore on ForwardingNodes
+        int index;              // index of bin to use next
+        int baseIndex;          // current index of initial table
+        int baseLimit;          // index bound for initial table
+        final int baseSize;     // initial table size
+
+        Traverser(Node<K,V>[] tab, int size, int index, int limit) {
+            this.tab = tab;
+            this.baseSize = size;
+            this.baseIndex = this.index = index;
+            this.baseLimit = limit;
+            this.next = null;
+        }
+
+        /**
+         * Advances if possible, returning next valid node, or null if none.
+         */
+        Node<K,V> advance() {
+            Node<K,V> e;
+            if ((e = next) != null)
+                e = e.next;
+            for (;;) {
+                Node<K,V>[] t; int i, n; // must use locals in checks
+                if (e != null)
+                    return next = e;
+                if (baseIndex >= baseLimit || (t = tab) == null ||
+                    (n = t.length) <= (i = index) || i < 0)
+                    return next = null;
+                if ((e = BinTable.tabAt(t, i)) != null && e.hash < 0) {
+                    if (e instanceof ForwardingNode) {
+                        tab = ((ForwardingNode<K,V>)e).nextTable;
+                        e = null;
+                        pushState(t, i, n);
+                        continue;
+                    }
+                    else if (e instanceof TreeBin)
+                        e = ((TreeBin<K,V>)e).first;
+                    else
+                        e = null;
+                }
+                if (stack != null)
+                    recoverState(n);
+                else if ((index = i + baseSize) >= n)
+                    index = ++baseIndex; // visit upper slots if present
+            }
+        }
+
+        /**
+         * Saves traversal state upon encountering a forwarding node.
+         */
+        private void pushState(Node<K,V>[] t, int i, int n) {
+            TableStack<K,V> s = spare;  // reuse if possible
+            if (s != null)
+                spare = s.next;
+            else
+                s = new TableStack<K,V>();
+            s.tab = t;
+            s.length = n;
+            s.index = i;
+            s.next = stack;
+            stack = s;
+        }
+
+        /**
+         * Possibly pops traversal state.
+         *
+         * @param n length of current table
+         */
+        private void recoverState(int n) {
+            TableStack<K,V> s; int len;
+            while ((s = stack) != null && (index += (len = s.length)) >= n) {
+                n = len;
+                index = s.index;
+                tab = s.tab;
+                s.tab = null;
+                TableStack<K,V> next = s.next;
+                s.next = spare; // save for reuse
+                stack = next;
+                spare = s;
+            }
+            if (s == null && (index += baseSize) >= n)
+                index = ++baseIndex;
+        }
+    }
 
     /* ---------------- Public operations -------------- */
 
@@ -582,9 +2135,30 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      */
     public ConcurrentHashMap(int initialCapacity,
                              float loadFactor, int concurrencyLevel) {
+        this(initialCapacity, loadFactor, concurrencyLevel, BinTable.ENABLED);
+    }
+
+    /**
+     * Creates a new, empty map backed by a bin table or by segments
+     * regardless of the system property, so that both can be tested
+     * in the same VM.
+     *
+     * @param useBins whether the map is backed by a bin table
+     */
+    ConcurrentHashMap(int initialCapacity,
+                      float loadFactor, int concurrencyLevel, boolean useBins) {
         if (!(loadFactor > 0) || initialCapacity < 0 || concurrencyLevel <= 0)
             throw new IllegalArgumentException();
 
+        if (useBins) {
+            segmentShift = 0;
+            segmentMask = 0;
+            segments = null;
+            bins = new BinTable<K,V>(initialCapacity, loadFactor, concurrencyLevel);
+            return;
+        }
+        bins = null;
+
         if (concurrencyLevel > MAX_SEGMENTS)
             concurrencyLevel = MAX_SEGMENTS;
 
@@ -654,6 +2228,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      * @return <tt>true</tt> if this map contains no key-value mappings
      */
     public boolean isEmpty() {
+        if (bins != null)
+            return bins.sumCount() <= 0L; // ignore transient negative values
         final Segment<K,V>[] segments = this.segments;
         /*
          * We keep track of per-segment modCounts to avoid ABA
@@ -693,6 +2269,11 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      * @return the number of key-value mappings in this map
      */
     public int size() {
+        if (bins != null) {
+            long n = bins.sumCount();
+            return (n < 0L) ? 0 :
+                (n > (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+        }
         final Segment<K,V>[] segments = this.segments;
         long sum = 0;
         long check = 0;
@@ -746,6 +2327,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      * @throws NullPointerException if the specified key is null
      */
     public V get(Object key) {
+        if (bins != null)
+            return bins.get(key);
         int hash = hash(key.hashCode());
         return segmentFor(hash).get(key, hash);
     }
@@ -760,6 +2343,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      * @throws NullPointerException if the specified key is null
      */
     public boolean containsKey(Object key) {
+        if (bins != null)
+            return bins.get(key) != null;
         int hash = hash(key.hashCode());
         return segmentFor(hash).containsKey(key, hash);
     }
@@ -778,6 +2363,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
     public boolean containsValue(Object value) {
         if (value == null)
             throw new NullPointerException();
+        if (bins != null)
+            return bins.containsValue(value);
 
         // See explanation of modCount use above
 
@@ -860,6 +2447,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
     public V put(K key, V value) {
         if (value == null)
             throw new NullPointerException();
+        if (bins != null)
+            return bins.putVal(key, value, false);
         int hash = hash(key.hashCode());
         return segmentFor(hash).put(key, hash, value, false);
     }
@@ -874,6 +2463,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
     public V putIfAbsent(K key, V value) {
         if (value == null)
             throw new NullPointerException();
+        if (bins != null)
+            return bins.putVal(key, value, true);
         int hash = hash(key.hashCode());
         return segmentFor(hash).put(key, hash, value, true);
     }
@@ -886,6 +2477,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      * @param m mappings to be stored in this map
      */
     public void putAll(Map<? extends K, ? extends V> m) {
+        if (bins != null)
+            bins.tryPresize(m.size());
         for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
             put(e.getKey(), e.getValue());
     }
@@ -900,6 +2493,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      * @throws NullPointerException if the specified key is null
      */
     public V remove(Object key) {
+        if (bins != null)
+            return bins.replaceNode(key, null, null);
         int hash = hash(key.hashCode());
         return segmentFor(hash).remove(key, hash, null);
     }
@@ -913,6 +2508,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
         int hash = hash(key.hashCode());
         if (value == null)
             return false;
+        if (bins != null)
+            return bins.replaceNode(key, null, value) != null;
         return segmentFor(hash).remove(key, hash, value) != null;
     }
 
@@ -924,6 +2521,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
     public boolean replace(K key, V oldValue, V newValue) {
         if (oldValue == null || newValue == null)
             throw new NullPointerException();
+        if (bins != null)
+            return bins.replaceNode(key, newValue, oldValue) != null;
         int hash = hash(key.hashCode());
         return segmentFor(hash).replace(key, hash, oldValue, newValue);
     }
@@ -938,6 +2537,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
     public V replace(K key, V value) {
         if (value == null)
             throw new NullPointerException();
+        if (bins != null)
+            return bins.replaceNode(key, value, null);
         int hash = hash(key.hashCode());
         return segmentFor(hash).replace(key, hash, value);
     }
@@ -946,6 +2547,10 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      * Removes all of the mappings from this map.
      */
     public void clear() {
+        if (bins != null) {
+            bins.clear();
+            return;
+        }
         for (int i = 0; i < segments.length; ++i)
             segments[i].clear();
     }
@@ -1040,10 +2645,16 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
         int nextTableIndex;
         HashEntry<K,V>[] currentTable;
         HashEntry<K, V> nextEntry;
-        HashEntry<K, V> lastReturned;
+        Traverser<K,V> traverser; // used instead of segments for bin tables
+        Node<K,V> nextNode;
+        K lastKey;
+        V lastValue;
 
         HashIterator() {
-            nextSegmentIndex = segments.length - 1;
+            if (bins != null)
+                traverser = bins.traverser();
+            else
+                nextSegmentIndex = segments.length - 1;
             nextTableIndex = -1;
             advance();
         }
@@ -1051,6 +2662,11 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
         public boolean hasMoreElements() { return hasNext(); }
 
         final void advance() {
+            if (traverser != null) {
+                nextNode = traverser.advance();
+                return;
+            }
+
             if (nextEntry != null && (nextEntry = nextEntry.next) != null)
                 return;
 
@@ -1073,21 +2689,28 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
             }
         }
 
-        public boolean hasNext() { return nextEntry != null; }
+        public boolean hasNext() { return nextEntry != null || nextNode != null; }
 
-        HashEntry<K,V> nextEntry() {
-            if (nextEntry == null)
+        /**
+         * Moves to the next mapping, setting lastKey and lastValue.
+         */
+        final void nextEntry() {
+            if (nextNode != null) {
+                lastKey = nextNode.key;
+                lastValue = nextNode.val;
+            } else if (nextEntry != null) {
+                lastKey = nextEntry.key;
+                lastValue = nextEntry.value;
+            } else
                 throw new NoSuchElementException();
-            lastReturned = nextEntry;
             advance();
-            return lastReturned;
         }
 
         public void remove() {
-            if (lastReturned == null)
+            if (lastKey == null)
                 throw new IllegalStateException();
-            ConcurrentHashMap.this.remove(lastReturned.key);
-            lastReturned = null;
+            ConcurrentHashMap.this.remove(lastKey);
+            lastKey = null;
         }
     }
 
@@ -1095,16 +2718,16 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
         extends HashIterator
         implements Iterator<K>, Enumeration<K>
     {
-        public K next()        { return super.nextEntry().key; }
-        public K nextElement() { return super.nextEntry().key; }
+        public K next()        { nextEntry(); return lastKey; }
+        public K nextElement() { nextEntry(); return lastKey; }
     }
 
     final class ValueIterator
         extends HashIterator
         implements Iterator<V>, Enumeration<V>
     {
-        public V next()        { return super.nextEntry().value; }
-        public V nextElement() { return super.nextEntry().value; }
+        public V next()        { nextEntry(); return lastValue; }
+        public V nextElement() { nextEntry(); return lastValue; }
     }
 
     /**
@@ -1140,8 +2763,8 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
         implements Iterator<Entry<K,V>>
     {
         public Map.Entry<K,V> next() {
-            HashEntry<K,V> e = super.nextEntry();
-            return new WriteThroughEntry(e.key, e.value);
+            nextEntry();
+            return new WriteThroughEntry(lastKey, lastValue);
         }
     }
 
@@ -1277,6 +2900,10 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
      * The key-value mappings are emitted in no particular order.
      */
     private void writeObject(java.io.ObjectOutputStream s) throws IOException  {
+        if (bins != null) {
+            writeBins(s);
+            return;
+        }
         s.defaultWriteObject();
 
         for (int k = 0; k < segments.length; ++k) {
@@ -1307,11 +2934,51 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
         throws IOException, ClassNotFoundException  {
         s.defaultReadObject();
 
+        if (BinTable.ENABLED) {
+            // The segments are only kept for the serialized form
+            unsafe.putObjectVolatile(this, SEGMENTS, null);
+            unsafe.putObjectVolatile(this, BINS, new BinTable<K,V>(
+                DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR, 1));
+            readMappings(s);
+            return;
+        }
+
         // Initialize each segment to be minimally sized, and let grow.
         for (int i = 0; i < segments.length; ++i) {
             segments[i].setTable(new HashEntry[1]);
         }
+        readMappings(s);
+    }
 
+    /**
+     * Writes the same serial form as the segmented table, with empty
+     * default segments, so that the stream does not depend on the
+     * table used by the writing or the reading side.
+     */
+    private void writeBins(java.io.ObjectOutputStream s) throws IOException {
+        Segment<K,V>[] segs = Segment.newArray(DEFAULT_CONCURRENCY_LEVEL);
+        for (int i = 0; i < segs.length; ++i)
+            segs[i] = new Segment<K,V>(1, DEFAULT_LOAD_FACTOR);
+        ObjectOutputStream.PutField fields = s.putFields();
+        fields.put("segments", segs);
+        fields.put("segmentShift", 32 - Integer.numberOfTrailingZeros(segs.length));
+        fields.put("segmentMask", segs.length - 1);
+        s.writeFields();
+
+        Traverser<K,V> it = bins.traverser();
+        for (Node<K,V> p; (p = it.advance()) != null; ) {
+            s.writeObject(p.key);
+            s.writeObject(p.val);
+        }
+        s.writeObject(null);
+        s.writeObject(null);
+    }
+
+    /**
+     * Reads the mappings following the fields of the serial form.
+     */
+    private void readMappings(java.io.ObjectInputStream s)
+        throws IOException, ClassNotFoundException  {
         // Read the keys and values, and put the mappings in the table
         for (;;) {
             K key = (K) s.readObject();
@@ -1321,4 +2988,20 @@ public class ConcurrentHashMap<K, V> extends AbstractMap<K, V>
             put(key, value);
         }
     }
+
+    // Unsafe mechanics
+    static final Unsafe unsafe = Unsafe.getUnsafe();
+    private static final long SEGMENTS;
+    private static final long BINS;
+
+    static {
+        try {
+            SEGMENTS = unsafe.objectFieldOffset
+                (ConcurrentHashMap.class.getDeclaredField("segments"));
+            BINS = unsafe.objectFieldOffset
+                (ConcurrentHashMap.class.getDeclaredField("bins"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
 }
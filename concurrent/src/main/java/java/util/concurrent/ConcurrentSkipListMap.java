@@ -0,0 +1,2068 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.util.concurrent;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+import sun.misc.Unsafe;
+
+/**
+ * A scalable concurrent sorted map. The map is sorted according to the
+ * natural ordering of its keys, or by a {@link Comparator} provided at
+ * map creation time.
+ *
+ * <p>This class implements a concurrent variant of skip lists, providing
+ * expected average <i>log(n)</i> time cost for the
+ * <tt>containsKey</tt>, <tt>get</tt>, <tt>put</tt> and <tt>remove</tt>
+ * operations and their variants. Insertion, removal, update, and access
+ * operations safely execute concurrently by multiple threads without
+ * locking. Iterators are <i>weakly consistent</i>, returning elements
+ * reflecting the state of the map at some point at or since the
+ * creation of the iterator. They do <em>not</em> throw
+ * {@link java.util.ConcurrentModificationException}, and may proceed
+ * concurrently with other operations. Ascending key ordered views and
+ * their iterators are faster than scans of a synchronized
+ * {@link java.util.TreeMap} since readers never block writers or each
+ * other.
+ *
+ * <p>Besides the {@link SortedMap} methods, the map offers the closest
+ * match queries <tt>lowerKey</tt>, <tt>floorKey</tt>,
+ * <tt>ceilingKey</tt> and <tt>higherKey</tt> and their <tt>Entry</tt>
+ * returning counterparts, and <tt>pollFirstEntry</tt> and
+ * <tt>pollLastEntry</tt>, which remove and return the least and the
+ * greatest mapping. Sub-map views support the same operations within
+ * their range. Entries returned by these methods and by the iterators
+ * are snapshots and do not support <tt>setValue</tt>.
+ *
+ * <p>Beware that, unlike in most collections, the <tt>size</tt> method
+ * is <em>not</em> a constant-time operation, and bulk operations such as
+ * <tt>putAll</tt> and <tt>clear</tt> are not guaranteed to be performed
+ * atomically.
+ *
+ * <p>This class does <em>not</em> permit the use of <tt>null</tt> keys
+ * or values.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public class ConcurrentSkipListMap<K, V> extends AbstractMap<K, V>
+        implements ConcurrentSortedMap<K, V>, Cloneable, Serializable {
+
+    private static final long serialVersionUID = -8627078645895051609L;
+
+    /*
+     * The base level is a sorted linked list of Nodes holding all
+     * mappings, headed by a dummy node whose value is BASE_HEADER. Above
+     * it, levels of Index nodes skip over progressively more of the base
+     * list, each level headed by a HeadIndex. This is the algorithm of
+     * Fraser and Harris and of Sundell and Tsigas, as refined by Doug Lea
+     * for the JSR 166 skip list:
+     *
+     * A node is deleted by CASing its value to null, then appending a
+     * marker node (one whose value is itself) after it, and then CASing
+     * its predecessor's next past both. The marker keeps a concurrent
+     * insertion from linking a new node after the dead one. Any
+     * traversal that encounters a null value helps to finish the
+     * deletion, and index nodes of deleted nodes are unlinked lazily by
+     * searches.
+     *
+     * Insertion links the new node into the base list with a single CAS
+     * and then picks a random level, linking one index node per level
+     * bottom-up; a quarter of insertions get an index. If the level
+     * exceeds that of the head, one new head level is added. Since
+     * index nodes are only hints, the structure stays correct whatever
+     * the interleaving; at worst searches take longer.
+     */
+
+    /** Value of the node heading the base list. */
+    private static final Object BASE_HEADER = new Object();
+
+    /* Relation flags for findNear */
+    private static final int EQ = 1;
+    private static final int LT = 2;
+    private static final int GT = 0;
+
+    private transient volatile HeadIndex<K, V> head;
+
+    /**
+     * The comparator, or null to use the natural ordering.
+     */
+    private final Comparator<? super K> comparator;
+
+    /** Seed for the random level generator. */
+    private transient int randomSeed;
+
+    private transient KeySet keySet;
+    private transient EntrySet entrySet;
+    private transient Values values;
+
+    /**
+     * Constructs a new, empty map, sorted according to the natural
+     * ordering of the keys.
+     */
+    public ConcurrentSkipListMap() {
+        this.comparator = null;
+        initialize();
+    }
+
+    /**
+     * Constructs a new, empty map, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator the comparator that will be used to order this
+     *        map, or <tt>null</tt> to use the natural ordering of the keys
+     */
+    public ConcurrentSkipListMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        initialize();
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given map,
+     * sorted according to the natural ordering of the keys.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws ClassCastException if the keys in <tt>m</tt> are not
+     *         {@link Comparable}, or are not mutually comparable
+     * @throws NullPointerException if the specified map or any of its
+     *         keys or values are null
+     */
+    public ConcurrentSkipListMap(Map<? extends K, ? extends V> m) {
+        this.comparator = null;
+        initialize();
+        putAll(m);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the
+     * same ordering as the specified sorted map.
+     *
+     * @param m the sorted map whose mappings are to be placed in this
+     *        map, and whose comparator is to be used to sort this map
+     * @throws NullPointerException if the specified sorted map or any of
+     *         its keys or values are null
+     */
+    public ConcurrentSkipListMap(SortedMap<K, ? extends V> m) {
+        this.comparator = m.comparator();
+        initialize();
+        putAll(m);
+    }
+
+    private void initialize() {
+        keySet = null;
+        entrySet = null;
+        values = null;
+        randomSeed = (int) System.nanoTime() | 1;
+        head = new HeadIndex<K, V>(new Node<K, V>(null, BASE_HEADER, null),
+                null, null, 1);
+    }
+
+    // Nodes
+
+    static final class Node<K, V> {
+        final K key;
+        volatile Object value;
+        volatile Node<K, V> next;
+
+        Node(K key, Object value, Node<K, V> next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        /**
+         * Creates a marker node, whose value is the node itself.
+         */
+        Node(Node<K, V> next) {
+            this.key = null;
+            this.value = this;
+            this.next = next;
+        }
+
+        boolean casValue(Object cmp, Object val) {
+            return unsafe.compareAndSwapObject(this, valueOffset, cmp, val);
+        }
+
+        boolean casNext(Node<K, V> cmp, Node<K, V> val) {
+            return unsafe.compareAndSwapObject(this, nextOffset, cmp, val);
+        }
+
+        boolean isMarker() {
+            return value == this;
+        }
+
+        boolean isBaseHeader() {
+            return value == BASE_HEADER;
+        }
+
+        boolean appendMarker(Node<K, V> f) {
+            return casNext(f, new Node<K, V>(f));
+        }
+
+        /**
+         * Helps out a deletion of this node, whose predecessor is b and
+         * successor f, by appending a marker or unlinking it.
+         */
+        void helpDelete(Node<K, V> b, Node<K, V> f) {
+            if (f == next && this == b.next) {
+                if (f == null || f.value != f) {
+                    appendMarker(f);
+                } else {
+                    b.casNext(this, f.next);
+                }
+            }
+        }
+
+        /**
+         * Returns the value if this is a live data node, else null.
+         */
+        V getValidValue() {
+            Object v = value;
+            if (v == this || v == BASE_HEADER) {
+                return null;
+            }
+            @SuppressWarnings("unchecked")
+            V result = (V) v;
+            return result;
+        }
+
+        private static final long valueOffset;
+        private static final long nextOffset;
+
+        static {
+            try {
+                valueOffset = unsafe.objectFieldOffset
+                    (Node.class.getDeclaredField("value"));
+                nextOffset = unsafe.objectFieldOffset
+                    (Node.class.getDeclaredField("next"));
+            } catch (Exception ex) { throw new Error(ex); }
+        }
+    }
+
+    static class Index<K, V> {
+        final Node<K, V> node;
+        final Index<K, V> down;
+        volatile Index<K, V> right;
+
+        Index(Node<K, V> node, Index<K, V> down, Index<K, V> right) {
+            this.node = node;
+            this.down = down;
+            this.right = right;
+        }
+
+        final boolean casRight(Index<K, V> cmp, Index<K, V> val) {
+            return unsafe.compareAndSwapObject(this, rightOffset, cmp, val);
+        }
+
+        final boolean indexesDeletedNode() {
+            return node.value == null;
+        }
+
+        /**
+         * Links newSucc after this index, in front of succ, unless this
+         * index's node is being deleted.
+         */
+        final boolean link(Index<K, V> succ, Index<K, V> newSucc) {
+            Node<K, V> n = node;
+            newSucc.right = succ;
+            return n.value != null && casRight(succ, newSucc);
+        }
+
+        /**
+         * Unlinks succ, unless this index's node is being deleted.
+         */
+        final boolean unlink(Index<K, V> succ) {
+            return node.value != null && casRight(succ, succ.right);
+        }
+
+        private static final long rightOffset;
+
+        static {
+            try {
+                rightOffset = unsafe.objectFieldOffset
+                    (Index.class.getDeclaredField("right"));
+            } catch (Exception ex) { throw new Error(ex); }
+        }
+    }
+
+    static final class HeadIndex<K, V> extends Index<K, V> {
+        final int level;
+
+        HeadIndex(Node<K, V> node, Index<K, V> down, Index<K, V> right, int level) {
+            super(node, down, right);
+            this.level = level;
+        }
+    }
+
+    private boolean casHead(HeadIndex<K, V> cmp, HeadIndex<K, V> val) {
+        return unsafe.compareAndSwapObject(this, headOffset, cmp, val);
+    }
+
+    // Comparison
+
+    @SuppressWarnings("unchecked")
+    final int compare(Object k1, Object k2) {
+        Comparator<? super K> cmp = comparator;
+        if (cmp != null) {
+            return cmp.compare((K) k1, (K) k2);
+        }
+        return ((Comparable<Object>) k1).compareTo(k2);
+    }
+
+    /**
+     * Returns true if the key lies within the given bounds, where a null
+     * bound means none; the low bound is inclusive, the high exclusive.
+     */
+    final boolean inHalfOpenRange(K key, K least, K fence) {
+        return (least == null || compare(key, least) >= 0)
+                && (fence == null || compare(key, fence) < 0);
+    }
+
+    // Traversal
+
+    /**
+     * Returns a base-level node with a key strictly less than the given
+     * key, or the base header, unlinking index nodes of deleted nodes on
+     * the way.
+     */
+    private Node<K, V> findPredecessor(Object key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        for (;;) {
+            Index<K, V> q = head;
+            Index<K, V> r = q.right;
+            for (;;) {
+                if (r != null) {
+                    Node<K, V> n = r.node;
+                    if (n.value == null) {
+                        if (!q.unlink(r)) {
+                            break; // restart
+                        }
+                        r = q.right;
+                        continue;
+                    }
+                    if (compare(key, n.key) > 0) {
+                        q = r;
+                        r = r.right;
+                        continue;
+                    }
+                }
+                Index<K, V> d = q.down;
+                if (d == null) {
+                    return q.node;
+                }
+                q = d;
+                r = d.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the node holding the key, or null, helping to delete any
+     * deleted nodes found on the way.
+     */
+    private Node<K, V> findNode(Object key) {
+        for (;;) {
+            Node<K, V> b = findPredecessor(key);
+            Node<K, V> n = b.next;
+            for (;;) {
+                if (n == null) {
+                    return null;
+                }
+                Node<K, V> f = n.next;
+                if (n != b.next) {
+                    break; // inconsistent read
+                }
+                Object v = n.value;
+                if (v == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n) {
+                    break; // b is deleted
+                }
+                int c = compare(key, n.key);
+                if (c == 0) {
+                    return n;
+                }
+                if (c < 0) {
+                    return null;
+                }
+                b = n;
+                n = f;
+            }
+        }
+    }
+
+    private V doGet(Object key) {
+        for (;;) {
+            Node<K, V> n = findNode(key);
+            if (n == null) {
+                return null;
+            }
+            V v = n.getValidValue();
+            if (v != null) {
+                return v;
+            }
+        }
+    }
+
+    private V doPut(K key, V value, boolean onlyIfAbsent) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        Node<K, V> z;
+        outer: for (;;) {
+            Node<K, V> b = findPredecessor(key);
+            Node<K, V> n = b.next;
+            for (;;) {
+                if (n != null) {
+                    Node<K, V> f = n.next;
+                    if (n != b.next) {
+                        break;
+                    }
+                    Object v = n.value;
+                    if (v == null) {
+                        n.helpDelete(b, f);
+                        break;
+                    }
+                    if (b.value == null || v == n) {
+                        break;
+                    }
+                    int c = compare(key, n.key);
+                    if (c > 0) {
+                        b = n;
+                        n = f;
+                        continue;
+                    }
+                    if (c == 0) {
+                        if (onlyIfAbsent || n.casValue(v, value)) {
+                            @SuppressWarnings("unchecked")
+                            V old = (V) v;
+                            return old;
+                        }
+                        break; // lost race to another updater
+                    }
+                }
+                z = new Node<K, V>(key, value, n);
+                if (!b.casNext(n, z)) {
+                    break;
+                }
+                break outer;
+            }
+        }
+        int level = randomLevel();
+        if (level > 0) {
+            insertIndex(z, level);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a random level for a new index: zero three times out of
+     * four, otherwise one plus the number of further trailing one bits,
+     * giving the geometric distribution of a skip list.
+     */
+    private int randomLevel() {
+        int x = randomSeed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        randomSeed = x;
+        if ((x & 0x80000001) != 0) {
+            return 0;
+        }
+        int level = 1;
+        while (((x >>>= 1) & 1) != 0) {
+            ++level;
+        }
+        return level;
+    }
+
+    private void insertIndex(Node<K, V> z, int level) {
+        HeadIndex<K, V> h = head;
+        int max = h.level;
+        Index<K, V> idx = null;
+        if (level <= max) {
+            for (int i = 1; i <= level; ++i) {
+                idx = new Index<K, V>(z, idx, null);
+            }
+        } else {
+            // add a single new level
+            level = max + 1;
+            @SuppressWarnings("unchecked")
+            Index<K, V>[] idxs = (Index<K, V>[]) new Index<?, ?>[level + 1];
+            for (int i = 1; i <= level; ++i) {
+                idxs[i] = idx = new Index<K, V>(z, idx, null);
+            }
+            for (;;) {
+                h = head;
+                int oldLevel = h.level;
+                if (level <= oldLevel) {
+                    break; // lost race to add level
+                }
+                HeadIndex<K, V> newh = h;
+                Node<K, V> oldbase = h.node;
+                for (int j = oldLevel + 1; j <= level; ++j) {
+                    newh = new HeadIndex<K, V>(oldbase, newh, idxs[j], j);
+                }
+                if (casHead(h, newh)) {
+                    h = newh;
+                    idx = idxs[level = oldLevel];
+                    break;
+                }
+            }
+        }
+        K key = z.key;
+        // link the new index nodes from the top level down
+        splice: for (int insertionLevel = level;;) {
+            int j = h.level;
+            Index<K, V> q = h;
+            Index<K, V> r = q.right;
+            Index<K, V> t = idx;
+            for (;;) {
+                if (q == null || t == null) {
+                    break splice;
+                }
+                if (r != null) {
+                    Node<K, V> n = r.node;
+                    int c = compare(key, n.key);
+                    if (n.value == null) {
+                        if (!q.unlink(r)) {
+                            break;
+                        }
+                        r = q.right;
+                        continue;
+                    }
+                    if (c > 0) {
+                        q = r;
+                        r = r.right;
+                        continue;
+                    }
+                }
+                if (j == insertionLevel) {
+                    if (!q.link(r, t)) {
+                        break; // restart
+                    }
+                    if (t.node.value == null) {
+                        // deleted meanwhile; clean up via search
+                        findNode(key);
+                        break splice;
+                    }
+                    if (--insertionLevel == 0) {
+                        break splice;
+                    }
+                }
+                if (--j >= insertionLevel && j < level) {
+                    t = t.down;
+                }
+                q = q.down;
+                r = q.right;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping of the key if it is mapped to the value, or to
+     * anything if the value is null.
+     */
+    final V doRemove(Object key, Object value) {
+        for (;;) {
+            Node<K, V> b = findPredecessor(key);
+            Node<K, V> n = b.next;
+            for (;;) {
+                if (n == null) {
+                    return null;
+                }
+                Node<K, V> f = n.next;
+                if (n != b.next) {
+                    break;
+                }
+                Object v = n.value;
+                if (v == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n) {
+                    break;
+                }
+                int c = compare(key, n.key);
+                if (c < 0) {
+                    return null;
+                }
+                if (c > 0) {
+                    b = n;
+                    n = f;
+                    continue;
+                }
+                if (value != null && !value.equals(v)) {
+                    return null;
+                }
+                if (!n.casValue(v, null)) {
+                    break;
+                }
+                if (!n.appendMarker(f) || !b.casNext(n, f)) {
+                    findNode(key); // retry via findNode
+                } else {
+                    findPredecessor(key); // clean index
+                    if (head.right == null) {
+                        tryReduceLevel();
+                    }
+                }
+                @SuppressWarnings("unchecked")
+                V old = (V) v;
+                return old;
+            }
+        }
+    }
+
+    /**
+     * Drops the top level if it and the two below it look empty,
+     * undoing this if the top level turns out to be in use after all.
+     * Keeping three levels avoids thrashing when the map shrinks and
+     * grows around a boundary.
+     */
+    private void tryReduceLevel() {
+        HeadIndex<K, V> h = head;
+        HeadIndex<K, V> d;
+        HeadIndex<K, V> e;
+        if (h.level > 3
+                && (d = (HeadIndex<K, V>) h.down) != null
+                && (e = (HeadIndex<K, V>) d.down) != null
+                && e.right == null
+                && d.right == null
+                && h.right == null
+                && casHead(h, d)
+                && h.right != null) {
+            casHead(d, h);
+        }
+    }
+
+    /**
+     * Returns the first live node, or null if the map is empty.
+     */
+    final Node<K, V> findFirst() {
+        for (;;) {
+            Node<K, V> b = head.node;
+            Node<K, V> n = b.next;
+            if (n == null) {
+                return null;
+            }
+            if (n.value != null) {
+                return n;
+            }
+            n.helpDelete(b, n.next);
+        }
+    }
+
+    /**
+     * Returns the last live node, or null if the map is empty.
+     */
+    final Node<K, V> findLast() {
+        Index<K, V> q = head;
+        for (;;) {
+            Index<K, V> d;
+            Index<K, V> r;
+            if ((r = q.right) != null) {
+                if (r.indexesDeletedNode()) {
+                    q.unlink(r);
+                    q = head; // restart
+                } else {
+                    q = r;
+                }
+            } else if ((d = q.down) != null) {
+                q = d;
+            } else {
+                Node<K, V> b = q.node;
+                Node<K, V> n = b.next;
+                for (;;) {
+                    if (n == null) {
+                        return b.isBaseHeader() ? null : b;
+                    }
+                    Node<K, V> f = n.next;
+                    if (n != b.next) {
+                        break;
+                    }
+                    Object v = n.value;
+                    if (v == null) {
+                        n.helpDelete(b, f);
+                        break;
+                    }
+                    if (b.value == null || v == n) {
+                        break;
+                    }
+                    b = n;
+                    n = f;
+                }
+                q = head; // restart
+            }
+        }
+    }
+
+    /**
+     * Returns the node closest to the key in the given relation: GT for
+     * the least greater key, GT|EQ for the least greater or equal, LT
+     * for the greatest less and LT|EQ for the greatest less or equal.
+     */
+    final Node<K, V> findNear(Object key, int rel) {
+        for (;;) {
+            Node<K, V> b = findPredecessor(key);
+            Node<K, V> n = b.next;
+            for (;;) {
+                if (n == null) {
+                    return ((rel & LT) == 0 || b.isBaseHeader()) ? null : b;
+                }
+                Node<K, V> f = n.next;
+                if (n != b.next) {
+                    break;
+                }
+                Object v = n.value;
+                if (v == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n) {
+                    break;
+                }
+                int c = compare(key, n.key);
+                if ((c == 0 && (rel & EQ) != 0) || (c < 0 && (rel & LT) == 0)) {
+                    return n;
+                }
+                if (c <= 0 && (rel & LT) != 0) {
+                    return b.isBaseHeader() ? null : b;
+                }
+                b = n;
+                n = f;
+            }
+        }
+    }
+
+    private Map.Entry<K, V> getNear(K key, int rel) {
+        for (;;) {
+            Node<K, V> n = findNear(key, rel);
+            if (n == null) {
+                return null;
+            }
+            V v = n.getValidValue();
+            if (v != null) {
+                return new SnapshotEntry<K, V>(n.key, v);
+            }
+        }
+    }
+
+    private K getNearKey(K key, int rel) {
+        Map.Entry<K, V> e = getNear(key, rel);
+        return e == null ? null : e.getKey();
+    }
+
+    // Map methods
+
+    /**
+     * Returns <tt>true</tt> if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return <tt>true</tt> if this map contains a mapping for the
+     *         specified key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return doGet(key) != null;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * <tt>null</tt> if this map contains no mapping for the key.
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    @Override
+    public V get(Object key) {
+        return doGet(key);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @return the previous value associated with the specified key, or
+     *         <tt>null</tt> if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    @Override
+    public V put(K key, V value) {
+        return doPut(key, value, false);
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @return the previous value associated with the specified key, or
+     *         <tt>null</tt> if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    @Override
+    public V remove(Object key) {
+        return doRemove(key, null);
+    }
+
+    /**
+     * Returns <tt>true</tt> if this map maps one or more keys to the
+     * specified value. This operation requires time linear in the map
+     * size.
+     *
+     * @throws NullPointerException if the specified value is null
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        for (Node<K, V> n = findFirst(); n != null; n = n.next) {
+            V v = n.getValidValue();
+            if (v != null && value.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map. Unlike in
+     * most collections, this method is <em>not</em> a constant-time
+     * operation: it traverses the map, and the result may be inaccurate
+     * if the map is modified meanwhile.
+     *
+     * @return the number of elements in this map, capped at
+     *         <tt>Integer.MAX_VALUE</tt>
+     */
+    @Override
+    public int size() {
+        long count = 0;
+        for (Node<K, V> n = findFirst(); n != null; n = n.next) {
+            if (n.getValidValue() != null) {
+                ++count;
+            }
+        }
+        return count >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return findFirst() == null;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    @Override
+    public void clear() {
+        initialize();
+    }
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map, in
+     * ascending order. The view's iterator is weakly consistent.
+     *
+     * @return a set view of the keys contained in this map
+     */
+    @Override
+    public Set<K> keySet() {
+        KeySet ks = keySet;
+        return ks != null ? ks : (keySet = new KeySet(this, null, null));
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this
+     * map, in ascending order of the corresponding keys. The view's
+     * iterator is weakly consistent.
+     *
+     * @return a collection view of the values contained in this map
+     */
+    @Override
+    public Collection<V> values() {
+        Values vs = values;
+        return vs != null ? vs : (values = new Values(this, null, null));
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map, in
+     * ascending key order. The view's iterator is weakly consistent and
+     * returns snapshot entries that do not support <tt>setValue</tt>.
+     *
+     * @return a set view of the mappings contained in this map
+     */
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        EntrySet es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet(this, null, null));
+    }
+
+    // ConcurrentMap methods
+
+    /**
+     * @return the previous value associated with the specified key, or
+     *         <tt>null</tt> if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return doPut(key, value, true);
+    }
+
+    /**
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return value != null && doRemove(key, value) != null;
+    }
+
+    /**
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null || newValue == null) {
+            throw new NullPointerException();
+        }
+        for (;;) {
+            Node<K, V> n = findNode(key);
+            if (n == null) {
+                return false;
+            }
+            Object v = n.value;
+            if (v != null) {
+                if (!oldValue.equals(v)) {
+                    return false;
+                }
+                if (n.casValue(v, newValue)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the previous value associated with the specified key, or
+     *         <tt>null</tt> if there was no mapping for the key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        for (;;) {
+            Node<K, V> n = findNode(key);
+            if (n == null) {
+                return null;
+            }
+            Object v = n.value;
+            if (v != null && n.casValue(v, value)) {
+                @SuppressWarnings("unchecked")
+                V old = (V) v;
+                return old;
+            }
+        }
+    }
+
+    // SortedMap methods
+
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @throws NoSuchElementException if this map is empty
+     */
+    public K firstKey() {
+        Node<K, V> n = findFirst();
+        if (n == null) {
+            throw new NoSuchElementException();
+        }
+        return n.key;
+    }
+
+    /**
+     * @throws NoSuchElementException if this map is empty
+     */
+    public K lastKey() {
+        Node<K, V> n = findLast();
+        if (n == null) {
+            throw new NoSuchElementException();
+        }
+        return n.key;
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys range from
+     * <tt>fromKey</tt>, inclusive, to <tt>toKey</tt>, exclusive. The view
+     * supports all the operations of this map within its range; putting
+     * a key outside of it throws an <tt>IllegalArgumentException</tt>.
+     *
+     * @throws ClassCastException if the keys cannot be compared
+     * @throws NullPointerException if <tt>fromKey</tt> or <tt>toKey</tt>
+     *         is null
+     * @throws IllegalArgumentException if <tt>fromKey</tt> is greater
+     *         than <tt>toKey</tt>
+     */
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        if (fromKey == null || toKey == null) {
+            throw new NullPointerException();
+        }
+        return new SubMap<K, V>(this, fromKey, toKey);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are strictly
+     * less than <tt>toKey</tt>.
+     *
+     * @throws ClassCastException if <tt>toKey</tt> cannot be compared
+     * @throws NullPointerException if <tt>toKey</tt> is null
+     */
+    public SortedMap<K, V> headMap(K toKey) {
+        if (toKey == null) {
+            throw new NullPointerException();
+        }
+        return new SubMap<K, V>(this, null, toKey);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater
+     * than or equal to <tt>fromKey</tt>.
+     *
+     * @throws ClassCastException if <tt>fromKey</tt> cannot be compared
+     * @throws NullPointerException if <tt>fromKey</tt> is null
+     */
+    public SortedMap<K, V> tailMap(K fromKey) {
+        if (fromKey == null) {
+            throw new NullPointerException();
+        }
+        return new SubMap<K, V>(this, fromKey, null);
+    }
+
+    // Navigation
+
+    /**
+     * Returns a key-value mapping associated with the greatest key
+     * strictly less than the given key, or <tt>null</tt> if there is no
+     * such key.
+     *
+     * @throws ClassCastException if the key cannot be compared
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return getNear(key, LT);
+    }
+
+    /**
+     * Returns the greatest key strictly less than the given key, or
+     * <tt>null</tt> if there is no such key.
+     *
+     * @throws ClassCastException if the key cannot be compared
+     * @throws NullPointerException if the specified key is null
+     */
+    public K lowerKey(K key) {
+        return getNearKey(key, LT);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the greatest key less
+     * than or equal to the given key, or <tt>null</tt> if there is no
+     * such key.
+     *
+     * @throws ClassCastException if the key cannot be compared
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K, V> floorEntry(K key) {
+        return getNear(key, LT | EQ);
+    }
+
+    /**
+     * Returns the greatest key less than or equal to the given key, or
+     * <tt>null</tt> if there is no such key.
+     *
+     * @throws ClassCastException if the key cannot be compared
+     * @throws NullPointerException if the specified key is null
+     */
+    public K floorKey(K key) {
+        return getNearKey(key, LT | EQ);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least key greater
+     * than or equal to the given key, or <tt>null</tt> if there is no
+     * such key.
+     *
+     * @throws ClassCastException if the key cannot be compared
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return getNear(key, GT | EQ);
+    }
+
+    /**
+     * Returns the least key greater than or equal to the given key, or
+     * <tt>null</tt> if there is no such key.
+     *
+     * @throws ClassCastException if the key cannot be compared
+     * @throws NullPointerException if the specified key is null
+     */
+    public K ceilingKey(K key) {
+        return getNearKey(key, GT | EQ);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least key strictly
+     * greater than the given key, or <tt>null</tt> if there is no such
+     * key.
+     *
+     * @throws ClassCastException if the key cannot be compared
+     * @throws NullPointerException if the specified key is null
+     */
+    public Map.Entry<K, V> higherEntry(K key) {
+        return getNear(key, GT);
+    }
+
+    /**
+     * Returns the least key strictly greater than the given key, or
+     * <tt>null</tt> if there is no such key.
+     *
+     * @throws ClassCastException if the key cannot be compared
+     * @throws NullPointerException if the specified key is null
+     */
+    public K higherKey(K key) {
+        return getNearKey(key, GT);
+    }
+
+    /**
+     * Returns a key-value mapping associated with the least key in this
+     * map, or <tt>null</tt> if the map is empty.
+     */
+    public Map.Entry<K, V> firstEntry() {
+        for (;;) {
+            Node<K, V> n = findFirst();
+            if (n == null) {
+                return null;
+            }
+            V v = n.getValidValue();
+            if (v != null) {
+                return new SnapshotEntry<K, V>(n.key, v);
+            }
+        }
+    }
+
+    /**
+     * Returns a key-value mapping associated with the greatest key in
+     * this map, or <tt>null</tt> if the map is empty.
+     */
+    public Map.Entry<K, V> lastEntry() {
+        for (;;) {
+            Node<K, V> n = findLast();
+            if (n == null) {
+                return null;
+            }
+            V v = n.getValidValue();
+            if (v != null) {
+                return new SnapshotEntry<K, V>(n.key, v);
+            }
+        }
+    }
+
+    /**
+     * Removes and returns a key-value mapping associated with the least
+     * key in this map, or <tt>null</tt> if the map is empty.
+     */
+    public Map.Entry<K, V> pollFirstEntry() {
+        for (;;) {
+            Node<K, V> b = head.node;
+            Node<K, V> n = b.next;
+            if (n == null) {
+                return null;
+            }
+            Node<K, V> f = n.next;
+            if (n != b.next) {
+                continue;
+            }
+            Object v = n.value;
+            if (v == null) {
+                n.helpDelete(b, f);
+                continue;
+            }
+            if (!n.casValue(v, null)) {
+                continue;
+            }
+            if (!n.appendMarker(f) || !b.casNext(n, f)) {
+                findFirst(); // retry
+            }
+            clearIndexToFirst();
+            @SuppressWarnings("unchecked")
+            V old = (V) v;
+            return new SnapshotEntry<K, V>(n.key, old);
+        }
+    }
+
+    /**
+     * Unlinks the index nodes of deleted nodes at the front of the map.
+     */
+    private void clearIndexToFirst() {
+        for (;;) {
+            Index<K, V> q = head;
+            for (;;) {
+                Index<K, V> r = q.right;
+                if (r != null && r.indexesDeletedNode() && !q.unlink(r)) {
+                    break;
+                }
+                if ((q = q.down) == null) {
+                    if (head.right == null) {
+                        tryReduceLevel();
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes and returns a key-value mapping associated with the
+     * greatest key in this map, or <tt>null</tt> if the map is empty.
+     */
+    public Map.Entry<K, V> pollLastEntry() {
+        for (;;) {
+            Node<K, V> b = findPredecessorOfLast();
+            Node<K, V> n = b.next;
+            if (n == null) {
+                if (b.isBaseHeader()) {
+                    return null;
+                }
+                continue; // all b's successors are deleted; retry
+            }
+            for (;;) {
+                Node<K, V> f = n.next;
+                if (n != b.next) {
+                    break;
+                }
+                Object v = n.value;
+                if (v == null) {
+                    n.helpDelete(b, f);
+                    break;
+                }
+                if (b.value == null || v == n) {
+                    break;
+                }
+                if (f != null) {
+                    b = n;
+                    n = f;
+                    continue;
+                }
+                if (!n.casValue(v, null)) {
+                    break;
+                }
+                K key = n.key;
+                if (!n.appendMarker(f) || !b.casNext(n, f)) {
+                    findNode(key);
+                } else {
+                    findPredecessor(key);
+                    if (head.right == null) {
+                        tryReduceLevel();
+                    }
+                }
+                @SuppressWarnings("unchecked")
+                V old = (V) v;
+                return new SnapshotEntry<K, V>(key, old);
+            }
+        }
+    }
+
+    /**
+     * Returns the base-level node in front of the last one, from which a
+     * scan finds the last node quickly.
+     */
+    private Node<K, V> findPredecessorOfLast() {
+        for (;;) {
+            Index<K, V> q = head;
+            for (;;) {
+                Index<K, V> d;
+                Index<K, V> r;
+                if ((r = q.right) != null) {
+                    if (r.indexesDeletedNode()) {
+                        q.unlink(r);
+                        break; // restart
+                    }
+                    if (r.node.next != null) {
+                        q = r;
+                        continue;
+                    }
+                }
+                if ((d = q.down) != null) {
+                    q = d;
+                } else {
+                    return q.node;
+                }
+            }
+        }
+    }
+
+    // Cloning and serialization
+
+    /**
+     * Returns a shallow copy of this map. (The keys and values themselves
+     * are not cloned.)
+     *
+     * @return a shallow copy of this map
+     */
+    @Override
+    public ConcurrentSkipListMap<K, V> clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            ConcurrentSkipListMap<K, V> clone =
+                (ConcurrentSkipListMap<K, V>) super.clone();
+            clone.initialize();
+            for (Node<K, V> n = findFirst(); n != null; n = n.next) {
+                V v = n.getValidValue();
+                if (v != null) {
+                    clone.put(n.key, v);
+                }
+            }
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Saves the state of this map to a stream.
+     *
+     * @serialData the key and value of each mapping, in key order,
+     *             followed by a null
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        for (Node<K, V> n = findFirst(); n != null; n = n.next) {
+            V v = n.getValidValue();
+            if (v != null) {
+                s.writeObject(n.key);
+                s.writeObject(v);
+            }
+        }
+        s.writeObject(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream s)
+            throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        initialize();
+        for (;;) {
+            Object k = s.readObject();
+            if (k == null) {
+                break;
+            }
+            Object v = s.readObject();
+            if (v == null) {
+                throw new NullPointerException();
+            }
+            put((K) k, (V) v);
+        }
+    }
+
+    // Entries, iterators and views
+
+    /**
+     * An immutable snapshot of a mapping.
+     */
+    static final class SnapshotEntry<K, V> implements Map.Entry<K, V>, Serializable {
+
+        private static final long serialVersionUID = 7138329143949025153L;
+
+        private final K key;
+        private final V value;
+
+        SnapshotEntry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry<?, ?>)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return key.equals(e.getKey()) && value.equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * Base of the iterators, which walk the base list from the least
+     * key not below <tt>least</tt> to the last key below <tt>fence</tt>.
+     */
+    abstract class Iter<T> implements Iterator<T> {
+        private final K fence;
+        private Node<K, V> lastReturned;
+        Node<K, V> next;
+        V nextValue;
+
+        Iter(K least, K fence) {
+            this.fence = fence;
+            for (;;) {
+                next = least == null ? findFirst() : findNear(least, GT | EQ);
+                if (next == null) {
+                    break;
+                }
+                V v = next.getValidValue();
+                if (v != null) {
+                    if (fence != null && compare(next.key, fence) >= 0) {
+                        next = null;
+                    } else {
+                        nextValue = v;
+                    }
+                    break;
+                }
+            }
+        }
+
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final void advance() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            for (;;) {
+                next = next.next;
+                if (next == null) {
+                    break;
+                }
+                V v = next.getValidValue();
+                if (v != null) {
+                    if (fence != null && compare(next.key, fence) >= 0) {
+                        next = null;
+                    } else {
+                        nextValue = v;
+                    }
+                    break;
+                }
+            }
+        }
+
+        public void remove() {
+            Node<K, V> l = lastReturned;
+            if (l == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentSkipListMap.this.remove(l.key);
+            lastReturned = null;
+        }
+    }
+
+    final class KeyIterator extends Iter<K> {
+        KeyIterator(K least, K fence) {
+            super(least, fence);
+        }
+
+        public K next() {
+            Node<K, V> n = next;
+            advance();
+            return n.key;
+        }
+    }
+
+    final class ValueIterator extends Iter<V> {
+        ValueIterator(K least, K fence) {
+            super(least, fence);
+        }
+
+        public V next() {
+            V v = nextValue;
+            advance();
+            return v;
+        }
+    }
+
+    final class EntryIterator extends Iter<Map.Entry<K, V>> {
+        EntryIterator(K least, K fence) {
+            super(least, fence);
+        }
+
+        public Map.Entry<K, V> next() {
+            Node<K, V> n = next;
+            V v = nextValue;
+            advance();
+            return new SnapshotEntry<K, V>(n.key, v);
+        }
+    }
+
+    /*
+     * The views serve both this map and its sub-maps: owner is the map
+     * whose methods they delegate to, and the bounds limit iteration.
+     */
+
+    final class KeySet extends AbstractSet<K> {
+        private final ConcurrentMap<K, V> owner;
+        private final K least;
+        private final K fence;
+
+        KeySet(ConcurrentMap<K, V> owner, K least, K fence) {
+            this.owner = owner;
+            this.least = least;
+            this.fence = fence;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new KeyIterator(least, fence);
+        }
+
+        @Override
+        public int size() {
+            return owner.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return owner.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return owner.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return owner.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            owner.clear();
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        private final ConcurrentMap<K, V> owner;
+        private final K least;
+        private final K fence;
+
+        Values(ConcurrentMap<K, V> owner, K least, K fence) {
+            this.owner = owner;
+            this.least = least;
+            this.fence = fence;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator(least, fence);
+        }
+
+        @Override
+        public int size() {
+            return owner.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return owner.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return owner.containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            owner.clear();
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        private final ConcurrentMap<K, V> owner;
+        private final K least;
+        private final K fence;
+
+        EntrySet(ConcurrentMap<K, V> owner, K least, K fence) {
+            this.owner = owner;
+            this.least = least;
+            this.fence = fence;
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator(least, fence);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?>)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            V v = owner.get(e.getKey());
+            return v != null && v.equals(e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry<?, ?>)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return owner.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public int size() {
+            return owner.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return owner.isEmpty();
+        }
+
+        @Override
+        public void clear() {
+            owner.clear();
+        }
+    }
+
+    /**
+     * A view of the keys of a ConcurrentSkipListMap from <tt>least</tt>,
+     * inclusive, to <tt>fence</tt>, exclusive, where a null bound means
+     * none.
+     */
+    static final class SubMap<K, V> extends AbstractMap<K, V>
+            implements ConcurrentSortedMap<K, V>, Serializable {
+
+        private static final long serialVersionUID = -7647078645895051609L;
+
+        private final ConcurrentSkipListMap<K, V> m;
+        private final K least;
+        private final K fence;
+
+        private transient Set<K> keySetView;
+        private transient Set<Map.Entry<K, V>> entrySetView;
+        private transient Collection<V> valuesView;
+
+        SubMap(ConcurrentSkipListMap<K, V> map, K least, K fence) {
+            if (least != null && fence != null && map.compare(least, fence) > 0) {
+                throw new IllegalArgumentException("inconsistent range");
+            }
+            this.m = map;
+            this.least = least;
+            this.fence = fence;
+        }
+
+        private boolean tooLow(Object key) {
+            return least != null && m.compare(key, least) < 0;
+        }
+
+        private boolean tooHigh(Object key) {
+            return fence != null && m.compare(key, fence) >= 0;
+        }
+
+        private boolean inBounds(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        private void checkKeyBounds(K key) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            if (!inBounds(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+        }
+
+        /**
+         * Returns true if a scan of this view should go on to n; markers
+         * met on the way have no key and are skipped over.
+         */
+        private boolean isBeforeEnd(Node<K, V> n) {
+            return n != null && (n.isMarker() || !tooHigh(n.key));
+        }
+
+        private Node<K, V> loNode() {
+            return least == null ? m.findFirst() : m.findNear(least, GT | EQ);
+        }
+
+        private Node<K, V> hiNode() {
+            return fence == null ? m.findLast() : m.findNear(fence, LT);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            return inBounds(key) && m.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            return inBounds(key) ? m.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            checkKeyBounds(key);
+            return m.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inBounds(key) ? m.remove(key) : null;
+        }
+
+        @Override
+        public int size() {
+            long count = 0;
+            for (Node<K, V> n = loNode(); isBeforeEnd(n); n = n.next) {
+                if (n.getValidValue() != null) {
+                    ++count;
+                }
+            }
+            return count >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !isBeforeEnd(loNode());
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            if (value == null) {
+                throw new NullPointerException();
+            }
+            for (Node<K, V> n = loNode(); isBeforeEnd(n); n = n.next) {
+                V v = n.getValidValue();
+                if (v != null && value.equals(v)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            for (Node<K, V> n = loNode(); isBeforeEnd(n); n = n.next) {
+                if (n.getValidValue() != null) {
+                    m.remove(n.key);
+                }
+            }
+        }
+
+        public V putIfAbsent(K key, V value) {
+            checkKeyBounds(key);
+            return m.putIfAbsent(key, value);
+        }
+
+        public boolean remove(Object key, Object value) {
+            return inBounds(key) && m.remove(key, value);
+        }
+
+        public boolean replace(K key, V oldValue, V newValue) {
+            checkKeyBounds(key);
+            return m.replace(key, oldValue, newValue);
+        }
+
+        public V replace(K key, V value) {
+            checkKeyBounds(key);
+            return m.replace(key, value);
+        }
+
+        public Comparator<? super K> comparator() {
+            return m.comparator();
+        }
+
+        public K firstKey() {
+            for (;;) {
+                Node<K, V> n = loNode();
+                if (!isBeforeEnd(n)) {
+                    throw new NoSuchElementException();
+                }
+                if (n.getValidValue() != null) {
+                    return n.key;
+                }
+            }
+        }
+
+        public K lastKey() {
+            for (;;) {
+                Node<K, V> n = hiNode();
+                if (n == null || tooLow(n.key)) {
+                    throw new NoSuchElementException();
+                }
+                if (n.getValidValue() != null) {
+                    return n.key;
+                }
+            }
+        }
+
+        /**
+         * Returns the bound of a derived view, which must lie within
+         * this view's range.
+         */
+        private K checkSubBound(K key) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            if (tooLow(key) || (fence != null && m.compare(key, fence) > 0)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return key;
+        }
+
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return new SubMap<K, V>(m, checkSubBound(fromKey), checkSubBound(toKey));
+        }
+
+        public SortedMap<K, V> headMap(K toKey) {
+            return new SubMap<K, V>(m, least, checkSubBound(toKey));
+        }
+
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return new SubMap<K, V>(m, checkSubBound(fromKey), fence);
+        }
+
+        private Map.Entry<K, V> getNear(K key, int rel) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            if (tooLow(key)) {
+                if ((rel & LT) == 0) {
+                    Node<K, V> n = loNode();
+                    if (isBeforeEnd(n)) {
+                        V v = n.getValidValue();
+                        if (v != null) {
+                            return new SnapshotEntry<K, V>(n.key, v);
+                        }
+                        return getNear(n.key, rel);
+                    }
+                }
+                return null;
+            }
+            if (tooHigh(key)) {
+                if ((rel & LT) != 0) {
+                    Node<K, V> n = hiNode();
+                    if (n != null && !tooLow(n.key)) {
+                        V v = n.getValidValue();
+                        if (v != null) {
+                            return new SnapshotEntry<K, V>(n.key, v);
+                        }
+                        return getNear(n.key, rel);
+                    }
+                }
+                return null;
+            }
+            for (;;) {
+                Node<K, V> n = m.findNear(key, rel);
+                if (n == null || !inBounds(n.key)) {
+                    return null;
+                }
+                V v = n.getValidValue();
+                if (v != null) {
+                    return new SnapshotEntry<K, V>(n.key, v);
+                }
+            }
+        }
+
+        private K getNearKey(K key, int rel) {
+            Map.Entry<K, V> e = getNear(key, rel);
+            return e == null ? null : e.getKey();
+        }
+
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return getNear(key, LT);
+        }
+
+        public K lowerKey(K key) {
+            return getNearKey(key, LT);
+        }
+
+        public Map.Entry<K, V> floorEntry(K key) {
+            return getNear(key, LT | EQ);
+        }
+
+        public K floorKey(K key) {
+            return getNearKey(key, LT | EQ);
+        }
+
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return getNear(key, GT | EQ);
+        }
+
+        public K ceilingKey(K key) {
+            return getNearKey(key, GT | EQ);
+        }
+
+        public Map.Entry<K, V> higherEntry(K key) {
+            return getNear(key, GT);
+        }
+
+        public K higherKey(K key) {
+            return getNearKey(key, GT);
+        }
+
+        public Map.Entry<K, V> firstEntry() {
+            for (;;) {
+                Node<K, V> n = loNode();
+                if (!isBeforeEnd(n)) {
+                    return null;
+                }
+                V v = n.getValidValue();
+                if (v != null) {
+                    return new SnapshotEntry<K, V>(n.key, v);
+                }
+            }
+        }
+
+        public Map.Entry<K, V> lastEntry() {
+            for (;;) {
+                Node<K, V> n = hiNode();
+                if (n == null || tooLow(n.key)) {
+                    return null;
+                }
+                V v = n.getValidValue();
+                if (v != null) {
+                    return new SnapshotEntry<K, V>(n.key, v);
+                }
+            }
+        }
+
+        public Map.Entry<K, V> pollFirstEntry() {
+            for (;;) {
+                Node<K, V> n = loNode();
+                if (!isBeforeEnd(n)) {
+                    return null;
+                }
+                K k = n.key;
+                V v = m.remove(k);
+                if (v != null) {
+                    return new SnapshotEntry<K, V>(k, v);
+                }
+            }
+        }
+
+        public Map.Entry<K, V> pollLastEntry() {
+            for (;;) {
+                Node<K, V> n = hiNode();
+                if (n == null || tooLow(n.key)) {
+                    return null;
+                }
+                K k = n.key;
+                V v = m.remove(k);
+                if (v != null) {
+                    return new SnapshotEntry<K, V>(k, v);
+                }
+            }
+        }
+
+        @Override
+        public Set<K> keySet() {
+            Set<K> ks = keySetView;
+            return ks != null ? ks : (keySetView = m.new KeySet(this, least, fence));
+        }
+
+        @Override
+        public Collection<V> values() {
+            Collection<V> vs = valuesView;
+            return vs != null ? vs : (valuesView = m.new Values(this, least, fence));
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            Set<Map.Entry<K, V>> es = entrySetView;
+            return es != null ? es : (entrySetView = m.new EntrySet(this, least, fence));
+        }
+    }
+
+    // Unsafe mechanics
+
+    private static final Unsafe unsafe = Unsafe.getUnsafe();
+    private static final long headOffset;
+
+    static {
+        try {
+            headOffset = unsafe.objectFieldOffset
+                (ConcurrentSkipListMap.class.getDeclaredField("head"));
+        } catch (Exception ex) { throw new Error(ex); }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.util.concurrent;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * A scalable concurrent sorted set based on a {@link ConcurrentSkipListMap}.
+ * The elements of the set are kept sorted according to their natural
+ * ordering, or by a {@link Comparator} provided at set creation time.
+ *
+ * <p>This implementation provides expected average <i>log(n)</i> time
+ * cost for the <tt>contains</tt>, <tt>add</tt>, and <tt>remove</tt>
+ * operations and their variants. Insertion, removal, and access
+ * operations safely execute concurrently by multiple threads. Iterators
+ * are <i>weakly consistent</i>, returning elements reflecting the state
+ * of the set at some point at or since the creation of the iterator.
+ *
+ * <p>Beware that, unlike in most collections, the <tt>size</tt> method
+ * is <em>not</em> a constant-time operation, and the bulk operations
+ * <tt>addAll</tt>, <tt>removeAll</tt>, <tt>retainAll</tt> and
+ * <tt>containsAll</tt> are not guaranteed to be performed atomically.
+ *
+ * <p>This class does not permit the use of <tt>null</tt> elements.
+ *
+ * @param <E> the type of elements maintained by this set
+ */
+public class ConcurrentSkipListSet<E> extends AbstractSet<E>
+        implements SortedSet<E>, Cloneable, Serializable {
+
+    private static final long serialVersionUID = -2479143111061671589L;
+
+    /**
+     * The backing map, either a ConcurrentSkipListMap or a sub-map view
+     * of one, mapping each element to Boolean.TRUE. Not final so that
+     * clone can replace it.
+     */
+    private ConcurrentSortedMap<E, Object> m;
+
+    /**
+     * Constructs a new, empty set that orders its elements according to
+     * their natural ordering.
+     */
+    public ConcurrentSkipListSet() {
+        m = new ConcurrentSkipListMap<E, Object>();
+    }
+
+    /**
+     * Constructs a new, empty set that orders its elements according to
+     * the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order this
+     *        set, or <tt>null</tt> to use the natural ordering
+     */
+    public ConcurrentSkipListSet(Comparator<? super E> comparator) {
+        m = new ConcurrentSkipListMap<E, Object>(comparator);
+    }
+
+    /**
+     * Constructs a new set containing the elements in the specified
+     * collection, ordered according to their natural ordering.
+     *
+     * @param c the elements that will comprise the new set
+     * @throws ClassCastException if the elements in <tt>c</tt> are not
+     *         {@link Comparable}, or are not mutually comparable
+     * @throws NullPointerException if the specified collection or any of
+     *         its elements are null
+     */
+    public ConcurrentSkipListSet(Collection<? extends E> c) {
+        m = new ConcurrentSkipListMap<E, Object>();
+        addAll(c);
+    }
+
+    /**
+     * Constructs a new set containing the same elements and using the
+     * same ordering as the specified sorted set.
+     *
+     * @param s sorted set whose elements will comprise the new set
+     * @throws NullPointerException if the specified sorted set or any of
+     *         its elements are null
+     */
+    public ConcurrentSkipListSet(SortedSet<E> s) {
+        m = new ConcurrentSkipListMap<E, Object>(s.comparator());
+        addAll(s);
+    }
+
+    private ConcurrentSkipListSet(ConcurrentSortedMap<E, Object> m) {
+        this.m = m;
+    }
+
+    /**
+     * Returns a shallow copy of this set. (The elements themselves are
+     * not cloned.)
+     *
+     * @return a shallow copy of this set
+     */
+    @Override
+    public ConcurrentSkipListSet<E> clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            ConcurrentSkipListSet<E> clone = (ConcurrentSkipListSet<E>) super.clone();
+            ConcurrentSkipListMap<E, Object> map =
+                new ConcurrentSkipListMap<E, Object>(m.comparator());
+            map.putAll(m);
+            clone.m = map;
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Returns the number of elements in this set. Unlike in most
+     * collections, this method is <em>not</em> a constant-time operation.
+     *
+     * @return the number of elements in this set
+     */
+    @Override
+    public int size() {
+        return m.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return m.isEmpty();
+    }
+
+    /**
+     * @throws ClassCastException if the specified element cannot be
+     *         compared with the elements currently in this set
+     * @throws NullPointerException if the specified element is null
+     */
+    @Override
+    public boolean contains(Object o) {
+        return m.containsKey(o);
+    }
+
+    /**
+     * Adds the specified element to this set if it is not already
+     * present.
+     *
+     * @return <tt>true</tt> if this set did not already contain the
+     *         specified element
+     * @throws ClassCastException if <tt>e</tt> cannot be compared with
+     *         the elements currently in this set
+     * @throws NullPointerException if the specified element is null
+     */
+    @Override
+    public boolean add(E e) {
+        return m.putIfAbsent(e, Boolean.TRUE) == null;
+    }
+
+    /**
+     * Removes the specified element from this set if it is present.
+     *
+     * @return <tt>true</tt> if this set contained the specified element
+     * @throws ClassCastException if <tt>o</tt> cannot be compared with
+     *         the elements currently in this set
+     * @throws NullPointerException if the specified element is null
+     */
+    @Override
+    public boolean remove(Object o) {
+        return m.remove(o, Boolean.TRUE);
+    }
+
+    @Override
+    public void clear() {
+        m.clear();
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements in this set
+     * in ascending order.
+     *
+     * @return an iterator over the elements in this set
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return m.keySet().iterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof java.util.Set<?>)) {
+            return false;
+        }
+        Collection<?> c = (Collection<?>) o;
+        try {
+            return containsAll(c) && c.containsAll(this);
+        } catch (ClassCastException e) {
+            return false;
+        } catch (NullPointerException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes from this set all of its elements that are contained in
+     * the specified collection.
+     *
+     * @throws NullPointerException if the specified collection or any of
+     *         its elements are null
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object e : c) {
+            if (remove(e)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    // Navigation
+
+    /**
+     * Returns the greatest element in this set strictly less than the
+     * given element, or <tt>null</tt> if there is no such element.
+     *
+     * @throws ClassCastException if the element cannot be compared
+     * @throws NullPointerException if the specified element is null
+     */
+    public E lower(E e) {
+        return m.lowerKey(e);
+    }
+
+    /**
+     * Returns the greatest element in this set less than or equal to the
+     * given element, or <tt>null</tt> if there is no such element.
+     *
+     * @throws ClassCastException if the element cannot be compared
+     * @throws NullPointerException if the specified element is null
+     */
+    public E floor(E e) {
+        return m.floorKey(e);
+    }
+
+    /**
+     * Returns the least element in this set greater than or equal to the
+     * given element, or <tt>null</tt> if there is no such element.
+     *
+     * @throws ClassCastException if the element cannot be compared
+     * @throws NullPointerException if the specified element is null
+     */
+    public E ceiling(E e) {
+        return m.ceilingKey(e);
+    }
+
+    /**
+     * Returns the least element in this set strictly greater than the
+     * given element, or <tt>null</tt> if there is no such element.
+     *
+     * @throws ClassCastException if the element cannot be compared
+     * @throws NullPointerException if the specified element is null
+     */
+    public E higher(E e) {
+        return m.higherKey(e);
+    }
+
+    /**
+     * Retrieves and removes the first (lowest) element, or returns
+     * <tt>null</tt> if this set is empty.
+     */
+    public E pollFirst() {
+        Map.Entry<E, Object> e = m.pollFirstEntry();
+        return e == null ? null : e.getKey();
+    }
+
+    /**
+     * Retrieves and removes the last (highest) element, or returns
+     * <tt>null</tt> if this set is empty.
+     */
+    public E pollLast() {
+        Map.Entry<E, Object> e = m.pollLastEntry();
+        return e == null ? null : e.getKey();
+    }
+
+    // SortedSet methods
+
+    public Comparator<? super E> comparator() {
+        return m.comparator();
+    }
+
+    /**
+     * @throws NoSuchElementException if this set is empty
+     */
+    public E first() {
+        return m.firstKey();
+    }
+
+    /**
+     * @throws NoSuchElementException if this set is empty
+     */
+    public E last() {
+        return m.lastKey();
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements range
+     * from <tt>fromElement</tt>, inclusive, to <tt>toElement</tt>,
+     * exclusive. The returned set is a <tt>ConcurrentSkipListSet</tt>
+     * and supports all of the operations of this set within its range.
+     *
+     * @throws ClassCastException if the elements cannot be compared
+     * @throws NullPointerException if either element is null
+     * @throws IllegalArgumentException if <tt>fromElement</tt> is greater
+     *         than <tt>toElement</tt>
+     */
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return wrap(m.subMap(fromElement, toElement));
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements are
+     * strictly less than <tt>toElement</tt>.
+     *
+     * @throws ClassCastException if the element cannot be compared
+     * @throws NullPointerException if the specified element is null
+     */
+    public SortedSet<E> headSet(E toElement) {
+        return wrap(m.headMap(toElement));
+    }
+
+    /**
+     * Returns a view of the portion of this set whose elements are
+     * greater than or equal to <tt>fromElement</tt>.
+     *
+     * @throws ClassCastException if the element cannot be compared
+     * @throws NullPointerException if the specified element is null
+     */
+    public SortedSet<E> tailSet(E fromElement) {
+        return wrap(m.tailMap(fromElement));
+    }
+
+    private static <E> ConcurrentSkipListSet<E> wrap(java.util.SortedMap<E, Object> sub) {
+        return new ConcurrentSkipListSet<E>((ConcurrentSortedMap<E, Object>) sub);
+    }
+}
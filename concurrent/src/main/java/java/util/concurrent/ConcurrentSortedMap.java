@@ -0,0 +1,53 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.util.concurrent;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The closest match and polling operations shared by
+ * {@link ConcurrentSkipListMap} and its sub-map views, through which
+ * {@link ConcurrentSkipListSet} works on either.
+ */
+interface ConcurrentSortedMap<K, V> extends ConcurrentMap<K, V>, SortedMap<K, V> {
+
+    Map.Entry<K, V> lowerEntry(K key);
+
+    K lowerKey(K key);
+
+    Map.Entry<K, V> floorEntry(K key);
+
+    K floorKey(K key);
+
+    Map.Entry<K, V> ceilingEntry(K key);
+
+    K ceilingKey(K key);
+
+    Map.Entry<K, V> higherEntry(K key);
+
+    K higherKey(K key);
+
+    Map.Entry<K, V> firstEntry();
+
+    Map.Entry<K, V> lastEntry();
+
+    Map.Entry<K, V> pollFirstEntry();
+
+    Map.Entry<K, V> pollLastEntry();
+}
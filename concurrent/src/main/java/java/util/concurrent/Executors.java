@@ -167,6 +167,37 @@ public class Executors {
                                       threadFactory);
     }
 
+    /**
+     * Creates a thread pool that maintains enough threads to support
+     * the given parallelism level, and may use multiple queues to
+     * reduce contention. Each thread keeps its own queue of tasks and
+     * idle threads steal work from the others, so tasks that submit
+     * further tasks scale far better than with a single shared queue.
+     * The actual number of threads may grow and shrink dynamically,
+     * and no guarantees are made about the order in which submitted
+     * tasks are executed.
+     *
+     * @param parallelism the targeted parallelism level
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if <tt>parallelism &lt;= 0</tt>
+     */
+    public static ExecutorService newWorkStealingPool(int parallelism) {
+        return new ForkJoinPool(parallelism,
+                                ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                                null, true);
+    }
+
+    /**
+     * Creates a work-stealing thread pool using the number of available
+     * processors as its target parallelism level.
+     *
+     * @return the newly created thread pool
+     * @see #newWorkStealingPool(int)
+     */
+    public static ExecutorService newWorkStealingPool() {
+        return newWorkStealingPool(Runtime.getRuntime().availableProcessors());
+    }
+
     /**
      * Creates a single-threaded executor that can schedule commands
      * to run after a given delay, or to execute periodically.
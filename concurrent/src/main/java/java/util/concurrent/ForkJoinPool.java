@@ -0,0 +1,1062 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import sun.misc.Unsafe;
+
+/**
+ * An {@link ExecutorService} for running {@link ForkJoinTask}s.
+ *
+ * <p>A <tt>ForkJoinPool</tt> differs from other kinds of executors in
+ * that its threads use <em>work-stealing</em>: every worker keeps its
+ * own queue of the tasks it forked, and a worker that runs out of work
+ * takes the oldest task from another worker's queue or from the queue
+ * of externally submitted tasks. Tasks recursively split into subtasks
+ * are thus mostly pushed and popped by one thread without contention,
+ * and a worker joining a subtask keeps running queued tasks instead of
+ * blocking. In asynchronous mode, workers process their own tasks in
+ * first-in first-out order instead, which can suit event-style tasks
+ * that are never joined.
+ *
+ * <p>The pool runs at most the given number of worker threads, the
+ * <em>parallelism</em>, and starts them as work arrives. The
+ * {@link #commonPool common pool} serves tasks forked or invoked
+ * outside of any pool; it cannot be shut down.
+ *
+ * <p>The methods inherited from <tt>ExecutorService</tt> wrap plain
+ * <tt>Runnable</tt>s and <tt>Callable</tt>s in a <tt>ForkJoinTask</tt>,
+ * so they may be used to submit ordinary work as well.
+ */
+public class ForkJoinPool extends AbstractExecutorService {
+
+    /*
+     * Implementation overview
+     *
+     * Slot 0 of the queues array holds the queue of external
+     * submissions, slots 1 and up the queues of the workers, which are
+     * assigned when a worker thread is constructed and never reused.
+     * Each WorkQueue is a circular array deque: the owner pushes and
+     * pops at top, thieves poll at base. Every take, by owner or thief,
+     * claims its slot with a CAS from the task to null, so owner and
+     * thieves racing for the last task cannot both get it. Pushes to the
+     * submission queue are serialized by its monitor, which makes the
+     * pushing thread its owner for the duration.
+     *
+     * Idle workers are kept on a Treiber stack threaded through
+     * WorkQueue.nextWait, whose head (a worker index) and a version
+     * count, against ABA, share the ctl word. A worker that finds
+     * nothing to do pushes itself, scans once more and parks;
+     * signalWork pops and unparks the top worker, or starts a new one
+     * while fewer than parallelism have been started. Since a producer
+     * publishes its task before reading ctl and a worker publishes
+     * itself on ctl before its final scan, no signal is missed.
+     *
+     * Shutdown sets runState under the submission queue's monitor, so
+     * every accepted submission is visible to the workers, which exit
+     * once they see the state and find no more work.
+     */
+
+    /**
+     * Factory for creating new {@link ForkJoinWorkerThread}s.
+     */
+    public static interface ForkJoinWorkerThreadFactory {
+        /**
+         * Returns a new worker thread operating in the given pool.
+         *
+         * @param pool the pool this thread works in
+         * @return the new worker thread
+         * @throws NullPointerException if the pool is null
+         */
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool);
+    }
+
+    static final class DefaultForkJoinWorkerThreadFactory
+            implements ForkJoinWorkerThreadFactory {
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            return new ForkJoinWorkerThread(pool);
+        }
+    }
+
+    /**
+     * Creates a new ForkJoinWorkerThread. This factory is used unless
+     * overridden in ForkJoinPool constructors.
+     */
+    public static final ForkJoinWorkerThreadFactory
+        defaultForkJoinWorkerThreadFactory =
+        new DefaultForkJoinWorkerThreadFactory();
+
+    private static final RuntimePermission modifyThreadPermission =
+        new RuntimePermission("modifyThread");
+
+    /**
+     * The largest permitted parallelism, bounded by the width of the
+     * worker index in ctl.
+     */
+    private static final int MAX_PARALLELISM = 0x7fff;
+
+    /**
+     * How long a worker joining a stolen task waits on it before
+     * looking for other work again.
+     */
+    private static final long JOIN_WAIT_MILLIS = 10L;
+
+    private static final int RUNNING  = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP     = 2;
+
+    /** Sequence number for pool names. */
+    private static int poolNumberSequence;
+
+    private static synchronized int nextPoolId() {
+        return ++poolNumberSequence;
+    }
+
+    /**
+     * A work-stealing deque of tasks, owned by a worker or, for slot 0,
+     * shared by external submitters.
+     */
+    static final class WorkQueue {
+
+        /** Initial capacity; must be a power of two. */
+        static final int INITIAL_QUEUE_CAPACITY = 1 << 8;
+
+        /** Maximum capacity; must be a power of two. */
+        static final int MAXIMUM_QUEUE_CAPACITY = 1 << 24;
+
+        final ForkJoinPool pool;
+        final ForkJoinWorkerThread owner;
+        final int index;
+        final boolean fifo;
+
+        volatile ForkJoinTask<?>[] array;
+        volatile int base;
+        volatile int top;
+
+        /** Index of the next worker on the idle stack. */
+        int nextWait;
+
+        /** Set while this worker is on the idle stack. */
+        volatile boolean inactive;
+
+        /** Number of tasks this worker took from other workers. */
+        volatile int steals;
+
+        /** Seed for choosing victims. */
+        private int seed;
+
+        WorkQueue(ForkJoinPool pool, ForkJoinWorkerThread owner, int index,
+                  boolean fifo) {
+            this.pool = pool;
+            this.owner = owner;
+            this.index = index;
+            this.fifo = fifo;
+            this.seed = index * 0x9e3779b9 | 1;
+            this.array = new ForkJoinTask<?>[INITIAL_QUEUE_CAPACITY];
+        }
+
+        int queueSize() {
+            int n = top - base;
+            return n < 0 ? 0 : n;
+        }
+
+        boolean isEmpty() {
+            return top - base <= 0;
+        }
+
+        /**
+         * Pushes a task. Called only by the owner, or with the queue's
+         * monitor held.
+         */
+        void push(ForkJoinTask<?> task) {
+            ForkJoinTask<?>[] a = array;
+            int s = top;
+            unsafe.putOrderedObject(a, slotOffset((a.length - 1) & s), task);
+            top = s + 1;
+            if (s + 1 - base >= a.length) {
+                growArray();
+            }
+        }
+
+        /**
+         * Doubles the capacity of a full array. Slots are moved with the
+         * same CAS that takes them, so a racing thief either gets its
+         * task from the old array or finds it in the new one.
+         */
+        private void growArray() {
+            ForkJoinTask<?>[] old = array;
+            int size = old.length << 1;
+            if (size > MAXIMUM_QUEUE_CAPACITY) {
+                throw new RejectedExecutionException("Queue capacity exceeded");
+            }
+            ForkJoinTask<?>[] a = new ForkJoinTask<?>[size];
+            int oldMask = old.length - 1;
+            int mask = size - 1;
+            for (int i = base, t = top; i != t; i++) {
+                long oldOffset = slotOffset(oldMask & i);
+                Object x = unsafe.getObjectVolatile(old, oldOffset);
+                if (x != null && unsafe.compareAndSwapObject(old, oldOffset, x, null)) {
+                    unsafe.putObjectVolatile(a, slotOffset(mask & i), x);
+                }
+            }
+            array = a;
+        }
+
+        /**
+         * Takes the most recently pushed task. Called only by the owner.
+         */
+        ForkJoinTask<?> pop() {
+            ForkJoinTask<?>[] a;
+            int s;
+            while ((s = top - 1) - base >= 0 && (a = array) != null) {
+                long offset = slotOffset((a.length - 1) & s);
+                ForkJoinTask<?> t = (ForkJoinTask<?>) unsafe.getObjectVolatile(a, offset);
+                if (t == null) {
+                    break;
+                }
+                if (unsafe.compareAndSwapObject(a, offset, t, null)) {
+                    top = s;
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Takes the oldest task. May be called by any thread.
+         */
+        ForkJoinTask<?> poll() {
+            ForkJoinTask<?>[] a;
+            int b;
+            while ((b = base) - top < 0 && (a = array) != null) {
+                long offset = slotOffset((a.length - 1) & b);
+                ForkJoinTask<?> t = (ForkJoinTask<?>) unsafe.getObjectVolatile(a, offset);
+                if (t != null) {
+                    if (base == b && unsafe.compareAndSwapObject(a, offset, t, null)) {
+                        base = b + 1;
+                        return t;
+                    }
+                } else if (base == b) {
+                    // another thread has claimed the slot but not yet
+                    // advanced base, or the array is being grown
+                    Thread.yield();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Takes the owner's next task in the queue's mode.
+         */
+        ForkJoinTask<?> nextLocalTask() {
+            return fifo ? poll() : pop();
+        }
+
+        /**
+         * Pops the given task if it is the most recently pushed one.
+         * Called only by the owner.
+         */
+        boolean tryUnpush(ForkJoinTask<?> task) {
+            ForkJoinTask<?>[] a = array;
+            int s = top - 1;
+            if (a != null && s - base >= 0
+                    && unsafe.compareAndSwapObject(a, slotOffset((a.length - 1) & s), task, null)) {
+                top = s;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Cancels all queued tasks.
+         */
+        void cancelAll() {
+            ForkJoinTask<?> t;
+            while ((t = poll()) != null) {
+                t.cancel(false);
+            }
+        }
+
+        /**
+         * Returns a pseudo-random value for choosing a victim.
+         */
+        int nextSeed() {
+            int r = seed;
+            r ^= r << 13;
+            r ^= r >>> 17;
+            r ^= r << 5;
+            seed = r;
+            return r;
+        }
+    }
+
+    /**
+     * The queues: slot 0 for submissions, the rest for workers. Grown
+     * under the pool's monitor.
+     */
+    volatile WorkQueue[] queues;
+
+    /** Version count (high word) and top of the idle stack (low word). */
+    private volatile long ctl;
+
+    /** Number of workers started, bounded by parallelism. */
+    private volatile int started;
+
+    private volatile int runState;
+
+    /** Number of worker threads that have not terminated; under lock. */
+    private int liveWorkers;
+
+    /** Next worker index to hand out; under lock. */
+    private int nextWorkerIndex = 1;
+
+    private int workerNameSequence;
+
+    private final WorkQueue submissionQueue;
+    private final int parallelism;
+    private final boolean asyncMode;
+    private final boolean isCommon;
+    private final ForkJoinWorkerThreadFactory factory;
+    private final Thread.UncaughtExceptionHandler ueh;
+    private final String workerNamePrefix;
+
+    /**
+     * Creates a ForkJoinPool with parallelism equal to the number of
+     * available processors and the default thread factory.
+     */
+    public ForkJoinPool() {
+        this(Runtime.getRuntime().availableProcessors(),
+             defaultForkJoinWorkerThreadFactory, null, false);
+    }
+
+    /**
+     * Creates a ForkJoinPool with the given parallelism and the default
+     * thread factory.
+     *
+     * @param parallelism the parallelism level
+     * @throws IllegalArgumentException if parallelism is not positive or
+     *         larger than the supported maximum
+     */
+    public ForkJoinPool(int parallelism) {
+        this(parallelism, defaultForkJoinWorkerThreadFactory, null, false);
+    }
+
+    /**
+     * Creates a ForkJoinPool with the given parameters.
+     *
+     * @param parallelism the parallelism level
+     * @param factory the factory for creating new threads
+     * @param handler the handler for worker threads that terminate due to
+     *        unrecoverable errors, or null for none
+     * @param asyncMode if true, workers run their own forked tasks in
+     *        first-in first-out order
+     * @throws IllegalArgumentException if parallelism is not positive or
+     *         larger than the supported maximum
+     * @throws NullPointerException if the factory is null
+     */
+    public ForkJoinPool(int parallelism,
+                        ForkJoinWorkerThreadFactory factory,
+                        Thread.UncaughtExceptionHandler handler,
+                        boolean asyncMode) {
+        this(parallelism, factory, handler, asyncMode, false);
+        checkPermission();
+    }
+
+    private ForkJoinPool(int parallelism,
+                         ForkJoinWorkerThreadFactory factory,
+                         Thread.UncaughtExceptionHandler handler,
+                         boolean asyncMode,
+                         boolean isCommon) {
+        if (parallelism <= 0 || parallelism > MAX_PARALLELISM) {
+            throw new IllegalArgumentException();
+        }
+        if (factory == null) {
+            throw new NullPointerException();
+        }
+        this.parallelism = parallelism;
+        this.factory = factory;
+        this.ueh = handler;
+        this.asyncMode = asyncMode;
+        this.isCommon = isCommon;
+        this.workerNamePrefix = isCommon ? "ForkJoinPool.commonPool-worker-"
+                : "ForkJoinPool-" + nextPoolId() + "-worker-";
+        this.submissionQueue = new WorkQueue(this, null, 0, true);
+        WorkQueue[] qs = new WorkQueue[parallelism + 1];
+        qs[0] = submissionQueue;
+        this.queues = qs;
+    }
+
+    private static final class CommonPoolHolder {
+        static final ForkJoinPool commonPool = new ForkJoinPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                defaultForkJoinWorkerThreadFactory, null, false, true);
+    }
+
+    /**
+     * Returns the common pool, which runs tasks forked or invoked
+     * outside of any pool. Its parallelism is one less than the number
+     * of available processors, but at least one. Its threads are daemon
+     * threads, and {@link #shutdown} and {@link #shutdownNow} have no
+     * effect on it.
+     *
+     * @return the common pool instance
+     */
+    public static ForkJoinPool commonPool() {
+        return CommonPoolHolder.commonPool;
+    }
+
+    private static void checkPermission() {
+        SecurityManager security = System.getSecurityManager();
+        if (security != null) {
+            security.checkPermission(modifyThreadPermission);
+        }
+    }
+
+    // Workers
+
+    synchronized String nextWorkerName() {
+        return workerNamePrefix + (++workerNameSequence);
+    }
+
+    /**
+     * Creates the queue of a new worker thread. Called from the
+     * ForkJoinWorkerThread constructor.
+     */
+    synchronized WorkQueue registerWorker(ForkJoinWorkerThread wt) {
+        int index = nextWorkerIndex++;
+        WorkQueue[] qs = queues;
+        if (index >= qs.length) {
+            // a worker created other than through signalWork
+            WorkQueue[] grown = new WorkQueue[qs.length << 1];
+            System.arraycopy(qs, 0, grown, 0, qs.length);
+            qs = grown;
+        }
+        WorkQueue w = new WorkQueue(this, wt, index, asyncMode);
+        qs[index] = w;
+        queues = qs;
+        ++liveWorkers;
+        return w;
+    }
+
+    /**
+     * Accounts for a terminated worker. Its queue stays in place, so
+     * any tasks left in it can still be stolen.
+     */
+    final void deregisterWorker(ForkJoinWorkerThread wt, Throwable ex) {
+        synchronized (this) {
+            if (--liveWorkers == 0 && runState >= SHUTDOWN) {
+                notifyAll();
+            }
+        }
+        if (runState >= STOP) {
+            wt.workQueue.cancelAll();
+        }
+        if (ex != null) {
+            ForkJoinTask.rethrow(ex);
+        }
+    }
+
+    private void addWorker() {
+        Throwable ex = null;
+        ForkJoinWorkerThread wt = null;
+        try {
+            wt = factory.newThread(this);
+        } catch (Throwable e) {
+            ex = e;
+        }
+        if (wt == null) {
+            for (;;) {
+                int s = started;
+                if (unsafe.compareAndSwapInt(this, startedOffset, s, s - 1)) {
+                    break;
+                }
+            }
+            if (ex != null) {
+                ForkJoinTask.rethrow(ex);
+            }
+            return;
+        }
+        if (ueh != null) {
+            wt.setUncaughtExceptionHandler(ueh);
+        }
+        wt.start();
+    }
+
+    /**
+     * Wakes an idle worker, or starts a new one if there is none and
+     * fewer than parallelism have been started.
+     */
+    final void signalWork() {
+        for (;;) {
+            long c = ctl;
+            int i = (int) c;
+            if (i != 0) {
+                WorkQueue w = queues[i];
+                long nc = (((c >>> 32) + 1) << 32) | (w.nextWait & 0xffffffffL);
+                if (unsafe.compareAndSwapLong(this, ctlOffset, c, nc)) {
+                    w.inactive = false;
+                    LockSupport.unpark(w.owner);
+                    return;
+                }
+            } else {
+                int s = started;
+                if (s >= parallelism || runState >= SHUTDOWN) {
+                    return;
+                }
+                if (unsafe.compareAndSwapInt(this, startedOffset, s, s + 1)) {
+                    addWorker();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void pushIdle(WorkQueue w) {
+        w.inactive = true;
+        for (;;) {
+            long c = ctl;
+            w.nextWait = (int) c;
+            long nc = (((c >>> 32) + 1) << 32) | w.index;
+            if (unsafe.compareAndSwapLong(this, ctlOffset, c, nc)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Steals a task from some other queue, starting at a random one.
+     */
+    private ForkJoinTask<?> scan(WorkQueue w) {
+        WorkQueue[] qs = queues;
+        int n = qs.length;
+        int start = (w.nextSeed() & 0x7fffffff) % n;
+        for (int k = 0; k < n; k++) {
+            int i = start + k;
+            if (i >= n) {
+                i -= n;
+            }
+            WorkQueue q = qs[i];
+            if (q != null && q != w) {
+                ForkJoinTask<?> t = q.poll();
+                if (t != null) {
+                    if (i != 0) {
+                        w.steals++;
+                    }
+                    return t;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ForkJoinTask<?> findTask(WorkQueue w) {
+        ForkJoinTask<?> t = w.nextLocalTask();
+        return t != null ? t : scan(w);
+    }
+
+    /**
+     * The main loop of a worker thread.
+     */
+    final void runWorker(WorkQueue w) {
+        for (;;) {
+            if (runState >= STOP) {
+                return;
+            }
+            ForkJoinTask<?> t = findTask(w);
+            if (t != null) {
+                t.doExec();
+            } else if (runState >= SHUTDOWN) {
+                // runState was read before this last scan, so every
+                // accepted submission has been seen
+                if ((t = findTask(w)) == null) {
+                    return;
+                }
+                t.doExec();
+            } else if (!w.inactive) {
+                pushIdle(w);
+            } else {
+                Thread.interrupted();
+                LockSupport.park();
+            }
+        }
+    }
+
+    /**
+     * Runs queued tasks until the given task is done. Used by workers
+     * joining a task, which they therefore never block on while there
+     * is other work to do.
+     */
+    final int awaitJoin(WorkQueue w, ForkJoinTask<?> task) {
+        int s;
+        while ((s = task.status) >= 0) {
+            ForkJoinTask<?> t = findTask(w);
+            if (t != null) {
+                t.doExec();
+            } else {
+                // the task is being run by another worker
+                task.awaitDone(JOIN_WAIT_MILLIS);
+            }
+        }
+        return s;
+    }
+
+    final void helpQuiesce(WorkQueue w) {
+        ForkJoinTask<?> t;
+        while ((t = findTask(w)) != null) {
+            t.doExec();
+        }
+    }
+
+    /**
+     * Adds a task submitted from outside the pool.
+     */
+    final void externalPush(ForkJoinTask<?> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        WorkQueue q = submissionQueue;
+        synchronized (q) {
+            if (runState >= SHUTDOWN) {
+                throw new RejectedExecutionException();
+            }
+            q.push(task);
+        }
+        signalWork();
+    }
+
+    private void forkOrSubmit(ForkJoinTask<?> task) {
+        Thread t = Thread.currentThread();
+        if (t instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) t).pool == this
+                && runState < SHUTDOWN) {
+            ((ForkJoinWorkerThread) t).workQueue.push(task);
+            signalWork();
+        } else {
+            externalPush(task);
+        }
+    }
+
+    // Execution methods
+
+    /**
+     * Performs the given task, returning its result upon completion.
+     *
+     * @param task the task
+     * @return the task's result
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        forkOrSubmit(task);
+        return task.join();
+    }
+
+    /**
+     * Arranges for (asynchronous) execution of the given task.
+     *
+     * @param task the task
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public void execute(ForkJoinTask<?> task) {
+        forkOrSubmit(task);
+    }
+
+    /**
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public void execute(Runnable task) {
+        ForkJoinTask<?> job;
+        if (task instanceof ForkJoinTask<?>) {
+            job = (ForkJoinTask<?>) task;
+        } else {
+            job = ForkJoinTask.adapt(task);
+        }
+        forkOrSubmit(job);
+    }
+
+    /**
+     * Submits a ForkJoinTask for execution.
+     *
+     * @param task the task to submit
+     * @return the task
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task) {
+        forkOrSubmit(task);
+        return task;
+    }
+
+    /**
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    @Override
+    public <T> ForkJoinTask<T> submit(Callable<T> task) {
+        ForkJoinTask<T> job = ForkJoinTask.adapt(task);
+        forkOrSubmit(job);
+        return job;
+    }
+
+    /**
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    @Override
+    public <T> ForkJoinTask<T> submit(Runnable task, T result) {
+        ForkJoinTask<T> job = ForkJoinTask.adapt(task, result);
+        forkOrSubmit(job);
+        return job;
+    }
+
+    /**
+     * @throws NullPointerException if the task is null
+     * @throws RejectedExecutionException if the task cannot be
+     *         scheduled for execution
+     */
+    @Override
+    public ForkJoinTask<?> submit(Runnable task) {
+        ForkJoinTask<?> job;
+        if (task instanceof ForkJoinTask<?>) {
+            job = (ForkJoinTask<?>) task;
+        } else {
+            job = ForkJoinTask.adapt(task);
+        }
+        forkOrSubmit(job);
+        return job;
+    }
+
+    /**
+     * @throws NullPointerException {@inheritDoc}
+     * @throws RejectedExecutionException {@inheritDoc}
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        boolean done = false;
+        try {
+            for (Callable<T> t : tasks) {
+                ForkJoinTask<T> f = ForkJoinTask.adapt(t);
+                futures.add(f);
+                forkOrSubmit(f);
+            }
+            for (Future<T> f : futures) {
+                ((ForkJoinTask<?>) f).quietlyJoin();
+            }
+            done = true;
+            return futures;
+        } finally {
+            if (!done) {
+                for (Future<T> f : futures) {
+                    f.cancel(false);
+                }
+            }
+        }
+    }
+
+    // Configuration and statistics
+
+    /**
+     * Returns the factory used for constructing new workers.
+     *
+     * @return the factory used for constructing new workers
+     */
+    public ForkJoinWorkerThreadFactory getFactory() {
+        return factory;
+    }
+
+    /**
+     * Returns the handler for internal worker threads that terminate due
+     * to unrecoverable errors encountered while executing tasks.
+     *
+     * @return the handler, or null if none
+     */
+    public Thread.UncaughtExceptionHandler getUncaughtExceptionHandler() {
+        return ueh;
+    }
+
+    /**
+     * Returns the targeted parallelism level of this pool.
+     *
+     * @return the targeted parallelism level of this pool
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the number of worker threads that have started but not
+     * yet terminated.
+     *
+     * @return the number of worker threads
+     */
+    public synchronized int getPoolSize() {
+        return liveWorkers;
+    }
+
+    /**
+     * Returns true if workers run their own forked tasks in first-in
+     * first-out order.
+     *
+     * @return true if this pool uses async mode
+     */
+    public boolean getAsyncMode() {
+        return asyncMode;
+    }
+
+    /**
+     * Returns an estimate of the number of workers that are not idle.
+     *
+     * @return the number of active threads
+     */
+    public int getActiveThreadCount() {
+        int count = 0;
+        WorkQueue[] qs = queues;
+        for (int i = 1; i < qs.length; i++) {
+            WorkQueue w = qs[i];
+            if (w != null && !w.inactive && w.owner.isAlive()) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if all workers are currently idle.
+     *
+     * @return true if all threads are currently idle
+     */
+    public boolean isQuiescent() {
+        return getActiveThreadCount() == 0;
+    }
+
+    /**
+     * Returns an estimate of the total number of tasks stolen from one
+     * thread's queue by another.
+     *
+     * @return the number of steals
+     */
+    public long getStealCount() {
+        long count = 0;
+        WorkQueue[] qs = queues;
+        for (int i = 1; i < qs.length; i++) {
+            WorkQueue w = qs[i];
+            if (w != null) {
+                count += w.steals;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns an estimate of the number of tasks held in the workers'
+     * queues, not counting submissions that no worker has taken yet.
+     *
+     * @return the number of queued tasks
+     */
+    public long getQueuedTaskCount() {
+        long count = 0;
+        WorkQueue[] qs = queues;
+        for (int i = 1; i < qs.length; i++) {
+            WorkQueue w = qs[i];
+            if (w != null) {
+                count += w.queueSize();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns an estimate of the number of tasks submitted to this pool
+     * that have not yet begun executing.
+     *
+     * @return the number of queued submissions
+     */
+    public int getQueuedSubmissionCount() {
+        return submissionQueue.queueSize();
+    }
+
+    /**
+     * Returns true if there are any tasks submitted to this pool that
+     * have not yet begun executing.
+     *
+     * @return true if there are any queued submissions
+     */
+    public boolean hasQueuedSubmissions() {
+        return !submissionQueue.isEmpty();
+    }
+
+    /**
+     * Returns a string identifying this pool, as well as its state,
+     * including indications of run state, parallelism level, and worker
+     * and task counts.
+     *
+     * @return a string identifying this pool, as well as its state
+     */
+    @Override
+    public String toString() {
+        int rs = runState;
+        String level = (rs == RUNNING) ? "Running"
+                : isTerminated() ? "Terminated"
+                : (rs == STOP) ? "Terminating" : "Shutting down";
+        return super.toString() + "[" + level
+                + ", parallelism = " + parallelism
+                + ", size = " + getPoolSize()
+                + ", active = " + getActiveThreadCount()
+                + ", steals = " + getStealCount()
+                + ", tasks = " + getQueuedTaskCount()
+                + ", submissions = " + getQueuedSubmissionCount()
+                + "]";
+    }
+
+    // Termination
+
+    private void wakeAllWorkers() {
+        WorkQueue[] qs = queues;
+        for (int i = 1; i < qs.length; i++) {
+            WorkQueue w = qs[i];
+            if (w != null) {
+                LockSupport.unpark(w.owner);
+            }
+        }
+    }
+
+    private void advanceRunState(int targetState) {
+        synchronized (submissionQueue) {
+            if (runState < targetState) {
+                runState = targetState;
+            }
+        }
+        if (targetState >= STOP) {
+            WorkQueue[] qs = queues;
+            for (int i = 0; i < qs.length; i++) {
+                if (qs[i] != null) {
+                    qs[i].cancelAll();
+                }
+            }
+        }
+        wakeAllWorkers();
+        synchronized (this) {
+            if (liveWorkers == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Initiates an orderly shutdown in which previously submitted tasks
+     * are executed, but no new tasks will be accepted. Has no effect on
+     * the {@link #commonPool common pool}.
+     *
+     * @throws SecurityException if a security manager exists and the
+     *         caller is not permitted to modify threads
+     */
+    public void shutdown() {
+        checkPermission();
+        if (!isCommon) {
+            advanceRunState(SHUTDOWN);
+        }
+    }
+
+    /**
+     * Attempts to cancel all tasks and to stop all workers, and rejects
+     * all subsequently submitted tasks. Running tasks are not
+     * interrupted, but complete before their workers stop. Has no effect
+     * on the {@link #commonPool common pool}.
+     *
+     * @return an empty list, since the cancelled tasks are reported to
+     *         whoever waits for them
+     * @throws SecurityException if a security manager exists and the
+     *         caller is not permitted to modify threads
+     */
+    public List<Runnable> shutdownNow() {
+        checkPermission();
+        if (!isCommon) {
+            advanceRunState(STOP);
+        }
+        return Collections.emptyList();
+    }
+
+    public boolean isShutdown() {
+        return runState >= SHUTDOWN;
+    }
+
+    public synchronized boolean isTerminated() {
+        return runState >= SHUTDOWN && liveWorkers == 0;
+    }
+
+    /**
+     * Returns true if the pool has been shut down but not all of its
+     * workers have terminated.
+     *
+     * @return true if terminating but not yet terminated
+     */
+    public synchronized boolean isTerminating() {
+        return runState >= SHUTDOWN && liveWorkers > 0;
+    }
+
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + nanos;
+        while (!(runState >= SHUTDOWN && liveWorkers == 0)) {
+            if (nanos <= 0L) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, nanos);
+            nanos = deadline - System.nanoTime();
+        }
+        return true;
+    }
+
+    // Unsafe mechanics
+
+    private static final Unsafe unsafe = Unsafe.getUnsafe();
+    private static final long ctlOffset;
+    private static final long startedOffset;
+    private static final int arrayBase;
+    private static final int arrayScale;
+
+    static {
+        try {
+            ctlOffset = unsafe.objectFieldOffset
+                (ForkJoinPool.class.getDeclaredField("ctl"));
+            startedOffset = unsafe.objectFieldOffset
+                (ForkJoinPool.class.getDeclaredField("started"));
+            arrayBase = unsafe.arrayBaseOffset(ForkJoinTask[].class);
+            arrayScale = unsafe.arrayIndexScale(ForkJoinTask[].class);
+        } catch (Exception ex) { throw new Error(ex); }
+    }
+
+    static long slotOffset(int i) {
+        return arrayBase + (long) i * arrayScale;
+    }
+}
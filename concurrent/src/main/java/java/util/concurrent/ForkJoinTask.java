@@ -0,0 +1,754 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.util.concurrent;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import sun.misc.Unsafe;
+
+/**
+ * Abstract base class for tasks that run within a {@link ForkJoinPool}.
+ * A <tt>ForkJoinTask</tt> is a thread-like entity that is much
+ * lighter weight than a normal thread. Huge numbers of tasks and
+ * subtasks may be hosted by a small number of actual threads in a
+ * ForkJoinPool.
+ *
+ * <p>A task is started by {@link #fork}, which arranges asynchronous
+ * execution in the pool the current task is running in, or by one of
+ * the {@link ForkJoinPool} submission methods. Calling <tt>fork</tt>
+ * from a thread that is not a pool worker submits the task to the
+ * {@link ForkJoinPool#commonPool common pool}. {@link #join} returns
+ * the result of the computation when it is done; a worker that joins
+ * a task which is not yet done runs other queued tasks in the meantime
+ * rather than blocking.
+ *
+ * <p>Most applications do not subclass <tt>ForkJoinTask</tt> directly
+ * but one of {@link RecursiveAction} and {@link RecursiveTask}.
+ * Computations should be relatively small, should avoid synchronized
+ * blocks and blocking I/O, and should ideally be independent of each
+ * other apart from the fork/join structure.
+ *
+ * <p>An exception thrown by the computation is rethrown by
+ * <tt>join</tt> and <tt>invoke</tt>; checked exceptions are wrapped in
+ * a <tt>RuntimeException</tt>. <tt>get</tt> reports it wrapped in an
+ * {@link ExecutionException}, as other {@link Future}s do.
+ *
+ * @param <V> the type of the result of the task
+ */
+public abstract class ForkJoinTask<V> implements Future<V>, Serializable {
+
+    private static final long serialVersionUID = -7721805057305804111L;
+
+    /*
+     * The run state of the task. Non-negative values mean the task is
+     * not done: 0 is plain pending and SIGNAL means some thread waits on
+     * the task's monitor to be notified of completion. The negative
+     * values are the completion states. The state only ever moves from
+     * pending to done, by CAS, except through reinitialize.
+     */
+    static final int SIGNAL      =  1;
+    static final int NORMAL      = -1;
+    static final int CANCELLED   = -2;
+    static final int EXCEPTIONAL = -3;
+
+    volatile int status;
+
+    /*
+     * The exception the computation completed with. Written before the
+     * status CAS and read after reading a negative status, so it needs
+     * no volatile access of its own.
+     */
+    private transient Throwable thrown;
+
+    /**
+     * Constructor for subclasses to call.
+     */
+    public ForkJoinTask() {
+    }
+
+    /**
+     * Marks the task as completed with the given state unless it is
+     * already done, and wakes any waiters.
+     *
+     * @return the state the task ended in
+     */
+    private int setCompletion(int completion) {
+        for (;;) {
+            int s = status;
+            if (s < 0) {
+                return s;
+            }
+            if (unsafe.compareAndSwapInt(this, statusOffset, s, completion)) {
+                if (s == SIGNAL) {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+                return completion;
+            }
+        }
+    }
+
+    private int setExceptionalCompletion(Throwable ex) {
+        if (status >= 0) {
+            thrown = ex;
+        }
+        return setCompletion(EXCEPTIONAL);
+    }
+
+    /**
+     * Runs the computation unless the task is already done.
+     *
+     * @return the state after running; non-negative if the computation
+     *         returned without completing the task
+     */
+    final int doExec() {
+        int s = status;
+        if (s >= 0) {
+            boolean completed;
+            try {
+                completed = exec();
+            } catch (Throwable ex) {
+                return setExceptionalCompletion(ex);
+            }
+            if (completed) {
+                s = setCompletion(NORMAL);
+            } else {
+                s = status;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Waits on the task's monitor for at most the given time; a zero
+     * timeout waits until the task is done. Interrupts are not acted on
+     * but are kept in the thread's interrupt status.
+     */
+    final int awaitDone(long millis) {
+        boolean interrupted = false;
+        int s;
+        while ((s = status) >= 0) {
+            if (s == SIGNAL
+                    || unsafe.compareAndSwapInt(this, statusOffset, 0, SIGNAL)) {
+                synchronized (this) {
+                    if (status >= 0) {
+                        try {
+                            wait(millis);
+                        } catch (InterruptedException ie) {
+                            interrupted = true;
+                        }
+                    }
+                }
+                if (millis != 0L) {
+                    s = status;
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return s;
+    }
+
+    /**
+     * Waits interruptibly, for use by the Future methods.
+     */
+    private int awaitDoneInterruptibly(boolean timed, long nanos)
+            throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long deadline = timed ? System.nanoTime() + nanos : 0L;
+        int s;
+        while ((s = status) >= 0) {
+            long millis = 0L;
+            if (timed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    break;
+                }
+                millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remaining));
+            }
+            if (s == SIGNAL
+                    || unsafe.compareAndSwapInt(this, statusOffset, 0, SIGNAL)) {
+                synchronized (this) {
+                    if (status >= 0) {
+                        wait(millis);
+                    }
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Waits for completion. A pool worker keeps running other tasks
+     * while it waits.
+     */
+    private int doJoin() {
+        int s = status;
+        if (s < 0) {
+            return s;
+        }
+        Thread t = Thread.currentThread();
+        if (t instanceof ForkJoinWorkerThread) {
+            ForkJoinWorkerThread wt = (ForkJoinWorkerThread) t;
+            if (wt.workQueue.tryUnpush(this) && (s = doExec()) < 0) {
+                return s;
+            }
+            return wt.pool.awaitJoin(wt.workQueue, this);
+        }
+        return awaitDone(0L);
+    }
+
+    private int doInvoke() {
+        int s = doExec();
+        return s < 0 ? s : doJoin();
+    }
+
+    private V reportResult(int s) {
+        if (s == CANCELLED) {
+            throw new CancellationException();
+        }
+        if (s == EXCEPTIONAL) {
+            rethrow(thrown);
+        }
+        return getRawResult();
+    }
+
+    static void rethrow(Throwable ex) {
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        }
+        if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+        throw new RuntimeException(ex);
+    }
+
+    /**
+     * Arranges to asynchronously execute this task in the pool the
+     * current task is running in, or in the
+     * {@link ForkJoinPool#commonPool common pool} if the current thread
+     * is not a pool worker. A task should not be forked again until it
+     * has completed and been {@link #reinitialize reinitialized}.
+     *
+     * @return this task, to simplify usage
+     */
+    public final ForkJoinTask<V> fork() {
+        Thread t = Thread.currentThread();
+        if (t instanceof ForkJoinWorkerThread) {
+            ForkJoinWorkerThread wt = (ForkJoinWorkerThread) t;
+            wt.workQueue.push(this);
+            wt.pool.signalWork();
+        } else {
+            ForkJoinPool.commonPool().externalPush(this);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the result of the computation when it is done. Unlike
+     * {@link #get}, abnormal completion is reported by throwing the
+     * exception of the computation itself, or a
+     * <tt>CancellationException</tt>, and the wait is not interruptible.
+     *
+     * @return the computed result
+     */
+    public final V join() {
+        return reportResult(doJoin());
+    }
+
+    /**
+     * Runs this task in the current thread, waits for it if needed, and
+     * returns its result, reporting abnormal completion as
+     * {@link #join} does.
+     *
+     * @return the computed result
+     */
+    public final V invoke() {
+        return reportResult(doInvoke());
+    }
+
+    /**
+     * Forks <tt>t2</tt>, invokes <tt>t1</tt> and then joins <tt>t2</tt>.
+     * If either task completes abnormally, the other one may be
+     * cancelled and the first exception found is rethrown.
+     *
+     * @param t1 the first task
+     * @param t2 the second task
+     * @throws NullPointerException if either task is null
+     */
+    public static void invokeAll(ForkJoinTask<?> t1, ForkJoinTask<?> t2) {
+        t2.fork();
+        int s1 = t1.doInvoke();
+        if (s1 < NORMAL) {
+            t2.cancel(false);
+            t1.reportResult(s1);
+        }
+        int s2 = t2.doJoin();
+        if (s2 < NORMAL) {
+            t2.reportResult(s2);
+        }
+    }
+
+    /**
+     * Forks all given tasks but the first, invokes the first and joins
+     * the others. If any task completes abnormally, the remaining ones
+     * may be cancelled and the first exception found is rethrown.
+     *
+     * @param tasks the tasks
+     * @throws NullPointerException if any task is null
+     */
+    public static void invokeAll(ForkJoinTask<?>... tasks) {
+        Throwable ex = null;
+        int last = tasks.length - 1;
+        for (int i = last; i >= 0; --i) {
+            ForkJoinTask<?> t = tasks[i];
+            if (t == null) {
+                if (ex == null) {
+                    ex = new NullPointerException();
+                }
+            } else if (i != 0) {
+                t.fork();
+            } else if (t.doInvoke() < NORMAL && ex == null) {
+                ex = t.getException();
+            }
+        }
+        for (int i = 1; i <= last; ++i) {
+            ForkJoinTask<?> t = tasks[i];
+            if (t != null) {
+                if (ex != null) {
+                    t.cancel(false);
+                } else if (t.doJoin() < NORMAL) {
+                    ex = t.getException();
+                }
+            }
+        }
+        if (ex != null) {
+            rethrow(ex);
+        }
+    }
+
+    /**
+     * Forks all given tasks but the first, invokes the first and joins
+     * the others, as {@link #invokeAll(ForkJoinTask...)} does.
+     *
+     * @param tasks the tasks
+     * @return the given collection, to simplify usage
+     * @throws NullPointerException if the collection or any task is null
+     */
+    public static <T extends ForkJoinTask<?>> Collection<T> invokeAll(Collection<T> tasks) {
+        if (!(tasks instanceof RandomAccess) || !(tasks instanceof List)) {
+            invokeAll(tasks.toArray(new ForkJoinTask<?>[tasks.size()]));
+            return tasks;
+        }
+        @SuppressWarnings("unchecked")
+        List<? extends ForkJoinTask<?>> list = (List<? extends ForkJoinTask<?>>) tasks;
+        Throwable ex = null;
+        int last = list.size() - 1;
+        for (int i = last; i >= 0; --i) {
+            ForkJoinTask<?> t = list.get(i);
+            if (t == null) {
+                if (ex == null) {
+                    ex = new NullPointerException();
+                }
+            } else if (i != 0) {
+                t.fork();
+            } else if (t.doInvoke() < NORMAL && ex == null) {
+                ex = t.getException();
+            }
+        }
+        for (int i = 1; i <= last; ++i) {
+            ForkJoinTask<?> t = list.get(i);
+            if (t != null) {
+                if (ex != null) {
+                    t.cancel(false);
+                } else if (t.doJoin() < NORMAL) {
+                    ex = t.getException();
+                }
+            }
+        }
+        if (ex != null) {
+            rethrow(ex);
+        }
+        return tasks;
+    }
+
+    /**
+     * Attempts to cancel execution of this task. This fails if the task
+     * has already completed; once cancelled, the task is not run and
+     * joining it throws a <tt>CancellationException</tt>.
+     *
+     * @param mayInterruptIfRunning ignored, since a task is not bound to
+     *        the thread running it
+     * @return true if this task is now cancelled
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return setCompletion(CANCELLED) == CANCELLED;
+    }
+
+    public final boolean isDone() {
+        return status < 0;
+    }
+
+    public final boolean isCancelled() {
+        return status == CANCELLED;
+    }
+
+    /**
+     * Returns true if this task threw an exception or was cancelled.
+     *
+     * @return true if this task completed abnormally
+     */
+    public final boolean isCompletedAbnormally() {
+        return status < NORMAL;
+    }
+
+    /**
+     * Returns true if this task completed without throwing an exception
+     * and was not cancelled.
+     *
+     * @return true if this task completed normally
+     */
+    public final boolean isCompletedNormally() {
+        return status == NORMAL;
+    }
+
+    /**
+     * Returns the exception thrown by the computation, a
+     * <tt>CancellationException</tt> if the task was cancelled, or null
+     * if the task has not completed abnormally.
+     *
+     * @return the exception, or null if none
+     */
+    public final Throwable getException() {
+        int s = status;
+        if (s == CANCELLED) {
+            return new CancellationException();
+        }
+        return s == EXCEPTIONAL ? thrown : null;
+    }
+
+    /**
+     * Completes this task abnormally with the given exception, unless it
+     * is already done.
+     *
+     * @param ex the exception to report; wrapped in a
+     *        <tt>RuntimeException</tt> when joined if it is checked
+     */
+    public void completeExceptionally(Throwable ex) {
+        setExceptionalCompletion(ex);
+    }
+
+    /**
+     * Completes this task with the given result, unless it is already
+     * done.
+     *
+     * @param value the result value for this task
+     */
+    public void complete(V value) {
+        try {
+            setRawResult(value);
+        } catch (Throwable rex) {
+            setExceptionalCompletion(rex);
+            return;
+        }
+        setCompletion(NORMAL);
+    }
+
+    /**
+     * @throws CancellationException if the computation was cancelled
+     * @throws ExecutionException if the computation threw an exception
+     * @throws InterruptedException if the current thread was interrupted
+     *         while waiting
+     */
+    public final V get() throws InterruptedException, ExecutionException {
+        int s = Thread.currentThread() instanceof ForkJoinWorkerThread
+                ? doJoin() : awaitDoneInterruptibly(false, 0L);
+        return reportFutureResult(s);
+    }
+
+    /**
+     * @throws CancellationException if the computation was cancelled
+     * @throws ExecutionException if the computation threw an exception
+     * @throws InterruptedException if the current thread was interrupted
+     *         while waiting
+     * @throws TimeoutException if the wait timed out
+     */
+    public final V get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        int s = awaitDoneInterruptibly(true, unit.toNanos(timeout));
+        if (s >= 0) {
+            throw new TimeoutException();
+        }
+        return reportFutureResult(s);
+    }
+
+    private V reportFutureResult(int s) throws ExecutionException {
+        if (s == CANCELLED) {
+            throw new CancellationException();
+        }
+        if (s == EXCEPTIONAL) {
+            throw new ExecutionException(thrown);
+        }
+        return getRawResult();
+    }
+
+    /**
+     * Joins this task without returning its result or throwing its
+     * exception.
+     */
+    public final void quietlyJoin() {
+        doJoin();
+    }
+
+    /**
+     * Invokes this task without returning its result or throwing its
+     * exception.
+     */
+    public final void quietlyInvoke() {
+        doInvoke();
+    }
+
+    /**
+     * Resets the state of this task so that it may be forked again. The
+     * result of the previous run is kept until the task completes again.
+     * This must not be called while the task may still be executing.
+     */
+    public void reinitialize() {
+        thrown = null;
+        status = 0;
+    }
+
+    /**
+     * Tries to take this task back out of the current worker's queue, in
+     * which case it will not run unless forked again. This only succeeds
+     * if the task was the one most recently forked by the current worker
+     * and has not been started or stolen since.
+     *
+     * @return true if the task was removed
+     */
+    public boolean tryUnfork() {
+        Thread t = Thread.currentThread();
+        return t instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) t).workQueue.tryUnpush(this);
+    }
+
+    /**
+     * Returns the pool hosting the current task, or null if the current
+     * thread is not a pool worker.
+     *
+     * @return the pool, or null if none
+     */
+    public static ForkJoinPool getPool() {
+        Thread t = Thread.currentThread();
+        return t instanceof ForkJoinWorkerThread
+                ? ((ForkJoinWorkerThread) t).pool : null;
+    }
+
+    /**
+     * Returns true if the current thread is a pool worker.
+     *
+     * @return true if the current thread is a {@link ForkJoinWorkerThread}
+     */
+    public static boolean inForkJoinPool() {
+        return Thread.currentThread() instanceof ForkJoinWorkerThread;
+    }
+
+    /**
+     * Runs queued tasks, the current worker's own first, until none can
+     * be found. Does nothing if the current thread is not a pool worker.
+     */
+    public static void helpQuiesce() {
+        Thread t = Thread.currentThread();
+        if (t instanceof ForkJoinWorkerThread) {
+            ForkJoinWorkerThread wt = (ForkJoinWorkerThread) t;
+            wt.pool.helpQuiesce(wt.workQueue);
+        }
+    }
+
+    /**
+     * Returns an estimate of the number of tasks forked by the current
+     * worker that have not yet been run or stolen.
+     *
+     * @return the number of tasks, or 0 if the current thread is not a
+     *         pool worker
+     */
+    public static int getQueuedTaskCount() {
+        Thread t = Thread.currentThread();
+        return t instanceof ForkJoinWorkerThread
+                ? ((ForkJoinWorkerThread) t).workQueue.queueSize() : 0;
+    }
+
+    /**
+     * Returns the result that would be returned by {@link #join}, even if
+     * this task completed abnormally, or null if it is not known to be
+     * done.
+     *
+     * @return the result, or null if not completed
+     */
+    public abstract V getRawResult();
+
+    /**
+     * Forces the given value to be returned as a result.
+     *
+     * @param value the value
+     */
+    protected abstract void setRawResult(V value);
+
+    /**
+     * Immediately performs the base action of this task.
+     *
+     * @return true if this task is known to have completed normally
+     */
+    protected abstract boolean exec();
+
+    /**
+     * Returns a new task running the given runnable and with a null
+     * result.
+     *
+     * @param runnable the runnable action
+     * @return the task
+     */
+    public static ForkJoinTask<?> adapt(Runnable runnable) {
+        return new AdaptedRunnable<Object>(runnable, null);
+    }
+
+    /**
+     * Returns a new task running the given runnable and with the given
+     * result.
+     *
+     * @param runnable the runnable action
+     * @param result the result upon completion
+     * @return the task
+     */
+    public static <T> ForkJoinTask<T> adapt(Runnable runnable, T result) {
+        return new AdaptedRunnable<T>(runnable, result);
+    }
+
+    /**
+     * Returns a new task running the given callable and with its result.
+     * Checked exceptions of the callable are reported wrapped in a
+     * <tt>RuntimeException</tt>.
+     *
+     * @param callable the callable action
+     * @return the task
+     */
+    public static <T> ForkJoinTask<T> adapt(Callable<? extends T> callable) {
+        return new AdaptedCallable<T>(callable);
+    }
+
+    static final class AdaptedRunnable<T> extends ForkJoinTask<T>
+            implements Runnable {
+
+        private static final long serialVersionUID = 5232453952276885070L;
+
+        final Runnable runnable;
+
+        T result;
+
+        AdaptedRunnable(Runnable runnable, T result) {
+            if (runnable == null) {
+                throw new NullPointerException();
+            }
+            this.runnable = runnable;
+            this.result = result;
+        }
+
+        @Override
+        public T getRawResult() {
+            return result;
+        }
+
+        @Override
+        protected void setRawResult(T value) {
+            result = value;
+        }
+
+        @Override
+        protected boolean exec() {
+            runnable.run();
+            return true;
+        }
+
+        public void run() {
+            invoke();
+        }
+    }
+
+    static final class AdaptedCallable<T> extends ForkJoinTask<T>
+            implements Runnable {
+
+        private static final long serialVersionUID = 2838392045355241008L;
+
+        final Callable<? extends T> callable;
+
+        T result;
+
+        AdaptedCallable(Callable<? extends T> callable) {
+            if (callable == null) {
+                throw new NullPointerException();
+            }
+            this.callable = callable;
+        }
+
+        @Override
+        public T getRawResult() {
+            return result;
+        }
+
+        @Override
+        protected void setRawResult(T value) {
+            result = value;
+        }
+
+        @Override
+        protected boolean exec() {
+            try {
+                result = callable.call();
+                return true;
+            } catch (Error err) {
+                throw err;
+            } catch (RuntimeException rex) {
+                throw rex;
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        public void run() {
+            invoke();
+        }
+    }
+
+    private static final Unsafe unsafe = Unsafe.getUnsafe();
+    private static final long statusOffset;
+
+    static {
+        try {
+            statusOffset = unsafe.objectFieldOffset
+                (ForkJoinTask.class.getDeclaredField("status"));
+        } catch (Exception ex) { throw new Error(ex); }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.util.concurrent;
+
+/**
+ * A thread managed by a {@link ForkJoinPool}, which executes
+ * {@link ForkJoinTask}s. Each worker owns a double-ended queue: tasks
+ * it forks are pushed onto it and, unless the pool is in asynchronous
+ * mode, taken back in last-in first-out order, while idle workers steal
+ * the oldest tasks from the other end.
+ *
+ * <p>This class is subclassable solely to add functionality, through
+ * {@link #onStart} and {@link #onTermination}. Instances are created by
+ * the pool's {@link ForkJoinPool.ForkJoinWorkerThreadFactory}.
+ */
+public class ForkJoinWorkerThread extends Thread {
+
+    final ForkJoinPool pool;
+
+    final ForkJoinPool.WorkQueue workQueue;
+
+    /**
+     * Creates a ForkJoinWorkerThread operating in the given pool.
+     *
+     * @param pool the pool this thread works in
+     * @throws NullPointerException if pool is null
+     */
+    protected ForkJoinWorkerThread(ForkJoinPool pool) {
+        super(pool.nextWorkerName());
+        setDaemon(true);
+        this.pool = pool;
+        this.workQueue = pool.registerWorker(this);
+    }
+
+    /**
+     * Returns the pool hosting this thread.
+     *
+     * @return the pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the index of this thread among the pool's workers, in the
+     * range from 0 up to the number of workers ever created.
+     *
+     * @return the index number
+     */
+    public int getPoolIndex() {
+        return workQueue.index - 1;
+    }
+
+    /**
+     * Initializes internal state after construction but before
+     * processing any tasks. Overrides must call
+     * <tt>super.onStart()</tt> first.
+     */
+    protected void onStart() {
+    }
+
+    /**
+     * Performs cleanup associated with termination of this worker
+     * thread. Overrides must call <tt>super.onTermination</tt> last.
+     *
+     * @param exception the exception causing this thread to abort due
+     *        to an unrecoverable error, or null if completed normally
+     */
+    protected void onTermination(Throwable exception) {
+    }
+
+    /**
+     * Runs tasks until the pool shuts down. This method is required to
+     * be public, but should never be called explicitly.
+     */
+    @Override
+    public void run() {
+        Throwable exception = null;
+        try {
+            onStart();
+            pool.runWorker(workQueue);
+        } catch (Throwable ex) {
+            exception = ex;
+        } finally {
+            try {
+                onTermination(exception);
+            } catch (Throwable ex) {
+                if (exception == null) {
+                    exception = ex;
+                }
+            } finally {
+                pool.deregisterWorker(this, exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.util.concurrent;
+
+/**
+ * A recursive resultless {@link ForkJoinTask}. For example, sorting a
+ * long array in parallel:
+ *
+ * <pre>
+ * class SortTask extends RecursiveAction {
+ *   final long[] array; final int lo, hi;
+ *   SortTask(long[] array, int lo, int hi) {
+ *     this.array = array; this.lo = lo; this.hi = hi;
+ *   }
+ *   protected void compute() {
+ *     if (hi - lo &lt; THRESHOLD)
+ *       Arrays.sort(array, lo, hi);
+ *     else {
+ *       int mid = (lo + hi) &gt;&gt;&gt; 1;
+ *       invokeAll(new SortTask(array, lo, mid),
+ *                 new SortTask(array, mid, hi));
+ *       merge(lo, mid, hi);
+ *     }
+ *   }
+ * }
+ * </pre>
+ */
+public abstract class RecursiveAction extends ForkJoinTask<Void> {
+
+    private static final long serialVersionUID = 5232453952276485070L;
+
+    /**
+     * The main computation performed by this task.
+     */
+    protected abstract void compute();
+
+    /**
+     * Always returns null.
+     *
+     * @return null always
+     */
+    @Override
+    public final Void getRawResult() {
+        return null;
+    }
+
+    /**
+     * Requires null completion value.
+     */
+    @Override
+    protected final void setRawResult(Void mustBeNull) {
+    }
+
+    /**
+     * Implements execution conventions for RecursiveAction.
+     */
+    @Override
+    protected final boolean exec() {
+        compute();
+        return true;
+    }
+}
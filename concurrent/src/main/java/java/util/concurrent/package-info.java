@@ -81,6 +81,12 @@
  * for producer-consumer, messaging, parallel tasking, and
  * related concurrent designs.
  *
+ * <p>Extended interface {@link java.util.concurrent.TransferQueue},
+ * and implementation {@link java.util.concurrent.LinkedTransferQueue}
+ * introduce a synchronous {@code transfer} method (along with related
+ * features) in which a producer may optionally block awaiting its
+ * consumer.
+ *
  * <h2>Timing</h2>
  *
  * The {@link java.util.concurrent.TimeUnit} class provides
@@ -101,7 +107,7 @@
  *
  * <h2>Synchronizers</h2>
  *
- * Four classes aid common special-purpose synchronization idioms.
+ * Five classes aid common special-purpose synchronization idioms.
  * {@link java.util.concurrent.Semaphore} is a classic concurrency tool.
  * {@link java.util.concurrent.CountDownLatch} is a very simple yet very
  * common utility for blocking until a given number of signals, events,
@@ -109,7 +115,10 @@
  * resettable multiway synchronization point useful in some styles of
  * parallel programming.  An {@link java.util.concurrent.Exchanger} allows
  * two threads to exchange objects at a rendezvous point, and is useful
- * in several pipeline designs.
+ * in several pipeline designs.  A {@link java.util.concurrent.Phaser}
+ * provides a more flexible form of barrier that may be used to control
+ * phased computation among multiple threads, with a number of parties
+ * that may change from one phase to the next.
  *
  * <h2>Concurrent Collections</h2>
  *
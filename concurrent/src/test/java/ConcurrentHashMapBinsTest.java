@@ -0,0 +1,53 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs the ConcurrentHashMap tests against maps backed by a bin table,
+ * whatever the org.apache.harmony.concurrent.hashmap.bins property.
+ */
+public class ConcurrentHashMapBinsTest extends ConcurrentHashMapTest {
+    public static void main(String[] args) {
+	junit.textui.TestRunner.run (suite());	
+    }
+    public static Test suite() {
+	return new TestSuite(ConcurrentHashMapBinsTest.class);
+    }
+
+    ConcurrentHashMap newMap(int initialCapacity, float loadFactor,
+                             int concurrencyLevel) {
+        try {
+            Constructor c = ConcurrentHashMap.class.getDeclaredConstructor
+                (new Class[] { int.class, float.class, int.class, boolean.class });
+            c.setAccessible(true);
+            return (ConcurrentHashMap)c.newInstance
+                (new Object[] { new Integer(initialCapacity), new Float(loadFactor),
+                                new Integer(concurrencyLevel), Boolean.TRUE });
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException)e.getCause();
+            throw new Error(e.getCause());
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * The maps under test are backed by a bin table
+     */
+    public void testUsesBins() throws Exception {
+        Field bins = ConcurrentHashMap.class.getDeclaredField("bins");
+        Field segments = ConcurrentHashMap.class.getDeclaredField("segments");
+        bins.setAccessible(true);
+        segments.setAccessible(true);
+        ConcurrentHashMap map = map5();
+        assertNotNull(bins.get(map));
+        assertNull(segments.get(map));
+    }
+}
@@ -20,11 +20,29 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
 	return new TestSuite(ConcurrentHashMapTest.class);
     }
 
+    /**
+     * Create the map under test; ConcurrentHashMapBinsTest overrides
+     * this to run the same tests against the bin table.
+     */
+    ConcurrentHashMap newMap(int initialCapacity, float loadFactor,
+                             int concurrencyLevel) {
+        return new ConcurrentHashMap(initialCapacity, loadFactor,
+                                     concurrencyLevel);
+    }
+
+    ConcurrentHashMap newMap(int initialCapacity) {
+        return newMap(initialCapacity, 0.75f, 16);
+    }
+
+    ConcurrentHashMap newMap() {
+        return newMap(16);
+    }
+
     /**
      * Create a map from Integers 1-5 to Strings "A"-"E".
      */
-    private static ConcurrentHashMap map5() {   
-	ConcurrentHashMap map = new ConcurrentHashMap(5);
+    ConcurrentHashMap map5() {
+	ConcurrentHashMap map = newMap(5);
         assertTrue(map.isEmpty());
 	map.put(one, "A");
 	map.put(two, "B");
@@ -107,7 +125,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
     public void testGet() {
         ConcurrentHashMap map = map5();
 	assertEquals("A", (String)map.get(one));
-        ConcurrentHashMap empty = new ConcurrentHashMap();
+        ConcurrentHashMap empty = newMap();
         assertNull(map.get("anything"));
     }
 
@@ -115,7 +133,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      *  isEmpty is true of empty map and false for non-empty
      */
     public void testIsEmpty() {
-        ConcurrentHashMap empty = new ConcurrentHashMap();
+        ConcurrentHashMap empty = newMap();
         ConcurrentHashMap map = map5();
 	assertTrue(empty.isEmpty());
         assertFalse(map.isEmpty());
@@ -229,7 +247,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      *   putAll  adds all key-value pairs from the given map
      */
     public void testPutAll() {
-        ConcurrentHashMap empty = new ConcurrentHashMap();
+        ConcurrentHashMap empty = newMap();
         ConcurrentHashMap map = map5();
 	empty.putAll(map);
 	assertEquals(5, empty.size());
@@ -326,7 +344,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testSize() {
         ConcurrentHashMap map = map5();
-        ConcurrentHashMap empty = new ConcurrentHashMap();
+        ConcurrentHashMap empty = newMap();
 	assertEquals(0, empty.size());
 	assertEquals(5, map.size());
     }
@@ -349,7 +367,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testConstructor1() {
         try {
-            new ConcurrentHashMap(-1,0,1);
+            newMap(-1,0,1);
             shouldThrow();
         } catch(IllegalArgumentException e){}
     }
@@ -359,7 +377,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testConstructor2() {
         try {
-            new ConcurrentHashMap(1,0,-1);
+            newMap(1,0,-1);
             shouldThrow();
         } catch(IllegalArgumentException e){}
     }
@@ -369,7 +387,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testConstructor3() {
         try {
-            new ConcurrentHashMap(-1);
+            newMap(-1);
             shouldThrow();
         } catch(IllegalArgumentException e){}
     }
@@ -379,7 +397,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testGet_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.get(null);
             shouldThrow();
         } catch(NullPointerException e){}
@@ -390,7 +408,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testContainsKey_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.containsKey(null);
             shouldThrow();
         } catch(NullPointerException e){}
@@ -401,7 +419,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testContainsValue_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.containsValue(null);
             shouldThrow();
         } catch(NullPointerException e){}
@@ -412,7 +430,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testContains_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.contains(null);
             shouldThrow();
         } catch(NullPointerException e){}
@@ -423,7 +441,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testPut1_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.put(null, "whatever");
             shouldThrow();
         } catch(NullPointerException e){}
@@ -434,7 +452,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testPut2_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.put("whatever", null);
             shouldThrow();
         } catch(NullPointerException e){}
@@ -445,7 +463,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testPutIfAbsent1_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.putIfAbsent(null, "whatever");
             shouldThrow();
         } catch(NullPointerException e){}
@@ -456,7 +474,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testReplace_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.replace(null, "whatever");
             shouldThrow();
         } catch(NullPointerException e){}
@@ -467,7 +485,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testReplaceValue_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.replace(null, one, "whatever");
             shouldThrow();
         } catch(NullPointerException e){}
@@ -478,7 +496,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testPutIfAbsent2_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.putIfAbsent("whatever", null);
             shouldThrow();
         } catch(NullPointerException e){}
@@ -490,7 +508,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testReplace2_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.replace("whatever", null);
             shouldThrow();
         } catch(NullPointerException e){}
@@ -501,7 +519,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testReplaceValue2_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.replace("whatever", null, "A");
             shouldThrow();
         } catch(NullPointerException e){}
@@ -512,7 +530,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testReplaceValue3_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.replace("whatever", one, null);
             shouldThrow();
         } catch(NullPointerException e){}
@@ -524,7 +542,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testRemove1_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.put("sadsdf", "asdads");
             c.remove(null);
             shouldThrow();
@@ -536,7 +554,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testRemove2_NullPointerException() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.put("sadsdf", "asdads");
             c.remove(null, "whatever");
             shouldThrow();
@@ -548,7 +566,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testRemove3() {
         try {
-            ConcurrentHashMap c = new ConcurrentHashMap(5);
+            ConcurrentHashMap c = newMap(5);
             c.put("sadsdf", "asdads");
             assertFalse(c.remove("sadsdf", null));
         } catch(NullPointerException e){
@@ -586,7 +604,7 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
      */
     public void testSetValueWriteThrough() {
         // Adapted from a bug report by Eric Zoerner 
-        ConcurrentHashMap map = new ConcurrentHashMap(2, 5.0f, 1);
+        ConcurrentHashMap map = newMap(2, 5.0f, 1);
         assertTrue(map.isEmpty());
         for (int i = 0; i < 20; i++)
             map.put(new Integer(i), new Integer(i));
@@ -604,4 +622,134 @@ public class ConcurrentHashMapTest extends JSR166TestCase{
         assertTrue(map.containsValue("XYZ")); // fails
     }
     
+    /**
+     * A key whose hash code only depends on a bucket number, so that
+     * many keys collide; comparable keys are ordered by id.
+     */
+    static class CollidingKey implements Comparable<CollidingKey>, Serializable {
+        final int bucket;
+        final int id;
+        CollidingKey(int bucket, int id) { this.bucket = bucket; this.id = id; }
+        public int hashCode() { return bucket; }
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey &&
+                ((CollidingKey)o).bucket == bucket && ((CollidingKey)o).id == id;
+        }
+        public int compareTo(CollidingKey other) {
+            return id < other.id ? -1 : id > other.id ? 1 : 0;
+        }
+    }
+
+    /**
+     * A colliding key that is not comparable.
+     */
+    static class PlainCollidingKey implements Serializable {
+        final int id;
+        PlainCollidingKey(int id) { this.id = id; }
+        public int hashCode() { return 42; }
+        public boolean equals(Object o) {
+            return o instanceof PlainCollidingKey && ((PlainCollidingKey)o).id == id;
+        }
+    }
+
+    /**
+     * Keys with equal hash codes can all be added, found and removed
+     */
+    public void testCollidingKeys() {
+        ConcurrentHashMap map = newMap();
+        for (int i = 0; i < 200; i++) {
+            assertNull(map.put(new CollidingKey(i % 2, i), new Integer(i)));
+            assertNull(map.put(new PlainCollidingKey(i), new Integer(i)));
+        }
+        assertEquals(400, map.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(new Integer(i), map.get(new CollidingKey(i % 2, i)));
+            assertEquals(new Integer(i), map.get(new PlainCollidingKey(i)));
+        }
+        assertNull(map.get(new CollidingKey(0, 1)));
+        assertNull(map.get(new PlainCollidingKey(200)));
+        assertTrue(map.containsValue(new Integer(199)));
+        for (int i = 0; i < 200; i += 2) {
+            assertEquals(new Integer(i), map.remove(new CollidingKey(i % 2, i)));
+            assertTrue(map.remove(new PlainCollidingKey(i), new Integer(i)));
+        }
+        assertEquals(200, map.size());
+        for (int i = 0; i < 200; i++) {
+            Integer expected = (i % 2 == 0) ? null : new Integer(i);
+            assertEquals(expected, map.get(new CollidingKey(i % 2, i)));
+            assertEquals(expected, map.get(new PlainCollidingKey(i)));
+        }
+        int n = 0;
+        for (Iterator it = map.keySet().iterator(); it.hasNext(); ) {
+            it.next();
+            it.remove();
+            n++;
+        }
+        assertEquals(200, n);
+        assertTrue(map.isEmpty());
+    }
+
+    /**
+     * Concurrent puts of disjoint keys into a small map are all kept
+     * while the table grows
+     */
+    public void testConcurrentPutsWhileGrowing() {
+        final ConcurrentHashMap map = newMap(1);
+        final int nThreads = 4;
+        final int perThread = 20000;
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            final int base = t * perThread;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = base; i < base + perThread; i++) {
+                        map.put(new Integer(i), new Integer(i));
+                        if (!map.containsKey(new Integer(base)))
+                            threadFail("key lost during resize");
+                    }
+                }
+            });
+        }
+        try {
+            for (int t = 0; t < nThreads; t++)
+                threads[t].start();
+            for (int t = 0; t < nThreads; t++)
+                threads[t].join(LONG_DELAY_MS);
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertEquals(nThreads * perThread, map.size());
+        for (int i = 0; i < nThreads * perThread; i++)
+            assertEquals(new Integer(i), map.get(new Integer(i)));
+        assertEquals(nThreads * perThread, new HashSet(map.keySet()).size());
+    }
+
+    /**
+     * A map with colliding keys is serialized and deserialized
+     */
+    public void testSerializationCollidingKeys() {
+        ConcurrentHashMap q = newMap();
+        for (int i = 0; i < 100; i++) {
+            q.put(new CollidingKey(7, i), new Integer(i));
+            q.put(new PlainCollidingKey(i), new Integer(i));
+        }
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(10000);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(bout));
+            out.writeObject(q);
+            out.close();
+
+            ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(bin));
+            ConcurrentHashMap r = (ConcurrentHashMap)in.readObject();
+            assertEquals(200, r.size());
+            assertTrue(q.equals(r));
+            assertTrue(r.equals(q));
+            r.put(new CollidingKey(7, 100), new Integer(100));
+            assertEquals(201, r.size());
+        } catch(Exception e){
+            e.printStackTrace();
+            unexpectedException();
+        }
+    }
 }
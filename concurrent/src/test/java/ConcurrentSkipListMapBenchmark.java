@@ -0,0 +1,138 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares ConcurrentSkipListMap with a synchronized TreeMap under a mix
+ * of puts, removes, gets and short range scans from several threads. It
+ * is not part of the test suite; run it by hand:
+ *
+ * <pre>
+ * java ConcurrentSkipListMapBenchmark [threads [operations per thread]]
+ * </pre>
+ */
+public class ConcurrentSkipListMapBenchmark {
+
+    private static final int KEY_RANGE = 1 << 16;
+
+    private static final int SCAN_LENGTH = 32;
+
+    /** Keeps the results alive so the work is not optimized away. */
+    static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        int ops = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        // warm up both maps before measuring
+        run(new ConcurrentSkipListMap<Integer, Integer>(), 2, ops);
+        run(synchronizedTreeMap(), 2, ops);
+
+        System.out.println("threads  skiplist ms  synchronized TreeMap ms");
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            long skipList = run(new ConcurrentSkipListMap<Integer, Integer>(),
+                    threads, ops);
+            long treeMap = run(synchronizedTreeMap(), threads, ops);
+            System.out.println(threads + "\t " + skipList + "\t      " + treeMap);
+        }
+    }
+
+    private static SortedMap<Integer, Integer> synchronizedTreeMap() {
+        return Collections.synchronizedSortedMap(new TreeMap<Integer, Integer>());
+    }
+
+    /**
+     * Runs the operation mix on the map and returns the elapsed time in
+     * milliseconds.
+     */
+    private static long run(final SortedMap<Integer, Integer> map,
+            int threads, final int ops) throws InterruptedException {
+        for (int i = 0; i < KEY_RANGE; i += 2) {
+            map.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t) {
+            final long seed = 17L * t + 1;
+            new Thread() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long sum = 0;
+                    for (int i = 0; i < ops; ++i) {
+                        Integer key = Integer.valueOf(random.nextInt(KEY_RANGE));
+                        int op = random.nextInt(10);
+                        if (op == 0) {
+                            map.put(key, key);
+                        } else if (op == 1) {
+                            map.remove(key);
+                        } else if (op < 8) {
+                            Integer v = map.get(key);
+                            if (v != null) {
+                                sum += v.intValue();
+                            }
+                        } else {
+                            sum += scan(map, key);
+                        }
+                    }
+                    sink = sum;
+                    done.countDown();
+                }
+            }.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long scan(SortedMap<Integer, Integer> map, Integer from) {
+        SortedMap<Integer, Integer> tail = map.tailMap(from);
+        long sum;
+        if (map instanceof ConcurrentSkipListMap<?, ?>) {
+            sum = sum(tail);
+        } else {
+            // the synchronized wrapper requires iteration under its lock
+            synchronized (map) {
+                sum = sum(tail);
+            }
+        }
+        return sum;
+    }
+
+    private static long sum(SortedMap<Integer, Integer> tail) {
+        long sum = 0;
+        Iterator<Integer> it = tail.values().iterator();
+        for (int n = 0; n < SCAN_LENGTH && it.hasNext(); ++n) {
+            sum += it.next().intValue();
+        }
+        return sum;
+    }
+}
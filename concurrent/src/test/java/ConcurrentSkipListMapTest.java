@@ -0,0 +1,431 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+public class ConcurrentSkipListMapTest extends JSR166TestCase {
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(ConcurrentSkipListMapTest.class);
+    }
+
+    /**
+     * Create a map from Integers 1-5 to Strings "A"-"E".
+     */
+    private static ConcurrentSkipListMap map5() {
+        ConcurrentSkipListMap map = new ConcurrentSkipListMap();
+        assertTrue(map.isEmpty());
+        map.put(one, "A");
+        map.put(five, "E");
+        map.put(three, "C");
+        map.put(two, "B");
+        map.put(four, "D");
+        assertFalse(map.isEmpty());
+        assertEquals(5, map.size());
+        return map;
+    }
+
+    /**
+     * clear removes all pairs
+     */
+    public void testClear() {
+        ConcurrentSkipListMap map = map5();
+        map.clear();
+        assertEquals(0, map.size());
+        assertTrue(map.isEmpty());
+    }
+
+    /**
+     * Maps with same contents are equal
+     */
+    public void testEquals() {
+        ConcurrentSkipListMap map1 = map5();
+        ConcurrentSkipListMap map2 = map5();
+        assertEquals(map1, map2);
+        assertEquals(map2, map1);
+        map1.clear();
+        assertFalse(map1.equals(map2));
+        assertFalse(map2.equals(map1));
+    }
+
+    /**
+     * containsKey returns true for contained key
+     */
+    public void testContainsKey() {
+        ConcurrentSkipListMap map = map5();
+        assertTrue(map.containsKey(one));
+        assertFalse(map.containsKey(zero));
+    }
+
+    /**
+     * containsValue returns true for held values
+     */
+    public void testContainsValue() {
+        ConcurrentSkipListMap map = map5();
+        assertTrue(map.containsValue("A"));
+        assertFalse(map.containsValue("Z"));
+    }
+
+    /**
+     * get returns the correct element at the given key,
+     * or null if not present
+     */
+    public void testGet() {
+        ConcurrentSkipListMap map = map5();
+        assertEquals("A", (String)map.get(one));
+        assertNull(map.get(six));
+    }
+
+    /**
+     * firstKey and lastKey return the least and greatest keys
+     */
+    public void testFirstLastKey() {
+        ConcurrentSkipListMap map = map5();
+        assertEquals(one, map.firstKey());
+        assertEquals(five, map.lastKey());
+        try {
+            new ConcurrentSkipListMap().firstKey();
+            shouldThrow();
+        } catch (NoSuchElementException success) {}
+    }
+
+    /**
+     * keySet and values iterate in ascending key order
+     */
+    public void testKeySetValuesOrder() {
+        ConcurrentSkipListMap map = map5();
+        Iterator i = map.keySet().iterator();
+        assertEquals(one, i.next());
+        assertEquals(two, i.next());
+        assertEquals(three, i.next());
+        assertEquals(four, i.next());
+        assertEquals(five, i.next());
+        assertFalse(i.hasNext());
+        Iterator v = map.values().iterator();
+        assertEquals("A", v.next());
+        assertEquals("B", v.next());
+        assertEquals("C", v.next());
+        assertEquals("D", v.next());
+        assertEquals("E", v.next());
+        assertFalse(v.hasNext());
+    }
+
+    /**
+     * entrySet contains all pairs, and its entries are immutable
+     */
+    public void testEntrySet() {
+        ConcurrentSkipListMap map = map5();
+        Set s = map.entrySet();
+        assertEquals(5, s.size());
+        Iterator it = s.iterator();
+        Map.Entry e = (Map.Entry) it.next();
+        assertEquals(one, e.getKey());
+        assertEquals("A", e.getValue());
+        try {
+            e.setValue("Z");
+            shouldThrow();
+        } catch (UnsupportedOperationException success) {}
+    }
+
+    /**
+     * iterator.remove removes the current element
+     */
+    public void testIteratorRemove() {
+        ConcurrentSkipListMap map = map5();
+        Iterator it = map.keySet().iterator();
+        it.next();
+        it.remove();
+        assertEquals(4, map.size());
+        assertEquals(two, map.firstKey());
+        try {
+            it.remove();
+            shouldThrow();
+        } catch (IllegalStateException success) {}
+    }
+
+    /**
+     * Iterators do not fail on concurrent modification
+     */
+    public void testWeaklyConsistentIteration() {
+        ConcurrentSkipListMap map = map5();
+        int count = 0;
+        for (Iterator it = map.keySet().iterator(); it.hasNext(); ) {
+            Integer k = (Integer) it.next();
+            map.remove(k);
+            if (k.intValue() < 10) {
+                map.put(new Integer(k.intValue() + 10), "X");
+            }
+            ++count;
+        }
+        assertEquals(10, count);
+        assertEquals(0, map.size());
+    }
+
+    /**
+     * putIfAbsent works when the given key is not present
+     */
+    public void testPutIfAbsent() {
+        ConcurrentSkipListMap map = map5();
+        assertNull(map.putIfAbsent(six, "Z"));
+        assertTrue(map.containsKey(six));
+        assertEquals("A", map.putIfAbsent(one, "Z"));
+        assertEquals("A", map.get(one));
+    }
+
+    /**
+     * replace succeeds only if the key, or key and value, are present
+     */
+    public void testReplace() {
+        ConcurrentSkipListMap map = map5();
+        assertNull(map.replace(six, "Z"));
+        assertFalse(map.containsKey(six));
+        assertEquals("A", map.replace(one, "Z"));
+        assertFalse(map.replace(one, "A", "B"));
+        assertTrue(map.replace(one, "Z", "A"));
+        assertEquals("A", map.get(one));
+    }
+
+    /**
+     * remove(key, value) removes only if pair present
+     */
+    public void testRemove() {
+        ConcurrentSkipListMap map = map5();
+        assertEquals("E", map.remove(five));
+        assertEquals(4, map.size());
+        assertFalse(map.containsKey(five));
+        assertFalse(map.remove(four, "A"));
+        assertTrue(map.remove(four, "D"));
+        assertEquals(3, map.size());
+    }
+
+    /**
+     * lowerKey, floorKey, ceilingKey and higherKey find the closest keys
+     */
+    public void testNearKeys() {
+        ConcurrentSkipListMap map = map5();
+        map.remove(three);
+        assertEquals(two, map.lowerKey(three));
+        assertEquals(two, map.floorKey(three));
+        assertEquals(four, map.ceilingKey(three));
+        assertEquals(four, map.higherKey(three));
+        assertEquals(four, map.floorKey(four));
+        assertEquals(four, map.ceilingKey(four));
+        assertNull(map.lowerKey(one));
+        assertNull(map.higherKey(five));
+        assertEquals(five, map.lowerKey(six));
+        assertEquals(one, map.ceilingKey(zero));
+        Map.Entry e = map.floorEntry(three);
+        assertEquals(two, e.getKey());
+        assertEquals("B", e.getValue());
+    }
+
+    /**
+     * pollFirstEntry and pollLastEntry remove the least and greatest
+     * mappings
+     */
+    public void testPollEntries() {
+        ConcurrentSkipListMap map = map5();
+        Map.Entry e = map.pollFirstEntry();
+        assertEquals(one, e.getKey());
+        assertEquals("A", e.getValue());
+        e = map.pollLastEntry();
+        assertEquals(five, e.getKey());
+        assertEquals("E", e.getValue());
+        assertEquals(3, map.size());
+        assertEquals(two, map.firstEntry().getKey());
+        assertEquals(four, map.lastEntry().getKey());
+        map.clear();
+        assertNull(map.pollFirstEntry());
+        assertNull(map.pollLastEntry());
+    }
+
+    /**
+     * subMap contains only the keys in its half-open range and
+     * rejects puts outside of it
+     */
+    public void testSubMap() {
+        ConcurrentSkipListMap map = map5();
+        SortedMap sm = map.subMap(two, four);
+        assertEquals(two, sm.firstKey());
+        assertEquals(three, sm.lastKey());
+        assertEquals(2, sm.size());
+        assertFalse(sm.containsKey(one));
+        assertFalse(sm.containsKey(four));
+        Iterator i = sm.keySet().iterator();
+        assertEquals(two, i.next());
+        i.remove();
+        assertFalse(map.containsKey(two));
+        assertEquals(three, i.next());
+        assertFalse(i.hasNext());
+        try {
+            sm.put(five, "E");
+            shouldThrow();
+        } catch (IllegalArgumentException success) {}
+        sm.clear();
+        assertTrue(sm.isEmpty());
+        assertEquals(3, map.size());
+    }
+
+    /**
+     * headMap and tailMap see later changes to the map
+     */
+    public void testHeadTailMap() {
+        ConcurrentSkipListMap map = map5();
+        SortedMap hm = map.headMap(four);
+        SortedMap tm = map.tailMap(four);
+        assertEquals(3, hm.size());
+        assertEquals(2, tm.size());
+        map.put(zero, "Z");
+        map.put(six, "F");
+        assertEquals(zero, hm.firstKey());
+        assertEquals(six, tm.lastKey());
+        SortedMap sub = tm.headMap(five);
+        assertEquals(1, sub.size());
+        try {
+            hm.tailMap(five);
+            shouldThrow();
+        } catch (IllegalArgumentException success) {}
+    }
+
+    /**
+     * A comparator supplied at construction orders the keys
+     */
+    public void testComparator() {
+        ConcurrentSkipListMap map = new ConcurrentSkipListMap(Collections.reverseOrder());
+        map.putAll(map5());
+        assertEquals(five, map.firstKey());
+        assertEquals(one, map.lastKey());
+        assertEquals(four, map.higherKey(five));
+    }
+
+    /**
+     * Null keys and values are rejected
+     */
+    public void testNullPointerExceptions() {
+        ConcurrentSkipListMap map = map5();
+        try {
+            map.get(null);
+            shouldThrow();
+        } catch (NullPointerException success) {}
+        try {
+            map.put(one, null);
+            shouldThrow();
+        } catch (NullPointerException success) {}
+        try {
+            map.put(null, "A");
+            shouldThrow();
+        } catch (NullPointerException success) {}
+        try {
+            map.remove(null);
+            shouldThrow();
+        } catch (NullPointerException success) {}
+        try {
+            map.containsValue(null);
+            shouldThrow();
+        } catch (NullPointerException success) {}
+    }
+
+    /**
+     * A large map stays sorted and removes all of its keys
+     */
+    public void testLarge() {
+        ConcurrentSkipListMap map = new ConcurrentSkipListMap();
+        Random r = new Random(42);
+        TreeMap expected = new TreeMap();
+        for (int i = 0; i < 10000; ++i) {
+            Integer k = new Integer(r.nextInt(5000));
+            assertEquals(expected.put(k, k), map.put(k, k));
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.firstKey(), map.firstKey());
+        assertEquals(expected.lastKey(), map.lastKey());
+        for (Iterator it = expected.keySet().iterator(); it.hasNext(); ) {
+            assertNotNull(map.remove(it.next()));
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    /**
+     * Concurrent inserts and removals of disjoint keys leave every
+     * surviving key in place
+     */
+    public void testConcurrentUpdates() {
+        final ConcurrentSkipListMap map = new ConcurrentSkipListMap();
+        final int nThreads = 4;
+        final int perThread = 2000;
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; ++t) {
+            final int base = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < perThread; ++i) {
+                        map.put(new Integer(i * nThreads + base), "V");
+                    }
+                    for (int i = 0; i < perThread; i += 2) {
+                        map.remove(new Integer(i * nThreads + base));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        try {
+            for (int t = 0; t < nThreads; ++t) {
+                threads[t].join(LONG_DELAY_MS);
+            }
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertEquals(nThreads * perThread / 2, map.size());
+        int last = -1;
+        for (Iterator it = map.keySet().iterator(); it.hasNext(); ) {
+            int k = ((Integer) it.next()).intValue();
+            assertTrue(k > last);
+            assertEquals(1, (k / nThreads) % 2);
+            last = k;
+        }
+    }
+
+    /**
+     * clone returns an independent copy
+     */
+    public void testClone() {
+        ConcurrentSkipListMap map = map5();
+        ConcurrentSkipListMap clone = map.clone();
+        assertEquals(map, clone);
+        clone.remove(one);
+        assertTrue(map.containsKey(one));
+    }
+
+    /**
+     * A deserialized map equals original
+     */
+    public void testSerialization() {
+        ConcurrentSkipListMap q = map5();
+
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(10000);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(bout));
+            out.writeObject(q);
+            out.close();
+
+            ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(bin));
+            ConcurrentSkipListMap r = (ConcurrentSkipListMap)in.readObject();
+            assertEquals(q.size(), r.size());
+            assertTrue(q.equals(r));
+            assertTrue(r.equals(q));
+            assertEquals(q.firstKey(), r.firstKey());
+        } catch(Exception e){
+            e.printStackTrace();
+            unexpectedException();
+        }
+    }
+}
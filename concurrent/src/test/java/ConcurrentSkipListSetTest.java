@@ -0,0 +1,170 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+public class ConcurrentSkipListSetTest extends JSR166TestCase {
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(ConcurrentSkipListSetTest.class);
+    }
+
+    /**
+     * Create a set of Integers 1-5.
+     */
+    private static ConcurrentSkipListSet set5() {
+        ConcurrentSkipListSet q = new ConcurrentSkipListSet();
+        assertTrue(q.isEmpty());
+        q.add(one);
+        q.add(two);
+        q.add(three);
+        q.add(four);
+        q.add(five);
+        assertEquals(5, q.size());
+        return q;
+    }
+
+    /**
+     * add of a present element returns false
+     */
+    public void testAddDup() {
+        ConcurrentSkipListSet q = set5();
+        assertFalse(q.add(one));
+        assertTrue(q.add(six));
+        assertEquals(6, q.size());
+    }
+
+    /**
+     * remove removes present elements only
+     */
+    public void testRemove() {
+        ConcurrentSkipListSet q = set5();
+        assertTrue(q.remove(three));
+        assertFalse(q.remove(three));
+        assertFalse(q.contains(three));
+        assertEquals(4, q.size());
+    }
+
+    /**
+     * iterator returns elements in ascending order
+     */
+    public void testIteratorOrder() {
+        ConcurrentSkipListSet q = new ConcurrentSkipListSet();
+        q.add(three);
+        q.add(one);
+        q.add(two);
+        Iterator it = q.iterator();
+        assertEquals(one, it.next());
+        assertEquals(two, it.next());
+        assertEquals(three, it.next());
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * lower, floor, ceiling and higher find the closest elements
+     */
+    public void testNearElements() {
+        ConcurrentSkipListSet q = set5();
+        q.remove(three);
+        assertEquals(two, q.lower(three));
+        assertEquals(two, q.floor(three));
+        assertEquals(four, q.ceiling(three));
+        assertEquals(four, q.higher(three));
+        assertNull(q.lower(one));
+        assertNull(q.higher(five));
+    }
+
+    /**
+     * pollFirst and pollLast remove the least and greatest elements
+     */
+    public void testPoll() {
+        ConcurrentSkipListSet q = set5();
+        assertEquals(one, q.pollFirst());
+        assertEquals(five, q.pollLast());
+        assertEquals(two, q.first());
+        assertEquals(four, q.last());
+        q.clear();
+        assertNull(q.pollFirst());
+        assertNull(q.pollLast());
+    }
+
+    /**
+     * subSet views support navigation within their range
+     */
+    public void testSubSet() {
+        ConcurrentSkipListSet q = set5();
+        ConcurrentSkipListSet sub = (ConcurrentSkipListSet) q.subSet(two, five);
+        assertEquals(3, sub.size());
+        assertEquals(two, sub.first());
+        assertEquals(four, sub.last());
+        assertNull(sub.lower(two));
+        assertEquals(four, sub.floor(six));
+        assertEquals(two, sub.pollFirst());
+        assertFalse(q.contains(two));
+        try {
+            sub.add(one);
+            shouldThrow();
+        } catch (IllegalArgumentException success) {}
+        ConcurrentSkipListSet head = (ConcurrentSkipListSet) q.headSet(three);
+        assertEquals(1, head.size());
+        ConcurrentSkipListSet tail = (ConcurrentSkipListSet) q.tailSet(three);
+        assertEquals(3, tail.size());
+    }
+
+    /**
+     * Null elements are rejected
+     */
+    public void testNullPointerExceptions() {
+        ConcurrentSkipListSet q = set5();
+        try {
+            q.add(null);
+            shouldThrow();
+        } catch (NullPointerException success) {}
+        try {
+            q.contains(null);
+            shouldThrow();
+        } catch (NullPointerException success) {}
+    }
+
+    /**
+     * clone returns an independent copy
+     */
+    public void testClone() {
+        ConcurrentSkipListSet q = set5();
+        ConcurrentSkipListSet c = q.clone();
+        assertEquals(q, c);
+        c.remove(one);
+        assertTrue(q.contains(one));
+    }
+
+    /**
+     * A deserialized set equals original
+     */
+    public void testSerialization() {
+        ConcurrentSkipListSet q = set5();
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(10000);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(bout));
+            out.writeObject(q);
+            out.close();
+
+            ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(bin));
+            ConcurrentSkipListSet r = (ConcurrentSkipListSet)in.readObject();
+            assertEquals(q.size(), r.size());
+            assertEquals(q, r);
+            assertEquals(q.first(), r.first());
+        } catch(Exception e){
+            e.printStackTrace();
+            unexpectedException();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class DoubleAccumulatorTest extends JSR166TestCase {
+    public static void main (String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(DoubleAccumulatorTest.class);
+    }
+
+    static final DoubleAccumulator.DoubleBinaryOperator MAX =
+        new DoubleAccumulator.DoubleBinaryOperator() {
+            public double applyAsDouble(double left, double right) {
+                return Math.max(left, right);
+            }
+        };
+
+    /**
+     * new instance initialized to supplied identity
+     */
+    public void testConstructor() {
+        double[] identities = {
+            Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1.0, 0.0, 1.0
+        };
+        for (int i = 0; i < identities.length; ++i) {
+            assertEquals(identities[i],
+                         new DoubleAccumulator(MAX, identities[i]).get(), 0.0);
+        }
+    }
+
+    /**
+     * accumulate accumulates given value to current, and get returns current value
+     */
+    public void testAccumulateAndGet() {
+        DoubleAccumulator ai = new DoubleAccumulator(MAX, Double.NEGATIVE_INFINITY);
+        ai.accumulate(2.0);
+        assertEquals(2.0, ai.get(), 0.0);
+        ai.accumulate(-4.0);
+        assertEquals(2.0, ai.get(), 0.0);
+        ai.accumulate(4.0);
+        assertEquals(4.0, ai.get(), 0.0);
+    }
+
+    /**
+     * reset() causes subsequent get() to return the identity
+     */
+    public void testReset() {
+        DoubleAccumulator ai = new DoubleAccumulator(MAX, Double.NEGATIVE_INFINITY);
+        ai.accumulate(2.0);
+        ai.reset();
+        assertEquals(Double.NEGATIVE_INFINITY, ai.get(), 0.0);
+    }
+
+    /**
+     * getThenReset() returns current value; subsequent get() returns the identity
+     */
+    public void testGetThenReset() {
+        DoubleAccumulator ai = new DoubleAccumulator(MAX, 0.0);
+        ai.accumulate(2.0);
+        assertEquals(2.0, ai.getThenReset(), 0.0);
+        assertEquals(0.0, ai.get(), 0.0);
+    }
+
+    /**
+     * accumulates by multiple threads produce correct result
+     */
+    public void testAccumulateAndGetMT() {
+        final int incs = 100000;
+        final int nthreads = 4;
+        final DoubleAccumulator acc = new DoubleAccumulator(MAX, 0.0);
+        final CountDownLatch done = new CountDownLatch(nthreads);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        for (int i = 0; i < nthreads; ++i) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    for (int j = 0; j <= incs; ++j) {
+                        acc.accumulate(j);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            assertTrue(done.await(LONG_DELAY_MS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertEquals((double) incs, acc.get(), 0.0);
+        joinPool(pool);
+    }
+}
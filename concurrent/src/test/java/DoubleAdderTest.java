@@ -0,0 +1,120 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.io.*;
+
+public class DoubleAdderTest extends JSR166TestCase {
+    public static void main (String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(DoubleAdderTest.class);
+    }
+
+    /**
+     * default constructed initializes to zero
+     */
+    public void testConstructor() {
+        DoubleAdder ai = new DoubleAdder();
+        assertEquals(0.0, ai.sum(), 0.0);
+    }
+
+    /**
+     * add adds given value to current, and sum returns current value
+     */
+    public void testAddAndSum() {
+        DoubleAdder ai = new DoubleAdder();
+        ai.add(2.0);
+        assertEquals(2.0, ai.sum(), 0.0);
+        ai.add(-4.5);
+        assertEquals(-2.5, ai.sum(), 0.0);
+    }
+
+    /**
+     * reset sets the sum to zero
+     */
+    public void testReset() {
+        DoubleAdder ai = new DoubleAdder();
+        ai.add(2.0);
+        ai.reset();
+        assertEquals(0.0, ai.sum(), 0.0);
+    }
+
+    /**
+     * sumThenReset returns the sum and then sets it to zero
+     */
+    public void testSumThenReset() {
+        DoubleAdder ai = new DoubleAdder();
+        ai.add(2.0);
+        assertEquals(2.0, ai.sumThenReset(), 0.0);
+        assertEquals(0.0, ai.sum(), 0.0);
+    }
+
+    /**
+     * Number conversions and toString reflect the sum
+     */
+    public void testNumberValues() {
+        DoubleAdder ai = new DoubleAdder();
+        ai.add(-12.0);
+        assertEquals(-12L, ai.longValue());
+        assertEquals(-12, ai.intValue());
+        assertEquals(-12.0, ai.doubleValue(), 0.0);
+        assertEquals("-12.0", ai.toString());
+    }
+
+    /**
+     * adds by multiple threads produce correct sum
+     */
+    public void testAddAndSumMT() {
+        final int incs = 100000;
+        final int nthreads = 4;
+        final DoubleAdder a = new DoubleAdder();
+        final CountDownLatch done = new CountDownLatch(nthreads);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        for (int i = 0; i < nthreads; ++i) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < incs; ++j) {
+                        a.add(1.0);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            assertTrue(done.await(LONG_DELAY_MS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertEquals((double) incs * nthreads, a.sum(), 0.0);
+        joinPool(pool);
+    }
+
+    /**
+     * a deserialized adder has the same sum
+     */
+    public void testSerialization() {
+        DoubleAdder l = new DoubleAdder();
+
+        try {
+            l.add(-22.5);
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(10000);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(bout));
+            out.writeObject(l);
+            out.close();
+
+            ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(bin));
+            DoubleAdder r = (DoubleAdder) in.readObject();
+            assertEquals(l.sum(), r.sum(), 0.0);
+        } catch(Exception e){
+            unexpectedException();
+        }
+    }
+}
@@ -96,6 +96,49 @@ public class ExecutorsTest extends JSR166TestCase{
     }
 
 
+    /**
+     * A newWorkStealingPool can execute runnables and callables
+     */
+    public void testNewWorkStealingPool1() {
+        ExecutorService e = Executors.newWorkStealingPool(2);
+        try {
+            e.execute(new NoOpRunnable());
+            e.execute(new NoOpRunnable());
+            Future<String> future = e.submit(new StringTask());
+            assertSame(TEST_STRING, future.get());
+        } catch (Exception ex) {
+            unexpectedException();
+        } finally {
+            joinPool(e);
+        }
+    }
+
+    /**
+     * A newWorkStealingPool uses the available processors by default
+     */
+    public void testNewWorkStealingPool2() {
+        ExecutorService e = Executors.newWorkStealingPool();
+        try {
+            assertEquals(Runtime.getRuntime().availableProcessors(),
+                         ((ForkJoinPool) e).getParallelism());
+            assertTrue(((ForkJoinPool) e).getAsyncMode());
+        } finally {
+            joinPool(e);
+        }
+    }
+
+    /**
+     * A newWorkStealingPool with non-positive parallelism throws IAE
+     */
+    public void testNewWorkStealingPool3() {
+        try {
+            ExecutorService e = Executors.newWorkStealingPool(0);
+            shouldThrow();
+        }
+        catch(IllegalArgumentException success) {
+        }
+    }
+
     /**
      * A new SingleThreadExecutor can execute runnables
      */
@@ -0,0 +1,234 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import junit.framework.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class ForkJoinPoolTest extends JSR166TestCase {
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(ForkJoinPoolTest.class);
+    }
+
+    static final class CountingTask extends RecursiveAction {
+        final AtomicInteger counter;
+        final int depth;
+        CountingTask(AtomicInteger counter, int depth) {
+            this.counter = counter; this.depth = depth;
+        }
+        protected void compute() {
+            counter.incrementAndGet();
+            if (depth > 0)
+                invokeAll(new CountingTask(counter, depth - 1),
+                          new CountingTask(counter, depth - 1));
+        }
+    }
+
+    /**
+     * the default constructor uses the available processors
+     */
+    public void testConstructor1() {
+        ForkJoinPool p = new ForkJoinPool();
+        try {
+            assertEquals(Runtime.getRuntime().availableProcessors(),
+                         p.getParallelism());
+            assertFalse(p.getAsyncMode());
+            assertSame(ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                       p.getFactory());
+            assertNull(p.getUncaughtExceptionHandler());
+            assertEquals(0, p.getPoolSize());
+            assertTrue(p.isQuiescent());
+        } finally {
+            joinPool(p);
+        }
+    }
+
+    /**
+     * non-positive parallelism throws IAE
+     */
+    public void testConstructor2() {
+        try {
+            new ForkJoinPool(-1);
+            shouldThrow();
+        } catch (IllegalArgumentException success) {
+        }
+    }
+
+    /**
+     * a null factory throws NPE
+     */
+    public void testConstructor3() {
+        try {
+            new ForkJoinPool(1, null, null, false);
+            shouldThrow();
+        } catch (NullPointerException success) {
+        }
+    }
+
+    /**
+     * workers are started on demand, up to the parallelism
+     */
+    public void testPoolSize() throws Exception {
+        ForkJoinPool p = new ForkJoinPool(2);
+        try {
+            AtomicInteger counter = new AtomicInteger();
+            p.invoke(new CountingTask(counter, 12));
+            assertEquals((1 << 13) - 1, counter.get());
+            assertTrue(p.getPoolSize() >= 1);
+            assertTrue(p.getPoolSize() <= 2);
+        } finally {
+            joinPool(p);
+        }
+    }
+
+    /**
+     * the factory supplies the worker threads
+     */
+    public void testFactory() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory =
+            new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    created.incrementAndGet();
+                    return new ForkJoinWorkerThread(pool) {};
+                }
+            };
+        ForkJoinPool p = new ForkJoinPool(1, factory, null, false);
+        try {
+            Future<String> f = p.submit(new StringTask());
+            assertSame(TEST_STRING, f.get());
+            assertEquals(1, created.get());
+        } finally {
+            joinPool(p);
+        }
+    }
+
+    /**
+     * plain runnables and callables are executed
+     */
+    public void testExecuteRunnable() throws Exception {
+        ForkJoinPool p = new ForkJoinPool(2);
+        try {
+            final CountDownLatch done = new CountDownLatch(100);
+            for (int i = 0; i < 100; ++i) {
+                p.execute(new Runnable() {
+                    public void run() {
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(LONG_DELAY_MS, TimeUnit.MILLISECONDS));
+            Future<?> f = p.submit(new NoOpRunnable());
+            assertNull(f.get());
+            Future<String> g = p.submit(new NoOpRunnable(), TEST_STRING);
+            assertSame(TEST_STRING, g.get());
+        } finally {
+            joinPool(p);
+        }
+    }
+
+    /**
+     * invokeAll returns completed futures in order
+     */
+    public void testInvokeAll() throws Exception {
+        ForkJoinPool p = new ForkJoinPool(2);
+        try {
+            List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+            tasks.add(new StringTask());
+            tasks.add(new NPETask());
+            List<Future<String>> futures = p.invokeAll(tasks);
+            assertEquals(2, futures.size());
+            assertSame(TEST_STRING, futures.get(0).get());
+            try {
+                futures.get(1).get();
+                shouldThrow();
+            } catch (ExecutionException success) {
+                assertTrue(success.getCause() instanceof NullPointerException);
+            }
+        } finally {
+            joinPool(p);
+        }
+    }
+
+    /**
+     * submissions after shutdown are rejected
+     */
+    public void testShutdown() throws Exception {
+        ForkJoinPool p = new ForkJoinPool(2);
+        p.invoke(new CountingTask(new AtomicInteger(), 4));
+        p.shutdown();
+        assertTrue(p.isShutdown());
+        try {
+            p.execute(new NoOpRunnable());
+            shouldThrow();
+        } catch (RejectedExecutionException success) {
+        }
+        assertTrue(p.awaitTermination(LONG_DELAY_MS, TimeUnit.MILLISECONDS));
+        assertTrue(p.isTerminated());
+        assertFalse(p.isTerminating());
+        assertEquals(0, p.getPoolSize());
+    }
+
+    /**
+     * shutdownNow cancels queued tasks
+     */
+    public void testShutdownNow() throws Exception {
+        ForkJoinPool p = new ForkJoinPool(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        p.execute(new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        });
+        assertTrue(started.await(LONG_DELAY_MS, TimeUnit.MILLISECONDS));
+        ForkJoinTask<?> queued = p.submit(new NoOpRunnable());
+        assertTrue(p.shutdownNow().isEmpty());
+        release.countDown();
+        assertTrue(queued.isCancelled());
+        assertTrue(p.awaitTermination(LONG_DELAY_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * the common pool cannot be shut down
+     */
+    public void testCommonPool() {
+        ForkJoinPool common = ForkJoinPool.commonPool();
+        assertSame(common, ForkJoinPool.commonPool());
+        common.shutdown();
+        assertFalse(common.isShutdown());
+        assertTrue(common.getParallelism() >= 1);
+    }
+
+    /**
+     * toString reports the run state
+     */
+    public void testToString() {
+        ForkJoinPool p = new ForkJoinPool(1);
+        assertTrue(p.toString().indexOf("Running") >= 0);
+        joinPool(p);
+        assertTrue(p.toString().indexOf("Terminated") >= 0);
+    }
+}
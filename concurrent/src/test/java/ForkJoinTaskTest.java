@@ -0,0 +1,289 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+import junit.framework.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ForkJoinTaskTest extends JSR166TestCase {
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(ForkJoinTaskTest.class);
+    }
+
+    static final class FibTask extends RecursiveTask<Integer> {
+        final int n;
+        FibTask(int n) { this.n = n; }
+        protected Integer compute() {
+            if (n <= 1)
+                return n;
+            FibTask f1 = new FibTask(n - 1);
+            f1.fork();
+            return new FibTask(n - 2).compute() + f1.join();
+        }
+    }
+
+    static final class FailingFibTask extends RecursiveTask<Integer> {
+        final int n;
+        FailingFibTask(int n) { this.n = n; }
+        protected Integer compute() {
+            if (n <= 1)
+                throw new FJException();
+            FailingFibTask f1 = new FailingFibTask(n - 1);
+            f1.fork();
+            return new FailingFibTask(n - 2).compute() + f1.join();
+        }
+    }
+
+    static final class FJException extends RuntimeException {
+    }
+
+    static final class SumAction extends RecursiveAction {
+        final long[] array;
+        final int lo, hi;
+        long sum;
+        SumAction(long[] array, int lo, int hi) {
+            this.array = array; this.lo = lo; this.hi = hi;
+        }
+        protected void compute() {
+            if (hi - lo <= 16) {
+                for (int i = lo; i < hi; ++i)
+                    sum += array[i];
+            } else {
+                int mid = (lo + hi) >>> 1;
+                SumAction left = new SumAction(array, lo, mid);
+                SumAction right = new SumAction(array, mid, hi);
+                invokeAll(left, right);
+                sum = left.sum + right.sum;
+            }
+        }
+    }
+
+    private ForkJoinPool pool;
+
+    public void setUp() {
+        super.setUp();
+        pool = new ForkJoinPool(4);
+    }
+
+    public void tearDown() {
+        joinPool(pool);
+        super.tearDown();
+    }
+
+    /**
+     * invoke returns the result of a recursive computation
+     */
+    public void testInvoke() {
+        FibTask f = new FibTask(20);
+        assertEquals(6765, pool.invoke(f).intValue());
+        assertTrue(f.isDone());
+        assertTrue(f.isCompletedNormally());
+        assertFalse(f.isCompletedAbnormally());
+        assertFalse(f.isCancelled());
+        assertNull(f.getException());
+        assertEquals(6765, f.getRawResult().intValue());
+    }
+
+    /**
+     * invoke outside of any pool computes in the current thread
+     */
+    public void testInvokeOutsidePool() {
+        assertEquals(55, new FibTask(10).invoke().intValue());
+    }
+
+    /**
+     * fork outside of any pool runs the task in the common pool
+     */
+    public void testForkOutsidePool() {
+        FibTask f = new FibTask(15);
+        f.fork();
+        assertEquals(610, f.join().intValue());
+    }
+
+    /**
+     * invokeAll computes all tasks
+     */
+    public void testInvokeAll() {
+        long[] array = new long[10000];
+        long expected = 0;
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = i;
+            expected += i;
+        }
+        SumAction a = new SumAction(array, 0, array.length);
+        pool.invoke(a);
+        assertEquals(expected, a.sum);
+        assertNull(a.getRawResult());
+    }
+
+    /**
+     * invokeAll of a collection computes all tasks
+     */
+    public void testInvokeAllCollection() {
+        final List<FibTask> tasks = new ArrayList<FibTask>();
+        for (int i = 0; i < 10; ++i)
+            tasks.add(new FibTask(i));
+        pool.invoke(new RecursiveAction() {
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        assertEquals(34, tasks.get(9).join().intValue());
+        for (FibTask t : tasks)
+            assertTrue(t.isDone());
+    }
+
+    /**
+     * join rethrows the exception thrown by the computation
+     */
+    public void testJoinException() {
+        FailingFibTask f = new FailingFibTask(8);
+        try {
+            pool.invoke(f);
+            shouldThrow();
+        } catch (FJException success) {
+        }
+        assertTrue(f.isCompletedAbnormally());
+        assertTrue(f.getException() instanceof FJException);
+    }
+
+    /**
+     * get reports the exception thrown by the computation as an
+     * ExecutionException
+     */
+    public void testGetException() throws InterruptedException {
+        FailingFibTask f = new FailingFibTask(8);
+        pool.execute(f);
+        try {
+            f.get();
+            shouldThrow();
+        } catch (ExecutionException success) {
+            assertTrue(success.getCause() instanceof FJException);
+        }
+    }
+
+    /**
+     * timed get returns the result of the computation
+     */
+    public void testTimedGet() throws Exception {
+        FibTask f = new FibTask(20);
+        pool.execute(f);
+        assertEquals(6765, f.get(LONG_DELAY_MS, TimeUnit.MILLISECONDS).intValue());
+    }
+
+    /**
+     * timed get of a task that never runs times out
+     */
+    public void testTimedGetTimeout() throws Exception {
+        FibTask f = new FibTask(20);
+        try {
+            f.get(SHORT_DELAY_MS, TimeUnit.MILLISECONDS);
+            shouldThrow();
+        } catch (TimeoutException success) {
+        }
+    }
+
+    /**
+     * a cancelled task is not run and joining it throws
+     * CancellationException
+     */
+    public void testCancel() {
+        FibTask f = new FibTask(20);
+        assertTrue(f.cancel(true));
+        assertTrue(f.isCancelled());
+        assertTrue(f.isDone());
+        assertTrue(f.getException() instanceof CancellationException);
+        try {
+            pool.invoke(f);
+            shouldThrow();
+        } catch (CancellationException success) {
+        }
+        assertNull(f.getRawResult());
+    }
+
+    /**
+     * complete and completeExceptionally set the outcome of a task
+     */
+    public void testComplete() {
+        FibTask f = new FibTask(20);
+        f.complete(Integer.valueOf(17));
+        assertEquals(17, f.join().intValue());
+        assertFalse(f.cancel(false));
+
+        FibTask g = new FibTask(20);
+        g.completeExceptionally(new FJException());
+        try {
+            g.join();
+            shouldThrow();
+        } catch (FJException success) {
+        }
+    }
+
+    /**
+     * a reinitialized task can be run again
+     */
+    public void testReinitialize() {
+        FibTask f = new FibTask(10);
+        assertEquals(55, pool.invoke(f).intValue());
+        f.reinitialize();
+        assertFalse(f.isDone());
+        assertEquals(55, pool.invoke(f).intValue());
+    }
+
+    /**
+     * tryUnfork takes back the most recently forked task
+     */
+    public void testTryUnfork() {
+        pool.invoke(new RecursiveAction() {
+            protected void compute() {
+                FibTask f = new FibTask(10);
+                f.fork();
+                if (f.tryUnfork())
+                    assertFalse(f.isDone());
+                else
+                    f.join();
+                assertTrue(inForkJoinPool());
+                assertSame(pool, getPool());
+            }
+        });
+        assertFalse(ForkJoinTask.inForkJoinPool());
+        assertNull(ForkJoinTask.getPool());
+    }
+
+    /**
+     * adapted callables report checked exceptions wrapped
+     */
+    public void testAdaptCallable() throws InterruptedException {
+        ForkJoinTask<String> f = ForkJoinTask.adapt(new StringTask());
+        assertSame(TEST_STRING, pool.invoke(f));
+        ForkJoinTask<Object> g = ForkJoinTask.adapt(new Callable<Object>() {
+            public Object call() throws Exception {
+                throw new java.io.IOException();
+            }
+        });
+        pool.execute(g);
+        try {
+            g.get();
+            shouldThrow();
+        } catch (ExecutionException success) {
+            assertTrue(success.getCause().getCause() instanceof java.io.IOException);
+        }
+    }
+}
@@ -125,19 +125,30 @@ public class JSR166TestCase extends TestCase {
         suite.addTest(new TestSuite(AtomicReferenceTest.class));
         suite.addTest(new TestSuite(AtomicStampedReferenceTest.class));
         suite.addTest(new TestSuite(ConcurrentHashMapTest.class));
+        suite.addTest(new TestSuite(ConcurrentHashMapBinsTest.class));
         suite.addTest(new TestSuite(ConcurrentLinkedQueueTest.class));
+        suite.addTest(new TestSuite(ConcurrentSkipListMapTest.class));
+        suite.addTest(new TestSuite(ConcurrentSkipListSetTest.class));
         suite.addTest(new TestSuite(CopyOnWriteArrayListTest.class));
         suite.addTest(new TestSuite(CopyOnWriteArraySetTest.class));
         suite.addTest(new TestSuite(CountDownLatchTest.class));
         suite.addTest(new TestSuite(CyclicBarrierTest.class));
         suite.addTest(new TestSuite(DelayQueueTest.class));
+        suite.addTest(new TestSuite(DoubleAccumulatorTest.class));
+        suite.addTest(new TestSuite(DoubleAdderTest.class));
         suite.addTest(new TestSuite(ExchangerTest.class));
         suite.addTest(new TestSuite(ExecutorsTest.class));
         suite.addTest(new TestSuite(ExecutorCompletionServiceTest.class));
+        suite.addTest(new TestSuite(ForkJoinPoolTest.class));
+        suite.addTest(new TestSuite(ForkJoinTaskTest.class));
         suite.addTest(new TestSuite(FutureTaskTest.class));
         suite.addTest(new TestSuite(LinkedBlockingQueueTest.class));
+        suite.addTest(new TestSuite(LinkedTransferQueueTest.class));
         suite.addTest(new TestSuite(LinkedListTest.class));
         suite.addTest(new TestSuite(LockSupportTest.class));
+        suite.addTest(new TestSuite(LongAccumulatorTest.class));
+        suite.addTest(new TestSuite(LongAdderTest.class));
+        suite.addTest(new TestSuite(PhaserTest.class));
         suite.addTest(new TestSuite(PriorityBlockingQueueTest.class));
         suite.addTest(new TestSuite(PriorityQueueTest.class));
         suite.addTest(new TestSuite(ReentrantLockTest.class));
@@ -0,0 +1,336 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+public class LinkedTransferQueueTest extends JSR166TestCase {
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(LinkedTransferQueueTest.class);
+    }
+
+    /**
+     * Create a queue of given size containing consecutive
+     * Integers 0 ... n.
+     */
+    private LinkedTransferQueue populatedQueue(int n) {
+        LinkedTransferQueue q = new LinkedTransferQueue();
+        assertTrue(q.isEmpty());
+        for (int i = 0; i < n; ++i)
+            assertTrue(q.offer(new Integer(i)));
+        assertFalse(q.isEmpty());
+        assertEquals(n, q.size());
+        return q;
+    }
+
+    /**
+     * A new queue is empty and has unbounded capacity
+     */
+    public void testConstructor1() {
+        LinkedTransferQueue q = new LinkedTransferQueue();
+        assertEquals(0, q.size());
+        assertTrue(q.isEmpty());
+        assertEquals(Integer.MAX_VALUE, q.remainingCapacity());
+    }
+
+    /**
+     * Queue contains all elements of collection used to initialize
+     */
+    public void testConstructor2() {
+        Integer[] ints = new Integer[SIZE];
+        for (int i = 0; i < SIZE; ++i)
+            ints[i] = new Integer(i);
+        LinkedTransferQueue q = new LinkedTransferQueue(Arrays.asList(ints));
+        for (int i = 0; i < SIZE; ++i)
+            assertEquals(ints[i], q.poll());
+    }
+
+    /**
+     * offer(null) throws NPE
+     */
+    public void testOfferNull() {
+        try {
+            LinkedTransferQueue q = new LinkedTransferQueue();
+            q.offer(null);
+            shouldThrow();
+        } catch (NullPointerException success) { }
+    }
+
+    /**
+     * poll, peek and remove return elements in FIFO order
+     */
+    public void testPollPeekRemove() {
+        LinkedTransferQueue q = populatedQueue(SIZE);
+        for (int i = 0; i < SIZE; ++i) {
+            assertEquals(i, ((Integer)q.peek()).intValue());
+            assertEquals(i, ((Integer)q.poll()).intValue());
+        }
+        assertNull(q.peek());
+        assertNull(q.poll());
+        try {
+            q.remove();
+            shouldThrow();
+        } catch (NoSuchElementException success) { }
+    }
+
+    /**
+     * remove(x) removes x and returns true if present
+     */
+    public void testRemoveElement() {
+        LinkedTransferQueue q = populatedQueue(SIZE);
+        for (int i = 1; i < SIZE; i += 2)
+            assertTrue(q.remove(new Integer(i)));
+        for (int i = 0; i < SIZE; i += 2) {
+            assertTrue(q.remove(new Integer(i)));
+            assertFalse(q.remove(new Integer(i + 1)));
+        }
+        assertTrue(q.isEmpty());
+    }
+
+    /**
+     * contains(x) reports true when elements added but not yet removed
+     */
+    public void testContains() {
+        LinkedTransferQueue q = populatedQueue(SIZE);
+        for (int i = 0; i < SIZE; ++i) {
+            assertTrue(q.contains(new Integer(i)));
+            q.poll();
+            assertFalse(q.contains(new Integer(i)));
+        }
+    }
+
+    /**
+     * iterator iterates through all elements in order, and
+     * iterator.remove removes the current element
+     */
+    public void testIterator() {
+        LinkedTransferQueue q = populatedQueue(SIZE);
+        Iterator it = q.iterator();
+        int i = 0;
+        while (it.hasNext()) {
+            assertEquals(new Integer(i++), it.next());
+            if (i % 2 == 0)
+                it.remove();
+        }
+        assertEquals(SIZE, i);
+        assertEquals(SIZE / 2, q.size());
+        for (i = 0; i < SIZE; i += 2)
+            assertEquals(new Integer(i), q.poll());
+    }
+
+    /**
+     * drainTo(c) empties queue into another collection c
+     */
+    public void testDrainTo() {
+        LinkedTransferQueue q = populatedQueue(SIZE);
+        ArrayList l = new ArrayList();
+        assertEquals(SIZE, q.drainTo(l));
+        assertEquals(0, q.size());
+        assertEquals(SIZE, l.size());
+        for (int i = 0; i < SIZE; ++i)
+            assertEquals(l.get(i), new Integer(i));
+    }
+
+    /**
+     * tryTransfer without a waiting consumer returns false and does
+     * not enqueue
+     */
+    public void testTryTransferNoConsumer() {
+        LinkedTransferQueue q = new LinkedTransferQueue();
+        assertFalse(q.hasWaitingConsumer());
+        assertFalse(q.tryTransfer(one));
+        assertTrue(q.isEmpty());
+    }
+
+    /**
+     * transfer waits until a consumer takes the element
+     */
+    public void testTransferWaitsForTake() {
+        final LinkedTransferQueue q = new LinkedTransferQueue();
+        Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        q.transfer(one);
+                        threadAssertTrue(q.isEmpty());
+                    } catch (InterruptedException e) {
+                        threadUnexpectedException();
+                    }
+                }});
+        try {
+            t.start();
+            Thread.sleep(SHORT_DELAY_MS);
+            assertEquals(1, q.size());
+            assertTrue(t.isAlive());
+            assertEquals(one, q.take());
+            t.join(LONG_DELAY_MS);
+            assertFalse(t.isAlive());
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+    }
+
+    /**
+     * tryTransfer hands the element to a waiting consumer, which is
+     * reported by hasWaitingConsumer and getWaitingConsumerCount
+     */
+    public void testTryTransferToWaitingConsumer() {
+        final LinkedTransferQueue q = new LinkedTransferQueue();
+        Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        threadAssertEquals(two, q.take());
+                    } catch (InterruptedException e) {
+                        threadUnexpectedException();
+                    }
+                }});
+        try {
+            t.start();
+            while (!q.hasWaitingConsumer())
+                Thread.yield();
+            assertEquals(1, q.getWaitingConsumerCount());
+            assertEquals(0, q.size());
+            assertTrue(q.tryTransfer(two));
+            t.join(LONG_DELAY_MS);
+            assertFalse(t.isAlive());
+            assertEquals(0, q.getWaitingConsumerCount());
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+    }
+
+    /**
+     * timed tryTransfer returns false and leaves no element after
+     * timeout
+     */
+    public void testTimedTryTransferTimesOut() {
+        LinkedTransferQueue q = new LinkedTransferQueue();
+        try {
+            assertFalse(q.tryTransfer(one, SHORT_DELAY_MS, TimeUnit.MILLISECONDS));
+            assertTrue(q.isEmpty());
+            assertNull(q.poll());
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+    }
+
+    /**
+     * transfer throws InterruptedException when interrupted, and the
+     * element is not left enqueued
+     */
+    public void testInterruptedTransfer() {
+        final LinkedTransferQueue q = new LinkedTransferQueue();
+        Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        q.transfer(one);
+                        threadShouldThrow();
+                    } catch (InterruptedException success) { }
+                }});
+        try {
+            t.start();
+            Thread.sleep(SHORT_DELAY_MS);
+            t.interrupt();
+            t.join(LONG_DELAY_MS);
+            assertFalse(t.isAlive());
+            assertTrue(q.isEmpty());
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+    }
+
+    /**
+     * timed poll with no element returns null after timeout
+     */
+    public void testTimedPoll() {
+        LinkedTransferQueue q = new LinkedTransferQueue();
+        try {
+            assertNull(q.poll(SHORT_DELAY_MS, TimeUnit.MILLISECONDS));
+            assertFalse(q.hasWaitingConsumer());
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+    }
+
+    /**
+     * Elements handed off between many producers and consumers are
+     * all received exactly once
+     */
+    public void testProducersAndConsumers() {
+        final LinkedTransferQueue q = new LinkedTransferQueue();
+        final int nPairs = 4;
+        final int perThread = 10000;
+        final int[] received = new int[nPairs * perThread];
+        Thread[] threads = new Thread[2 * nPairs];
+        for (int i = 0; i < nPairs; ++i) {
+            final int base = i * perThread;
+            final boolean sync = (i % 2 == 0);
+            threads[i] = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            for (int j = base; j < base + perThread; ++j) {
+                                if (sync)
+                                    q.transfer(new Integer(j));
+                                else
+                                    q.put(new Integer(j));
+                            }
+                        } catch (InterruptedException e) {
+                            threadUnexpectedException();
+                        }
+                    }});
+            threads[nPairs + i] = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            for (int j = 0; j < perThread; ++j) {
+                                int x = ((Integer)q.take()).intValue();
+                                synchronized (received) {
+                                    received[x]++;
+                                }
+                            }
+                        } catch (InterruptedException e) {
+                            threadUnexpectedException();
+                        }
+                    }});
+        }
+        try {
+            for (int i = 0; i < threads.length; ++i)
+                threads[i].start();
+            for (int i = 0; i < threads.length; ++i)
+                threads[i].join(LONG_DELAY_MS);
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertTrue(q.isEmpty());
+        for (int i = 0; i < received.length; ++i)
+            assertEquals(1, received[i]);
+    }
+
+    /**
+     * A deserialized serialized queue has same elements in same order
+     */
+    public void testSerialization() {
+        LinkedTransferQueue q = populatedQueue(SIZE);
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(10000);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(bout));
+            out.writeObject(q);
+            out.close();
+
+            ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(bin));
+            LinkedTransferQueue r = (LinkedTransferQueue)in.readObject();
+            assertEquals(q.size(), r.size());
+            while (!q.isEmpty())
+                assertEquals(q.remove(), r.remove());
+        } catch (Exception e) {
+            unexpectedException();
+        }
+    }
+}
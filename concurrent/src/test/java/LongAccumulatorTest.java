@@ -0,0 +1,117 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class LongAccumulatorTest extends JSR166TestCase {
+    public static void main (String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(LongAccumulatorTest.class);
+    }
+
+    static final LongAccumulator.LongBinaryOperator MAX =
+        new LongAccumulator.LongBinaryOperator() {
+            public long applyAsLong(long left, long right) {
+                return Math.max(left, right);
+            }
+        };
+
+    /**
+     * new instance initialized to supplied identity
+     */
+    public void testConstructor() {
+        for (long identity = Long.MIN_VALUE; identity != 0; identity >>>= 1) {
+            assertEquals(identity, new LongAccumulator(MAX, identity).get());
+        }
+    }
+
+    /**
+     * a null function is rejected
+     */
+    public void testConstructorNull() {
+        try {
+            new LongAccumulator(null, 0L);
+            shouldThrow();
+        } catch (NullPointerException success) {}
+    }
+
+    /**
+     * accumulate accumulates given value to current, and get returns current value
+     */
+    public void testAccumulateAndGet() {
+        LongAccumulator ai = new LongAccumulator(MAX, 0L);
+        ai.accumulate(2);
+        assertEquals(2, ai.get());
+        ai.accumulate(-4);
+        assertEquals(2, ai.get());
+        ai.accumulate(4);
+        assertEquals(4, ai.get());
+    }
+
+    /**
+     * reset() causes subsequent get() to return zero
+     */
+    public void testReset() {
+        LongAccumulator ai = new LongAccumulator(MAX, 0L);
+        ai.accumulate(2);
+        assertEquals(2, ai.get());
+        ai.reset();
+        assertEquals(0, ai.get());
+    }
+
+    /**
+     * getThenReset() returns current value; subsequent get() returns zero
+     */
+    public void testGetThenReset() {
+        LongAccumulator ai = new LongAccumulator(MAX, 0L);
+        ai.accumulate(2);
+        assertEquals(2, ai.get());
+        assertEquals(2, ai.getThenReset());
+        assertEquals(0, ai.get());
+    }
+
+    /**
+     * toString returns current value.
+     */
+    public void testToString() {
+        LongAccumulator ai = new LongAccumulator(MAX, 0L);
+        assertEquals("0", ai.toString());
+        ai.accumulate(1);
+        assertEquals("1", ai.toString());
+    }
+
+    /**
+     * accumulates by multiple threads produce correct result
+     */
+    public void testAccumulateAndGetMT() {
+        final int incs = 100000;
+        final int nthreads = 4;
+        final LongAccumulator acc = new LongAccumulator(MAX, 0L);
+        final CountDownLatch done = new CountDownLatch(nthreads);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        for (int i = 0; i < nthreads; ++i) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    for (int j = 0; j <= incs; ++j) {
+                        acc.accumulate(j);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            assertTrue(done.await(LONG_DELAY_MS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertEquals(incs, acc.get());
+        joinPool(pool);
+    }
+}
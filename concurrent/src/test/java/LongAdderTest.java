@@ -0,0 +1,133 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.io.*;
+
+public class LongAdderTest extends JSR166TestCase {
+    public static void main (String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(LongAdderTest.class);
+    }
+
+    /**
+     * default constructed initializes to zero
+     */
+    public void testConstructor() {
+        LongAdder ai = new LongAdder();
+        assertEquals(0, ai.sum());
+    }
+
+    /**
+     * add adds given value to current, and sum returns current value
+     */
+    public void testAddAndSum() {
+        LongAdder ai = new LongAdder();
+        ai.add(2);
+        assertEquals(2, ai.sum());
+        ai.add(-4);
+        assertEquals(-2, ai.sum());
+    }
+
+    /**
+     * increment and decrement change the sum by one
+     */
+    public void testIncrementDecrement() {
+        LongAdder ai = new LongAdder();
+        ai.increment();
+        ai.increment();
+        assertEquals(2, ai.sum());
+        ai.decrement();
+        assertEquals(1, ai.sum());
+    }
+
+    /**
+     * reset sets the sum to zero
+     */
+    public void testReset() {
+        LongAdder ai = new LongAdder();
+        ai.add(2);
+        ai.reset();
+        assertEquals(0, ai.sum());
+    }
+
+    /**
+     * sumThenReset returns the sum and then sets it to zero
+     */
+    public void testSumThenReset() {
+        LongAdder ai = new LongAdder();
+        ai.add(2);
+        assertEquals(2, ai.sumThenReset());
+        assertEquals(0, ai.sum());
+    }
+
+    /**
+     * Number conversions and toString reflect the sum
+     */
+    public void testNumberValues() {
+        LongAdder ai = new LongAdder();
+        ai.add(-12);
+        assertEquals(-12L, ai.longValue());
+        assertEquals(-12, ai.intValue());
+        assertEquals(-12.0f, ai.floatValue(), 0.0f);
+        assertEquals(-12.0, ai.doubleValue(), 0.0);
+        assertEquals("-12", ai.toString());
+    }
+
+    /**
+     * adds by multiple threads produce correct sum
+     */
+    public void testAddAndSumMT() {
+        final int incs = 100000;
+        final int nthreads = 4;
+        final LongAdder a = new LongAdder();
+        final CountDownLatch done = new CountDownLatch(nthreads);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        for (int i = 0; i < nthreads; ++i) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < incs; ++j) {
+                        a.increment();
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            assertTrue(done.await(LONG_DELAY_MS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertEquals((long) incs * nthreads, a.sum());
+        joinPool(pool);
+    }
+
+    /**
+     * a deserialized adder has the same sum
+     */
+    public void testSerialization() {
+        LongAdder l = new LongAdder();
+
+        try {
+            l.add(-22);
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(10000);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(bout));
+            out.writeObject(l);
+            out.close();
+
+            ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(bin));
+            LongAdder r = (LongAdder) in.readObject();
+            assertEquals(l.sum(), r.sum());
+        } catch(Exception e){
+            unexpectedException();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/licenses/publicdomain
+ */
+
+import junit.framework.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class PhaserTest extends JSR166TestCase {
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run (suite());
+    }
+    public static Test suite() {
+        return new TestSuite(PhaserTest.class);
+    }
+
+    /**
+     * Empty constructor builds a new Phaser with no parent, no
+     * registered parties and initial phase number of 0
+     */
+    public void testConstructor1() {
+        Phaser phaser = new Phaser();
+        assertNull(phaser.getParent());
+        assertSame(phaser, phaser.getRoot());
+        assertEquals(0, phaser.getRegisteredParties());
+        assertEquals(0, phaser.getArrivedParties());
+        assertEquals(0, phaser.getPhase());
+        assertFalse(phaser.isTerminated());
+    }
+
+    /**
+     * Constructing with a negative or too large number of parties
+     * throws IllegalArgumentException
+     */
+    public void testConstructorBadParties() {
+        try {
+            new Phaser(-1);
+            shouldThrow();
+        } catch (IllegalArgumentException success) { }
+        try {
+            new Phaser(1 << 16);
+            shouldThrow();
+        } catch (IllegalArgumentException success) { }
+    }
+
+    /**
+     * A child phaser with parties registers with its parent
+     */
+    public void testConstructorWithParent() {
+        Phaser parent = new Phaser();
+        Phaser child = new Phaser(parent, 3);
+        assertSame(parent, child.getParent());
+        assertSame(parent, child.getRoot());
+        assertEquals(3, child.getRegisteredParties());
+        assertEquals(1, parent.getRegisteredParties());
+    }
+
+    /**
+     * register and bulkRegister add unarrived parties
+     */
+    public void testRegister() {
+        Phaser phaser = new Phaser();
+        assertEquals(0, phaser.register());
+        assertEquals(0, phaser.bulkRegister(4));
+        assertEquals(5, phaser.getRegisteredParties());
+        assertEquals(5, phaser.getUnarrivedParties());
+        try {
+            phaser.bulkRegister(-1);
+            shouldThrow();
+        } catch (IllegalArgumentException success) { }
+    }
+
+    /**
+     * Registering more than the maximum number of parties throws
+     * IllegalStateException
+     */
+    public void testRegisterTooMany() {
+        Phaser phaser = new Phaser(0xffff);
+        try {
+            phaser.register();
+            shouldThrow();
+        } catch (IllegalStateException success) { }
+    }
+
+    /**
+     * The phase advances when the last party arrives, and arrive
+     * returns the arrival phase
+     */
+    public void testArriveAdvances() {
+        Phaser phaser = new Phaser(2);
+        assertEquals(0, phaser.arrive());
+        assertEquals(1, phaser.getArrivedParties());
+        assertEquals(0, phaser.arrive());
+        assertEquals(1, phaser.getPhase());
+        assertEquals(0, phaser.getArrivedParties());
+        assertEquals(2, phaser.getUnarrivedParties());
+    }
+
+    /**
+     * Arriving more often than registered throws IllegalStateException
+     */
+    public void testArriveUnregistered() {
+        Phaser phaser = new Phaser();
+        try {
+            phaser.arrive();
+            shouldThrow();
+        } catch (IllegalStateException success) { }
+    }
+
+    /**
+     * arriveAndDeregister of the last party terminates by default
+     */
+    public void testArriveAndDeregisterTerminates() {
+        Phaser phaser = new Phaser(2);
+        assertEquals(0, phaser.arriveAndDeregister());
+        assertEquals(1, phaser.getRegisteredParties());
+        assertEquals(0, phaser.getPhase());
+        assertEquals(0, phaser.arriveAndDeregister());
+        assertTrue(phaser.isTerminated());
+        assertTrue(phaser.getPhase() < 0);
+        assertTrue(phaser.register() < 0);
+        assertTrue(phaser.arriveAndAwaitAdvance() < 0);
+    }
+
+    /**
+     * awaitAdvance returns immediately for a phase that is not the
+     * current one
+     */
+    public void testAwaitAdvanceOtherPhase() {
+        Phaser phaser = new Phaser(1);
+        assertEquals(0, phaser.arrive());
+        assertEquals(1, phaser.awaitAdvance(0));
+        assertEquals(1, phaser.awaitAdvance(5));
+        assertEquals(-1, phaser.awaitAdvance(-1));
+    }
+
+    /**
+     * arriveAndAwaitAdvance releases all parties once they have all
+     * arrived, for many consecutive phases
+     */
+    public void testArriveAndAwaitAdvanceManyPhases() {
+        final int nThreads = 4;
+        final int nPhases = 50;
+        final Phaser phaser = new Phaser(nThreads);
+        final AtomicInteger count = new AtomicInteger();
+        Thread[] threads = new Thread[nThreads];
+        for (int i = 0; i < nThreads; ++i) {
+            threads[i] = new Thread(new Runnable() {
+                    public void run() {
+                        for (int p = 0; p < nPhases; ++p) {
+                            count.incrementAndGet();
+                            int next = phaser.arriveAndAwaitAdvance();
+                            threadAssertEquals(p + 1, next);
+                            threadAssertTrue(count.get() >= (p + 1) * nThreads);
+                        }
+                    }});
+            threads[i].start();
+        }
+        try {
+            for (int i = 0; i < nThreads; ++i)
+                threads[i].join(LONG_DELAY_MS);
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertEquals(nPhases, phaser.getPhase());
+        assertEquals(nThreads * nPhases, count.get());
+    }
+
+    /**
+     * Parties may register and deregister while the phaser is in use
+     */
+    public void testDynamicParties() {
+        final Phaser phaser = new Phaser(1);
+        final AtomicInteger done = new AtomicInteger();
+        Thread[] threads = new Thread[6];
+        for (int i = 0; i < threads.length; ++i) {
+            final int rounds = i + 1;
+            phaser.register();
+            threads[i] = new Thread(new Runnable() {
+                    public void run() {
+                        for (int r = 0; r < rounds; ++r)
+                            phaser.arriveAndAwaitAdvance();
+                        phaser.arriveAndDeregister();
+                        done.incrementAndGet();
+                    }});
+            threads[i].start();
+        }
+        while (done.get() < threads.length)
+            phaser.arriveAndAwaitAdvance();
+        assertEquals(1, phaser.getRegisteredParties());
+        assertFalse(phaser.isTerminated());
+        phaser.arriveAndDeregister();
+        assertTrue(phaser.isTerminated());
+    }
+
+    /**
+     * onAdvance is called once per phase, and termination follows
+     * when it returns true
+     */
+    public void testOnAdvance() {
+        final AtomicInteger calls = new AtomicInteger();
+        Phaser phaser = new Phaser(1) {
+            protected boolean onAdvance(int phase, int parties) {
+                calls.incrementAndGet();
+                return phase >= 2;
+            }
+        };
+        assertEquals(1, phaser.arriveAndAwaitAdvance());
+        assertEquals(2, phaser.arriveAndAwaitAdvance());
+        assertEquals(3, phaser.arriveAndAwaitAdvance());
+        assertTrue(phaser.isTerminated());
+        assertTrue(phaser.arrive() < 0);
+        assertEquals(3, calls.get());
+    }
+
+    /**
+     * Arrivals at tiered phasers advance the root phase only when all
+     * children have arrived
+     */
+    public void testTiered() {
+        Phaser root = new Phaser();
+        Phaser child1 = new Phaser(root, 2);
+        Phaser child2 = new Phaser(root, 1);
+        assertEquals(2, root.getRegisteredParties());
+        child1.arrive();
+        child2.arrive();
+        assertEquals(0, root.getPhase());
+        child1.arrive();
+        assertEquals(1, root.getPhase());
+        assertEquals(1, child1.getPhase());
+        assertEquals(2, child1.getUnarrivedParties());
+        child2.arriveAndDeregister();
+        assertEquals(1, root.getRegisteredParties());
+    }
+
+    /**
+     * awaitAdvanceInterruptibly throws InterruptedException when
+     * interrupted, without changing the phaser state
+     */
+    public void testAwaitAdvanceInterruptibly() {
+        final Phaser phaser = new Phaser(2);
+        Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        phaser.awaitAdvanceInterruptibly(phaser.arrive());
+                        threadShouldThrow();
+                    } catch (InterruptedException success) { }
+                }});
+        try {
+            t.start();
+            Thread.sleep(SHORT_DELAY_MS);
+            t.interrupt();
+            t.join(LONG_DELAY_MS);
+            assertFalse(t.isAlive());
+            assertEquals(0, phaser.getPhase());
+            assertEquals(1, phaser.getArrivedParties());
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+    }
+
+    /**
+     * Timed awaitAdvanceInterruptibly throws TimeoutException when
+     * the phase does not advance in time
+     */
+    public void testAwaitAdvanceTimeout() {
+        Phaser phaser = new Phaser(2);
+        try {
+            phaser.awaitAdvanceInterruptibly(phaser.arrive(),
+                                             SHORT_DELAY_MS, TimeUnit.MILLISECONDS);
+            shouldThrow();
+        } catch (TimeoutException success) {
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+        assertEquals(0, phaser.getPhase());
+    }
+
+    /**
+     * forceTermination releases waiting parties
+     */
+    public void testForceTermination() {
+        final Phaser phaser = new Phaser(2);
+        Thread t = new Thread(new Runnable() {
+                public void run() {
+                    threadAssertTrue(phaser.arriveAndAwaitAdvance() < 0);
+                }});
+        try {
+            t.start();
+            Thread.sleep(SHORT_DELAY_MS);
+            phaser.forceTermination();
+            t.join(LONG_DELAY_MS);
+            assertFalse(t.isAlive());
+            assertTrue(phaser.isTerminated());
+        } catch (InterruptedException e) {
+            unexpectedException();
+        }
+    }
+}
@@ -44,6 +44,7 @@ import org.apache.harmony.lang.management.ManagementUtils;
 import org.apache.harmony.lang.management.MemoryManagerMXBeanImpl;
 import org.apache.harmony.lang.management.OpenTypeMappingIHandler;
 import org.apache.harmony.lang.management.internal.nls.Messages;
+import org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManager;
 
 
 /**
@@ -393,6 +394,8 @@ public class ManagementFactory {
      * Register the singleton platform MXBeans :
      * <ul>
      * <li>ClassLoadingMXBean
+     * <li>LoggingMXBean
+     * <li>HttpConnectionManagerMXBean
      * <li>MemoryMXBean
      * <li>ThreadMXBean
      * <li>RuntimeMXBean
@@ -422,6 +425,13 @@ public class ManagementFactory {
                         oName);
             }
 
+            oName = new ObjectName(
+                    HttpConnectionManager.HTTP_CONNECTION_MANAGER_MXBEAN_NAME);
+            if (!platformServer.isRegistered(oName)) {
+                platformServer.registerMBean(ManagementUtils
+                        .getHttpConnectionManagerBean(), oName);
+            }
+
             oName = new ObjectName(MEMORY_MXBEAN_NAME);
             if (!platformServer.isRegistered(oName)) {
                 platformServer.registerMBean(ManagementUtils.getMemoryBean(),
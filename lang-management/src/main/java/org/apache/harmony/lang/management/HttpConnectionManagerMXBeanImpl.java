@@ -0,0 +1,115 @@
+/* 
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.lang.management;
+
+import org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManager;
+import org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean;
+
+/**
+ * Runtime type for {@link HttpConnectionManagerMXBean}. Every attribute is
+ * read from the default {@link HttpConnectionManager}.
+ * <p>
+ * There is only ever one instance of this class in a virtual machine.
+ * </p>
+ */
+public final class HttpConnectionManagerMXBeanImpl extends DynamicMXBeanImpl
+        implements HttpConnectionManagerMXBean {
+
+    private static HttpConnectionManagerMXBeanImpl instance = new HttpConnectionManagerMXBeanImpl();
+
+    /**
+     * Constructor intentionally private to prevent instantiation by others.
+     * Sets the metadata for this bean.
+     */
+    private HttpConnectionManagerMXBeanImpl() {
+        setMBeanInfo(ManagementUtils
+                .getMBeanInfo(HttpConnectionManagerMXBean.class.getName()));
+    }
+
+    /**
+     * Singleton accessor method.
+     * 
+     * @return the <code>HttpConnectionManagerMXBeanImpl</code> singleton.
+     */
+    static HttpConnectionManagerMXBeanImpl getInstance() {
+        return instance;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean#getHitCount()
+     */
+    public long getHitCount() {
+        return HttpConnectionManager.getDefault().getHitCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean#getMissCount()
+     */
+    public long getMissCount() {
+        return HttpConnectionManager.getDefault().getMissCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean#getEvictionCount()
+     */
+    public long getEvictionCount() {
+        return HttpConnectionManager.getDefault().getEvictionCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean#getIdleConnectionCount()
+     */
+    public int getIdleConnectionCount() {
+        return HttpConnectionManager.getDefault().getIdleConnectionCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean#getMaxConnectionsPerHost()
+     */
+    public int getMaxConnectionsPerHost() {
+        return HttpConnectionManager.getDefault().getMaxConnectionsPerHost();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean#getMaxTotalConnections()
+     */
+    public int getMaxTotalConnections() {
+        return HttpConnectionManager.getDefault().getMaxTotalConnections();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean#getKeepAliveTimeout()
+     */
+    public long getKeepAliveTimeout() {
+        return HttpConnectionManager.getDefault().getKeepAliveTimeout();
+    }
+}
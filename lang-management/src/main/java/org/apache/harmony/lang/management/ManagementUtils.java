@@ -62,6 +62,7 @@ import javax.management.openmbean.TabularDataSupport;
 import javax.management.openmbean.TabularType;
 
 import org.apache.harmony.lang.management.internal.nls.Messages;
+import org.apache.harmony.luni.internal.net.www.protocol.http.HttpConnectionManagerMXBean;
 
 /**
  * Support methods for org.apache.harmony.lang.management classes.
@@ -135,6 +136,7 @@ public class ManagementUtils {
         addLoggingBeanInfo(map);
         addMemoryManagerBeanInfo(map);
         addGarbageCollectorBeanInfo(map);
+        addHttpConnectionManagerBeanInfo(map);
         addMemoryBeanInfo(map);
         addMemoryPoolBeanInfo(map);
         addOperatingSystemBeanInfo(map);
@@ -564,6 +566,44 @@ public class ManagementUtils {
                         .getName(), attributes, null, operations, null));
     }
 
+    /**
+     * Creates the metadata for the {@link HttpConnectionManagerMXBean}. For
+     * this type of platform bean the metadata covers :
+     * <ul>
+     * <li>7 attributes
+     * <li>0 constructors
+     * <li>0 operations
+     * <li>0 notifications
+     * </ul>
+     * 
+     * @param result
+     */
+    private static void addHttpConnectionManagerBeanInfo(
+            HashMap<String, MBeanInfo> result) {
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[7];
+        attributes[0] = new MBeanAttributeInfo("HitCount", Long.TYPE
+                .getName(), "HitCount", true, false, false);
+        attributes[1] = new MBeanAttributeInfo("MissCount", Long.TYPE
+                .getName(), "MissCount", true, false, false);
+        attributes[2] = new MBeanAttributeInfo("EvictionCount", Long.TYPE
+                .getName(), "EvictionCount", true, false, false);
+        attributes[3] = new MBeanAttributeInfo("IdleConnectionCount",
+                Integer.TYPE.getName(), "IdleConnectionCount", true, false,
+                false);
+        attributes[4] = new MBeanAttributeInfo("MaxConnectionsPerHost",
+                Integer.TYPE.getName(), "MaxConnectionsPerHost", true, false,
+                false);
+        attributes[5] = new MBeanAttributeInfo("MaxTotalConnections",
+                Integer.TYPE.getName(), "MaxTotalConnections", true, false,
+                false);
+        attributes[6] = new MBeanAttributeInfo("KeepAliveTimeout", Long.TYPE
+                .getName(), "KeepAliveTimeout", true, false, false);
+        result.put(HttpConnectionManagerMXBean.class.getName(), new MBeanInfo(
+                HttpConnectionManagerMXBeanImpl.class.getName(),
+                HttpConnectionManagerMXBeanImpl.class.getName(), attributes,
+                null, null, null));
+    }
+
     /**
      * Creates the metadata for the {@link GarbageCollectorMXBean}. For this
      * type of platform bean the metadata covers :
@@ -700,6 +740,13 @@ public class ManagementUtils {
         return LoggingMXBeanImpl.getInstance();
     }
 
+    /**
+     * @return the singleton <code>HttpConnectionManagerMXBean</code> instance.
+     */
+    public static HttpConnectionManagerMXBeanImpl getHttpConnectionManagerBean() {
+        return HttpConnectionManagerMXBeanImpl.getInstance();
+    }
+
     /**
      * Returns a list of all of the instances of {@link MemoryManagerMXBean}in
      * this virtual machine. Owing to the dynamic nature of this kind of
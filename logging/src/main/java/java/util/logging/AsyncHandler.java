@@ -0,0 +1,504 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util.logging;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.PrivilegedExceptionAction;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.harmony.logging.internal.nls.Messages;
+
+/**
+ * A {@code Handler} which publishes the log records to a target handler on a
+ * thread of its own.
+ * <p>
+ * {@code publish} only puts the record into a bounded buffer, without taking
+ * any lock, so the logging threads neither wait for the target handler nor
+ * for each other. A single thread takes the records out of the buffer in
+ * batches, hands them to the target handler, and flushes the target once
+ * enough records have been written or the oldest of them has waited long
+ * enough. The target handlers of this package write a batch without flushing
+ * it, even those which flush after every record they publish themselves.
+ * <p>
+ * When the buffer is full, a record of the block level or higher waits for
+ * room in the buffer, and a lower record is dropped. The block level
+ * {@code Level.ALL} makes every record wait, so none is lost, and
+ * {@code Level.OFF} drops every record which doesn't fit. The number of
+ * dropped records and the number of records in the buffer can be queried.
+ * <p>
+ * The source class and method of a record are inferred before the record is
+ * buffered. Its parameters are formatted later, on the thread of the
+ * handler, so they should not be changed after they have been logged.
+ * <p>
+ * {@code AsyncHandler} will read following {@code LogManager} properties for
+ * initialization, if given properties are not defined or has invalid values,
+ * default value will be used.
+ * <ul>
+ * <li>java.util.logging.AsyncHandler.filter specifies the {@code Filter}
+ * class name, defaults to no {@code Filter}.</li>
+ * <li>java.util.logging.AsyncHandler.level specifies the level for this
+ * {@code Handler}, defaults to {@code Level.ALL}.</li>
+ * <li>java.util.logging.AsyncHandler.block specifies the block level, defaults
+ * to {@code Level.ALL}.</li>
+ * <li>java.util.logging.AsyncHandler.size specifies the buffer size in number
+ * of {@code LogRecord}, rounded up to a power of two, defaults to 1024.</li>
+ * <li>java.util.logging.AsyncHandler.batch specifies the number of records
+ * written to the target handler before it is flushed, defaults to 256.</li>
+ * <li>java.util.logging.AsyncHandler.interval specifies the maximum time in
+ * milliseconds a written record waits until the target handler is flushed,
+ * defaults to 1000.</li>
+ * <li>java.util.logging.AsyncHandler.target specifies the class of the target
+ * {@code Handler}, no default value, which means this property must be
+ * specified either by property setting or by constructor.</li>
+ * </ul>
+ */
+public class AsyncHandler extends Handler {
+
+    // default buffer size
+    private static final int DEFAULT_SIZE = 1024;
+
+    // default number of records written before a flush
+    private static final int DEFAULT_BATCH = 256;
+
+    // default maximum delay of a flush, in milliseconds
+    private static final long DEFAULT_INTERVAL = 1000;
+
+    // maximum number of records taken out of the buffer at once
+    private static final int DRAIN_SIZE = 64;
+
+    // how long a blocked record waits before checking the buffer again
+    private static final long BLOCK_WAIT_NANOS = 100000;
+
+    // target handler
+    private Handler target;
+
+    // block level
+    private volatile Level block = Level.ALL;
+
+    // flush policy
+    private int batch = DEFAULT_BATCH;
+
+    private long interval = DEFAULT_INTERVAL;
+
+    // LogManager instance for convenience
+    private final LogManager manager = LogManager.getLogManager();
+
+    // the buffer, its size is a power of two
+    private AtomicReferenceArray<LogRecord> buffer;
+
+    private int mask;
+
+    // position of the next record put into the buffer
+    private final AtomicLong tail = new AtomicLong();
+
+    // position of the next record taken out of the buffer
+    private volatile long head;
+
+    // number of records dropped because the buffer was full
+    private final AtomicLong dropped = new AtomicLong();
+
+    // whether the handler thread is about to park
+    private volatile boolean waiting;
+
+    private volatile boolean closed;
+
+    // the records before these positions are to be flushed, and have been
+    private volatile long flushRequested;
+
+    private volatile long flushed;
+
+    private final Object flushLock = new Object();
+
+    private Thread thread;
+
+    /**
+     * Default constructor, construct and init an {@code AsyncHandler} using
+     * {@code LogManager} properties or default values.
+     *
+     * @throws RuntimeException
+     *             if property value are invalid and no default value could be
+     *             used.
+     */
+    public AsyncHandler() {
+        super();
+        String className = this.getClass().getName();
+        // init target
+        final String targetName = manager.getProperty(className + ".target"); //$NON-NLS-1$
+        try {
+            Class<?> targetClass = AccessController
+                    .doPrivileged(new PrivilegedExceptionAction<Class<?>>() {
+                        public Class<?> run() throws Exception {
+                            ClassLoader loader = Thread.currentThread()
+                                    .getContextClassLoader();
+                            if (loader == null) {
+                                loader = ClassLoader.getSystemClassLoader();
+                            }
+                            return loader.loadClass(targetName);
+                        }
+                    });
+            target = (Handler) targetClass.newInstance();
+        } catch (Exception e) {
+            // logging.10=Cannot load target handler:{0}
+            throw new RuntimeException(Messages.getString("logging.10", //$NON-NLS-1$
+                    targetName));
+        }
+        // init size
+        int size = DEFAULT_SIZE;
+        String sizeString = manager.getProperty(className + ".size"); //$NON-NLS-1$
+        if (null != sizeString) {
+            try {
+                size = Integer.parseInt(sizeString);
+                if (size <= 0) {
+                    size = DEFAULT_SIZE;
+                }
+            } catch (Exception e) {
+                printInvalidPropMessage(className + ".size", sizeString, e); //$NON-NLS-1$
+            }
+        }
+        // init block level
+        String blockName = manager.getProperty(className + ".block"); //$NON-NLS-1$
+        if (null != blockName) {
+            try {
+                block = Level.parse(blockName);
+            } catch (Exception e) {
+                printInvalidPropMessage(className + ".block", blockName, e); //$NON-NLS-1$
+            }
+        }
+        init(size);
+    }
+
+    /**
+     * Construct and init an {@code AsyncHandler} using given target, size and
+     * block level, other properties using {@code LogManager} properties or
+     * default values.
+     *
+     * @param target
+     *            the given {@code Handler} to output
+     * @param size
+     *            the maximum number of buffered {@code LogRecord}, greater than
+     *            zero, rounded up to a power of two
+     * @param blockLevel
+     *            the block level
+     * @throws IllegalArgumentException
+     *             if {@code size <= 0}
+     * @throws RuntimeException
+     *             if property value are invalid and no default value could be
+     *             used.
+     */
+    public AsyncHandler(Handler target, int size, Level blockLevel) {
+        if (size <= 0) {
+            // logging.11=Size must be positive.
+            throw new IllegalArgumentException(Messages.getString("logging.11")); //$NON-NLS-1$
+        }
+        target.getLevel();
+        blockLevel.intValue();
+        this.target = target;
+        this.block = blockLevel;
+        init(size);
+    }
+
+    // init the flush policy and the common properties, and start the thread
+    private void init(int size) {
+        String className = this.getClass().getName();
+        String batchString = manager.getProperty(className + ".batch"); //$NON-NLS-1$
+        if (null != batchString) {
+            try {
+                batch = Math.max(1, Integer.parseInt(batchString));
+            } catch (Exception e) {
+                printInvalidPropMessage(className + ".batch", batchString, e); //$NON-NLS-1$
+            }
+        }
+        String intervalString = manager.getProperty(className + ".interval"); //$NON-NLS-1$
+        if (null != intervalString) {
+            try {
+                interval = Math.max(0, Long.parseLong(intervalString));
+            } catch (Exception e) {
+                printInvalidPropMessage(className + ".interval", //$NON-NLS-1$
+                        intervalString, e);
+            }
+        }
+        initProperties("ALL", null, "java.util.logging.SimpleFormatter", null); //$NON-NLS-1$//$NON-NLS-2$
+
+        int capacity = 1;
+        while (capacity < size && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        buffer = new AtomicReferenceArray<LogRecord>(capacity);
+        mask = capacity - 1;
+
+        thread = AccessController.doPrivileged(new PrivilegedAction<Thread>() {
+            public Thread run() {
+                Thread t = new Thread("AsyncHandler") { //$NON-NLS-1$
+                    @Override
+                    public void run() {
+                        consume();
+                    }
+                };
+                t.setDaemon(true);
+                t.setContextClassLoader(null);
+                return t;
+            }
+        });
+        thread.start();
+    }
+
+    /**
+     * Close this handler and target handler, free all associated resources.
+     * The records in the buffer are published and flushed first.
+     *
+     * @throws SecurityException
+     *             if security manager exists and it determines that caller does
+     *             not have the required permissions to control this handler.
+     */
+    @Override
+    public void close() {
+        manager.checkAccess();
+        closed = true;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() != thread) {
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        target.close();
+        setLevel(Level.OFF);
+    }
+
+    /**
+     * Waits until the records published so far have been written to the
+     * target handler, and the target handler has been flushed.
+     */
+    @Override
+    public void flush() {
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        long position = tail.get();
+        synchronized (flushLock) {
+            if (flushRequested < position) {
+                flushRequested = position;
+            }
+        }
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        synchronized (flushLock) {
+            while (flushed < position && thread.isAlive()) {
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Put a given {@code LogRecord} into the buffer, to be published by the
+     * target handler. If given record is not loggable, just return. If the
+     * buffer is full, the record waits for room in the buffer if its level is
+     * not less than the block level, and is dropped otherwise.
+     *
+     * @param record
+     *            the log record
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        // infer the source while the logging method is on the stack
+        record.getSourceClassName();
+
+        // the handler thread can't wait for itself to make room
+        boolean blocking = record.getLevel().intValue() >= block.intValue()
+                && Thread.currentThread() != thread;
+        while (true) {
+            long position = tail.get();
+            if (position - head > mask) {
+                if (!blocking || closed) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(BLOCK_WAIT_NANOS);
+            } else if (tail.compareAndSet(position, position + 1)) {
+                buffer.set((int) position & mask, record);
+                if (waiting) {
+                    waiting = false;
+                    LockSupport.unpark(thread);
+                }
+                return;
+            }
+        }
+    }
+
+    // the loop of the handler thread
+    private void consume() {
+        LogRecord[] records = new LogRecord[DRAIN_SIZE];
+        int unflushed = 0;
+        long deadline = 0;
+        try {
+            while (true) {
+                int count = drain(records);
+                if (count > 0) {
+                    try {
+                        target.publishAll(records, count);
+                    } catch (RuntimeException e) {
+                        reportError(null, e, ErrorManager.WRITE_FAILURE);
+                    }
+                    Arrays.fill(records, 0, count, null);
+                    if (unflushed == 0) {
+                        deadline = System.nanoTime() + interval * 1000000;
+                    }
+                    unflushed += count;
+                }
+
+                long position = head;
+                boolean requested = flushRequested > flushed
+                        && position >= flushRequested;
+                if (requested || unflushed >= batch
+                        || (unflushed > 0 && System.nanoTime() - deadline >= 0)) {
+                    flushTarget(position);
+                    unflushed = 0;
+                }
+                if (count > 0) {
+                    continue;
+                }
+
+                if (tail.get() != position) {
+                    // a record is being put into the buffer
+                    Thread.yield();
+                    continue;
+                }
+                if (closed) {
+                    flushTarget(position);
+                    return;
+                }
+                waiting = true;
+                if (tail.get() == position && !closed) {
+                    if (unflushed > 0) {
+                        LockSupport.parkNanos(deadline - System.nanoTime());
+                    } else {
+                        LockSupport.park();
+                    }
+                }
+                waiting = false;
+            }
+        } finally {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    // take the next records out of the buffer, return their number
+    private int drain(LogRecord[] records) {
+        long position = head;
+        int count = 0;
+        while (count < records.length) {
+            int index = (int) position & mask;
+            LogRecord record = buffer.get(index);
+            if (record == null) {
+                break;
+            }
+            buffer.lazySet(index, null);
+            records[count++] = record;
+            position++;
+        }
+        head = position;
+        return count;
+    }
+
+    // flush the target, and wake up the threads waiting for it; a flush may
+    // have been requested after the handler thread decided to flush
+    private void flushTarget(long position) {
+        try {
+            target.flush();
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+        long previous = flushed;
+        flushed = position;
+        if (flushRequested > previous) {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Return the block level.
+     *
+     * @return the block level
+     */
+    public Level getBlockLevel() {
+        return block;
+    }
+
+    /**
+     * Set the block level. When the buffer is full, a record waits for room
+     * in the buffer if its level is not less than the block level, and is
+     * dropped otherwise.
+     *
+     * @param newLevel
+     *                 the new level to set.
+     * @throws SecurityException
+     *                 if security manager exists and it determines that caller
+     *                 does not have the required permissions to control this handler.
+     */
+    public void setBlockLevel(Level newLevel) {
+        manager.checkAccess();
+        newLevel.intValue();
+        this.block = newLevel;
+    }
+
+    /**
+     * Return the number of records dropped because the buffer was full.
+     *
+     * @return the number of dropped records
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Return the number of records in the buffer, which have not been handed
+     * to the target handler yet.
+     *
+     * @return the number of buffered records
+     */
+    public int getQueueDepth() {
+        long depth = tail.get() - head;
+        return depth < 0 ? 0 : (int) depth;
+    }
+}
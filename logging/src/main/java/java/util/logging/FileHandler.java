@@ -577,6 +577,22 @@ public class FileHandler extends StreamHandler {
         }
     }
 
+    /**
+     * Writes the given records without flushing. If the size of the files is
+     * limited, the output is flushed and measured after each record as by
+     * {@code publish}.
+     */
+    @Override
+    synchronized void publishAll(LogRecord[] records, int count) {
+        if (getClass() != FileHandler.class || limit > 0) {
+            super.publishAll(records, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            super.publish(records[i]);
+        }
+    }
+
     /**
      * This output stream uses the decorator pattern to add measurement features
      * to OutputStream which can detect the total size(in bytes) of output, the
@@ -18,7 +18,9 @@
 package java.util.logging;
 
 import java.text.MessageFormat;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * {@code Formatter} objects are used to format {@link LogRecord} objects into a
@@ -28,6 +30,18 @@ import java.util.ResourceBundle;
  */
 public abstract class Formatter {
 
+    // the most patterns kept compiled, all are dropped beyond
+    private static final int MAX_PATTERNS = 256;
+
+    /*
+     * The compiled message patterns. A pattern is parsed once instead of for
+     * each record, and the compiled formats are shared by the formatters of
+     * all handlers. They are only cloned, never used to format, so that the
+     * threads formatting the same pattern don't wait for each other.
+     */
+    private static final ConcurrentHashMap<String, MessageFormat> patterns
+            = new ConcurrentHashMap<String, MessageFormat>();
+
     /**
      * Constructs a {@code Formatter} object.
      */
@@ -62,6 +76,17 @@ public abstract class Formatter {
      * @return the string resulted from the formatting.
      */
     public String formatMessage(LogRecord r) {
+        /*
+         * the record keeps the message formatted by the first formatter, for
+         * the formatters of the other handlers the record is published to
+         */
+        Locale locale = Locale.getDefault();
+        Object[] params = r.getParameters();
+        FormattedMessage formatted = r.formattedMessage;
+        if (null != formatted && formatted.isFor(locale, params)) {
+            return formatted.message;
+        }
+
         String pattern = r.getMessage();
         ResourceBundle rb = null;
         // try to localize the message string first
@@ -73,7 +98,6 @@ public abstract class Formatter {
             }
         }
         if (null != pattern) {
-            Object[] params = r.getParameters();
             /*
              * if the message contains "{0", use java.text.MessageFormat to
              * format the string
@@ -81,15 +105,73 @@ public abstract class Formatter {
             if (pattern.indexOf("{0") >= 0 && null != params //$NON-NLS-1$
                     && params.length > 0) {
                 try {
-                    pattern = MessageFormat.format(pattern, params);
+                    pattern = format(pattern, params, locale);
                 } catch (IllegalArgumentException e) {
                     pattern = r.getMessage();
                 }
             }
         }
+        r.formattedMessage = new FormattedMessage(pattern, locale, params);
         return pattern;
     }
 
+    /*
+     * Formats the parameters with the given pattern, like
+     * MessageFormat.format(String, Object...), with the compiled pattern if
+     * there is one for the locale.
+     */
+    private static String format(String pattern, Object[] params, Locale locale) {
+        MessageFormat format = patterns.get(pattern);
+        if (null == format || !locale.equals(format.getLocale())) {
+            format = new MessageFormat(pattern, locale);
+            if (patterns.size() >= MAX_PATTERNS) {
+                patterns.clear();
+            }
+            patterns.put(pattern, format);
+        }
+        // a MessageFormat and its subformats are not safe for threads
+        return ((MessageFormat) format.clone()).format(params);
+    }
+
+    /*
+     * A message formatted by formatMessage, kept in the record for the
+     * formatters of the other handlers. It is only valid for the locale and
+     * the parameters it was formatted with, which are compared one by one as
+     * the array of the record may have been changed in place.
+     */
+    static final class FormattedMessage {
+
+        final String message;
+
+        private final Locale locale;
+
+        private final Object[] params;
+
+        FormattedMessage(String message, Locale locale, Object[] params) {
+            this.message = message;
+            this.locale = locale;
+            this.params = (null == params) ? null : params.clone();
+        }
+
+        boolean isFor(Locale locale, Object[] params) {
+            if (!this.locale.equals(locale)) {
+                return false;
+            }
+            if (null == params || null == this.params) {
+                return params == this.params;
+            }
+            if (params.length != this.params.length) {
+                return false;
+            }
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] != this.params[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * Gets the head string used to wrap a set of log records. This base class
      * always returns an empty string.
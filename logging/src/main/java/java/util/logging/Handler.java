@@ -186,6 +186,23 @@ public abstract class Handler {
      */
     public abstract void publish(LogRecord record);
 
+    /**
+     * Publishes the given records in turn. {@code AsyncHandler} hands its
+     * records to its target in batches through this method, and flushes the
+     * target itself; handlers of this package which flush after every record
+     * in {@code publish} override it to write the batch without flushing.
+     * 
+     * @param records
+     *            the records to publish.
+     * @param count
+     *            the number of records, from the first, to publish.
+     */
+    void publishAll(LogRecord[] records, int count) {
+        for (int i = 0; i < count; i++) {
+            publish(records[i]);
+        }
+    }
+
     /**
      * Gets the character encoding used by this handler, {@code null} for
      * default encoding.
@@ -30,13 +30,13 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectInstance;
@@ -180,8 +180,13 @@ public class LogManager {
         throw new AssertionError(Messages.getString("logging.22")); //$NON-NLS-1$
     }
 
+    /*
+     * The registered loggers. Loggers are only added while synchronized on
+     * this manager, but looked up without locking, so that getting a logger
+     * does not wait for the configuration of other loggers.
+     */
     // FIXME: use weak reference to avoid heap memory leak
-    private Hashtable<String, Logger> loggers;
+    private ConcurrentHashMap<String, Logger> loggers;
 
     /** The configuration properties */
     private Properties props;
@@ -229,7 +234,7 @@ public class LogManager {
      * application can subclass the object.
      */
     protected LogManager() {
-        loggers = new Hashtable<String, Logger>();
+        loggers = new ConcurrentHashMap<String, Logger>();
         props = new Properties();
         listeners = new PropertyChangeSupport(this);
         // add shutdown hook to ensure that the associated resource will be
@@ -295,8 +300,9 @@ public class LogManager {
             return false;
         }
         addToFamilyTree(logger, name);
-        loggers.put(name, logger);
         logger.setManager(this);
+        // only published once configured, as it is looked up without locking
+        loggers.put(name, logger);
         return true;
     }
 
@@ -373,7 +379,7 @@ public class LogManager {
      *            name of logger
      * @return logger with given name, or {@code null} if nothing is found.
      */
-    public synchronized Logger getLogger(String name) {
+    public Logger getLogger(String name) {
         return loggers.get(name);
     }
 
@@ -382,7 +388,7 @@ public class LogManager {
      *
      * @return enumeration of registered logger names
      */
-    public synchronized Enumeration<String> getLoggerNames() {
+    public Enumeration<String> getLoggerNames() {
         return loggers.keys();
     }
 
@@ -604,11 +610,16 @@ public class LogManager {
      * @param resourceBundleName the resource bundle to associate, or null for
      *      no associated resource bundle.
      */
-    synchronized Logger getOrCreate(String name, String resourceBundleName) {
+    Logger getOrCreate(String name, String resourceBundleName) {
         Logger result = getLogger(name);
         if (result == null) {
-            result = new Logger(name, resourceBundleName);
-            addLogger(result);
+            synchronized (this) {
+                result = getLogger(name);
+                if (result == null) {
+                    result = new Logger(name, resourceBundleName);
+                    addLogger(result);
+                }
+            }
         }
         return result;
     }
@@ -25,6 +25,7 @@ import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 
 import org.apache.harmony.logging.internal.nls.Messages;
+import org.apache.harmony.vm.VMStack;
 
 /**
  * A {@code LogRecord} object represents a logging request. It is passed between
@@ -139,6 +140,12 @@ public class LogRecord implements Serializable {
     // If the source method and source class has been initialized
     private transient boolean sourceInited;
 
+    // The stack the source method name is yet to be found in, if any
+    private transient Object sourceStack;
+
+    // The message formatted by Formatter.formatMessage, if any
+    transient Formatter.FormattedMessage formattedMessage;
+
     /**
      * Constructs a {@code LogRecord} object using the supplied the logging
      * level and message. The millis property is set to the current time. The
@@ -245,6 +252,7 @@ public class LogRecord implements Serializable {
      */
     public void setMessage(String message) {
         this.message = message;
+        this.formattedMessage = null;
     }
 
     /**
@@ -284,6 +292,7 @@ public class LogRecord implements Serializable {
      */
     public void setParameters(Object[] parameters) {
         this.parameters = parameters;
+        this.formattedMessage = null;
     }
 
     /**
@@ -306,6 +315,7 @@ public class LogRecord implements Serializable {
      */
     public void setResourceBundle(ResourceBundle resourceBundle) {
         this.resourceBundle = resourceBundle;
+        this.formattedMessage = null;
     }
 
     /**
@@ -361,28 +371,58 @@ public class LogRecord implements Serializable {
     }
 
     /*
-     *  Init the sourceClass and sourceMethod fields.
+     * Init the sourceClass field, and keep the stack to find the sourceMethod
+     * in. Only the classes of the stack are walked here, as far as the caller
+     * of the logger, instead of building the StackTraceElement of every frame.
      */
     private void initSource() {
         if (!sourceInited) {
-            StackTraceElement[] elements = (new Throwable()).getStackTrace();
-            int i = 0;
-            String current = null;
-            FINDLOG: for (; i < elements.length; i++) {
-                current = elements[i].getClassName();
-                if (current.equals(Logger.class.getName())) {
-                    break FINDLOG;
+            int size = 16;
+            while (true) {
+                Class<?>[] classes = VMStack.getClasses(size, false);
+                int i = 0;
+                while (i < classes.length && classes[i] != Logger.class) {
+                    i++;
+                }
+                while (i < classes.length && classes[i] == Logger.class) {
+                    i++;
                 }
+                if (i < classes.length) {
+                    this.sourceClassName = classes[i].getName();
+                    this.sourceStack = VMStack.getStackState();
+                    break;
+                }
+                if (size < 0 || classes.length < size) {
+                    // no caller of a logger on the stack
+                    break;
+                }
+                size = size < 256 ? size * 4 : -1;
             }
-            while (++i < elements.length
-                    && elements[i].getClassName().equals(current)) {
-                // do nothing
+            sourceInited = true;
+        }
+    }
+
+    /*
+     * Finds the sourceMethod in the stack kept by initSource(), which is the
+     * method of the sourceClass called by the logger.
+     */
+    private synchronized void initSourceMethod() {
+        if (null != sourceStack) {
+            StackTraceElement[] elements = VMStack.getStackTrace(sourceStack);
+            int i = 0;
+            String logger = Logger.class.getName();
+            while (i < elements.length
+                    && !elements[i].getClassName().equals(logger)) {
+                i++;
+            }
+            while (i < elements.length
+                    && !elements[i].getClassName().equals(sourceClassName)) {
+                i++;
             }
             if (i < elements.length) {
-                this.sourceClassName = elements[i].getClassName();
                 this.sourceMethodName = elements[i].getMethodName();
             }
-            sourceInited = true;
+            sourceStack = null;
         }
     }
 
@@ -394,6 +434,8 @@ public class LogRecord implements Serializable {
      *            {@code null}.
      */
     public void setSourceClassName(String sourceClassName) {
+        // the inferred method is of the inferred class
+        initSourceMethod();
         sourceInited = true;
         this.sourceClassName = sourceClassName;
     }
@@ -405,6 +447,7 @@ public class LogRecord implements Serializable {
      */
     public String getSourceMethodName() {
         initSource();
+        initSourceMethod();
         return sourceMethodName;
     }
 
@@ -415,8 +458,9 @@ public class LogRecord implements Serializable {
      *            the name of the source method of this log record, may be
      *            {@code null}.
      */
-    public void setSourceMethodName(String sourceMethodName) {
+    public synchronized void setSourceMethodName(String sourceMethodName) {
         sourceInited = true;
+        sourceStack = null;
         this.sourceMethodName = sourceMethodName;
     }
 
@@ -467,6 +511,7 @@ public class LogRecord implements Serializable {
      * Customized serialization.
      */
     private void writeObject(ObjectOutputStream out) throws IOException {
+        initSourceMethod();
         out.defaultWriteObject();
         out.writeByte(MAJOR);
         out.writeByte(MINOR);
@@ -19,14 +19,16 @@ package java.util.logging;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.text.MessageFormat;
-import java.util.Date;
 
 /**
  * {@code SimpleFormatter} can be used to print a summary of the information
  * contained in a {@code LogRecord} object in a human readable format.
  */
 public class SimpleFormatter extends Formatter {
+
+    // the format of "{0, date} {0, time}", shared by all simple formatters
+    private static final TimestampFormat timestampFormat = new TimestampFormat();
+
     /**
      * Constructs a new {@code SimpleFormatter}.
      */
@@ -45,8 +47,7 @@ public class SimpleFormatter extends Formatter {
     @Override
     public String format(LogRecord r) {
         StringBuilder sb = new StringBuilder();
-        sb.append(MessageFormat.format("{0, date} {0, time} ", //$NON-NLS-1$
-                new Object[] { new Date(r.getMillis()) }));
+        sb.append(timestampFormat.format(r.getMillis())).append(" "); //$NON-NLS-1$
         sb.append(r.getSourceClassName()).append(" "); //$NON-NLS-1$
         sb.append(r.getSourceMethodName()).append(
                 LogManager.getSystemLineSeparator());
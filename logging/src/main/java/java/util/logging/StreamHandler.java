@@ -303,6 +303,29 @@ public class StreamHandler extends Handler {
      */
     @Override
     public synchronized void publish(LogRecord record) {
+        publishRecord(record);
+    }
+
+    /**
+     * Writes the given records without flushing. A subclass outside this
+     * package may do more in {@code publish}, so its {@code publish} is
+     * called for each record instead.
+     */
+    @Override
+    synchronized void publishAll(LogRecord[] records, int count) {
+        Class<?> c = getClass();
+        if (c != StreamHandler.class && c != ConsoleHandler.class
+                && c != SocketHandler.class) {
+            super.publishAll(records, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            publishRecord(records[i]);
+        }
+    }
+
+    // Format and write a record, if it is loggable.
+    private void publishRecord(LogRecord record) {
         try {
             if (this.isLoggable(record)) {
                 if (this.writerNotInitialized) {
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package java.util.logging;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Formats the time of log records for the formatters of this package. The
+ * date formats are created once for the default locale, instead of for each
+ * record, and are shared by all threads. The formats show whole seconds at
+ * most, and the records logged one after another usually fall in the same
+ * second, so the text of the last second formatted is kept and reused. A
+ * change of the default locale is noticed; the time zone is that of the
+ * time the formats were created.
+ */
+final class TimestampFormat {
+
+    // the text of the time of one second
+    private static final class Text {
+        final long second;
+
+        final Locale locale;
+
+        final String text;
+
+        Text(long second, Locale locale, String text) {
+            this.second = second;
+            this.locale = locale;
+            this.text = text;
+        }
+    }
+
+    // the date pattern, or null for the default date and time formats
+    private final String pattern;
+
+    private volatile Text last;
+
+    // the formats, and the locale they were created for; guarded by this
+    private DateFormat dateFormat;
+
+    private DateFormat timeFormat;
+
+    private Locale locale;
+
+    /**
+     * Creates a format which formats the time as the default date format and
+     * the default time format of the default locale, separated by a space,
+     * like the {@code MessageFormat} pattern "{0, date} {0, time}".
+     */
+    TimestampFormat() {
+        this.pattern = null;
+    }
+
+    /**
+     * Creates a format which formats the time with the given
+     * {@code SimpleDateFormat} pattern.
+     */
+    TimestampFormat(String pattern) {
+        this.pattern = pattern;
+    }
+
+    String format(long millis) {
+        // the second of the time, rounded down for times before 1970
+        long second = millis >= 0 ? millis / 1000 : (millis - 999) / 1000;
+        Locale current = Locale.getDefault();
+        Text text = last;
+        if (null != text && text.second == second
+                && text.locale.equals(current)) {
+            return text.text;
+        }
+
+        String result;
+        synchronized (this) {
+            if (!current.equals(locale)) {
+                if (null == pattern) {
+                    dateFormat = DateFormat.getDateInstance(DateFormat.DEFAULT,
+                            current);
+                    timeFormat = DateFormat.getTimeInstance(DateFormat.DEFAULT,
+                            current);
+                } else {
+                    dateFormat = new SimpleDateFormat(pattern, current);
+                }
+                locale = current;
+            }
+            Date date = new Date(millis);
+            if (null == pattern) {
+                result = dateFormat.format(date) + " " + timeFormat.format(date); //$NON-NLS-1$
+            } else {
+                result = dateFormat.format(date);
+            }
+        }
+        last = new Text(second, current, result);
+        return result;
+    }
+}
@@ -19,8 +19,6 @@ package java.util.logging;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.ResourceBundle;
 
 /**
@@ -37,8 +35,8 @@ public class XMLFormatter extends Formatter {
 
     private static final String indent = "    "; //$NON-NLS-1$
 
-    private static final SimpleDateFormat dataFormat = new SimpleDateFormat(
-            "yyyy-MM-dd hh:mm:ss"); //$NON-NLS-1$
+    private static final TimestampFormat dataFormat = new TimestampFormat(
+            "yyyy-MM-dd'T'hh:mm:ss"); //$NON-NLS-1$
 
     /**
      * Constructs a new {@code XMLFormatter}.
@@ -60,7 +58,7 @@ public class XMLFormatter extends Formatter {
         // call a method of LogRecord to ensure not null
         long time = r.getMillis();
         // format to date
-        String date = dataFormat.format(new Date(time)).replace(' ', 'T');
+        String date = dataFormat.format(time);
 
         StringBuilder sb = new StringBuilder();
         sb.append("<record>").append(lineSeperator);
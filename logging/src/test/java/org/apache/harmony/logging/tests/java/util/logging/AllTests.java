@@ -42,6 +42,7 @@ public class AllTests {
 		suite.addTestSuite(ConsoleHandlerTest.class);
 
 		suite.addTestSuite(MemoryHandlerTest.class);
+		suite.addTestSuite(AsyncHandlerTest.class);
 		suite.addTestSuite(FileHandlerTest.class);
 		suite.addTestSuite(XMLFormatterTest.class);
 		suite.addTestSuite(SocketHandlerTest.class);
@@ -0,0 +1,404 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.logging.tests.java.util.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.AsyncHandler;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+import org.apache.harmony.logging.tests.java.util.logging.util.EnvironmentHelper;
+
+public class AsyncHandlerTest extends TestCase {
+
+    final static LogManager manager = LogManager.getLogManager();
+
+    final static Properties props = new Properties();
+
+    final static String baseClassName = AsyncHandlerTest.class.getName();
+
+    private final PrintStream err = System.err;
+
+    AsyncHandler handler;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        manager.reset();
+        props.put("java.util.logging.AsyncHandler.level", "FINE");
+        props.put("java.util.logging.AsyncHandler.size", "3");
+        props.put("java.util.logging.AsyncHandler.block", "WARNING");
+        props.put("java.util.logging.AsyncHandler.batch", "1000");
+        props.put("java.util.logging.AsyncHandler.interval", "60000");
+        props.put("java.util.logging.AsyncHandler.target", baseClassName
+                + "$MockHandler");
+        manager.readConfiguration(EnvironmentHelper
+                .PropertiesToInputStream(props));
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        if (handler != null) {
+            handler.close();
+        }
+        manager.readConfiguration();
+        props.clear();
+        System.setErr(err);
+    }
+
+    public void testAsyncHandler() {
+        handler = new AsyncHandler();
+        assertEquals(Level.FINE, handler.getLevel());
+        assertEquals(Level.WARNING, handler.getBlockLevel());
+        assertEquals(0, handler.getQueueDepth());
+        assertEquals(0, handler.getDroppedCount());
+    }
+
+    public void testAsyncHandler_InvalidTarget() {
+        props.put("java.util.logging.AsyncHandler.target", "no.such.Handler");
+        try {
+            manager.readConfiguration(EnvironmentHelper
+                    .PropertiesToInputStream(props));
+            new AsyncHandler();
+            fail("should throw RuntimeException");
+        } catch (IOException e) {
+            fail(e.toString());
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    public void testAsyncHandler_Params() {
+        try {
+            new AsyncHandler(null, 10, Level.ALL);
+            fail("should throw NullPointerException");
+        } catch (NullPointerException e) {
+            // expected
+        }
+        try {
+            new AsyncHandler(new MockHandler(), 10, null);
+            fail("should throw NullPointerException");
+        } catch (NullPointerException e) {
+            // expected
+        }
+        try {
+            new AsyncHandler(new MockHandler(), 0, Level.ALL);
+            fail("should throw IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testPublish_Flush() {
+        MockHandler target = new MockHandler();
+        handler = new AsyncHandler(target, 16, Level.ALL);
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message" + i));
+        }
+        // not loggable
+        handler.publish(new LogRecord(Level.FINER, "finer"));
+
+        handler.flush();
+        List<String> messages = target.getMessages();
+        assertEquals(100, messages.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message" + i, messages.get(i));
+        }
+        assertTrue(target.getFlushCount() >= 1);
+        assertEquals(0, handler.getQueueDepth());
+        assertEquals(0, handler.getDroppedCount());
+    }
+
+    public void testPublish_ManyThreads() throws Exception {
+        final MockHandler target = new MockHandler();
+        handler = new AsyncHandler(target, 8, Level.ALL);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final String name = "thread" + i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        handler.publish(new LogRecord(Level.INFO, name + ":"
+                                + j));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        handler.flush();
+
+        // nothing is lost, and the records of each thread stay in order
+        List<String> messages = target.getMessages();
+        assertEquals(4000, messages.size());
+        int[] next = new int[threads.length];
+        for (String message : messages) {
+            int thread = message.charAt("thread".length()) - '0';
+            assertEquals(next[thread]++, Integer.parseInt(message
+                    .substring(message.indexOf(':') + 1)));
+        }
+    }
+
+    public void testPublish_Drop() throws Exception {
+        MockHandler target = new MockHandler();
+        target.hold();
+        handler = new AsyncHandler(target, 4, Level.OFF);
+
+        // at most four records taken by the handler thread, four in the buffer
+        for (int i = 0; i < 20; i++) {
+            handler.publish(new LogRecord(Level.SEVERE, "message" + i));
+        }
+        assertTrue(handler.getDroppedCount() >= 12);
+        assertTrue(handler.getQueueDepth() <= 4);
+
+        target.release();
+        handler.flush();
+        assertEquals(20, target.getMessages().size()
+                + handler.getDroppedCount());
+        assertEquals(0, handler.getQueueDepth());
+    }
+
+    public void testPublish_BlockLevel() throws Exception {
+        final MockHandler target = new MockHandler();
+        target.hold();
+        handler = new AsyncHandler(target, 2, Level.WARNING);
+        for (int i = 0; i < 10; i++) {
+            handler.publish(new LogRecord(Level.INFO, "info" + i));
+        }
+        assertTrue(handler.getDroppedCount() >= 6);
+        long dropped = handler.getDroppedCount();
+
+        Thread release = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                target.release();
+            }
+        };
+        release.start();
+        // waits for room rather than being dropped
+        for (int i = 0; i < 10; i++) {
+            handler.publish(new LogRecord(Level.WARNING, "warning" + i));
+        }
+        release.join();
+        handler.flush();
+        assertEquals(dropped, handler.getDroppedCount());
+        List<String> messages = target.getMessages();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(messages.contains("warning" + i));
+        }
+
+        handler.setBlockLevel(Level.SEVERE);
+        assertEquals(Level.SEVERE, handler.getBlockLevel());
+        try {
+            handler.setBlockLevel(null);
+            fail("should throw NullPointerException");
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    public void testFlush_BatchFlush() throws Exception {
+        props.put("java.util.logging.AsyncHandler.batch", "1");
+        manager.readConfiguration(EnvironmentHelper
+                .PropertiesToInputStream(props));
+        MockHandler target = new MockHandler();
+        target.holdFlush();
+        handler = new AsyncHandler(target, 16, Level.ALL);
+        handler.publish(new LogRecord(Level.INFO, "message"));
+        // the handler thread flushes the full batch, no flush requested yet
+        target.awaitFlush(1);
+
+        Thread flusher = new Thread() {
+            public void run() {
+                handler.flush();
+            }
+        };
+        flusher.start();
+        while (flusher.isAlive()
+                && flusher.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        target.releaseFlush();
+        // the batch flush covers the requested flush and wakes it up
+        flusher.join(5000);
+        assertFalse(flusher.isAlive());
+        assertEquals(1, target.getMessages().size());
+    }
+
+    public void testClose() {
+        MockHandler target = new MockHandler();
+        target.hold();
+        handler = new AsyncHandler(target, 64, Level.ALL);
+        for (int i = 0; i < 50; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message" + i));
+        }
+        target.release();
+        handler.close();
+        // the buffered records are published before the target is closed
+        assertEquals(50, target.getMessages().size());
+        assertTrue(target.isClosed());
+        assertEquals(Level.OFF, handler.getLevel());
+
+        handler.publish(new LogRecord(Level.SEVERE, "closed"));
+        handler.flush();
+        assertEquals(50, target.getMessages().size());
+        handler = null;
+    }
+
+    public void testPublish_Source() {
+        MockHandler target = new MockHandler();
+        handler = new AsyncHandler(target, 16, Level.ALL);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        logger.info("source");
+        handler.flush();
+        LogRecord record = target.getRecords().get(0);
+        assertEquals(AsyncHandlerTest.class.getName(), record
+                .getSourceClassName());
+        assertEquals("testPublish_Source", record.getSourceMethodName());
+    }
+
+    public void testPublish_ConsoleHandler() {
+        FlushCountingStream out = new FlushCountingStream();
+        System.setErr(new PrintStream(out));
+        ConsoleHandler console = new ConsoleHandler();
+        handler = new AsyncHandler(console, 256, Level.ALL);
+        for (int i = 0; i < 100; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message" + i));
+        }
+        handler.flush();
+        String output = out.toString();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(output.indexOf("message" + i) != -1);
+        }
+        // written in batches, not flushed after each record
+        assertTrue(out.flushCount < 100);
+    }
+
+    public static class MockHandler extends Handler {
+
+        private final List<LogRecord> records = new ArrayList<LogRecord>();
+
+        private int flushCount;
+
+        private boolean closed;
+
+        private boolean holding;
+
+        private boolean holdingFlush;
+
+        public synchronized void close() {
+            closed = true;
+        }
+
+        public synchronized void flush() {
+            flushCount++;
+            notifyAll();
+            while (holdingFlush) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        public void publish(LogRecord record) {
+            synchronized (this) {
+                while (holding) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                records.add(record);
+            }
+        }
+
+        synchronized void hold() {
+            holding = true;
+        }
+
+        synchronized void release() {
+            holding = false;
+            notifyAll();
+        }
+
+        synchronized void holdFlush() {
+            holdingFlush = true;
+        }
+
+        synchronized void releaseFlush() {
+            holdingFlush = false;
+            notifyAll();
+        }
+
+        synchronized void awaitFlush(int count) throws InterruptedException {
+            while (flushCount < count) {
+                wait();
+            }
+        }
+
+        synchronized List<LogRecord> getRecords() {
+            return new ArrayList<LogRecord>(records);
+        }
+
+        synchronized List<String> getMessages() {
+            List<String> messages = new ArrayList<String>();
+            for (LogRecord record : records) {
+                messages.add(record.getMessage());
+            }
+            return messages;
+        }
+
+        synchronized int getFlushCount() {
+            return flushCount;
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+    }
+
+    static class FlushCountingStream extends ByteArrayOutputStream {
+
+        int flushCount;
+
+        public void flush() {
+            flushCount++;
+        }
+    }
+}
@@ -124,6 +124,38 @@ public class FormatterTest extends TestCase {
 		assertEquals("msg", f.formatMessage(r));
 	}
 
+	public void testFormatMessage_ParametersChangedInPlace() {
+		Object[] params = new Object[] { "a" };
+		r.setMessage("pattern {0}");
+		r.setParameters(params);
+		assertEquals("pattern a", f.formatMessage(r));
+		assertEquals("pattern a", new MockFormatter().formatMessage(r));
+
+		// formatted again with the new parameter
+		params[0] = "b";
+		assertEquals("pattern b", f.formatMessage(r));
+		assertEquals("pattern b", new MockFormatter().formatMessage(r));
+	}
+
+	public void testFormatMessage_Locale() {
+		Locale locale = Locale.getDefault();
+		try {
+			r.setMessage("pattern {0, number}");
+			r.setParameters(new Object[] { new Double(1.5) });
+			Locale.setDefault(Locale.US);
+			assertEquals("pattern 1.5", f.formatMessage(r));
+			assertEquals("pattern 1.5", new MockFormatter().formatMessage(r));
+
+			// formatted again for another locale
+			Locale.setDefault(Locale.GERMANY);
+			assertEquals("pattern 1,5", f.formatMessage(r));
+			r.setParameters(new Object[] { new Double(2.5) });
+			assertEquals("pattern 2,5", f.formatMessage(r));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
 	public static class MockFormatter extends Formatter {
 
 		public String format(LogRecord arg0) {
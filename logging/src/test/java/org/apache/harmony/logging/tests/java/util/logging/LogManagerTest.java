@@ -158,6 +158,42 @@ public class LogManagerTest extends TestCase {
 		assertEquals(1, i);
 	}
 
+	public void testGetLogger_ManyThreads() throws Exception {
+		final String name = "LogManagerTestThreads";
+		Logger parent = Logger.getLogger(name);
+		parent.setLevel(Level.SEVERE);
+		final Logger[][] loggers = new Logger[4][100];
+		Thread[] threads = new Thread[loggers.length];
+		for (int i = 0; i < threads.length; i++) {
+			final Logger[] got = loggers[i];
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j = 0; j < got.length; j++) {
+						got[j] = Logger.getLogger(name + "." + j);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+
+		// one logger for each name, inheriting the level of the parent
+		for (int j = 0; j < loggers[0].length; j++) {
+			Logger logger = manager.getLogger(name + "." + j);
+			for (int i = 0; i < loggers.length; i++) {
+				assertSame(logger, loggers[i][j]);
+			}
+			assertSame(parent, logger.getParent());
+			assertFalse(logger.isLoggable(Level.WARNING));
+		}
+		parent.setLevel(Level.FINE);
+		assertTrue(loggers[0][0].isLoggable(Level.FINE));
+		assertFalse(loggers[0][0].isLoggable(Level.FINER));
+		parent.setLevel(null);
+	}
+
 	public void testAddGetLogger_Hierachy() {
 		Logger foo = new MockLogger("testAddGetLogger_Hierachy.foo", null);
 		Logger child = new MockLogger("testAddGetLogger_Hierachy.foo.child",
@@ -209,6 +209,31 @@ public class LogRecordTest extends TestCase {
 		logger.removeHandler(handler);
 	}
 
+	public void testGetSourceMethodName_OtherThread() throws Exception {
+		Logger logger = Logger.getAnonymousLogger();
+		logger.setUseParentHandlers(false);
+		MockHandler handler = new MockHandler() {
+			public void publish(LogRecord record) {
+				// only the class is inferred on the logging thread
+				record.getSourceClassName();
+				lr = record;
+			}
+		};
+		logger.addHandler(handler);
+		logger.log(Level.SEVERE, MSG);
+
+		final String[] method = new String[1];
+		Thread thread = new Thread() {
+			public void run() {
+				method[0] = lr.getSourceMethodName();
+			}
+		};
+		thread.start();
+		thread.join();
+		assertEquals(this.getClass().getName(), lr.getSourceClassName());
+		assertEquals("testGetSourceMethodName_OtherThread", method[0]);
+	}
+
 	public void testGetSetMessage() {
 		assertEquals(MSG, lr.getMessage());
 		lr.setMessage(null);
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.logging.tests.java.util.logging;
+
+import java.io.OutputStream;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+import java.util.logging.XMLFormatter;
+
+/**
+ * Measures the records per second each thread logs through a Logger to a
+ * StreamHandler writing to nowhere, for a growing number of threads. The
+ * records carry parameters, so the time includes the message and the
+ * timestamp formatting of each record. The records are logged once with the
+ * source given, and once with the source inferred by the formatter. It is not
+ * part of the test suite; run it by hand:
+ *
+ * <pre>
+ * java org.apache.harmony.logging.tests.java.util.logging.LoggingBenchmark [records] [max threads]
+ * </pre>
+ */
+public class LoggingBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+                .getRuntime().availableProcessors();
+
+        System.out.println(records + " records per thread, best of " + ROUNDS
+                + " rounds, records per second per thread");
+        System.out.println("              SimpleFormatter          XMLFormatter");
+        System.out.println("threads     given   inferred     given   inferred");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long[] best = new long[4];
+            // the first round warms up
+            for (int i = 0; i <= ROUNDS; i++) {
+                long[] rates = new long[] {
+                        run(new SimpleFormatter(), threads, records, true),
+                        run(new SimpleFormatter(), threads, records, false),
+                        run(new XMLFormatter(), threads, records, true),
+                        run(new XMLFormatter(), threads, records, false) };
+                for (int j = 0; i > 0 && j < rates.length; j++) {
+                    best[j] = Math.max(best[j], rates[j]);
+                }
+            }
+            StringBuilder line = new StringBuilder(pad(
+                    String.valueOf(threads), 7));
+            for (long rate : best) {
+                line.append(pad(String.valueOf(rate), 11));
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Logs the given number of records on each of the given number of threads
+     * and returns the records per second per thread.
+     */
+    private static long run(Formatter formatter, int threads,
+            final int records, final boolean sourceGiven)
+            throws InterruptedException {
+        final Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        StreamHandler handler = new StreamHandler(new NullOutputStream(),
+                formatter);
+        logger.addHandler(handler);
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread() {
+                public void run() {
+                    Object[] params = new Object[] { getName(), null };
+                    for (int j = 0; j < records; j++) {
+                        params[1] = Integer.valueOf(j);
+                        if (sourceGiven) {
+                            logger.logp(Level.INFO, "LoggingBenchmark", "run",
+                                    "{0} logged record {1}", params);
+                        } else {
+                            logger.log(Level.INFO, "{0} logged record {1}",
+                                    params);
+                        }
+                    }
+                }
+            };
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            workers[i].start();
+        }
+        for (int i = 0; i < threads; i++) {
+            workers[i].join();
+        }
+        long elapsed = System.nanoTime() - start;
+        handler.close();
+        return records * 1000000000L / elapsed;
+    }
+
+    private static String pad(String s, int width) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = s.length(); i < width; i++) {
+            sb.append(' ');
+        }
+        return sb.append(s).toString();
+    }
+
+    static class NullOutputStream extends OutputStream {
+
+        public void write(int b) {
+            // discard
+        }
+
+        public void write(byte[] b, int off, int len) {
+            // discard
+        }
+    }
+}
@@ -502,11 +502,21 @@ public class File implements Serializable, Comparable<File> {
         if (canonPath != null) {
             return canonPath;
         }
+        boolean isLink = false;
         if(separatorChar == '/') {
             // resolve the full path first
-            result = resolveLink(result, result.length, false);
+            byte[] link = resolveLink(result, result.length, false);
+            isLink = link != result;
+            if (!isLink) {
+                // a file in a cached directory needs no more resolving
+                canonPath = FileCanonPathCache.getChild(absPath);
+                if (canonPath != null) {
+                    FileCanonPathCache.put(absPath, canonPath);
+                    return canonPath;
+                }
+            }
             // resolve the parent directories
-            result = resolve(result);
+            result = resolve(link);
         }
         int numSeparators = 1;
         for (int i = 0; i < result.length; i++) {
@@ -575,6 +585,10 @@ public class File implements Serializable, Comparable<File> {
         newLength = newResult.length;
         canonPath = Util.toUTF8String(newResult, 0, newLength);
         FileCanonPathCache.put(absPath, canonPath);
+        if (separatorChar == '/' && !isLink) {
+            // let the siblings of this file be resolved from its parent
+            FileCanonPathCache.putParent(absPath, canonPath);
+        }
         return canonPath;
     }
     
@@ -0,0 +1,170 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package java.io;
+
+import java.util.Arrays;
+
+/**
+ * Maps the objects written by an {@link ObjectOutputStream} to their
+ * handles. The objects are compared by identity and kept in an open
+ * addressing table, so that no handle is boxed and no entry allocated. The
+ * table keeps its capacity when cleared, so a stream which is reset between
+ * messages does not grow it again.
+ */
+final class HandleTable {
+
+    /**
+     * The handle returned for an object which is not in the table.
+     */
+    static final int NO_HANDLE = -1;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private Object[] objects;
+
+    private int[] handles;
+
+    private int size;
+
+    private int threshold;
+
+    HandleTable() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the handle of the object, or <code>NO_HANDLE</code>.
+     */
+    int get(Object obj) {
+        Object[] tab = objects;
+        int mask = tab.length - 1;
+        for (int i = hash(obj, mask);; i = (i + 1) & mask) {
+            Object item = tab[i];
+            if (item == obj) {
+                return handles[i];
+            }
+            if (item == null) {
+                return NO_HANDLE;
+            }
+        }
+    }
+
+    /**
+     * Maps the object to the handle, replacing any previous handle.
+     */
+    void put(Object obj, int handle) {
+        Object[] tab = objects;
+        int mask = tab.length - 1;
+        int i = hash(obj, mask);
+        Object item;
+        while ((item = tab[i]) != null) {
+            if (item == obj) {
+                handles[i] = handle;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        tab[i] = obj;
+        handles[i] = handle;
+        if (++size > threshold) {
+            resize();
+        }
+    }
+
+    /**
+     * Removes the object from the table, if present.
+     */
+    void remove(Object obj) {
+        Object[] tab = objects;
+        int mask = tab.length - 1;
+        int i = hash(obj, mask);
+        Object item;
+        while ((item = tab[i]) != obj) {
+            if (item == null) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        size--;
+        // move back the following entries which would no longer be found
+        int j = i;
+        for (;;) {
+            j = (j + 1) & mask;
+            item = tab[j];
+            if (item == null) {
+                break;
+            }
+            int home = hash(item, mask);
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                tab[i] = item;
+                handles[i] = handles[j];
+                i = j;
+            }
+        }
+        tab[i] = null;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all objects, keeping the capacity of the table.
+     */
+    void clear() {
+        if (size != 0) {
+            Arrays.fill(objects, null);
+            size = 0;
+        }
+    }
+
+    private void allocate(int capacity) {
+        objects = new Object[capacity];
+        handles = new int[capacity];
+        threshold = (capacity << 1) / 3;
+    }
+
+    private void resize() {
+        Object[] oldObjects = objects;
+        int[] oldHandles = handles;
+        allocate(oldObjects.length << 1);
+        Object[] tab = objects;
+        int mask = tab.length - 1;
+        for (int j = 0; j < oldObjects.length; j++) {
+            Object item = oldObjects[j];
+            if (item != null) {
+                int i = hash(item, mask);
+                while (tab[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                tab[i] = item;
+                handles[i] = oldHandles[j];
+            }
+        }
+    }
+
+    private static int hash(Object obj, int mask) {
+        int h = System.identityHashCode(obj);
+        // spread the bits, identity hash codes may vary in the high bits only
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+}
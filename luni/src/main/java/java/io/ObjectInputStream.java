@@ -27,12 +27,12 @@ import java.lang.reflect.Proxy;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 
 import org.apache.harmony.kernel.vm.VM;
 import org.apache.harmony.luni.internal.nls.Messages;
-import org.apache.harmony.luni.util.PriviAction;
 import org.apache.harmony.misc.accessors.AccessorFactory;
 import org.apache.harmony.misc.accessors.ObjectAccessor;
 
@@ -80,8 +80,8 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
     // Resolve object is a mechanism for replacement
     private boolean enableResolve;
 
-    // Table mapping Integer (handle) -> Object
-    private HashMap<Integer, Object> objectsRead;
+    // Objects read, indexed by handle - baseWireHandle
+    private Object[] objectsRead;
 
     // Used by defaultReadObject
     private Object currentObject;
@@ -103,7 +103,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
     private boolean mustResolve = true;
 
     // Handle for the current class descriptor
-    private Integer descriptorHandle;
+    private int descriptorHandle = NO_HANDLE;
+
+    private static final int NO_HANDLE = -1;
 
     private static final HashMap<String, Class<?>> PRIMITIVE_CLASSES =
         new HashMap<String, Class<?>>();
@@ -588,8 +590,8 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
      * 
      * @return the next handle to represent the next cyclic reference
      */
-    private Integer nextHandle() {
-        return Integer.valueOf(this.currentHandle++);
+    private int nextHandle() {
+        return this.currentHandle++;
     }
 
     /**
@@ -1526,9 +1528,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
         }
         try {
             if (readMethod != null) {
-                // We have to be able to fetch its value, even if it is private
-                AccessController.doPrivileged(new PriviAction<Object>(
-                        readMethod));
+                // accessible since the descriptor was created
                 try {
                     readMethod.invoke(object, new Object[] { this });
                 } catch (InvocationTargetException e) {
@@ -1624,7 +1624,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
             throw new InvalidClassException(Messages.getString("luni.C1")); //$NON-NLS-1$
         }
 
-        Integer newHandle = nextHandle();
+        int newHandle = nextHandle();
 
         // Array size
         int size = input.readInt();
@@ -1750,7 +1750,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
             ClassNotFoundException {
         ObjectStreamClass classDesc;
         primitiveData = input;
-        Integer oldHandle = descriptorHandle;
+        int oldHandle = descriptorHandle;
         descriptorHandle = nextHandle();
         classDesc = readClassDescriptor();
         registerObjectRead(classDesc, descriptorHandle, false);
@@ -1785,7 +1785,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
             ClassNotFoundException, IOException {
         // read classdesc for Enum first
         ObjectStreamClass classDesc = readEnumDesc();
-        Integer newHandle = nextHandle();
+        int newHandle = nextHandle();
         // read name after class desc
         String name;
         byte tc = nextTC();
@@ -1830,7 +1830,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
         // So read...() methods can be used by
         // subclasses during readClassDescriptor()
         primitiveData = input;
-        Integer oldHandle = descriptorHandle;
+        int oldHandle = descriptorHandle;
         descriptorHandle = nextHandle();
         ObjectStreamClass newClassDesc = readClassDescriptor();
         registerObjectRead(newClassDesc, descriptorHandle, unshared);
@@ -1916,9 +1916,9 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
         /*
          * We must register the class descriptor before reading field
          * descriptors. If called outside of readObject, the descriptorHandle
-         * might be null.
+         * might not be set.
          */
-        descriptorHandle = (null == descriptorHandle ? nextHandle() : descriptorHandle);
+        descriptorHandle = (descriptorHandle == NO_HANDLE ? nextHandle() : descriptorHandle);
         registerObjectRead(newClassDesc, descriptorHandle, false);
 
         readFieldDescriptors(newClassDesc);
@@ -2063,7 +2063,7 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
             throw new InvalidClassException(Messages.getString("luni.C1")); //$NON-NLS-1$
         }
 
-        Integer newHandle = nextHandle();
+        int newHandle = nextHandle();
 
         // Note that these values come from the Stream, and in fact it could be
         // that the classes have been changed so that the info below now
@@ -2411,9 +2411,13 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
      * @throws InvalidObjectException
      *             If there is no previously read object with this handle
      */
-    private Object registeredObjectRead(Integer handle)
+    private Object registeredObjectRead(int handle)
             throws InvalidObjectException {
-        Object res = objectsRead.get(handle);
+        int index = handle - baseWireHandle;
+        if (index < 0 || index >= objectsRead.length) {
+            return null;
+        }
+        Object res = objectsRead[index];
 
         if (res == UNSHARED_OBJ) {
             throw new InvalidObjectException(Messages.getString("luni.C5")); //$NON-NLS-1$
@@ -2429,14 +2433,22 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
      * @param obj
      *            Non-null object being loaded.
      * @param handle
-     *            An Integer, the handle to this object
+     *            The handle to this object
      * @param unshared
      *            Boolean, indicates that caller is reading in unshared mode
      * 
      * @see #nextHandle
      */
-    private void registerObjectRead(Object obj, Integer handle, boolean unshared) {
-        objectsRead.put(handle, unshared ? UNSHARED_OBJ : obj);
+    private void registerObjectRead(Object obj, int handle, boolean unshared) {
+        int index = handle - baseWireHandle;
+        if (index >= objectsRead.length) {
+            Object[] newObjectsRead = new Object[Math.max(index + 1,
+                    objectsRead.length << 1)];
+            System.arraycopy(objectsRead, 0, newObjectsRead, 0,
+                    objectsRead.length);
+            objectsRead = newObjectsRead;
+        }
+        objectsRead[index] = unshared ? UNSHARED_OBJ : obj;
     }
 
     /**
@@ -2505,7 +2517,13 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
      * Reset the collection of objects already loaded by the receiver.
      */
     private void resetSeenObjects() {
-        objectsRead = new HashMap<Integer, Object>();
+        if (objectsRead == null) {
+            objectsRead = new Object[64];
+        } else {
+            // keep the capacity for the next objects
+            Arrays.fill(objectsRead, 0, Math.min(currentHandle - baseWireHandle,
+                    objectsRead.length), null);
+        }
         currentHandle = baseWireHandle;
         primitiveData = emptyStream;
     }
@@ -2643,7 +2661,8 @@ public class ObjectInputStream extends InputStream implements ObjectInput,
                             localClassBaseName));
         }
 
-        loadedStreamClass.initPrivateFields(localStreamClass);        
+        loadedStreamClass.initPrivateFields(localStreamClass);
+        loadedStreamClass.initLoadFieldIDs(localStreamClass, accessor);
     }
 
     private static String getBaseName(String fullName) {
@@ -20,7 +20,6 @@ package java.io;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.IdentityHashMap;
 
 import org.apache.harmony.misc.accessors.ObjectAccessor;
 import org.apache.harmony.misc.accessors.AccessorFactory;
@@ -71,15 +70,17 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
     private ByteArrayOutputStream primitiveTypesBuffer;
 
     /*
-     * Table mapping Object -> Integer (handle)
+     * Table mapping Object -> handle
      */
-    private IdentityHashMap<Object, Integer> objectsWritten;
+    private HandleTable objectsWritten;
 
     /*
      * All objects are assigned an ID (integer handle)
      */
     private int currentHandle;
 
+    private static final int NO_HANDLE = HandleTable.NO_HANDLE;
+
     /*
      * Used by defaultWriteObject
      */
@@ -454,8 +455,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * @param obj
      *            Object to check if an instance previously dumped by this
      *            stream.
-     * @return null if it is an instance which has not been dumped yet (and this
-     *         method does nothing). Integer, if {@code obj} is an
+     * @return NO_HANDLE if it is an instance which has not been dumped yet (and
+     *         this method does nothing). The handle, if {@code obj} is an
      *         instance which has been dumped already. In this case this method
      *         saves the cyclic reference.
      * 
@@ -463,14 +464,13 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      *             If an error occurs attempting to save {@code null} or
      *             a cyclic reference.
      */
-    private Integer dumpCycle(Object obj) throws IOException {
+    private int dumpCycle(Object obj) throws IOException {
         // If the object has been saved already, save its handle only
-        Integer handle = objectsWritten.get(obj);
-        if (handle != null) {
+        int handle = objectsWritten.get(obj);
+        if (handle != NO_HANDLE) {
             writeCyclicReference(handle);
-            return handle;
         }
-        return null;
+        return handle;
     }
 
     /**
@@ -519,13 +519,13 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
 
 
     /**
-     * Return the next <code>Integer</code> handle to be used to indicate cyclic
+     * Return the next handle to be used to indicate cyclic
      * references being saved to the stream.
      * 
      * @return the next handle to represent the next cyclic reference
      */
-    private Integer nextHandle() {
-        return Integer.valueOf(this.currentHandle++);
+    private int nextHandle() {
+        return this.currentHandle++;
     }
 
     /**
@@ -563,8 +563,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * 
      * @see #nextHandle
      */
-    private Integer registerObjectWritten(Object obj) {
-        Integer handle = nextHandle();
+    private int registerObjectWritten(Object obj) {
+        int handle = nextHandle();
         objectsWritten.put(obj, handle);
         return handle;
     }
@@ -578,8 +578,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * @param previousHandle
      *            The handle of the previous identical object dumped
      */
-    private void removeUnsharedReference(Object obj, Integer previousHandle) {
-        if (previousHandle != null) {
+    private void removeUnsharedReference(Object obj, int previousHandle) {
+        if (previousHandle != NO_HANDLE) {
             objectsWritten.put(obj, previousHandle);
         } else {
             objectsWritten.remove(obj);
@@ -637,7 +637,12 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * 
      */
     private void resetSeenObjects() {
-        objectsWritten = new IdentityHashMap<Object, Integer>();
+        if (objectsWritten == null) {
+            objectsWritten = new HandleTable();
+        } else {
+            // keep the capacity for the next objects
+            objectsWritten.clear();
+        }
         currentHandle = baseWireHandle;
     }
 
@@ -814,19 +819,19 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      *             If an IO exception happened when writing the class
      *             descriptor.
      */
-    private Integer writeClassDesc(ObjectStreamClass classDesc, boolean unshared)
+    private int writeClassDesc(ObjectStreamClass classDesc, boolean unshared)
             throws IOException {
         if (classDesc == null) {
             writeNull();
-            return null;
+            return NO_HANDLE;
         }
-        Integer handle = null;
+        int handle = NO_HANDLE;
         if (!unshared) {
             handle = dumpCycle(classDesc);
         }
-        if (handle == null) {
+        if (handle == NO_HANDLE) {
             Class<?> classToWrite = classDesc.forClass();
-            Integer previousHandle = null;
+            int previousHandle = NO_HANDLE;
             if (unshared) {
                 previousHandle = objectsWritten.get(classDesc);
             }
@@ -880,15 +885,15 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * dumped).
      * 
      * @param handle
-     *            The Integer handle that represents an object previously seen
+     *            The handle that represents an object previously seen
      * 
      * @throws IOException
      *             If an IO exception happened when writing the cyclic
      *             reference.
      */
-    private void writeCyclicReference(Integer handle) throws IOException {
+    private void writeCyclicReference(int handle) throws IOException {
         output.writeByte(TC_REFERENCE);
-        output.writeInt(handle.intValue());
+        output.writeInt(handle);
     }
 
     /**
@@ -1044,16 +1049,20 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
     private void writeFieldValues(Object obj, ObjectStreamClass classDesc)
             throws IOException {
         ObjectStreamField[] fields = classDesc.fields();
-        Class<?> declaringClass = classDesc.forClass();
-        for(ObjectStreamField fieldDesc : fields) {
+        // field IDs and type codes are resolved once per class
+        ObjectStreamClass.FieldTable table = classDesc.getFieldTable(accessor);
+        long[] fieldIDs = table.fieldIDs;
+        char[] typeCodes = table.typeCodes;
+        for (int i = 0; i < fields.length; i++) {
+            ObjectStreamField fieldDesc = fields[i];
             try {
                 
                 // get associated Field 
-                long fieldID = fieldDesc.getFieldID(accessor, declaringClass);
+                long fieldID = fieldIDs[i];
 
                 // Code duplication starts, just because Java is typed
                 if (fieldDesc.isPrimitive()) {
-                    switch (fieldDesc.getTypeCode()) {
+                    switch (typeCodes[i]) {
                         case 'B':
                             output.writeByte(accessor.getByte(obj, fieldID));
                             break;
@@ -1226,8 +1235,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
     /**
      * Write array {@code array} of class {@code arrayClass} with
      * component type {@code componentType} into the receiver. It is
-     * assumed the array has not been dumped yet. Return an {@code Integer}
-     * that represents the handle for this object (array) which is dumped here.
+     * assumed the array has not been dumped yet. Return the handle for this
+     * object (array) which is dumped here.
      * 
      * @param array
      *            The array object to dump
@@ -1242,12 +1251,12 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * @throws IOException
      *             If an IO exception happened when writing the array.
      */
-    private Integer writeNewArray(Object array, Class<?> arrayClass, ObjectStreamClass arrayClDesc,
+    private int writeNewArray(Object array, Class<?> arrayClass, ObjectStreamClass arrayClDesc,
             Class<?> componentType, boolean unshared) throws IOException {
         output.writeByte(TC_ARRAY);
         writeClassDesc(arrayClDesc, false);
 
-        Integer handle = nextHandle();
+        int handle = nextHandle();
 
         if (!unshared) {
             objectsWritten.put(array, handle);
@@ -1329,8 +1338,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * Write class {@code object} into the receiver. It is assumed the
      * class has not been dumped yet. Classes are not really dumped, but a class
      * descriptor ({@code ObjectStreamClass}) that corresponds to them.
-     * Return an {@code Integer} that represents the handle for this
-     * object (class) which is dumped here.
+     * Return the handle for this object (class) which is dumped here.
      * 
      * @param object
      *            The {@code java.lang.Class} object to dump
@@ -1339,7 +1347,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * @throws IOException
      *             If an IO exception happened when writing the class.
      */
-    private Integer writeNewClass(Class<?> object, boolean unshared)
+    private int writeNewClass(Class<?> object, boolean unshared)
             throws IOException {
         output.writeByte(TC_CLASS);
 
@@ -1358,7 +1366,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
             writeClassDesc(clDesc, unshared);
         }
      
-        Integer handle = nextHandle();
+        int handle = nextHandle();
 
         if (!unshared) {
             objectsWritten.put(object, handle);
@@ -1370,9 +1378,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
     /**
      * Write class descriptor {@code classDesc} into the receiver. It is
      * assumed the class descriptor has not been dumped yet. The class
-     * descriptors for the superclass chain will be dumped as well. Return an
-     * {@code Integer} that represents the handle for this object (class
-     * descriptor) which is dumped here.
+     * descriptors for the superclass chain will be dumped as well. Return
+     * the handle for this object (class descriptor) which is dumped here.
      * 
      * @param classDesc
      *            The {@code ObjectStreamClass} object to dump
@@ -1422,8 +1429,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
 
     /**
      * Write exception {@code ex} into the receiver. It is assumed the
-     * exception has not been dumped yet. Return an {@code Integer} that
-     * represents the handle for this object (exception) which is dumped here.
+     * exception has not been dumped yet. Return the handle for this object
+     * (exception) which is dumped here.
      * This is used to dump the exception instance that happened (if any) when
      * dumping the original object graph. The set of seen objects will be reset
      * just before and just after dumping this exception object.
@@ -1448,9 +1455,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
 
     /**
      * Write object {@code object} of class {@code theClass} into
-     * the receiver. It is assumed the object has not been dumped yet. Return an
-     * {@code Integer} that represents the handle for this object which
-     * is dumped here.
+     * the receiver. It is assumed the object has not been dumped yet. Return
+     * the handle for this object which is dumped here.
      * 
      * If the object implements {@code Externalizable} its
      * {@code writeExternal} is called. Otherwise, all fields described
@@ -1470,7 +1476,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * @throws IOException
      *             If an IO exception happened when writing the object.
      */
-    private Integer writeNewObject(Object object, Class<?> theClass, ObjectStreamClass clDesc, 
+    private int writeNewObject(Object object, Class<?> theClass, ObjectStreamClass clDesc, 
             boolean unshared) throws IOException {
         // Not String, not null, not array, not cyclic reference
 
@@ -1488,11 +1494,11 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
         // Either serializable or externalizable, now we can save info
         output.writeByte(TC_OBJECT);
         writeClassDesc(clDesc, false);
-        Integer previousHandle = null;
+        int previousHandle = NO_HANDLE;
         if (unshared) {
             previousHandle = objectsWritten.get(object);
         }
-        Integer handle = nextHandle();
+        int handle = nextHandle();
         objectsWritten.put(object, handle);
 
         // This is how we know what to do in defaultWriteObject. And it is also
@@ -1541,8 +1547,8 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
     
     /**
      * Write String {@code object} into the receiver. It is assumed the
-     * String has not been dumped yet. Return an {@code Integer} that
-     * represents the handle for this object (String) which is dumped here.
+     * String has not been dumped yet. Return the handle for this object
+     * (String) which is dumped here.
      * Strings are saved encoded with {@link DataInput modified UTF-8}.
      * 
      * @param object
@@ -1552,7 +1558,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * @throws IOException
      *             If an IO exception happened when writing the String.
      */
-    private Integer writeNewString(String object, boolean unshared)
+    private int writeNewString(String object, boolean unshared)
             throws IOException {
         long count = output.countUTFBytes(object);
         byte[] buffer;
@@ -1569,7 +1575,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
         offset = output.writeUTFBytesToBuffer(object, count, buffer, offset);
         output.write(buffer, 0, offset);
 
-        Integer handle = nextHandle();
+        int handle = nextHandle();
 
         if (!unshared) {
             objectsWritten.put(object, handle);
@@ -1676,18 +1682,17 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
      * 
      * @see ObjectInputStream#readObject()
      */
-    private Integer writeObjectInternal(Object object, boolean unshared,
+    private int writeObjectInternal(Object object, boolean unshared,
             boolean computeClassBasedReplacement,
             boolean computeStreamReplacement) throws IOException {
 
         if (object == null) {
             writeNull();
-            return null;
+            return NO_HANDLE;
         }
-        Integer handle = null;
         if (!unshared) {
-            handle = dumpCycle(object);
-            if (handle != null) {
+            int handle = dumpCycle(object);
+            if (handle != NO_HANDLE) {
                 return handle; // cyclic reference
             }
         }
@@ -1733,12 +1738,12 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
                     }
                     if (replObj != object) {
                         // All over, class-based replacement off this time.
-                        Integer replacementHandle = writeObjectInternal(
+                        int replacementHandle = writeObjectInternal(
                                 replObj, false, false,
                                 computeStreamReplacement);
                         // Make the original object also map to the same
                         // handle.
-                        if (replacementHandle != null) {
+                        if (replacementHandle != NO_HANDLE) {
                             objectsWritten.put(object, replacementHandle);
                         }
                         return replacementHandle;
@@ -1755,11 +1760,11 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
                 Object streamReplacement = replaceObject(object);
                 if (streamReplacement != object) {
                     // All over, class-based replacement off this time.
-                    Integer replacementHandle = writeObjectInternal(
+                    int replacementHandle = writeObjectInternal(
                             streamReplacement, false,
                             computeClassBasedReplacement, false);
                     // Make the original object also map to the same handle.
-                    if (replacementHandle != null) {
+                    if (replacementHandle != NO_HANDLE) {
                         objectsWritten.put(object, replacementHandle);
                     }
                     return replacementHandle;
@@ -1807,15 +1812,15 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
 
         // set flag for enum, the flag is (SC_SERIALIZABLE | SC_ENUM)
         classDesc.setFlags((byte) (SC_SERIALIZABLE | SC_ENUM));
-        Integer previousHandle = null;
+        int previousHandle = NO_HANDLE;
         if (unshared) {
             previousHandle = objectsWritten.get(classDesc);
         }
-        Integer handle = null;
+        int handle = NO_HANDLE;
         if (!unshared) {
             handle = dumpCycle(classDesc);
         }
-        if (handle == null) {
+        if (handle == NO_HANDLE) {
             Class<?> classToWrite = classDesc.forClass();
             // If we got here, it is a new (non-null) classDesc that will have
             // to be registered as well
@@ -1852,7 +1857,7 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
         return classDesc;
     }
 
-    private Integer writeNewEnum(Object object, Class<?> theClass,
+    private int writeNewEnum(Object object, Class<?> theClass,
             boolean unshared) throws IOException {
         // write new Enum
         EmulatedFieldsForDumping originalCurrentPutField = currentPutField; // save
@@ -1867,11 +1872,11 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
         ObjectStreamClass classDesc = ObjectStreamClass.lookup(theClass);
         writeEnumDesc(theClass, classDesc, unshared);
 
-        Integer previousHandle = null;
+        int previousHandle = NO_HANDLE;
         if (unshared) {
             previousHandle = objectsWritten.get(object);
         }
-        Integer handle = nextHandle();
+        int handle = nextHandle();
         objectsWritten.put(object, handle);
 
         ObjectStreamField[] fields = classDesc.getSuperclass().fields();
@@ -1881,11 +1886,11 @@ public class ObjectOutputStream extends OutputStream implements ObjectOutput,
         if (null != fields && fields.length > 1) {
             String str = (String) accessor.getObject(object, fields[1].getFieldID(accessor, declaringClass));
 
-            Integer strhandle = null;
+            int strhandle = NO_HANDLE;
             if (!unshared) {
                 strhandle = dumpCycle(str);
             }
-            if (null == strhandle) {
+            if (strhandle == NO_HANDLE) {
                 writeNewString(str, unshared);
             }
         }
@@ -17,6 +17,9 @@
 
 package java.io;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -30,11 +33,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.harmony.luni.internal.nls.Messages;
 import org.apache.harmony.luni.util.PriviAction;
-import org.apache.harmony.luni.util.ThreadLocalCache;
+import org.apache.harmony.misc.accessors.ObjectAccessor;
 
 /**
  * Represents a descriptor for identifying a class during serialization and
@@ -135,6 +138,16 @@ public class ObjectStreamClass implements Serializable {
 
     static final Class<ObjectStreamClass> OBJECTSTREAMCLASSCLASS = ObjectStreamClass.class;
 
+    /*
+     * Descriptors of the classes looked up, shared by all threads. The keys
+     * are weak and the descriptors soft, as a descriptor refers to its class
+     * through its methods, so an unused class loader can still be unloaded.
+     */
+    private static final ConcurrentHashMap<WeakClassKey, SoftReference<ObjectStreamClass>> descriptorCache = new ConcurrentHashMap<WeakClassKey, SoftReference<ObjectStreamClass>>();
+
+    // keys of the unloaded classes
+    private static final ReferenceQueue<Class<?>> staleKeys = new ReferenceQueue<Class<?>>();
+
     private transient Method methodWriteReplace;
 
     private transient Method methodReadResolve;
@@ -195,7 +208,10 @@ public class ObjectStreamClass implements Serializable {
     private transient ObjectStreamField[] loadFields;
 
     // MethodID for deserialization constructor
-    private transient long constructor = CONSTRUCTOR_IS_NOT_RESOLVED;
+    private transient volatile long constructor = CONSTRUCTOR_IS_NOT_RESOLVED;
+
+    // IDs and type codes of fields, resolved on first use
+    private transient volatile FieldTable fieldTable;
 
     void setConstructor(long newConstructor) {
         constructor = newConstructor;
@@ -308,6 +324,8 @@ public class ObjectStreamClass implements Serializable {
             flags |= ObjectStreamConstants.SC_WRITE_METHOD;
         }
         result.setFlags(flags);
+        // resolved before the descriptor is shared with other threads
+        result.resolveProperties();
 
         return result;
     }
@@ -988,16 +1006,39 @@ public class ObjectStreamClass implements Serializable {
      * @return the corresponding descriptor
      */
     static ObjectStreamClass lookupStreamClass(Class<?> cl) {
+        SoftReference<ObjectStreamClass> ref = descriptorCache
+                .get(new WeakClassKey(cl, null));
+        ObjectStreamClass cachedValue = ref == null ? null : ref.get();
+        if (cachedValue != null) {
+            return cachedValue;
+        }
 
-        WeakHashMap<Class<?>,ObjectStreamClass> tlc = OSCThreadLocalCache.oscWeakHashMap.get();
-
-        ObjectStreamClass cachedValue = tlc.get(cl);
-        if (cachedValue == null) {
-            cachedValue = createClassDesc(cl);
-            tlc.put(cl, cachedValue);
+        removeStaleKeys();
+        cachedValue = createClassDesc(cl);
+        SoftReference<ObjectStreamClass> newRef = new SoftReference<ObjectStreamClass>(
+                cachedValue);
+        WeakClassKey key = new WeakClassKey(cl, staleKeys);
+        // keep the descriptor another thread may have cached meanwhile
+        while (true) {
+            ref = descriptorCache.putIfAbsent(key, newRef);
+            if (ref == null) {
+                return cachedValue;
+            }
+            ObjectStreamClass other = ref.get();
+            if (other != null) {
+                return other;
+            }
+            if (descriptorCache.replace(key, ref, newRef)) {
+                return cachedValue;
+            }
         }
-        return cachedValue;
+    }
 
+    private static void removeStaleKeys() {
+        Reference<? extends Class<?>> key;
+        while ((key = staleKeys.poll()) != null) {
+            descriptorCache.remove(key);
+        }
     }
 
     /**
@@ -1101,6 +1142,58 @@ public class ObjectStreamClass implements Serializable {
         methodReadObjectNoData = desc.methodReadObjectNoData;
     }
 
+    /**
+     * Sets the IDs of the input fields to those of the fields with the same
+     * names in the descriptor <code>desc</code> of the local class, so that
+     * they are not resolved again for every stream.
+     * 
+     * @param desc
+     *            the descriptor of the local class
+     * @param accessor
+     *            the accessor used to resolve the field IDs
+     */
+    void initLoadFieldIDs(ObjectStreamClass desc, ObjectAccessor accessor) {
+        ObjectStreamField[] load = loadFields;
+        ObjectStreamField[] local = desc.fields();
+        if (load == null || local == null || local.length == 0) {
+            return;
+        }
+        long[] localIDs = desc.getFieldTable(accessor).fieldIDs;
+        for (int i = 0; i < load.length; i++) {
+            String name = load[i].getName();
+            for (int j = 0; j < local.length; j++) {
+                if (name.equals(local[j].getName())) {
+                    load[i].setFieldID(localIDs[j]);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the IDs and type codes of the fields of this descriptor,
+     * resolving them on first use.
+     * 
+     * @param accessor
+     *            the accessor used to resolve the field IDs
+     */
+    FieldTable getFieldTable(ObjectAccessor accessor) {
+        FieldTable table = fieldTable;
+        if (table == null) {
+            ObjectStreamField[] f = fields();
+            Class<?> declaringClass = forClass();
+            long[] fieldIDs = new long[f.length];
+            char[] typeCodes = new char[f.length];
+            for (int i = 0; i < f.length; i++) {
+                fieldIDs[i] = f[i].getFieldID(accessor, declaringClass);
+                typeCodes[i] = f[i].getTypeCode();
+            }
+            table = new FieldTable(fieldIDs, typeCodes);
+            fieldTable = table;
+        }
+        return table;
+    }
+
     /**
      * Set the class (java.lang.Class) that the receiver represents
      * 
@@ -1210,15 +1303,51 @@ public class ObjectStreamClass implements Serializable {
                 + getSerialVersionUID() + "L;"; //$NON-NLS-1$
     }
 
-    static class OSCThreadLocalCache extends ThreadLocalCache {
+    /**
+     * The IDs and type codes of the fields of a descriptor, in the order of
+     * its fields.
+     */
+    static final class FieldTable {
 
-        // thread-local cache for ObjectStreamClass.lookup
-        public static ThreadLocalCache<WeakHashMap<Class<?>,ObjectStreamClass>> oscWeakHashMap = new ThreadLocalCache<WeakHashMap<Class<?>,ObjectStreamClass>>() {
-            protected WeakHashMap<Class<?>,ObjectStreamClass> initialValue() {
-                return new WeakHashMap<Class<?>,ObjectStreamClass>();
-            }
-        };
+        final long[] fieldIDs;
+
+        final char[] typeCodes;
+
+        FieldTable(long[] fieldIDs, char[] typeCodes) {
+            this.fieldIDs = fieldIDs;
+            this.typeCodes = typeCodes;
+        }
+    }
+
+    /**
+     * A key of the descriptor cache, which does not keep its class from
+     * being unloaded.
+     */
+    static final class WeakClassKey extends WeakReference<Class<?>> {
+
+        private final int hash;
+
+        WeakClassKey(Class<?> cl, ReferenceQueue<Class<?>> queue) {
+            super(cl, queue);
+            hash = System.identityHashCode(cl);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
 
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof WeakClassKey) {
+                Class<?> cl = get();
+                return cl != null && cl == ((WeakClassKey) obj).get();
+            }
+            return false;
+        }
     }
 
 }
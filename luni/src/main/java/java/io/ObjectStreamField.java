@@ -52,7 +52,8 @@ public class ObjectStreamField implements Comparable<Object> {
 
     private boolean isDeserialized;
 
-    private long assocFieldID = FIELD_IS_NOT_RESOLVED;
+    // shared by the threads using a cached ObjectStreamClass
+    private volatile long assocFieldID = FIELD_IS_NOT_RESOLVED;
 
     long getFieldID(ObjectAccessor accessor, Class<?> declaringClass) {
         if (assocFieldID != FIELD_IS_NOT_RESOLVED) {
@@ -67,6 +68,10 @@ public class ObjectStreamField implements Comparable<Object> {
         }
     }
 
+    void setFieldID(long fieldID) {
+        assocFieldID = fieldID;
+    }
+
     /**
      * Constructs an ObjectStreamField with the specified name and type.
      * 
@@ -21,6 +21,7 @@ import java.io.InvalidObjectException;
 import java.util.Arrays;
 
 import org.apache.harmony.luni.internal.nls.Messages;
+import org.apache.harmony.luni.util.NumberConverter;
 
 /**
  * A modifiable {@link CharSequence sequence of characters} for use in creating
@@ -141,6 +142,24 @@ abstract class AbstractStringBuilder {
         value[count++] = ch;
     }
 
+    final void append0(double d) {
+        if (value.length - count < NumberConverter.MAX_DOUBLE_CHARS) {
+            char[] chars = new char[NumberConverter.MAX_DOUBLE_CHARS];
+            append0(chars, 0, NumberConverter.convert(d, chars, 0));
+        } else {
+            count = NumberConverter.convert(d, value, count);
+        }
+    }
+
+    final void append0(float f) {
+        if (value.length - count < NumberConverter.MAX_FLOAT_CHARS) {
+            char[] chars = new char[NumberConverter.MAX_FLOAT_CHARS];
+            append0(chars, 0, NumberConverter.convert(f, chars, 0));
+        } else {
+            count = NumberConverter.convert(f, value, count);
+        }
+    }
+
     final void append0(String string) {
         if (string == null) {
             appendNull();
@@ -1739,6 +1739,10 @@ public final class String implements Serializable, Comparable<String>,
      * @since 1.4
      */
     public boolean matches(String expr) {
+        String literal = literalOf(expr);
+        if (literal != null) {
+            return equals(literal);
+        }
         return Pattern.matches(expr, this);
     }
 
@@ -1758,6 +1762,10 @@ public final class String implements Serializable, Comparable<String>,
      * @since 1.4
      */
     public String replaceAll(String expr, String substitute) {
+        String literal = literalOf(expr);
+        if (literal != null && isLiteralSubstitute(substitute)) {
+            return replace(literal, substitute);
+        }
         return Pattern.compile(expr).matcher(this).replaceAll(substitute);
     }
 
@@ -1779,6 +1787,15 @@ public final class String implements Serializable, Comparable<String>,
      * @since 1.4
      */
     public String replaceFirst(String expr, String substitute) {
+        String literal = literalOf(expr);
+        if (literal != null && isLiteralSubstitute(substitute)) {
+            int index = indexOf(literal);
+            if (index == -1) {
+                return this;
+            }
+            return substring(0, index).concat(substitute).concat(
+                    substring(index + literal.length()));
+        }
         return Pattern.compile(expr).matcher(this).replaceFirst(substitute);
     }
 
@@ -1798,7 +1815,7 @@ public final class String implements Serializable, Comparable<String>,
      * @since 1.4
      */
     public String[] split(String expr) {
-        return Pattern.compile(expr).split(this);
+        return split(expr, 0);
     }
 
     /**
@@ -1821,9 +1838,103 @@ public final class String implements Serializable, Comparable<String>,
      * @since 1.4
      */
     public String[] split(String expr, int max) {
+        String literal = literalOf(expr);
+        if (literal != null) {
+            return splitLiteral(literal, max);
+        }
         return Pattern.compile(expr).split(this, max);
     }
 
+    /*
+     * Splits this string around the occurrences of a literal, with the
+     * results of Pattern.split(CharSequence, int).
+     */
+    private String[] splitLiteral(String literal, int max) {
+        if (count == 0) {
+            return new String[] { "" }; //$NON-NLS-1$
+        }
+        int literalLength = literal.length();
+        char ch = literal.charAt(0);
+        int limit = max > 0 ? max : Integer.MAX_VALUE;
+        int pieces = 1;
+        int index = 0;
+        while (pieces < limit) {
+            index = literalLength == 1 ? indexOf(ch, index) : indexOf(literal,
+                    index);
+            if (index == -1) {
+                break;
+            }
+            index += literalLength;
+            pieces++;
+        }
+
+        String[] result = new String[pieces];
+        int start = 0;
+        for (int i = 0; i < pieces - 1; i++) {
+            int end = literalLength == 1 ? indexOf(ch, start) : indexOf(literal,
+                    start);
+            result[i] = substring(start, end);
+            start = end + literalLength;
+        }
+        result[pieces - 1] = substring(start);
+
+        if (max == 0) {
+            // discard trailing empty strings
+            int length = pieces;
+            while (length > 0 && result[length - 1].count == 0) {
+                length--;
+            }
+            if (length < pieces) {
+                String[] trimmed = new String[length];
+                System.arraycopy(result, 0, trimmed, 0, length);
+                return trimmed;
+            }
+        }
+        return result;
+    }
+
+    /*
+     * The characters with a special meaning in a regular expression.
+     */
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}"; //$NON-NLS-1$
+
+    /*
+     * Returns the only string matched by a regular expression compiled without
+     * flags, if the expression is a sequence of characters which are not
+     * metacharacters, or a single escaped metacharacter. Returns null for any
+     * other expression, which must be matched by a Pattern.
+     */
+    private static String literalOf(String expr) {
+        int length = expr.length();
+        if (length == 0) {
+            return null;
+        }
+        if (expr.charAt(0) == '\\') {
+            if (length == 2
+                    && REGEX_METACHARACTERS.indexOf(expr.charAt(1)) != -1) {
+                return expr.substring(1);
+            }
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = expr.charAt(i);
+            // surrogates are matched as code points
+            if (REGEX_METACHARACTERS.indexOf(c) != -1
+                    || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+                return null;
+            }
+        }
+        return expr;
+    }
+
+    /*
+     * Returns whether a substitute is inserted as is by Matcher.replaceAll,
+     * having no group reference or escaped character.
+     */
+    private static boolean isLiteralSubstitute(String substitute) {
+        return substitute.indexOf('$') == -1 && substitute.indexOf('\\') == -1;
+    }
+
     /**
      * Has the same result as the substring function, but is present so that
      * string may implement the CharSequence interface.
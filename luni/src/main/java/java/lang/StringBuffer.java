@@ -135,8 +135,9 @@ public final class StringBuffer extends AbstractStringBuilder implements
      * @return this StringBuffer.
      * @see String#valueOf(double)
      */
-    public StringBuffer append(double d) {
-        return append(Double.toString(d));
+    public synchronized StringBuffer append(double d) {
+        append0(d);
+        return this;
     }
 
     /**
@@ -148,8 +149,9 @@ public final class StringBuffer extends AbstractStringBuilder implements
      * @return this StringBuffer.
      * @see String#valueOf(float)
      */
-    public StringBuffer append(float f) {
-        return append(Float.toString(f));
+    public synchronized StringBuffer append(float f) {
+        append0(f);
+        return this;
     }
 
     /**
@@ -166,7 +166,7 @@ public final class StringBuilder extends AbstractStringBuilder implements
      * @see String#valueOf(float)
      */
     public StringBuilder append(float f) {
-        append0(Float.toString(f));
+        append0(f);
         return this;
     }
 
@@ -181,7 +181,7 @@ public final class StringBuilder extends AbstractStringBuilder implements
      * @see String#valueOf(double)
      */
     public StringBuilder append(double d) {
-        append0(Double.toString(d));
+        append0(d);
         return this;
     }
 
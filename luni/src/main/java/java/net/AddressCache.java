@@ -0,0 +1,282 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.net;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.harmony.luni.util.PriviAction;
+
+/**
+ * This class caches the results of host name lookups: the address a name
+ * was resolved to, or the fact that it could not be resolved.
+ * <p>
+ * Lookups never lock. Every entry records when it was added, and is valid
+ * for the time to live in force when it is looked up, so a change of
+ * <code>networkaddress.cache.ttl</code> or
+ * <code>networkaddress.cache.negative.ttl</code> applies to the existing
+ * entries without clearing the cache. When the cache grows beyond its
+ * maximum size, the least recently used quarter of the entries is evicted
+ * by whichever thread notices first.
+ * <p>
+ * The following system properties are read once when the cache is created:
+ * <ul>
+ * <li><code>org.apache.harmony.net.addresscache.size</code> the maximum
+ * number of names kept, 512 by default</li>
+ * <li><code>org.apache.harmony.net.addresscache.refresh</code> if
+ * <code>true</code>, an entry found in the last quarter of its time to live
+ * is resolved again on a background thread, while the lookup returns the
+ * cached address. Names that are looked up regularly are then never
+ * resolved by the thread asking for them.</li>
+ * </ul>
+ */
+class AddressCache {
+
+    static final String MAX_ENTRIES_PROPERTY = "org.apache.harmony.net.addresscache.size"; //$NON-NLS-1$
+
+    static final String REFRESH_PROPERTY = "org.apache.harmony.net.addresscache.refresh"; //$NON-NLS-1$
+
+    private static final int DEFAULT_MAX_ENTRIES = 512;
+
+    private final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<String, Entry>();
+
+    private final int maxEntries;
+
+    private final boolean refreshAhead;
+
+    // held by the thread evicting entries; others do not wait for it
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // names waiting to be resolved again, mapped to themselves
+    private final ConcurrentHashMap<String, String> pendingRefresh = new ConcurrentHashMap<String, String>();
+
+    private final ConcurrentLinkedQueue<String> refreshQueue = new ConcurrentLinkedQueue<String>();
+
+    private final AtomicBoolean refresherRunning = new AtomicBoolean();
+
+    /**
+     * A cached lookup result.
+     */
+    static final class Entry {
+
+        // the resolved address, or null if the lookup failed
+        final InetAddress address;
+
+        final long timeAdded = System.currentTimeMillis();
+
+        // the time of the last lookup, used to find the LRU entries
+        volatile long lastAccess = timeAdded;
+
+        Entry(InetAddress address) {
+            this.address = address;
+        }
+    }
+
+    AddressCache() {
+        String size = AccessController.doPrivileged(new PriviAction<String>(MAX_ENTRIES_PROPERTY));
+        String refresh = AccessController.doPrivileged(new PriviAction<String>(REFRESH_PROPERTY));
+        int max = DEFAULT_MAX_ENTRIES;
+        try {
+            if (size != null) {
+                max = Math.max(1, Integer.decode(size).intValue());
+            }
+        } catch (NumberFormatException e) {
+            // Ignored
+        }
+        maxEntries = max;
+        refreshAhead = Boolean.valueOf(refresh).booleanValue();
+    }
+
+    /**
+     * Returns the time to live in seconds given by a system property, or the
+     * default if the property is not set or not a number.
+     */
+    static int ttl(String property, int defaultTtl) {
+        String ttlValue = AccessController.doPrivileged(new PriviAction<String>(property));
+        try {
+            if (ttlValue != null) {
+                return Integer.decode(ttlValue).intValue();
+            }
+        } catch (NumberFormatException e) {
+            // Ignored
+        }
+        return defaultTtl;
+    }
+
+    /**
+     * Returns the cached address of the host, or null if there is none or it
+     * has expired.
+     *
+     * @param host
+     *            the name of the host.
+     * @param ttl
+     *            the time to live of positive entries in seconds, or a
+     *            negative value if they never expire.
+     */
+    InetAddress get(String host, int ttl) {
+        Entry entry = map.get(host);
+        if (entry == null || entry.address == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (ttl >= 0) {
+            long age = now - entry.timeAdded;
+            long ttlMillis = ttl * 1000L;
+            if (age >= ttlMillis) {
+                map.remove(host, entry);
+                return null;
+            }
+            if (refreshAhead && age >= ttlMillis - (ttlMillis >> 2)) {
+                scheduleRefresh(host);
+            }
+        }
+        touch(entry, now);
+        return entry.address;
+    }
+
+    /**
+     * Returns whether the lookup of the host failed within the given time.
+     *
+     * @param host
+     *            the name of the host.
+     * @param ttl
+     *            the time to live of negative entries in seconds, or a
+     *            negative value if they never expire.
+     */
+    boolean isUnknown(String host, int ttl) {
+        Entry entry = map.get(host);
+        if (entry == null || entry.address != null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (ttl >= 0 && now - entry.timeAdded >= ttl * 1000L) {
+            map.remove(host, entry);
+            return false;
+        }
+        touch(entry, now);
+        return true;
+    }
+
+    /**
+     * Caches the address the host was resolved to.
+     */
+    void put(String host, InetAddress address) {
+        add(host, new Entry(address));
+    }
+
+    /**
+     * Caches that the host could not be resolved.
+     */
+    void putUnknown(String host) {
+        add(host, new Entry(null));
+    }
+
+    private static void touch(Entry entry, long now) {
+        // avoid writing the shared entry on every hit
+        if (entry.lastAccess != now) {
+            entry.lastAccess = now;
+        }
+    }
+
+    private void add(String host, Entry entry) {
+        map.put(host, entry);
+        if (map.size() > maxEntries && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until a quarter of the
+     * capacity is free again, so that eviction runs once per many inserts.
+     */
+    private void evict() {
+        int target = maxEntries - (maxEntries >> 2);
+        Entry[] entries = map.values().toArray(new Entry[0]);
+        int excess = entries.length - target;
+        if (excess <= 0) {
+            return;
+        }
+        long[] stamps = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            stamps[i] = entries[i].lastAccess;
+        }
+        Arrays.sort(stamps);
+        long threshold = stamps[excess - 1];
+        for (Iterator<Map.Entry<String, Entry>> iter = map.entrySet().iterator(); iter.hasNext() && excess > 0;) {
+            Map.Entry<String, Entry> e = iter.next();
+            if (e.getValue().lastAccess <= threshold && map.remove(e.getKey(), e.getValue())) {
+                excess--;
+            }
+        }
+    }
+
+    private void scheduleRefresh(String host) {
+        if (pendingRefresh.putIfAbsent(host, host) != null) {
+            return;
+        }
+        refreshQueue.offer(host);
+        if (refresherRunning.compareAndSet(false, true)) {
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                public Void run() {
+                    Thread refresher = new Thread(new Refresher(), "InetAddress refresher"); //$NON-NLS-1$
+                    refresher.setDaemon(true);
+                    refresher.start();
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Resolves the queued names again and exits once the queue is empty;
+     * the next name queued starts a new refresher.
+     */
+    private class Refresher implements Runnable {
+
+        public void run() {
+            for (;;) {
+                String host;
+                while ((host = refreshQueue.poll()) != null) {
+                    try {
+                        put(host, InetAddress.getHostByNameImpl(host, InetAddress.preferIPv6Addresses()));
+                    } catch (UnknownHostException e) {
+                        // keep the current entry until it expires
+                    } finally {
+                        pendingRefresh.remove(host);
+                    }
+                }
+                refresherRunning.set(false);
+                // a name may have been queued after the check
+                if (refreshQueue.isEmpty() || !refresherRunning.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+}
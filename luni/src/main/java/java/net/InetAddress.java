@@ -24,7 +24,6 @@ import java.io.ObjectOutputStream;
 import java.io.ObjectStreamException;
 import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.security.AccessController;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.StringTokenizer;
@@ -34,7 +33,6 @@ import org.apache.harmony.luni.platform.INetworkSystem;
 import org.apache.harmony.luni.platform.Platform;
 import org.apache.harmony.luni.util.Inet6Util;
 import org.apache.harmony.luni.internal.nls.Messages;
-import org.apache.harmony.luni.util.PriviAction;
 
 /**
  * The Internet Protocol (IP) address representation class. This class
@@ -52,6 +50,9 @@ public class InetAddress extends Object implements Serializable {
 
     private final static INetworkSystem NETIMPL = Platform.getNetworkSystem();
 
+    // the results of host name lookups, including failed ones
+    private final static AddressCache addressCache = new AddressCache();
+
     final static InetAddress LOOPBACK = new Inet4Address(localhost_bytes,
             "localhost"); //$NON-NLS-1$
 
@@ -113,10 +114,6 @@ public class InetAddress extends Object implements Serializable {
         this.hostName = hostName;
     }
 
-    CacheElement cacheElement() {
-        return new CacheElement();
-    }
-
     /**
      * Compares this {@code InetAddress} instance against the specified address
      * in {@code obj}. Two addresses are equal if their address byte arrays have
@@ -392,41 +389,20 @@ public class InetAddress extends Object implements Serializable {
         return ((ipaddress[0] & 255) >>> 4) == 0xE;
     }
 
-    static synchronized InetAddress lookupHostByName(String host)
+    static InetAddress lookupHostByName(String host)
             throws UnknownHostException {
-        int ttl = -1;
-
-        String ttlValue = AccessController
-                .doPrivileged(new PriviAction<String>(
-                        "networkaddress.cache.ttl")); //$NON-NLS-1$
-        try {
-            if (ttlValue != null) {
-                ttl = Integer.decode(ttlValue).intValue();
+        int ttl = AddressCache.ttl("networkaddress.cache.ttl", -1); //$NON-NLS-1$
+        if (ttl != 0) {
+            InetAddress cached = addressCache.get(host, ttl);
+            if (cached != null) {
+                return cached;
             }
-        } catch (NumberFormatException e) {
-            // Ignored
-        }
-        CacheElement element = null;
-        if (ttl == 0) {
-            Cache.clear();
-        } else {
-            element = Cache.get(host);
-            if (element != null
-                    && ttl > 0
-                    && element.timeAdded + (ttl * 1000) < System
-                            .currentTimeMillis()) {
-                element = null;
-            }
-        }
-        if (element != null) {
-            return element.inetAddress();
         }
 
-        // TODO Clean up NegativeCache; there's no need to maintain the failure message
-        
         // now try the negative cache
-        String failedMessage = NegativeCache.getFailedMessage(host);
-        if (failedMessage != null) {
+        int negativeTtl = AddressCache.ttl(
+                "networkaddress.cache.negative.ttl", 10); //$NON-NLS-1$
+        if (negativeTtl != 0 && addressCache.isUnknown(host, negativeTtl)) {
             throw new UnknownHostException(host);
         }
 
@@ -435,12 +411,16 @@ public class InetAddress extends Object implements Serializable {
             anInetAddress = getHostByNameImpl(host, preferIPv6Addresses());
         } catch (UnknownHostException e) {
             // put the entry in the negative cache
-            NegativeCache.put(host, e.getMessage());
+            if (negativeTtl != 0) {
+                addressCache.putUnknown(host);
+            }
             // use host for message to match RI, save the cause for giggles
             throw (UnknownHostException)new UnknownHostException(host).initCause(e);
         }
 
-        Cache.add(anInetAddress);
+        if (ttl != 0) {
+            addressCache.put(host, anInetAddress);
+        }
         return anInetAddress;
     }
 
@@ -534,92 +514,6 @@ public class InetAddress extends Object implements Serializable {
         return (hostName == null ? "" : hostName) + "/" + getHostAddress(); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
-    class CacheElement {
-        final long timeAdded = System.currentTimeMillis();
-
-        CacheElement next;
-
-        CacheElement() {
-            super();
-        }
-
-        String hostName() {
-            return hostName;
-        }
-
-        InetAddress inetAddress() {
-            return InetAddress.this;
-        }
-    }
-
-    static class Cache {
-        private static int maxSize = 5;
-
-        private static int size = 0;
-
-        private static CacheElement head;
-
-        static synchronized void clear() {
-            size = 0;
-            head = null;
-        }
-
-        static synchronized void add(InetAddress value) {
-            CacheElement newElement = value.cacheElement();
-            if (size < maxSize) {
-                size++;
-            } else {
-                deleteTail();
-            }
-            newElement.next = head; // If the head is null, this does no harm.
-            head = newElement;
-        }
-
-        static synchronized CacheElement get(String name) {
-            CacheElement previous = null;
-            CacheElement current = head;
-            boolean notFound = true;
-            while ((null != current)
-                    && (notFound = !(name.equals(current.hostName())))) {
-                previous = current;
-                current = current.next;
-            }
-            if (notFound) {
-                return null;
-            }
-            moveToHead(current, previous);
-            return current;
-        }
-
-        private synchronized static void deleteTail() {
-            if (0 == size) {
-                return;
-            }
-            if (1 == size) {
-                head = null;
-            }
-
-            CacheElement previous = null;
-            CacheElement current = head;
-            while (null != current.next) {
-                previous = current;
-                current = current.next;
-            }
-            previous.next = null;
-        }
-
-        private synchronized static void moveToHead(CacheElement element,
-                CacheElement elementPredecessor) {
-            if (null == elementPredecessor) {
-                head = element;
-            } else {
-                elementPredecessor.next = element.next;
-                element.next = head;
-                head = element;
-            }
-        }
-    }
-
     /**
      * Returns true if the string is a host name, false if it is an IP Address.
      */
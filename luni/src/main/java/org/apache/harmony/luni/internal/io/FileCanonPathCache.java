@@ -17,50 +17,80 @@
 
 package org.apache.harmony.luni.internal.io;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * A simple cache implementation for file's canonical path. The cache has fixed
- * size <code> CACHE_SIZE </code> and cached elements would be expired. If
- * <code>put<code> method is invoked when cache is full, the oldest element will be removed.
- *
+ * A cache for file's canonical path. Cached elements expire after
+ * <code>timeout</code> milliseconds, and when the cache is full the least
+ * recently used element is removed.
+ * <p>
+ * Lookups do not block: the elements are held in a concurrent map, and the
+ * recency list is only reordered if its lock is free. Changes to the cache
+ * hold the lock for a constant time.
+ * <p>
+ * The canonical path of a directory is also kept, so that a file whose
+ * name is not a symbolic link can be resolved from the path of its parent
+ * with {@link #getChild(String)}.
+ * <p>
+ * The maximum number of elements is given by the system property
+ * <code>org.apache.harmony.file.canonical.path.cache.size</code>, and is
+ * <code>CACHE_SIZE</code> by default.
  */
 public class FileCanonPathCache {
 
     static private class CacheElement {
+        final String path;
+
         final String canonicalPath;
 
         final long timestamp;
 
-        public CacheElement(String path) {
-            this.canonicalPath = path;
+        // recency list, guarded by lock
+        CacheElement prev, next;
+
+        public CacheElement(String path, String canonicalPath) {
+            this.path = path;
+            this.canonicalPath = canonicalPath;
             this.timestamp = System.currentTimeMillis();
         }
     }
 
     /**
-     * Max elements could be hold in the cache.
+     * Default number of elements held in the cache.
      */
     public static final int CACHE_SIZE = 256;
 
-    private static final HashMap<String, CacheElement> cache = new HashMap<String, CacheElement>(
-            CACHE_SIZE);
+    public static final String FILE_CANONICAL_PATH_CACHE_SIZE = "org.apache.harmony.file.canonical.path.cache.size";
+
+    public static final String FILE_CANONICAL_PATH_CACHE_TIMEOUT = "org.apache.harmony.file.canonical.path.cache.timeout";
+
+    private static final int cacheSize;
+
+    private static final ConcurrentHashMap<String, CacheElement> cache;
+
+    /**
+     * Sentinel of the recency list, the least recently used element is
+     * <code>head.next</code>.
+     */
+    private static final CacheElement head = new CacheElement(null, null);
 
     /**
-     * FIFO queue for tracking age of elements.
+     * Guards the recency list, and all changes to the map.
      */
-    private static final LinkedList<String> list = new LinkedList<String>();
+    private static final ReentrantLock lock = new ReentrantLock();
+
+    private static final LongAdder hits = new LongAdder();
 
-    private static final Object lock = new Object();
+    private static final LongAdder misses = new LongAdder();
 
     /**
      * Expired time, 0 disable this cache.
      */
     private static volatile long timeout = 30000;
 
-    public static final String FILE_CANONICAL_PATH_CACHE_TIMEOUT = "org.apache.harmony.file.canonical.path.cache.timeout";
-
     static {
         String value = System.getProperty(FILE_CANONICAL_PATH_CACHE_TIMEOUT);
         try {
@@ -72,6 +102,17 @@ public class FileCanonPathCache {
         if (timeout < 0) {
             timeout = 0;
         }
+
+        int size = CACHE_SIZE;
+        value = System.getProperty(FILE_CANONICAL_PATH_CACHE_SIZE);
+        try {
+            size = Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            // use default size
+        }
+        cacheSize = size;
+        cache = new ConcurrentHashMap<String, CacheElement>(size + (size >> 1));
+        head.prev = head.next = head;
     }
 
     /**
@@ -88,31 +129,46 @@ public class FileCanonPathCache {
             return null;
         }
 
-        CacheElement element = null;
-        synchronized (lock) {
-            element = cache.get(path);
-        }
-
+        CacheElement element = lookup(path, localTimeout);
         if (element == null) {
+            misses.increment();
             return null;
         }
+        hits.increment();
+        return element.canonicalPath;
+    }
 
-        long time = System.currentTimeMillis();
-        if (time - element.timestamp > localTimeout) {
-            // remove all elements older than this one
-            synchronized (lock) {
-                if (cache.get(path) != null) {
-                    String oldest = null;
-                    do {
-                        oldest = list.removeFirst();
-                        cache.remove(oldest);
-                    } while (!path.equals(oldest));
-                }
-            }
+    /**
+     * Resolves a path from the cached canonical path of its parent directory.
+     * The caller must make sure the last name of <code>path</code> is not a
+     * symbolic link.
+     * 
+     * @param path
+     *            absolute path.
+     * @return the canonical path of the parent of <code>path</code> followed
+     *         by its last name, or null if the parent is not in cache or the
+     *         last name is empty, "." or "..".
+     */
+    public static String getChild(String path) {
+        long localTimeout = timeout;
+        if (localTimeout == 0) {
             return null;
         }
 
-        return element.canonicalPath;
+        int index = lastSeparator(path);
+        if (index <= 0) {
+            return null;
+        }
+        CacheElement parent = lookup(path.substring(0, index), localTimeout);
+        if (parent == null) {
+            return null;
+        }
+        String parentPath = parent.canonicalPath;
+        if (parentPath.length() > 0
+                && parentPath.charAt(parentPath.length() - 1) == File.separatorChar) {
+            return parentPath.concat(path.substring(index + 1));
+        }
+        return parentPath.concat(path.substring(index));
     }
 
     /**
@@ -128,15 +184,55 @@ public class FileCanonPathCache {
             return;
         }
 
-        CacheElement element = new CacheElement(canonicalPath);
-        synchronized (lock) {
-            if (cache.size() >= CACHE_SIZE) {
-                // cache is full
-                String oldest = list.removeFirst();
-                cache.remove(oldest);
+        CacheElement element = new CacheElement(path, canonicalPath);
+        lock.lock();
+        try {
+            CacheElement old = cache.put(path, element);
+            if (old != null) {
+                unlink(old);
+            }
+            linkLast(element);
+            while (cache.size() > cacheSize) {
+                CacheElement eldest = head.next;
+                cache.remove(eldest.path);
+                unlink(eldest);
             }
-            cache.put(path, element);
-            list.addLast(path);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put the parent directory of a path to cache, given the canonical path
+     * of a file whose last name is not a symbolic link. Nothing is cached if
+     * the parent is already in cache.
+     * 
+     * @param path
+     *            absolute path.
+     * @param canonicalPath
+     *            the canonical path of <code>path</code>.
+     */
+    public static void putParent(String path, String canonicalPath) {
+        long localTimeout = timeout;
+        if (localTimeout == 0) {
+            return;
+        }
+
+        int index = lastSeparator(path);
+        if (index <= 0) {
+            return;
+        }
+        int length = path.length() - index;
+        int canonicalIndex = canonicalPath.length() - length;
+        if (canonicalIndex < 0
+                || !canonicalPath.regionMatches(canonicalIndex, path, index, length)) {
+            return;
+        }
+        String parent = path.substring(0, index);
+        if (lookup(parent, localTimeout) == null) {
+            // the parent of a file in the root is the root itself
+            put(parent, canonicalIndex == 0 ? canonicalPath.substring(0, 1)
+                    : canonicalPath.substring(0, canonicalIndex));
         }
     }
 
@@ -148,9 +244,12 @@ public class FileCanonPathCache {
             return;
         }
 
-        synchronized (lock) {
+        lock.lock();
+        try {
             cache.clear();
-            list.clear();
+            head.prev = head.next = head;
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -159,12 +258,104 @@ public class FileCanonPathCache {
     }
 
     public static void setTimeout(long timeout) {
-        synchronized (lock) {
+        lock.lock();
+        try {
             if (timeout <= 0) {
                 timeout = 0;
                 clear();
             }
             FileCanonPathCache.timeout = timeout;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the maximum number of elements held in the cache.
+     */
+    public static int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the number of calls to <code>get</code> answered from the
+     * cache.
+     */
+    public static long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of calls to <code>get</code> not answered from the
+     * cache, while it is enabled.
+     */
+    public static long getMissCount() {
+        return misses.sum();
+    }
+
+    /*
+     * Returns the unexpired element for the path, and marks it as the most
+     * recently used if no other thread is changing the cache.
+     */
+    private static CacheElement lookup(String path, long localTimeout) {
+        CacheElement element = cache.get(path);
+        if (element == null) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - element.timestamp > localTimeout) {
+            lock.lock();
+            try {
+                if (cache.remove(path, element)) {
+                    unlink(element);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        }
+
+        if (head.prev != element && lock.tryLock()) {
+            try {
+                // the element may have been removed meanwhile
+                if (element.next != null) {
+                    unlink(element);
+                    linkLast(element);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return element;
+    }
+
+    /*
+     * Returns the index of the separator before the last name of the path,
+     * or -1 if the last name is empty or made of dots only.
+     */
+    private static int lastSeparator(String path) {
+        int index = path.lastIndexOf(File.separatorChar);
+        if (index < 0 || index == path.length() - 1) {
+            return -1;
         }
+        for (int i = index + 1; i < path.length(); i++) {
+            if (path.charAt(i) != '.') {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static void linkLast(CacheElement element) {
+        element.prev = head.prev;
+        element.next = head;
+        head.prev.next = element;
+        head.prev = element;
+    }
+
+    private static void unlink(CacheElement element) {
+        element.prev.next = element.next;
+        element.next.prev = element.prev;
+        element.prev = element.next = null;
     }
 }
@@ -24,6 +24,7 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSocket;
@@ -49,6 +50,12 @@ public class HttpConnection {
 
     private HttpConfiguration config;
 
+    // The time this connection was last returned to the pool
+    private long idleSince;
+
+    // Whether this connection is in the pool of idle connections
+    private final AtomicBoolean idle = new AtomicBoolean();
+
     public HttpConnection(HttpConfiguration config, int connectTimeout) throws IOException {
         this.config = config;
         String hostName = config.getHostName();
@@ -177,6 +184,25 @@ public class HttpConnection {
     Socket getSocket() {
         return socket;
     }
+
+    long getIdleSince() {
+        return idleSince;
+    }
+
+    void setIdleSince(long idleSince) {
+        this.idleSince = idleSince;
+    }
+
+    /**
+     * Marks this connection as idle, and returns false if it already was.
+     */
+    boolean markIdle() {
+        return idle.compareAndSet(false, true);
+    }
+
+    void clearIdle() {
+        idle.set(false);
+    }
     
     /*
      * This method has been copied from the Apache Jakarta Commons HttpClient project
@@ -187,6 +213,10 @@ public class HttpConnection {
         if (!socket.isClosed()) {
             // the socket is open, but could still have been closed from the other end
             isStale = false;
+            if (inputStream == null) {
+                // nothing has been read from this connection yet
+                return isStale;
+            }
             try {
                 if (inputStream.available() <= 0) {
                     int soTimeout = socket.getSoTimeout();
@@ -20,61 +20,103 @@ import java.io.IOException;
 import java.net.Proxy;
 import java.net.URI;
 import java.security.AccessController;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.harmony.luni.util.PriviAction;
 
 /**
  * <code>HttpConnectionManager</code> manages a pool of <code>HttpConnection</code>s
- * that are not currently in use and is used to get hold of persistent <code>HttpConnection</code>s.  
- * Clients should return an <code>HttpConnection</code> to the pool after use by calling 
+ * that are not currently in use and is used to get hold of persistent <code>HttpConnection</code>s.
+ * Clients should return an <code>HttpConnection</code> to the pool after use by calling
  * <code>returnConnectionToPool</code>
- * 
- * Two system properties affect the behaviour of this class - <code>http.maxConnections</code>
- * and <code>http.keepAlive</code>.  <code>http.keepAlive</code> determines whether 
- * or not connections should be persisted and <code>http.maxConnections</code> 
- * determines the maximum number of connections to each individual host that 
- * should be kept in the pool.
+ *
+ * The following system properties affect the behaviour of this class. They
+ * are read once when the manager is created and again on every call to
+ * <code>reset</code>:
+ * <ul>
+ * <li><code>http.keepAlive</code> determines whether or not connections
+ * should be persisted</li>
+ * <li><code>http.maxConnections</code> determines the maximum number of idle
+ * connections to each individual host that should be kept in the pool</li>
+ * <li><code>http.maxTotalConnections</code> determines the maximum number of
+ * idle connections kept in the pool over all hosts</li>
+ * <li><code>http.keepAliveTimeout</code> determines how many milliseconds an
+ * idle connection may stay in the pool before it is closed</li>
+ * </ul>
+ *
+ * Checkout and return never block: every host has its own lock-free queue of
+ * idle connections and the caps are enforced with atomic counters. Idle
+ * connections that outlive the keep-alive timeout, or that were closed by the
+ * peer, are closed by a background daemon thread which only runs while the
+ * pool is not empty.
  */
-public class HttpConnectionManager {
+public class HttpConnectionManager implements HttpConnectionManagerMXBean {
+
+    /**
+     * The <code>String</code> value of the {@link HttpConnectionManagerMXBean}'s
+     * ObjectName.
+     */
+    public static final String HTTP_CONNECTION_MANAGER_MXBEAN_NAME = "org.apache.harmony.luni:type=HttpConnectionManager"; //$NON-NLS-1$
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 5;
+
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 256;
 
-    // The maximum number of connections to any location
-    private static int maxConnections = 5;
+    private static final long DEFAULT_KEEP_ALIVE_TIMEOUT = 5000;
+
+    // The reaper never wakes more often than this many milliseconds
+    private static final long MIN_REAP_INTERVAL = 100;
+
+    private static final HttpConnectionManager defaultConnectionManager = new HttpConnectionManager();
+
+    // The maximum number of idle connections to any location
+    private volatile int maxConnections;
+
+    // The maximum number of idle connections to all locations
+    private volatile int maxTotalConnections;
 
     // Keeps connections alive if true
-    private static boolean keepAlive = true;
+    private volatile boolean keepAlive;
+
+    // Milliseconds an idle connection is kept before it gets closed
+    private volatile long keepAliveTimeout;
+
+    private final ConnectionPool pool = new ConnectionPool();
 
-    private static HttpConnectionManager defaultConnectionManager;
-    private ConnectionPool pool = new ConnectionPool();
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    HttpConnectionManager() {
+        readSystemProperties();
+    }
 
     /**
      * Returns the default connection manager
      */
     public static HttpConnectionManager getDefault() {
-        if(defaultConnectionManager == null) {
-            defaultConnectionManager = new HttpConnectionManager();
-        }
         return defaultConnectionManager;
     }
 
     public HttpConnection getConnection(URI uri, int connectTimeout) throws IOException {
-        checkSystemProperties();
         HttpConfiguration config = new HttpConfiguration(uri);
         return pool.getHttpConnection(config, connectTimeout);
     }
 
     public HttpConnection getConnection(URI uri, Proxy proxy, int connectTimeout) throws IOException {
-        checkSystemProperties();
         HttpConfiguration config = new HttpConfiguration(uri, proxy);
         return pool.getHttpConnection(config, connectTimeout);
     }
 
     public void returnConnectionToPool(HttpConnection connection) {
-        checkSystemProperties();
         pool.returnConnection(connection);
     }
 
@@ -82,92 +124,302 @@ public class HttpConnectionManager {
         return pool.numFreeConnections();
     }
 
-    private void checkSystemProperties() {
-        String httpMaxConnections =  AccessController.doPrivileged(new PriviAction<String>("http.maxConnections"));
-        String httpKeepAlive = AccessController.doPrivileged(new PriviAction<String>("http.keepAlive"));
-        if(httpMaxConnections != null) {
-            maxConnections = Integer.parseInt(httpMaxConnections);
+    /**
+     * Closes every idle connection and re-reads the system properties that
+     * configure the pool.
+     */
+    public void reset() {
+        readSystemProperties();
+        pool.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int getIdleConnectionCount() {
+        return pool.numFreeConnections();
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnections;
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public long getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    private void readSystemProperties() {
+        String httpMaxConnections = AccessController.doPrivileged(new PriviAction<String>("http.maxConnections")); //$NON-NLS-1$
+        String httpMaxTotalConnections = AccessController.doPrivileged(new PriviAction<String>("http.maxTotalConnections")); //$NON-NLS-1$
+        String httpKeepAlive = AccessController.doPrivileged(new PriviAction<String>("http.keepAlive")); //$NON-NLS-1$
+        String httpKeepAliveTimeout = AccessController.doPrivileged(new PriviAction<String>("http.keepAliveTimeout")); //$NON-NLS-1$
+        maxConnections = parseInt(httpMaxConnections, DEFAULT_MAX_CONNECTIONS);
+        maxTotalConnections = parseInt(httpMaxTotalConnections, DEFAULT_MAX_TOTAL_CONNECTIONS);
+        keepAlive = httpKeepAlive == null || Boolean.parseBoolean(httpKeepAlive);
+        keepAliveTimeout = parseLong(httpKeepAliveTimeout, DEFAULT_KEEP_ALIVE_TIMEOUT);
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                // fall through to the default
+            }
+        }
+        return defaultValue;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                // fall through to the default
+            }
         }
-        if(httpKeepAlive != null) {
-            keepAlive = Boolean.parseBoolean(httpKeepAlive);
-            if(!keepAlive) {
-                pool.clear();
+        return defaultValue;
+    }
+
+    /**
+     * The idle connections to a single location. The counter tracks the
+     * connections owned by the route, including those the reaper has
+     * temporarily taken out of the queue to check them. The reaper retires
+     * an empty route by setting the counter to -1, after which no connection
+     * can be added to it and it is removed from the pool.
+     */
+    private static class Route {
+
+        final ConcurrentLinkedQueue<HttpConnection> idle = new ConcurrentLinkedQueue<HttpConnection>();
+
+        final AtomicInteger size = new AtomicInteger();
+
+        boolean reserve(int max) {
+            for (;;) {
+                int current = size.get();
+                if (current >= max || current < 0) {
+                    return false;
+                }
+                if (size.compareAndSet(current, current + 1)) {
+                    return true;
+                }
             }
         }
+
+        boolean retire() {
+            return size.compareAndSet(0, -1);
+        }
+
+        boolean isRetired() {
+            return size.get() < 0;
+        }
     }
 
-    private static class ConnectionPool {
+    private class ConnectionPool {
+
+        private final ConcurrentHashMap<HttpConfiguration, Route> routes = new ConcurrentHashMap<HttpConfiguration, Route>();
+
+        private final AtomicInteger total = new AtomicInteger();
 
-        private Map<HttpConfiguration, List<HttpConnection>> freeConnectionMap = new HashMap<HttpConfiguration, List<HttpConnection>>(); // Map of free Sockets
+        private final AtomicBoolean reaperRunning = new AtomicBoolean();
 
-        public synchronized void clear() {
-            for (Iterator<List<HttpConnection>> iter = freeConnectionMap.values().iterator(); iter.hasNext();) {
-                List<HttpConnection> connections = iter.next();
-                for (Iterator<HttpConnection> iterator = connections.iterator(); iterator.hasNext();) {
-                    HttpConnection connection = iterator.next();
+        public void clear() {
+            for (Iterator<Route> iter = routes.values().iterator(); iter.hasNext();) {
+                Route route = iter.next();
+                HttpConnection connection;
+                while ((connection = route.idle.poll()) != null) {
+                    release(route);
+                    connection.clearIdle();
                     connection.closeSocketAndStreams();
                 }
             }
-            freeConnectionMap.clear();
         }
 
-        public synchronized void returnConnection(HttpConnection connection) {
-            if(!connection.getSocket().isClosed() && keepAlive) {
-                HttpConfiguration config = connection.getHttpConfiguration();
-                List<HttpConnection> connections = freeConnectionMap.get(config);
-                if(connections == null) {
-                    connections = new ArrayList<HttpConnection>();
-                    freeConnectionMap.put(config, connections);
+        public void returnConnection(HttpConnection connection) {
+            if(connection.getSocket() != null && !connection.getSocket().isClosed() && keepAlive) {
+                if (!connection.markIdle()) {
+                    // already in the pool
+                    return;
                 }
-                if(connections.size() < HttpConnectionManager.maxConnections) {
-                    if(!connections.contains(connection)) {
-                        connections.add(connection);
+                HttpConfiguration config = connection.getHttpConfiguration();
+                Route route;
+                for (;;) {
+                    route = getRoute(config);
+                    if (route.reserve(maxConnections)) {
+                        break;
+                    }
+                    if (!route.isRetired()) {
+                        connection.clearIdle();
+                        connection.closeSocketAndStreams();
+                        return;
                     }
-                } else {
+                    // the reaper removes the route, then it is created again
+                    routes.remove(config, route);
+                }
+                if (!reserveTotal()) {
+                    route.size.decrementAndGet();
+                    connection.clearIdle();
                     connection.closeSocketAndStreams();
+                    return;
                 }
+                connection.setIdleSince(System.currentTimeMillis());
+                route.idle.offer(connection);
+                startReaper();
             } else {
                 // Make sure all streams are closed etc.
                 connection.closeSocketAndStreams();
             }
         }
 
-        public synchronized HttpConnection getHttpConnection(HttpConfiguration config, int connectTimeout) throws IOException {
-            List<HttpConnection> connections = freeConnectionMap.get(config);
-            if(keepAlive && connections == null) {
-                connections = new ArrayList<HttpConnection>();
-                freeConnectionMap.put(config, connections);
-            }
-            if(!keepAlive || connections.isEmpty()) {
-                HttpConnection connection = new HttpConnection(config, connectTimeout);
-                return connection;
-            } else {
-                HttpConnection connection = connections.get(0);
-                connections.remove(0);
-                if(!connection.isStale()) {
+        public HttpConnection getHttpConnection(HttpConfiguration config, int connectTimeout) throws IOException {
+            Route route = keepAlive ? routes.get(config) : null;
+            if (route != null) {
+                HttpConnection connection;
+                while ((connection = route.idle.poll()) != null) {
+                    release(route);
+                    connection.clearIdle();
+                    boolean evict;
+                    try {
+                        evict = isExpired(connection, System.currentTimeMillis()) || connection.isStale();
+                    } catch (IOException e) {
+                        evict = true;
+                    }
+                    if (evict) {
+                        evictions.increment();
+                        connection.closeSocketAndStreams();
+                        continue;
+                    }
                     SecurityManager security = System.getSecurityManager();
                     if (security != null) {
                         security.checkConnect(connection.getSocket().getInetAddress().getHostName(), connection.getSocket().getPort());
                     }
-                    return connection;                 
-                } else {
-                    return getHttpConnection(config, connectTimeout);
+                    hits.increment();
+                    return connection;
                 }
             }
+            misses.increment();
+            return new HttpConnection(config, connectTimeout);
         }
 
         public int numFreeConnections() {
-            int numFree = 0;
-            for (Iterator<List<HttpConnection>> iter = freeConnectionMap.values().iterator(); iter.hasNext();) {
-                List<HttpConnection> connections = iter.next();
-                numFree += connections.size();
+            return total.get();
+        }
+
+        /**
+         * Closes the idle connections that have expired or were closed by the
+         * peer, and removes the routes left without connections.
+         */
+        void reap() {
+            long now = System.currentTimeMillis();
+            for (Iterator<Map.Entry<HttpConfiguration, Route>> iter = routes.entrySet().iterator(); iter.hasNext();) {
+                Map.Entry<HttpConfiguration, Route> entry = iter.next();
+                Route route = entry.getValue();
+                for (Iterator<HttpConnection> idle = route.idle.iterator(); idle.hasNext();) {
+                    HttpConnection connection = idle.next();
+                    // only the thread that removes it may touch the connection
+                    if (!route.idle.remove(connection)) {
+                        continue;
+                    }
+                    boolean evict;
+                    try {
+                        evict = isExpired(connection, now) || connection.isStale();
+                    } catch (IOException e) {
+                        evict = true;
+                    }
+                    if (evict) {
+                        release(route);
+                        connection.clearIdle();
+                        evictions.increment();
+                        connection.closeSocketAndStreams();
+                    } else {
+                        route.idle.offer(connection);
+                    }
+                }
+                if (route.retire()) {
+                    routes.remove(entry.getKey(), route);
+                }
             }
-            return numFree;
         }
-    }
 
-    public void reset() {
-        pool.clear();
-    }
+        private Route getRoute(HttpConfiguration config) {
+            Route route = routes.get(config);
+            if (route == null) {
+                Route newRoute = new Route();
+                route = routes.putIfAbsent(config, newRoute);
+                if (route == null) {
+                    route = newRoute;
+                }
+            }
+            return route;
+        }
+
+        private boolean reserveTotal() {
+            for (;;) {
+                int current = total.get();
+                if (current >= maxTotalConnections) {
+                    return false;
+                }
+                if (total.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release(Route route) {
+            route.size.decrementAndGet();
+            total.decrementAndGet();
+        }
 
-}
\ No newline at end of file
+        private boolean isExpired(HttpConnection connection, long now) {
+            return connection.getSocket() == null
+                    || connection.getSocket().isClosed()
+                    || now - connection.getIdleSince() >= keepAliveTimeout;
+        }
+
+        private void startReaper() {
+            if (reaperRunning.compareAndSet(false, true)) {
+                Thread reaper = new Thread(new Reaper(), "HttpConnectionManager reaper"); //$NON-NLS-1$
+                reaper.setDaemon(true);
+                reaper.start();
+            }
+        }
+
+        /**
+         * Periodically closes expired idle connections and exits once the
+         * pool is empty; the next returned connection starts a new reaper.
+         */
+        private class Reaper implements Runnable {
+
+            public void run() {
+                for (;;) {
+                    try {
+                        Thread.sleep(Math.max(MIN_REAP_INTERVAL, keepAliveTimeout / 2));
+                    } catch (InterruptedException e) {
+                        // fall through and check the pool
+                    }
+                    reap();
+                    if (total.get() == 0) {
+                        reaperRunning.set(false);
+                        // a connection may have been returned after the check
+                        if (total.get() == 0 || !reaperRunning.compareAndSet(false, true)) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.harmony.luni.internal.net.www.protocol.http;
+
+/**
+ * The management interface of the HTTP keep-alive connection pool.
+ * <p>
+ * The ObjectName for identifying the <code>HttpConnectionManagerMXBean</code>
+ * in a bean server is
+ * {@link HttpConnectionManager#HTTP_CONNECTION_MANAGER_MXBEAN_NAME}.
+ * </p>
+ */
+public interface HttpConnectionManagerMXBean {
+
+    /**
+     * Returns the number of requests that were served by a pooled connection.
+     *
+     * @return the number of pool hits.
+     */
+    long getHitCount();
+
+    /**
+     * Returns the number of requests for which a new connection had to be
+     * opened.
+     *
+     * @return the number of pool misses.
+     */
+    long getMissCount();
+
+    /**
+     * Returns the number of idle connections closed because they had expired
+     * or were closed by the peer.
+     *
+     * @return the number of evicted connections.
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns the number of idle connections currently held in the pool.
+     *
+     * @return the number of idle connections.
+     */
+    int getIdleConnectionCount();
+
+    /**
+     * Returns the maximum number of idle connections kept to a single host.
+     *
+     * @return the per host cap.
+     */
+    int getMaxConnectionsPerHost();
+
+    /**
+     * Returns the maximum number of idle connections kept over all hosts.
+     *
+     * @return the total cap.
+     */
+    int getMaxTotalConnections();
+
+    /**
+     * Returns the number of milliseconds an idle connection is kept in the
+     * pool.
+     *
+     * @return the keep-alive timeout in milliseconds.
+     */
+    long getKeepAliveTimeout();
+}
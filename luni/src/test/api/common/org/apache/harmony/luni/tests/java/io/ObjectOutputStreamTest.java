@@ -722,6 +722,40 @@ public class ObjectOutputStreamTest extends TestCase implements Serializable {
         ois.close();
     }
 
+    /**
+     * @tests java.io.ObjectOutputStream#reset()
+     */
+    public void test_reset_sharedReferences() throws Exception {
+        // enough objects to grow the handle tables several times
+        String[] strings = new String[1000];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = "string" + i;
+        }
+        Object[] graph = new Object[strings.length * 2];
+        for (int i = 0; i < strings.length; i++) {
+            graph[2 * i] = strings[i];
+            graph[2 * i + 1] = strings[strings.length - 1 - i];
+        }
+        oos.writeObject(graph);
+        oos.reset();
+        oos.writeObject(graph);
+        oos.writeObject(graph);
+        oos.close();
+        ois = new ObjectInputStream(new ByteArrayInputStream(bao.toByteArray()));
+        Object[] first = (Object[]) ois.readObject();
+        Object[] second = (Object[]) ois.readObject();
+        assertSame(second, ois.readObject());
+        ois.close();
+        assertNotSame(first, second);
+        assertTrue(Arrays.equals(graph, first));
+        assertTrue(Arrays.equals(graph, second));
+        for (int i = 0; i < strings.length; i++) {
+            assertSame(first[2 * i], first[2 * (strings.length - 1 - i) + 1]);
+            assertSame(second[2 * i], second[2 * (strings.length - 1 - i) + 1]);
+            assertNotSame(first[2 * i], second[2 * i]);
+        }
+    }
+
     private static class ExternalTest implements Externalizable {
         public String value;
 
@@ -158,6 +158,24 @@ public class ObjectStreamClassTest extends TestCase {
                 osc.getName());
     }
 
+    /**
+     * @tests java.io.ObjectStreamClass#lookup(java.lang.Class)
+     */
+    public void test_lookupLjava_lang_Class_sharedByThreads() throws Exception {
+        final ObjectStreamClass osc = ObjectStreamClass.lookup(DummyClass.class);
+        final ObjectStreamClass[] other = new ObjectStreamClass[1];
+        Thread thread = new Thread() {
+            public void run() {
+                other[0] = ObjectStreamClass.lookup(DummyClass.class);
+            }
+        };
+        thread.start();
+        thread.join();
+        assertSame(osc, other[0]);
+        assertEquals(DummyClass.getUID(), other[0].getSerialVersionUID());
+        assertEquals(2, other[0].getFields().length);
+    }
+
     /**
      * @tests java.io.ObjectStreamClass#toString()
      */
@@ -249,6 +249,16 @@ public class StringBuilderTest extends TestCase {
 		sb.setLength(0);
 		assertSame(sb, sb.append(Double.MAX_VALUE));
 		assertEquals(String.valueOf(Double.MAX_VALUE), sb.toString());
+
+		// appends that do and do not fit in the remaining capacity
+		sb = new StringBuilder(1);
+		String expected = "";
+		for (int i = 0; i < 50; i++) {
+			double d = Math.PI * i * i - 1E-4 * i;
+			sb.append(d);
+			expected = expected.concat(String.valueOf(d));
+		}
+		assertEquals(expected, sb.toString());
 	}
 
 	/**
@@ -279,6 +289,16 @@ public class StringBuilderTest extends TestCase {
 		sb.setLength(0);
 		assertSame(sb, sb.append(Float.MAX_VALUE));
 		assertEquals(String.valueOf(Float.MAX_VALUE), sb.toString());
+
+		// appends that do and do not fit in the remaining capacity
+		sb = new StringBuilder(1);
+		String expected = "";
+		for (int i = 0; i < 50; i++) {
+			float f = (float) Math.E * i * i - 1E-4F * i;
+			sb.append(f);
+			expected = expected.concat(String.valueOf(f));
+		}
+		assertEquals(expected, sb.toString());
 	}
 
 	/**
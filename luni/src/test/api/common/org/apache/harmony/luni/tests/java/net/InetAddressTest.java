@@ -52,6 +52,47 @@ public class InetAddressTest extends junit.framework.TestCase {
         }
     }
 
+    /**
+     * @tests java.net.InetAddress#getByName(String)
+     */
+    public void test_getByName_concurrentLookups() throws Exception {
+        final String host = InetAddress.getLocalHost().getHostName();
+        final InetAddress expected = InetAddress.getByName(host);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            assertEquals(expected, InetAddress.getByName(host));
+                            try {
+                                InetAddress.getByName("unknown.unknown.bad");
+                                fail("An UnknownHostException should have been thrown");
+                            } catch (UnknownHostException e) {
+                                // expected
+                            }
+                        }
+                    } catch (Throwable t) {
+                        synchronized (failure) {
+                            failure[0] = t;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw new AssertionError(failure[0]);
+            }
+        }
+    }
+
     /**
      * @tests java.net.InetAddress#equals(java.lang.Object)
      */
@@ -433,6 +433,7 @@ public class PersistenceTest extends TestCase {
      */
     public void testKeepAliveSystemProperty() throws IOException, InterruptedException {
         System.setProperty("http.keepAlive", "false");
+        HttpConnectionManager.getDefault().reset();
         MockServer httpServer =
                 new MockServer("ServerSocket for HttpURLConnectionTest");
         httpServer.start();
@@ -450,6 +451,7 @@ public class PersistenceTest extends TestCase {
         assertEquals(0, HttpConnectionManager.getDefault().numFreeConnections());
         httpServer.join();
         System.setProperty("http.keepAlive", "true");
+        HttpConnectionManager.getDefault().reset();
     }
 
     /**
@@ -457,8 +459,9 @@ public class PersistenceTest extends TestCase {
      * @throws Exception
      */
     public void testMaxConnectionsSystemProperty() throws Exception {
-        int initialFreeConnections = HttpConnectionManager.getDefault().numFreeConnections();
         System.setProperty("http.maxConnections", "2");
+        HttpConnectionManager.getDefault().reset();
+        int initialFreeConnections = HttpConnectionManager.getDefault().numFreeConnections();
         HttpURLConnection c = (HttpURLConnection)
             new URL("http://localhost:" + port).openConnection();
         c.setDoOutput(true);
@@ -485,8 +488,51 @@ public class PersistenceTest extends TestCase {
         is2.close();
         is3.close();
         assertEquals(initialFreeConnections + 2, HttpConnectionManager.getDefault().numFreeConnections());
+        System.clearProperty("http.maxConnections");
+        HttpConnectionManager.getDefault().reset();
     }
-    
+
+    /**
+     * Test that the pool counts hits and misses and evicts idle connections
+     * once the keep-alive timeout has passed
+     */
+    public void testPoolStatistics() throws Exception {
+        System.setProperty("http.keepAliveTimeout", "200");
+        HttpConnectionManager manager = HttpConnectionManager.getDefault();
+        manager.reset();
+        try {
+            assertEquals(200, manager.getKeepAliveTimeout());
+            MockServer httpServer =
+                    new MockServer("ServerSocket for HttpURLConnectionTest");
+            httpServer.start();
+            synchronized(bound) {
+                if (!httpServer.started) {
+                    bound.wait(5000);
+                }
+            }
+            URI uri = new URI("http://127.0.0.1:" + httpServer.port());
+            long misses = manager.getMissCount();
+            long hits = manager.getHitCount();
+            long evictions = manager.getEvictionCount();
+            HttpConnection connection = manager.getConnection(uri, 1000);
+            assertEquals(misses + 1, manager.getMissCount());
+            manager.returnConnectionToPool(connection);
+            assertEquals(1, manager.getIdleConnectionCount());
+            assertSame(connection, manager.getConnection(uri, 1000));
+            assertEquals(hits + 1, manager.getHitCount());
+            manager.returnConnectionToPool(connection);
+            for (int i = 0; i < 50 && manager.getIdleConnectionCount() > 0; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(0, manager.getIdleConnectionCount());
+            assertEquals(evictions + 1, manager.getEvictionCount());
+            httpServer.join();
+        } finally {
+            System.clearProperty("http.keepAliveTimeout");
+            manager.reset();
+        }
+    }
+
     public void testClosingOutputStream() throws IOException {
 //      create a serversocket
         Support_HttpServerSocket serversocket = new Support_HttpServerSocket();
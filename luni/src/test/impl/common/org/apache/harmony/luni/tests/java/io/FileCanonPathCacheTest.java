@@ -131,4 +131,64 @@ public class FileCanonPathCacheTest extends TestCase {
                     .getAbsolutePath()));
         }
     }
+
+    public void testLeastRecentlyUsed() throws Exception {
+        int cacheSize = FileCanonPathCache.getCacheSize();
+        // resolve the paths first, getCanonicalPath() itself puts the file
+        // and its parent directory into the cache
+        String[] paths = new String[cacheSize + 1];
+        String[] canonicalPaths = new String[cacheSize + 1];
+        for (int i = 0; i <= cacheSize; ++i) {
+            File file = new File("test/world" + i);
+            paths[i] = file.getAbsolutePath();
+            canonicalPaths[i] = file.getCanonicalPath();
+        }
+        FileCanonPathCache.clear();
+
+        for (int i = 0; i < cacheSize; ++i) {
+            FileCanonPathCache.put(paths[i], canonicalPaths[i]);
+        }
+        // the first element is now the most recently used, and the second
+        // the least recently used
+        assertEquals(canonicalPaths[0], FileCanonPathCache.get(paths[0]));
+        FileCanonPathCache.put(paths[cacheSize], canonicalPaths[cacheSize]);
+
+        // exactly the second element was evicted
+        assertNull(FileCanonPathCache.get(paths[1]));
+        assertEquals(canonicalPaths[0], FileCanonPathCache.get(paths[0]));
+        for (int i = 2; i <= cacheSize; ++i) {
+            assertEquals(canonicalPaths[i], FileCanonPathCache.get(paths[i]));
+        }
+    }
+
+    public void testGetChild() throws Exception {
+        File dir = new File("test");
+        File file = new File(dir, "hello~1");
+        assertNull(FileCanonPathCache.getChild(file.getAbsolutePath()));
+        FileCanonPathCache.putParent(file.getAbsolutePath(), file
+                .getCanonicalPath());
+        assertEquals(dir.getCanonicalPath(), FileCanonPathCache.get(dir
+                .getAbsolutePath()));
+        File sibling = new File(dir, "hello~2");
+        assertEquals(sibling.getCanonicalPath(), FileCanonPathCache
+                .getChild(sibling.getAbsolutePath()));
+
+        assertNull(FileCanonPathCache.getChild(new File(dir, "..")
+                .getAbsolutePath()));
+        assertNull(FileCanonPathCache.getChild(dir.getAbsolutePath()
+                + File.separator));
+    }
+
+    public void testHitAndMissCount() throws Exception {
+        long hits = FileCanonPathCache.getHitCount();
+        long misses = FileCanonPathCache.getMissCount();
+        File file = new File("test/hello~1");
+        assertNull(FileCanonPathCache.get(file.getAbsolutePath()));
+        FileCanonPathCache.put(file.getAbsolutePath(), file
+                .getCanonicalPath());
+        FileCanonPathCache.get(file.getAbsolutePath());
+        FileCanonPathCache.get(file.getAbsolutePath());
+        assertEquals(hits + 2, FileCanonPathCache.getHitCount());
+        assertEquals(misses + 1, FileCanonPathCache.getMissCount());
+    }
 }
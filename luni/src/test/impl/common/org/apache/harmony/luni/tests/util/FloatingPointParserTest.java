@@ -0,0 +1,189 @@
+/* Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.luni.tests.util;
+
+import java.util.Random;
+
+import org.apache.harmony.luni.util.FloatingPointParser;
+
+import junit.framework.TestCase;
+
+public class FloatingPointParserTest extends TestCase {
+
+    private static final int COUNT = 100000;
+
+    /**
+     * @tests org.apache.harmony.luni.util.FloatingPointParser#parseDouble(String)
+     */
+    public void test_parseDoubleLjava_lang_String_roundTrip() {
+        Random random = new Random(1);
+        for (int i = 0; i < COUNT; i++) {
+            long bits = random.nextLong();
+            if ((i & 1) == 0) {
+                // denormalized and very small numbers
+                bits &= 0x803FFFFFFFFFFFFFL;
+            }
+            double d = Double.longBitsToDouble(bits);
+            if (Double.isNaN(d)) {
+                continue;
+            }
+            String s = Double.toString(d);
+            assertEquals(s, bits, Double.doubleToRawLongBits(FloatingPointParser
+                    .parseDouble(s)));
+        }
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.FloatingPointParser#parseFloat(String)
+     */
+    public void test_parseFloatLjava_lang_String_roundTrip() {
+        Random random = new Random(2);
+        for (int i = 0; i < COUNT; i++) {
+            int bits = random.nextInt();
+            if ((i & 1) == 0) {
+                bits &= 0x87FFFFFF;
+            }
+            float f = Float.intBitsToFloat(bits);
+            if (Float.isNaN(f)) {
+                continue;
+            }
+            String s = Float.toString(f);
+            assertEquals(s, bits, Float.floatToRawIntBits(FloatingPointParser
+                    .parseFloat(s)));
+        }
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.FloatingPointParser#parseDouble(String)
+     */
+    public void test_parseDoubleLjava_lang_String_hardCases() {
+        // halfway between two doubles, rounded to the even one
+        assertEquals(9007199254740992.0, FloatingPointParser
+                .parseDouble("9007199254740993"), 0.0);
+        assertEquals(9007199254740996.0, FloatingPointParser
+                .parseDouble("9007199254740995"), 0.0);
+        // just above halfway, with more digits than a long holds
+        assertEquals(9007199254740994.0, FloatingPointParser
+                .parseDouble("9007199254740993.00000000001"), 0.0);
+        assertEquals(Math.PI, FloatingPointParser
+                .parseDouble("3.14159265358979323846264338327950288"), 0.0);
+        assertEquals(Double.MIN_NORMAL, FloatingPointParser
+                .parseDouble("2.2250738585072014E-308"), 0.0);
+        assertEquals(0x0.fffffffffffffp-1022, FloatingPointParser
+                .parseDouble("2.2250738585072011e-308"), 0.0);
+        assertEquals(Double.MIN_VALUE, FloatingPointParser
+                .parseDouble("2.4703282292062328e-324"), 0.0);
+        assertEquals(0.0, FloatingPointParser
+                .parseDouble("2.4703282292062327e-324"), 0.0);
+        assertEquals(Double.MAX_VALUE, FloatingPointParser
+                .parseDouble("1.7976931348623158e308"), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, FloatingPointParser
+                .parseDouble("1.7976931348623159e308"), 0.0);
+        assertEquals(1E23, FloatingPointParser.parseDouble("1E23"), 0.0);
+        assertEquals(8.41E21, FloatingPointParser
+                .parseDouble("8.41e+21"), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, FloatingPointParser
+                .parseDouble("-1e99999999999"), 0.0);
+        assertEquals(Double.doubleToLongBits(-0.0), Double
+                .doubleToLongBits(FloatingPointParser.parseDouble("-1e-400")));
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.FloatingPointParser#parseFloat(String)
+     */
+    public void test_parseFloatLjava_lang_String_hardCases() {
+        // halfway between two floats, rounded to the even one
+        assertEquals(1.0000002F, FloatingPointParser
+                .parseFloat("1.000000178813934326171875"), 0F);
+        assertEquals(1.0000001F, FloatingPointParser
+                .parseFloat("1.00000017881393432617187499"), 0F);
+        assertEquals(7.038531E-26F, FloatingPointParser
+                .parseFloat("7.038531e-26"), 0F);
+        assertEquals(Float.MAX_VALUE, FloatingPointParser
+                .parseFloat("3.4028235e38"), 0F);
+        assertEquals(Float.POSITIVE_INFINITY, FloatingPointParser
+                .parseFloat("3.4028236e38"), 0F);
+        assertEquals(Float.MIN_VALUE, FloatingPointParser
+                .parseFloat("7.1e-46"), 0F);
+        assertEquals(0F, FloatingPointParser.parseFloat("7e-46"), 0F);
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.FloatingPointParser#parseDouble(CharSequence)
+     * @tests org.apache.harmony.luni.util.FloatingPointParser#parseDouble(char[],
+     *        int, int)
+     */
+    public void test_parseDouble_overloads() {
+        String[] values = { "0", "-0.0", "1", "+1.5e3", ".5", "5.", "1.5d",
+                "2f", " \t12.75\n", "0.1", "6.02214076E23", "1e-320",
+                "123456789012345678901234567890", "Infinity", "-Infinity",
+                "NaN", "0x1.8p1" };
+        for (int i = 0; i < values.length; i++) {
+            String s = values[i];
+            double expected = FloatingPointParser.parseDouble(s);
+            assertEquals(s, expected, FloatingPointParser
+                    .parseDouble(new StringBuilder(s)), 0.0);
+            char[] chars = ("<<" + s + ">>").toCharArray();
+            assertEquals(s, expected, FloatingPointParser.parseDouble(chars, 2,
+                    s.length()), 0.0);
+            assertEquals(s, (float) expected, FloatingPointParser
+                    .parseFloat(chars, 2, s.length()), 0F);
+        }
+        assertEquals(0.5, FloatingPointParser.parseDouble("0.5"), 0.0);
+        assertEquals(1500.0, FloatingPointParser.parseDouble("+1.5e3"), 0.0);
+        assertEquals(12.75, FloatingPointParser.parseDouble(" \t12.75\n"), 0.0);
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.FloatingPointParser#parseDouble(CharSequence)
+     * @tests org.apache.harmony.luni.util.FloatingPointParser#parseDouble(char[],
+     *        int, int)
+     */
+    public void test_parseDouble_overloads_Illegal() {
+        String[] values = { "", " ", "-", "+", ".", "e5", "1e", "1e+-5",
+                "1.2.3", "1 2", "1d5", "1.5dd", "1x" };
+        for (int i = 0; i < values.length; i++) {
+            String s = values[i];
+            try {
+                FloatingPointParser.parseDouble(new StringBuilder(s));
+                fail("Expected NumberFormatException for " + s);
+            } catch (NumberFormatException e) {
+                // Expected
+            }
+            try {
+                FloatingPointParser.parseFloat(s.toCharArray(), 0, s.length());
+                fail("Expected NumberFormatException for " + s);
+            } catch (NumberFormatException e) {
+                // Expected
+            }
+        }
+
+        char[] chars = "1.5".toCharArray();
+        try {
+            FloatingPointParser.parseDouble(chars, 1, 3);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+        try {
+            FloatingPointParser.parseDouble(chars, -1, 1);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/* Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.luni.tests.util;
+
+import java.util.Random;
+
+import org.apache.harmony.luni.util.NumberConverter;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the shortest digit generator of NumberConverter with the
+ * free-format generator it replaced.
+ */
+public class NumberConverterTest extends TestCase {
+
+    private static final int COUNT = 200000;
+
+    /**
+     * @tests org.apache.harmony.luni.util.NumberConverter#convert(double)
+     */
+    public void test_convertD() {
+        Random random = new Random(1);
+        for (int i = 0; i < COUNT; i++) {
+            double d;
+            switch (i & 3) {
+            case 0:
+                d = Math.scalb(1 + random.nextDouble(), random.nextInt(64) - 6);
+                break;
+            case 1:
+                // a power of two, whose lower neighbour is closer
+                d = Math.scalb(1.0, random.nextInt(64) - 6);
+                break;
+            case 2:
+                // a short decimal, likely to be a halfway case
+                d = (100000 + random.nextInt(900000)) / 1000.0;
+                break;
+            default:
+                // an integer with more digits than a double holds
+                d = (double) (random.nextLong() >>> 6 + random.nextInt(12));
+            }
+            if (random.nextBoolean()) {
+                d = -d;
+            }
+            String actual = NumberConverter.convert(d);
+            assertConverted(new FreeFormatConverter().convertD(d), actual,
+                    Double.parseDouble(actual) == d);
+        }
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.NumberConverter#convert(float)
+     */
+    public void test_convertF() {
+        Random random = new Random(2);
+        for (int i = 0; i < COUNT; i++) {
+            float f;
+            switch (i & 3) {
+            case 0:
+                f = Math.scalb(1 + random.nextFloat(), random.nextInt(93) - 35);
+                break;
+            case 1:
+                f = Math.scalb(1.0F, random.nextInt(93) - 35);
+                break;
+            case 2:
+                f = (100000 + random.nextInt(900000)) / 1000.0F;
+                break;
+            default:
+                f = (float) (random.nextLong() >>> 6 + random.nextInt(34));
+            }
+            if (random.nextBoolean()) {
+                f = -f;
+            }
+            String actual = NumberConverter.convert(f);
+            assertConverted(new FreeFormatConverter().convertF(f), actual,
+                    Float.parseFloat(actual) == f);
+        }
+    }
+
+    /*
+     * The old generator left out the ends of the rounding interval, even when
+     * round half even reads them back as the value, so it may have given a
+     * longer string.
+     */
+    private static void assertConverted(String expected, String actual,
+            boolean readsBack) {
+        if (!expected.equals(actual)) {
+            assertTrue(expected + " " + actual,
+                    actual.length() < expected.length() && readsBack);
+        }
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.NumberConverter#convert(double)
+     */
+    public void test_convertD_roundTrip() {
+        Random random = new Random(3);
+        for (int i = 0; i < COUNT; i++) {
+            long bits = random.nextLong();
+            if ((i & 1) == 0) {
+                // few significant bits, including denormalized numbers
+                bits &= 0xFFF00000000000FFL;
+            }
+            double d = Double.longBitsToDouble(bits);
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                continue;
+            }
+            String s = NumberConverter.convert(d);
+            assertEquals(s, bits, Double.doubleToLongBits(Double.parseDouble(s)));
+        }
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.NumberConverter#convert(float)
+     */
+    public void test_convertF_roundTrip() {
+        Random random = new Random(4);
+        for (int i = 0; i < COUNT; i++) {
+            int bits = random.nextInt();
+            if ((i & 1) == 0) {
+                bits &= 0xFF80000F;
+            }
+            float f = Float.intBitsToFloat(bits);
+            if (Float.isNaN(f) || Float.isInfinite(f)) {
+                continue;
+            }
+            String s = NumberConverter.convert(f);
+            assertEquals(s, bits, Float.floatToIntBits(Float.parseFloat(s)));
+        }
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.NumberConverter#convert(double)
+     */
+    public void test_convertD_specialValues() {
+        assertEquals("NaN", NumberConverter.convert(Double.NaN));
+        assertEquals("Infinity", NumberConverter.convert(Double.POSITIVE_INFINITY));
+        assertEquals("-Infinity", NumberConverter.convert(Double.NEGATIVE_INFINITY));
+        assertEquals("0.0", NumberConverter.convert(0.0));
+        assertEquals("-0.0", NumberConverter.convert(-0.0));
+        assertEquals("4.9E-324", NumberConverter.convert(Double.MIN_VALUE));
+        assertEquals("1.0E-323", NumberConverter.convert(2 * Double.MIN_VALUE));
+        assertEquals("2.2250738585072014E-308", NumberConverter.convert(Double.MIN_NORMAL));
+        assertEquals("1.7976931348623157E308", NumberConverter.convert(Double.MAX_VALUE));
+        assertEquals("1.0E23", NumberConverter.convert(1E23));
+        assertEquals("9999999.0", NumberConverter.convert(9999999.0));
+        assertEquals("1.0E7", NumberConverter.convert(1E7));
+        assertEquals("0.001", NumberConverter.convert(1E-3));
+        assertEquals("9.99E-4", NumberConverter.convert(9.99E-4));
+        assertEquals("123456.789", NumberConverter.convert(123456.789));
+        assertEquals("-100.0", NumberConverter.convert(-100.0));
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.NumberConverter#convert(float)
+     */
+    public void test_convertF_specialValues() {
+        assertEquals("NaN", NumberConverter.convert(Float.NaN));
+        assertEquals("Infinity", NumberConverter.convert(Float.POSITIVE_INFINITY));
+        assertEquals("-Infinity", NumberConverter.convert(Float.NEGATIVE_INFINITY));
+        assertEquals("0.0", NumberConverter.convert(0.0F));
+        assertEquals("-0.0", NumberConverter.convert(-0.0F));
+        assertEquals("1.4E-45", NumberConverter.convert(Float.MIN_VALUE));
+        assertEquals("1.1754944E-38", NumberConverter.convert(Float.MIN_NORMAL));
+        assertEquals("3.4028235E38", NumberConverter.convert(Float.MAX_VALUE));
+        assertEquals("1.0E7", NumberConverter.convert(1E7F));
+        assertEquals("0.001", NumberConverter.convert(1E-3F));
+        assertEquals("1.1", NumberConverter.convert(1.1F));
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.NumberConverter#convert(double,
+     *        char[], int)
+     */
+    public void test_convertD$CI() {
+        char[] buffer = new char[NumberConverter.MAX_DOUBLE_CHARS + 2];
+        int end = NumberConverter.convert(-Double.MIN_NORMAL, buffer, 2);
+        assertEquals(buffer.length, end);
+        assertEquals("-2.2250738585072014E-308", new String(buffer, 2, end - 2));
+
+        end = NumberConverter.convert(0.5, buffer, 1);
+        assertEquals(4, end);
+        assertEquals("0.5", new String(buffer, 1, 3));
+    }
+
+    /**
+     * @tests org.apache.harmony.luni.util.NumberConverter#convert(float,
+     *        char[], int)
+     */
+    public void test_convertF$CI() {
+        char[] buffer = new char[NumberConverter.MAX_FLOAT_CHARS + 2];
+        int end = NumberConverter.convert(-1.17549435E-36F, buffer, 2);
+        assertEquals(buffer.length, end);
+        assertEquals("-1.17549435E-36", new String(buffer, 2, end - 2));
+    }
+}
@@ -479,6 +479,14 @@ public class BigInteger extends Number implements Comparable<BigInteger>,
             sign = 1;
             startChar = 0;
         }
+        if (stringLength == 0) {
+            // math.12=Zero length BigInteger
+            throw new NumberFormatException(Messages.getString("math.12")); //$NON-NLS-1$
+        }
+        if (Character.digit(val.charAt(startChar), radix) == -1) {
+            // a plus or a second sign would be taken as the sign of a part
+            throw new NumberFormatException(val);
+        }
         /*
          * We use the following algorithm: split a string into portions of n
          * characters and convert each portion to an integer according to the
@@ -494,6 +502,14 @@ public class BigInteger extends Number implements Comparable<BigInteger>,
         if (topChars != 0) {
             bigRadixDigitsLength++;
         }
+        if (bigRadixDigitsLength >= Conversion.whenUseRecursiveParse) {
+            BigInteger magnitude = Conversion.parseRecursive(val, startChar,
+                    endChar, radix);
+            bi.sign = (magnitude.sign == 0) ? 0 : sign;
+            bi.numberLength = magnitude.numberLength;
+            bi.digits = magnitude.digits;
+            return;
+        }
         digits = new int[bigRadixDigitsLength];
         // Get the maximal power of radix that fits in int
         int bigRadix = Conversion.bigRadices[radix - 2];
@@ -1099,6 +1115,30 @@ public class BigInteger extends Number implements Comparable<BigInteger>,
         return Multiplication.multiply(this, val);
     }
 
+    /**
+     * Returns a new {@code BigInteger} whose value is {@code this * val}. The
+     * result is the same as the one of {@link #multiply(BigInteger)}, but
+     * when both numbers are large, in the tens of thousands of bits, the
+     * multiplication is split in products computed in parallel in the
+     * common {@code ForkJoinPool}.
+     *
+     * @param val
+     *            value to be multiplied with {@code this}.
+     * @return {@code this * val}.
+     * @throws NullPointerException
+     *             if {@code val == null}.
+     */
+    public BigInteger parallelMultiply(BigInteger val) {
+        // This let us to throw NullPointerException when val == null
+        if (val.sign == 0) {
+            return ZERO;
+        }
+        if (sign == 0) {
+            return ZERO;
+        }
+        return Multiplication.multiply(this, val, true);
+    }
+
     /**
      * Returns a new {@code BigInteger} whose value is {@code this ^ exp}.
      *
@@ -48,7 +48,114 @@ class Conversion {
             387420489, 481890304, 594823321, 729000000, 887503681, 1073741824,
             1291467969, 1544804416, 1838265625, 60466176 };
 
-    
+    /**
+     * Break point in digits (number of {@code int} elements) between the
+     * divide and conquer conversion to {@code String} and the digit by digit
+     * one.
+     */
+    static final int whenUseRecursiveToString = 240;
+
+    /**
+     * Break point in digits (number of {@code int} elements) between the
+     * divide and conquer conversion from {@code String} and the digit by
+     * digit one, which only multiplies by an {@code int} for each digit and
+     * is much faster than a division.
+     */
+    static final int whenUseRecursiveParse = 6000;
+
+    /**
+     * The powers bigRadix<sup>2<sup>k</sup></sup> of each radix, computed
+     * on demand by the divide and conquer conversions. Each array only grows
+     * and is replaced as a whole, so that no lock is needed; threads racing
+     * to grow it compute the same powers.
+     */
+    private static volatile BigInteger radixPowers[][] =
+            new BigInteger[Character.MAX_RADIX + 1][];
+
+    /**
+     * Returns bigRadix<sup>2<sup>k</sup></sup>, the power of {@code radix}
+     * which is written as a one and {@code digitFitInInt[radix] << k} zeros.
+     */
+    static BigInteger radixPower(int radix, int k) {
+        BigInteger powers[] = radixPowers[radix];
+        if (powers != null && k < powers.length) {
+            return powers[k];
+        }
+        BigInteger newPowers[] = new BigInteger[k + 1];
+        int known;
+        if (powers != null) {
+            known = powers.length;
+            System.arraycopy(powers, 0, newPowers, 0, known);
+        } else {
+            newPowers[0] = BigInteger.valueOf(bigRadices[radix - 2] & 0xFFFFFFFFL);
+            known = 1;
+        }
+        for (int i = known; i <= k; i++) {
+            newPowers[i] = Multiplication.square(newPowers[i - 1]);
+        }
+        BigInteger allPowers[][] = radixPowers.clone();
+        allPowers[radix] = newPowers;
+        radixPowers = allPowers;
+        return newPowers[k];
+    }
+
+    /**
+     * Appends the representation of the non negative {@code val} in the given
+     * radix to {@code sb}, with leading zeros up to {@code chars} characters.
+     * The number is divided by a power of the radix of about half its length,
+     * and the quotient and the remainder are converted the same way, so that
+     * the conversion costs some divisions of Burnikel-Ziegler instead of the
+     * quadratic digit by digit conversion, which is left for the small parts.
+     */
+    static void toStringRecursive(BigInteger val, int radix, StringBuilder sb,
+            int chars) {
+        if (val.numberLength < whenUseRecursiveToString) {
+            String s = (radix == 10) ? toDecimalScaledString(val, 0)
+                    : bigInteger2String(val, radix);
+            for (int i = s.length(); i < chars; i++) {
+                sb.append('0');
+            }
+            sb.append(s);
+            return;
+        }
+        // the highest k with 2^(k+1) <= numberLength
+        int k = 30 - Integer.numberOfLeadingZeros(val.numberLength);
+        BigInteger qr[] = val.divideAndRemainder(radixPower(radix, k));
+        int lowChars = digitFitInInt[radix] << k;
+        toStringRecursive(qr[0], radix, sb, chars - lowChars);
+        toStringRecursive(qr[1], radix, sb, lowChars);
+    }
+
+    /**
+     * Parses the characters from {@code start} to {@code end} of {@code val},
+     * digits in the given radix without a sign. The characters are split
+     * where the lower part has a length of {@code digitFitInInt[radix] << k}
+     * characters, about half of all, and the parsed higher part is multiplied
+     * by bigRadix<sup>2<sup>k</sup></sup>, so that the conversion costs some
+     * fast multiplications instead of quadratic time.
+     * 
+     * @see BigInteger#BigInteger(String, int)
+     */
+    static BigInteger parseRecursive(String val, int start, int end, int radix) {
+        int charsPerInt = digitFitInInt[radix];
+        int bigRadixDigits = (end - start + charsPerInt - 1) / charsPerInt;
+        if (bigRadixDigits < whenUseRecursiveParse) {
+            for (int i = start; i < end; i++) {
+                if (Character.digit(val.charAt(i), radix) == -1) {
+                    // a sign would be parsed as the sign of a part
+                    throw new NumberFormatException(val.substring(start, end));
+                }
+            }
+            return new BigInteger(val.substring(start, end), radix);
+        }
+        // the highest k with 2^(k+1) < bigRadixDigits
+        int k = 30 - Integer.numberOfLeadingZeros(bigRadixDigits - 1);
+        int split = end - (charsPerInt << k);
+        BigInteger high = parseRecursive(val, start, split, radix);
+        BigInteger low = parseRecursive(val, split, end, radix);
+        return Multiplication.multiply(high, radixPower(radix, k)).add(low);
+    }
+
     /** @see BigInteger#toString(int) */
     static String bigInteger2String(BigInteger val, int radix) {
         int sign = val.sign;
@@ -70,6 +177,14 @@ class Conversion {
                 || (radix > Character.MAX_RADIX)) {
             return val.toString();
         }
+        if ((numberLength >= whenUseRecursiveToString) && (radix != 16)) {
+            StringBuilder sb = new StringBuilder();
+            if (sign < 0) {
+                sb.append('-');
+            }
+            toStringRecursive(val.abs(), radix, sb, 0);
+            return sb.toString();
+        }
         double bitsForRadixDigit;
         bitsForRadixDigit = Math.log(radix) / Math.log(2);
         int resLengthInChars = (int) (val.abs().bitLength() / bitsForRadixDigit + ((sign < 0) ? 1
@@ -196,6 +311,11 @@ class Conversion {
                     result[--currentChar] = (char) (0x0030 + (prev - v * 10));
                 } while (v != 0);
             }
+        } else if (numberLength >= whenUseRecursiveToString) {
+            StringBuilder sb = new StringBuilder();
+            toStringRecursive(val.abs(), 10, sb, 0);
+            currentChar -= sb.length();
+            sb.getChars(0, sb.length(), result, currentChar);
         } else {
             int temp[] = new int[numberLength];
             int tempLen = numberLength;
@@ -42,6 +42,43 @@ import org.apache.harmony.math.internal.nls.Messages;
  */
 class Division {
 
+    /**
+     * Break point in digits (number of {@code int} elements) of the divisor
+     * between Burnikel-Ziegler and Knuth's division. The quotient must have
+     * at least {@code whenUseBurnikelZieglerOffset} more digits, as the
+     * recursion only pays off when both are long. The break points are
+     * measured by the {@code DivisionBenchmark} of the tests.
+     */
+    static final int whenUseBurnikelZiegler = 400;
+
+    /**
+     * The number of digits the dividend must have more than the divisor to use
+     * Burnikel-Ziegler division.
+     */
+    static final int whenUseBurnikelZieglerOffset = 200;
+
+    /**
+     * Divides the array 'a' by the array 'b' and gets the quotient and the
+     * remainder. Long divisors use the Burnikel-Ziegler division, the others
+     * Knuth's.
+     * 
+     * @param quot the quotient
+     * @param quotLength the quotient's length
+     * @param a the dividend
+     * @param aLength the dividend's length
+     * @param b the divisor
+     * @param bLength the divisor's length
+     * @return the remainder
+     */
+    static int[] divide(int quot[], int quotLength, int a[], int aLength,
+            int b[], int bLength) {
+        if (bLength >= whenUseBurnikelZiegler
+                && aLength - bLength >= whenUseBurnikelZieglerOffset) {
+            return divideBurnikelZiegler(quot, a, aLength, b, bLength);
+        }
+        return divideKnuth(quot, quotLength, a, aLength, b, bLength);
+    }
+
     /**
      * Divides the array 'a' by the array 'b' and gets the quotient and the
      * remainder. Implements the Knuth's division algorithm. See D. Knuth, The
@@ -56,7 +93,7 @@ class Division {
      * @param bLength the divisor's length
      * @return the remainder
      */
-    static int[] divide(int quot[], int quotLength, int a[], int aLength,
+    static int[] divideKnuth(int quot[], int quotLength, int a[], int aLength,
             int b[], int bLength) {
 
         int normA[] = new int[aLength + 1]; // the normalized dividend
@@ -166,6 +203,148 @@ class Division {
         return normA;
     }
 
+    /**
+     * Divides the array 'a' by the array 'b' with the recursive division of
+     * Burnikel and Ziegler, which takes twice the time of a multiplication of
+     * the same length instead of Knuth's quadratic time. The divisor is
+     * shifted left so that it fills a whole number of blocks of {@code n}
+     * digits, {@code n} being a power of two times a length below
+     * {@code whenUseBurnikelZiegler}, and the dividend is divided by it block
+     * by block from the highest one, each step dividing two blocks by one.
+     * @ar.org.fitc.ref "C. Burnikel, J. Ziegler - Fast Recursive Division.
+     *                  MPI-I-98-1-022, 1998"
+     * 
+     * @param quot the quotient, which may be {@code null}
+     * @param a the dividend
+     * @param aLength the dividend's length
+     * @param b the divisor
+     * @param bLength the divisor's length
+     * @return the remainder, of {@code bLength} digits
+     */
+    static int[] divideBurnikelZiegler(int quot[], int a[], int aLength,
+            int b[], int bLength) {
+        // the divisor is split in m blocks of j digits
+        int m = 1 << (32 - Integer.numberOfLeadingZeros(bLength
+                / whenUseBurnikelZiegler));
+        int j = (bLength + m - 1) / m;
+        int n = j * m;
+        BigInteger divisor = new BigInteger(1, bLength, b);
+        int shift = (n << 5) - divisor.bitLength();
+        BigInteger normB = divisor.shiftLeft(shift);
+        BigInteger normA = new BigInteger(1, aLength, a).shiftLeft(shift);
+        // the number of blocks of the dividend, the highest one below 2^(32n-1)
+        int t = Math.max(2, (normA.bitLength() + (n << 5)) / (n << 5));
+
+        BigInteger z = Multiplication.getPart(normA, (t - 2) * n, n << 1);
+        for (int i = t - 2;; i--) {
+            BigInteger qr[] = divide2n1n(z, normB, n);
+            if (quot != null && qr[0].sign != 0) {
+                System.arraycopy(qr[0].digits, 0, quot, i * n,
+                        qr[0].numberLength);
+            }
+            if (i == 0) {
+                BigInteger remainder = qr[1].shiftRight(shift);
+                int remDigits[] = new int[bLength];
+                System.arraycopy(remainder.digits, 0, remDigits, 0,
+                        remainder.numberLength);
+                return remDigits;
+            }
+            z = join(qr[1], Multiplication.getPart(normA, (i - 1) * n, n), n);
+        }
+    }
+
+    /**
+     * Divides a number of {@code 2n} digits by one of {@code n} digits whose
+     * highest bit is set, when the quotient fits in {@code n} digits.
+     * 
+     * @return an array of the form {@code [quotient, remainder]}
+     */
+    private static BigInteger[] divide2n1n(BigInteger a, BigInteger b, int n) {
+        if ((n & 1) != 0 || n < whenUseBurnikelZiegler) {
+            return divideKnuth(a, b);
+        }
+        int half = n >> 1;
+        // a = [a1,a2,a3,a4], each of half digits
+        BigInteger qr1[] = divide3n2n(Multiplication.getPart(a, half,
+                a.numberLength), b, half);
+        BigInteger qr2[] = divide3n2n(join(qr1[1], Multiplication.getPart(a,
+                0, half), half), b, half);
+        return new BigInteger[] { join(qr1[0], qr2[0], half), qr2[1] };
+    }
+
+    /**
+     * Divides a number of {@code 3k} digits by one of {@code 2k} digits whose
+     * highest bit is set, when the quotient fits in {@code k} digits.
+     * 
+     * @return an array of the form {@code [quotient, remainder]}
+     */
+    private static BigInteger[] divide3n2n(BigInteger a, BigInteger b, int k) {
+        // a = [a1,a2,a3] and b = [b1,b2], each of k digits
+        BigInteger a12 = Multiplication.getPart(a, k, a.numberLength);
+        BigInteger a1 = Multiplication.getPart(a, k << 1, a.numberLength);
+        BigInteger b1 = Multiplication.getPart(b, k, k);
+        BigInteger b2 = Multiplication.getPart(b, 0, k);
+        BigInteger q;
+        BigInteger r1;
+        if (a1.compareTo(b1) < 0) {
+            BigInteger qr[] = divide2n1n(a12, b1, k);
+            q = qr[0];
+            r1 = qr[1];
+        } else {
+            // q = 2^(32k) - 1, the largest quotient of k digits
+            q = BigInteger.ONE.shiftLeft(k << 5).subtract(BigInteger.ONE);
+            r1 = a12.subtract(b1.shiftLeft(k << 5)).add(b1);
+        }
+        BigInteger r = join(r1, Multiplication.getPart(a, 0, k), k).subtract(
+                q.multiply(b2));
+        // the estimated quotient exceeds the true one by two at most
+        while (r.sign < 0) {
+            r = r.add(b);
+            q = q.subtract(BigInteger.ONE);
+        }
+        return new BigInteger[] { q, r };
+    }
+
+    /**
+     * Divides two positive numbers with Knuth's division, for the small
+     * divisions of the Burnikel-Ziegler recursion.
+     * 
+     * @return an array of the form {@code [quotient, remainder]}
+     */
+    private static BigInteger[] divideKnuth(BigInteger a, BigInteger b) {
+        int aLength = a.numberLength;
+        int bLength = b.numberLength;
+        if (a.compareTo(b) < 0) {
+            return new BigInteger[] { BigInteger.ZERO, a };
+        }
+        if (bLength == 1) {
+            return divideAndRemainderByInteger(a, b.digits[0], 1);
+        }
+        int quotLength = aLength - bLength + 1;
+        int quot[] = new int[quotLength];
+        int rem[] = divideKnuth(quot, quotLength, a.digits, aLength, b.digits,
+                bLength);
+        BigInteger q = new BigInteger(1, quotLength, quot);
+        BigInteger r = new BigInteger(1, bLength, rem);
+        q.cutOffLeadingZeroes();
+        r.cutOffLeadingZeroes();
+        return new BigInteger[] { q, r };
+    }
+
+    /**
+     * Returns {@code high * 2^(32k) + low} for a non negative {@code low} of
+     * {@code k} digits at most.
+     */
+    private static BigInteger join(BigInteger high, BigInteger low, int k) {
+        int resLength = k + high.numberLength;
+        int resDigits[] = new int[resLength];
+        System.arraycopy(low.digits, 0, resDigits, 0, low.numberLength);
+        System.arraycopy(high.digits, 0, resDigits, k, high.numberLength);
+        BigInteger result = new BigInteger(1, resLength, resDigits);
+        result.cutOffLeadingZeroes();
+        return result;
+    }
+
     /**
      * Divides an array by an integer value. Implements the Knuth's division
      * algorithm. See D. Knuth, The Art of Computer Programming, vol. 2.
@@ -857,8 +1036,9 @@ class Division {
     static BigInteger monPro(BigInteger a, BigInteger b, BigInteger modulus, int n2) {
         int modulusLen = modulus.numberLength;
         int res[] = new int[(modulusLen << 1) + 1];
-        Multiplication.multArraysPAP(a.digits, Math.min(modulusLen, a.numberLength),
-                                      b.digits, Math.min(modulusLen, b.numberLength), res);
+        // squares when a == b, as in squareAndMultiply and slidingWindow
+        Multiplication.multArrays(a.digits, Math.min(modulusLen, a.numberLength),
+                                  b.digits, Math.min(modulusLen, b.numberLength), res);
         monReduction(res,modulus,n2);
         return finalSubtraction(res, modulus);
         
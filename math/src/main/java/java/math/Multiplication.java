@@ -17,6 +17,8 @@
 
 package java.math;
 
+import java.util.concurrent.RecursiveTask;
+
 import org.apache.harmony.math.internal.nls.Messages;
 
 /**
@@ -29,9 +31,36 @@ class Multiplication {
 
     /**
      * Break point in digits (number of {@code int} elements)
-     * between Karatsuba and Pencil and Paper multiply.
+     * between Karatsuba and Pencil and Paper multiply. This and the following
+     * break points are measured by the {@code MultiplicationBenchmark} of
+     * the tests.
+     */
+    static final int whenUseKaratsuba = 80;
+
+    /**
+     * Break point in digits (number of {@code int} elements)
+     * between Toom-Cook 3-way and Karatsuba multiply.
+     */
+    static final int whenUseToomCook = 240;
+
+    /**
+     * Break point in digits (number of {@code int} elements)
+     * between Karatsuba and Pencil and Paper square.
      */
-    static final int whenUseKaratsuba = 63; // an heuristic value
+    static final int whenUseKaratsubaSquare = 128;
+
+    /**
+     * Break point in digits (number of {@code int} elements)
+     * between Toom-Cook 3-way and Karatsuba square.
+     */
+    static final int whenUseToomCookSquare = 240;
+
+    /**
+     * The number of digits (number of {@code int} elements) from which
+     * {@link BigInteger#parallelMultiply(BigInteger)} computes the five
+     * products of a Toom-Cook 3-way step in parallel.
+     */
+    static final int whenUseParallel = 2400;
 
     /**
      * An array with powers of ten that fit in the type {@code int}.
@@ -84,7 +113,38 @@ class Multiplication {
      * @see BigInteger#multiply(BigInteger)
      */
     static BigInteger multiply(BigInteger x, BigInteger y) {
-        return karatsuba(x, y);
+        return multiply(x, y, false);
+    }
+
+    /**
+     * Performs a multiplication of two BigInteger, computing the products of
+     * the Toom-Cook steps of large enough factors in parallel if
+     * {@code parallel} is set.
+     * @see BigInteger#parallelMultiply(BigInteger)
+     */
+    static BigInteger multiply(BigInteger x, BigInteger y, boolean parallel) {
+        if (x.sign == 0 || y.sign == 0) {
+            return BigInteger.ZERO;
+        }
+        if (x == y) {
+            return square(x, parallel);
+        }
+        BigInteger temp;
+        if (y.numberLength > x.numberLength) {
+            temp = x;
+            x = y;
+            y = temp;
+        }
+        if (y.numberLength < whenUseKaratsuba) {
+            return multiplyPAP(x, y);
+        }
+        if (y.numberLength < whenUseToomCook) {
+            return karatsuba(x, y);
+        }
+        if (y.numberLength << 1 < x.numberLength) {
+            return multiplyBySlices(x, y, parallel);
+        }
+        return toomCook3(x, y, parallel && y.numberLength >= whenUseParallel);
     }
 
     /**
@@ -98,6 +158,8 @@ class Multiplication {
      *  u*v = (u<sub>1</sub> * v<sub>1</sub>) * B<sub>2</sub> + ((u<sub>1</sub> - u<sub>0</sub>) * (v<sub>0</sub> - v<sub>1</sub>) + u<sub>1</sub> * v<sub>1</sub> +
      *  u<sub>0</sub> * v<sub>0</sub> ) * B + u<sub>0</sub> * v<sub>0</sub><br>
      *</tt>
+     * Only this step is made here, the three products are computed by
+     * {@link #multiply(BigInteger, BigInteger)}.
      * @param op1 first factor of the product
      * @param op2 second factor of the product
      * @return {@code op1 * op2}
@@ -110,9 +172,6 @@ class Multiplication {
             op1 = op2;
             op2 = temp;
         }
-        if (op2.numberLength < whenUseKaratsuba) {
-            return multiplyPAP(op1, op2);
-        }
         /*  Karatsuba:  u = u1*B + u0
          *              v = v1*B + v0
          *  u*v = (u1*v1)*B^2 + ((u1-u0)*(v0-v1) + u1*v1 + u0*v0)*B + u0*v0
@@ -124,9 +183,9 @@ class Multiplication {
         BigInteger lowerOp1 = op1.subtract(upperOp1.shiftLeft(ndiv2));
         BigInteger lowerOp2 = op2.subtract(upperOp2.shiftLeft(ndiv2));
 
-        BigInteger upper = karatsuba(upperOp1, upperOp2);
-        BigInteger lower = karatsuba(lowerOp1, lowerOp2);
-        BigInteger middle = karatsuba( upperOp1.subtract(lowerOp1),
+        BigInteger upper = multiply(upperOp1, upperOp2);
+        BigInteger lower = multiply(lowerOp1, lowerOp2);
+        BigInteger middle = multiply( upperOp1.subtract(lowerOp1),
                 lowerOp2.subtract(upperOp2));
         middle = middle.add(upper).add(lower);
         middle = middle.shiftLeft(ndiv2);
@@ -135,6 +194,288 @@ class Multiplication {
         return upper.add(middle).add(lower);
     }
 
+    /**
+     * Performs the multiplication of a factor more than twice as long as the
+     * other one, by slices of the length of the shorter factor. The products
+     * of the slices are balanced, while splitting both factors in the parts
+     * of a Toom-Cook step of the longer one would mostly multiply zeros.
+     * @param x the longer factor
+     * @param y the shorter factor
+     * @param parallel whether to compute the products with the parallel
+     *        algorithm
+     * @return {@code x * y}
+     */
+    private static BigInteger multiplyBySlices(BigInteger x, BigInteger y,
+            boolean parallel) {
+        int k = y.numberLength;
+        BigInteger absY = y.abs();
+        int resLength = x.numberLength + k;
+        int[] resDigits = new int[resLength];
+        for (int from = 0; from < x.numberLength; from += k) {
+            BigInteger product = multiply(getPart(x, from, k), absY, parallel);
+            // adds the product of the slice to the digits from the slice on
+            long carry = 0;
+            int i = 0;
+            for (; i < product.numberLength; i++) {
+                carry += (resDigits[from + i] & 0xFFFFFFFFL)
+                        + (product.digits[i] & 0xFFFFFFFFL);
+                resDigits[from + i] = (int) carry;
+                carry >>>= 32;
+            }
+            for (i += from; carry != 0; i++) {
+                carry += resDigits[i] & 0xFFFFFFFFL;
+                resDigits[i] = (int) carry;
+                carry >>>= 32;
+            }
+        }
+        BigInteger result = new BigInteger((x.sign == y.sign) ? 1 : -1,
+                resLength, resDigits);
+        result.cutOffLeadingZeroes();
+        return result;
+    }
+
+    /**
+     * Performs the multiplication with the Toom-Cook 3-way algorithm, with
+     * the evaluation and interpolation sequence of M. Bodrato. The factors
+     * are split in three parts and evaluated in the points 0, 1, -1, 2 and
+     * infinity, which takes five products of a third of the length instead
+     * of the nine of the pencil and paper method.
+     *<tt>
+     *             u = u<sub>2</sub> * B<sup>2</sup> + u<sub>1</sub> * B + u<sub>0</sub><br>
+     *             v = v<sub>2</sub> * B<sup>2</sup> + v<sub>1</sub> * B + v<sub>0</sub><br>
+     *</tt>
+     * Only this step is made here, the five products are computed by
+     * {@link #multiply(BigInteger, BigInteger, boolean)}.
+     * @param op1 first factor of the product
+     * @param op2 second factor of the product
+     * @param parallel whether to compute the five products in parallel,
+     *        and with the parallel algorithm too
+     * @return {@code op1 * op2}
+     * @ar.org.fitc.ref "M. Bodrato - Towards Optimal Toom-Cook
+     *                  Multiplication for Univariate and Multivariate
+     *                  Polynomials in Characteristic 2 and 0"
+     */
+    static BigInteger toomCook3(BigInteger op1, BigInteger op2,
+            boolean parallel) {
+        // k = ceil(length / 3), the length of the parts in digits
+        int k = (Math.max(op1.numberLength, op2.numberLength) + 2) / 3;
+        BigInteger a0 = getPart(op1, 0, k);
+        BigInteger a1 = getPart(op1, k, k);
+        BigInteger a2 = getPart(op1, k << 1, op1.numberLength);
+        BigInteger b0 = getPart(op2, 0, k);
+        BigInteger b1 = getPart(op2, k, k);
+        BigInteger b2 = getPart(op2, k << 1, op2.numberLength);
+
+        // evaluation in 0, 1, -1, 2 and infinity
+        BigInteger da1 = a2.add(a0);
+        BigInteger db1 = b2.add(b0);
+        BigInteger am1 = da1.subtract(a1);
+        BigInteger bm1 = db1.subtract(b1);
+        da1 = da1.add(a1);
+        db1 = db1.add(b1);
+        // a0 + 2*a1 + 4*a2 = 2*(a0 + a1 + 2*a2) - a0
+        BigInteger da2 = da1.add(a2).shiftLeft(1).subtract(a0);
+        BigInteger db2 = db1.add(b2).shiftLeft(1).subtract(b0);
+
+        BigInteger[] v = products(new BigInteger[] { a0, da1, am1, da2, a2 },
+                new BigInteger[] { b0, db1, bm1, db2, b2 }, parallel);
+        BigInteger result = interpolate(v[0], v[1], v[2], v[3], v[4], k);
+        return (op1.sign != op2.sign) ? result.negate() : result;
+    }
+
+    /**
+     * Computes the products of the Toom-Cook 3-way step, in parallel and with
+     * the parallel algorithm if {@code parallel} is set. The factors are
+     * squared if {@code y} is null.
+     */
+    private static BigInteger[] products(BigInteger[] x, BigInteger[] y,
+            boolean parallel) {
+        BigInteger[] v = new BigInteger[x.length];
+        if (!parallel) {
+            for (int i = 0; i < x.length; i++) {
+                v[i] = (y == null) ? square(x[i], false)
+                        : multiply(x[i], y[i], false);
+            }
+            return v;
+        }
+        ProductTask[] tasks = new ProductTask[x.length];
+        for (int i = 0; i < x.length; i++) {
+            tasks[i] = new ProductTask(x[i], (y == null) ? null : y[i]);
+        }
+        // forks all the products but the last, which this thread computes
+        for (int i = 0; i < tasks.length - 1; i++) {
+            tasks[i].fork();
+        }
+        v[tasks.length - 1] = tasks[tasks.length - 1].compute();
+        for (int i = tasks.length - 2; i >= 0; i--) {
+            v[i] = tasks[i].join();
+        }
+        return v;
+    }
+
+    /**
+     * Computes a product of a Toom-Cook 3-way step, with the parallel
+     * algorithm too.
+     */
+    private static final class ProductTask extends RecursiveTask<BigInteger> {
+
+        private static final long serialVersionUID = -5427409211962213652L;
+
+        private final BigInteger x;
+
+        private final BigInteger y;
+
+        ProductTask(BigInteger x, BigInteger y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            return (y == null) ? square(x, true) : multiply(x, y, true);
+        }
+    }
+
+    /**
+     * Makes the interpolation of a Toom-Cook 3-way step from the products
+     * in the points 0, 1, -1, 2 and infinity, for parts of {@code k} digits.
+     */
+    private static BigInteger interpolate(BigInteger v0, BigInteger v1,
+            BigInteger vm1, BigInteger v2, BigInteger vinf, int k) {
+        BigInteger t2 = exactDivideBy3(v2.subtract(vm1));
+        BigInteger tm1 = v1.subtract(vm1).shiftRight(1);
+        BigInteger t1 = v1.subtract(v0);
+        t2 = t2.subtract(t1).shiftRight(1);
+        t1 = t1.subtract(tm1).subtract(vinf);
+        t2 = t2.subtract(vinf.shiftLeft(1));
+        tm1 = tm1.subtract(t2);
+
+        // result = vinf*B^4 + t2*B^3 + t1*B^2 + tm1*B + v0
+        int shift = k << 5;
+        BigInteger result = vinf.shiftLeft(shift).add(t2).shiftLeft(shift);
+        result = result.add(t1).shiftLeft(shift).add(tm1).shiftLeft(shift);
+        return result.add(v0);
+    }
+
+    /**
+     * Returns the non negative number of the {@code length} digits of the
+     * magnitude of {@code val} from the digit {@code from}.
+     */
+    static BigInteger getPart(BigInteger val, int from, int length) {
+        int end = Math.min(from + length, val.numberLength);
+        if (from >= end) {
+            return BigInteger.ZERO;
+        }
+        int[] partDigits = new int[end - from];
+        System.arraycopy(val.digits, from, partDigits, 0, end - from);
+        BigInteger part = new BigInteger(1, end - from, partDigits);
+        part.cutOffLeadingZeroes();
+        return part;
+    }
+
+    /**
+     * Divides a number by three, when it is known to be a multiple of three.
+     * Instead of dividing, the digits are multiplied by the inverse of three
+     * modulo 2<sup>32</sup> from the lowest one, as described by Hansen.
+     * @ar.org.fitc.ref "P. B. Hansen - Multiple-length Division Revisited:
+     *                  a Tour of the Minefield"
+     */
+    static BigInteger exactDivideBy3(BigInteger val) {
+        if (val.sign == 0) {
+            return BigInteger.ZERO;
+        }
+        int len = val.numberLength;
+        int[] resDigits = new int[len];
+        long borrow = 0;
+        for (int i = 0; i < len; i++) {
+            long x = val.digits[i] & 0xFFFFFFFFL;
+            long w = x - borrow;
+            borrow = (borrow > x) ? 1 : 0;
+            // q = w * 3^(-1) mod 2^32
+            long q = (w * 0xAAAAAAABL) & 0xFFFFFFFFL;
+            resDigits[i] = (int) q;
+            // the borrow of the subtraction of 3q from w
+            if (q >= 0x55555556L) {
+                borrow++;
+                if (q >= 0xAAAAAAABL) {
+                    borrow++;
+                }
+            }
+        }
+        BigInteger result = new BigInteger(val.sign, len, resDigits);
+        result.cutOffLeadingZeroes();
+        return result;
+    }
+
+    /**
+     * Performs a<sup>2</sup> and hides the algorithm used.
+     * @see #pow(BigInteger, int)
+     */
+    static BigInteger square(BigInteger a) {
+        return square(a, false);
+    }
+
+    /**
+     * Performs a<sup>2</sup>, computing the squares of the Toom-Cook steps
+     * of large enough numbers in parallel if {@code parallel} is set.
+     */
+    static BigInteger square(BigInteger a, boolean parallel) {
+        if (a.sign == 0) {
+            return BigInteger.ZERO;
+        }
+        if (a.numberLength < whenUseKaratsubaSquare) {
+            // multPAP squares a number multiplied by itself
+            return multiplyPAP(a, a);
+        }
+        if (a.numberLength < whenUseToomCookSquare) {
+            return karatsubaSquare(a);
+        }
+        return toomCook3Square(a, parallel && a.numberLength >= whenUseParallel);
+    }
+
+    /**
+     * Performs a<sup>2</sup> with the Karatsuba's algorithm, which takes
+     * three squares of half the length.
+     *<tt>
+     *  u<sup>2</sup> = u<sub>1</sub><sup>2</sup> * B<sup>2</sup> + ((u<sub>1</sub> + u<sub>0</sub>)<sup>2</sup> - u<sub>1</sub><sup>2</sup> - u<sub>0</sub><sup>2</sup>) * B + u<sub>0</sub><sup>2</sup><br>
+     *</tt>
+     */
+    static BigInteger karatsubaSquare(BigInteger a) {
+        int half = (a.numberLength + 1) >> 1;
+        BigInteger lower = getPart(a, 0, half);
+        BigInteger upper = getPart(a, half, a.numberLength);
+
+        BigInteger lowerSquare = square(lower);
+        BigInteger upperSquare = square(upper);
+        BigInteger middle = square(lower.add(upper)).subtract(upperSquare)
+                .subtract(lowerSquare);
+
+        int shift = half << 5;
+        return upperSquare.shiftLeft(shift).add(middle).shiftLeft(shift).add(
+                lowerSquare);
+    }
+
+    /**
+     * Performs a<sup>2</sup> with the Toom-Cook 3-way algorithm, which takes
+     * five squares of a third of the length.
+     * @see #toomCook3(BigInteger, BigInteger, boolean)
+     */
+    static BigInteger toomCook3Square(BigInteger a, boolean parallel) {
+        int k = (a.numberLength + 2) / 3;
+        BigInteger a0 = getPart(a, 0, k);
+        BigInteger a1 = getPart(a, k, k);
+        BigInteger a2 = getPart(a, k << 1, a.numberLength);
+
+        BigInteger da1 = a2.add(a0);
+        BigInteger am1 = da1.subtract(a1);
+        da1 = da1.add(a1);
+        BigInteger da2 = da1.add(a2).shiftLeft(1).subtract(a0);
+
+        BigInteger[] v = products(new BigInteger[] { a0, da1, am1, da2, a2 },
+                null, parallel);
+        return interpolate(v[0], v[1], v[2], v[3], v[4], k);
+    }
+
     /**
      * Multiplies two BigIntegers.
      * Implements traditional scholar algorithm described by Knuth.
@@ -259,6 +600,31 @@ class Multiplication {
         }
     }
 
+    /**
+     * Multiplies two numbers represented by {@code int} arrays, with the
+     * Karatsuba or the Toom-Cook 3-way algorithm if both are long enough,
+     * and saves the product in {@code resDigits}, which must be zeroed.
+     * A number multiplied by itself is squared.
+     * @see Division#monPro(BigInteger, BigInteger, BigInteger, int)
+     */
+    static void multArrays(int[] aDigits, int aLen, int[] bDigits, int bLen, int[] resDigits) {
+        if (aLen < whenUseKaratsuba || bLen < whenUseKaratsuba) {
+            multArraysPAP(aDigits, aLen, bDigits, bLen, resDigits);
+            return;
+        }
+        BigInteger a = new BigInteger(1, aLen, aDigits);
+        a.cutOffLeadingZeroes();
+        BigInteger product;
+        if (aDigits == bDigits && aLen == bLen) {
+            product = square(a);
+        } else {
+            BigInteger b = new BigInteger(1, bLen, bDigits);
+            b.cutOffLeadingZeroes();
+            product = multiply(a, b);
+        }
+        System.arraycopy(product.digits, 0, resDigits, 0, product.numberLength);
+    }
+
     static void multPAP(int a[], int b[], int t[], int aLen, int bLen) {
         if(a == b && aLen == bLen) {
             square(a, aLen, t);
@@ -350,13 +716,7 @@ class Multiplication {
                 res = res.multiply(acc);
             }
             // acc = base^(2^i)
-            //a limit where karatsuba performs a faster square than the square algorithm
-            if ( acc.numberLength == 1 ){
-                acc = acc.multiply(acc); // square
-            }
-            else{
-                acc = new BigInteger(1, square(acc.digits, acc.numberLength, new int [acc.numberLength<<1]));
-            }
+            acc = square(acc);
         }
         // exponent == 1, multiply one more time
         res = res.multiply(acc);
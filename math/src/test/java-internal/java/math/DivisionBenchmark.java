@@ -0,0 +1,192 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.math;
+
+import java.util.Random;
+
+/**
+ * Measures the break points of Division on this machine, like the
+ * {@code MultiplicationBenchmark}: Knuth's division is timed against the
+ * Burnikel-Ziegler division for divisors and quotients of growing length,
+ * and the length from which the latter is always faster is suggested as the
+ * break point. It is not part of the test suite, and it has to be on the boot
+ * class path as it is in the {@code java.math} package; run it by hand:
+ *
+ * <pre>
+ * java -Xbootclasspath/p:&lt;classes&gt; java.math.DivisionBenchmark [millis per size]
+ * </pre>
+ */
+public class DivisionBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    private static final Random random = new Random(1);
+
+    private static long millis;
+
+    /** A division timed by the benchmark, for operands of a given length. */
+    private static abstract class Algorithm {
+        final String name;
+
+        Algorithm(String name) {
+            this.name = name;
+        }
+
+        abstract int[] apply(int length);
+    }
+
+    public static void main(String[] args) {
+        millis = args.length > 0 ? Long.parseLong(args[0]) : 50;
+
+        // the quotient as long as the divisor
+        compare("whenUseBurnikelZiegler", Division.whenUseBurnikelZiegler, 40,
+                2000, new Algorithm("Knuth") {
+                    int[] apply(int length) {
+                        return knuth(length, length);
+                    }
+                }, new Algorithm("Burnikel-Ziegler") {
+                    int[] apply(int length) {
+                        return burnikelZiegler(length, length);
+                    }
+                });
+        // the divisor four times the break point
+        final int divisorLength = Division.whenUseBurnikelZiegler << 2;
+        compare("whenUseBurnikelZieglerOffset",
+                Division.whenUseBurnikelZieglerOffset, 10, 2000,
+                new Algorithm("Knuth") {
+                    int[] apply(int length) {
+                        return knuth(divisorLength, length);
+                    }
+                }, new Algorithm("Burnikel-Ziegler") {
+                    int[] apply(int length) {
+                        return burnikelZiegler(divisorLength, length);
+                    }
+                });
+    }
+
+    private static BigInteger dividend;
+
+    private static BigInteger divisor;
+
+    private static int[] knuth(int divisorLength, int quotientLength) {
+        operands(divisorLength, quotientLength);
+        int quotLength = dividend.numberLength - divisor.numberLength + 1;
+        return Division.divideKnuth(new int[quotLength], quotLength,
+                dividend.digits, dividend.numberLength, divisor.digits,
+                divisor.numberLength);
+    }
+
+    private static int[] burnikelZiegler(int divisorLength, int quotientLength) {
+        operands(divisorLength, quotientLength);
+        int quotLength = dividend.numberLength - divisor.numberLength + 1;
+        return Division.divideBurnikelZiegler(new int[quotLength],
+                dividend.digits, dividend.numberLength, divisor.digits,
+                divisor.numberLength);
+    }
+
+    // the operands are created once for each size
+    private static void operands(int divisorLength, int quotientLength) {
+        int length = divisorLength + quotientLength;
+        if (dividend == null || dividend.numberLength != length
+                || divisor.numberLength != divisorLength) {
+            dividend = random(length);
+            divisor = random(divisorLength);
+        }
+    }
+
+    private static BigInteger random(int length) {
+        return new BigInteger(length << 5, random).setBit((length << 5) - 1);
+    }
+
+    /**
+     * Times the two algorithms for lengths from {@code from} to {@code to}
+     * digits, growing by a fifth, and prints the times and the suggested
+     * break point.
+     */
+    private static void compare(String breakPoint, int current, int from,
+            int to, Algorithm slow, Algorithm fast) {
+        System.out.println();
+        System.out.println(breakPoint + " = " + current);
+        System.out.println("digits " + pad(slow.name, 18) + pad(fast.name, 18)
+                + "   (microseconds)");
+        int suggested = -1;
+        for (int length = from; length <= to; length += Math.max(1, length / 5)) {
+            if (!equal(slow.apply(length), fast.apply(length))) {
+                throw new AssertionError(fast.name + " differs at " + length);
+            }
+            double slowTime = time(slow, length);
+            double fastTime = time(fast, length);
+            System.out.println(pad(String.valueOf(length), 6)
+                    + pad(format(slowTime), 19) + pad(format(fastTime), 18));
+            if (fastTime < slowTime) {
+                if (suggested < 0) {
+                    suggested = length;
+                }
+            } else {
+                suggested = -1;
+            }
+        }
+        System.out.println("suggested " + breakPoint + " = "
+                + (suggested < 0 ? "none up to " + to : String.valueOf(suggested)));
+    }
+
+    // compares the remainders, which have the length of the divisor
+    private static boolean equal(int[] slow, int[] fast) {
+        for (int i = 0; i < divisor.numberLength; i++) {
+            if (slow[i] != fast[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the best time of one operation in microseconds.
+     */
+    private static double time(Algorithm algorithm, int length) {
+        double best = Double.MAX_VALUE;
+        System.gc();
+        // the first round warms up
+        for (int round = 0; round <= ROUNDS; round++) {
+            int count = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                algorithm.apply(length);
+                count++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < millis * 1000000L);
+            if (round > 0) {
+                best = Math.min(best, elapsed / 1000.0 / count);
+            }
+        }
+        return best;
+    }
+
+    private static String format(double micros) {
+        return String.valueOf(Math.round(micros * 10) / 10.0);
+    }
+
+    private static String pad(String s, int width) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = s.length(); i < width; i++) {
+            sb.append(' ');
+        }
+        return sb.append(s).toString();
+    }
+}
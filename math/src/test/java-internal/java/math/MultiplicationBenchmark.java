@@ -0,0 +1,182 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package java.math;
+
+import java.util.Random;
+
+/**
+ * Measures the break points of Multiplication on this machine: for each
+ * pair of algorithms, one step of the faster algorithm for long numbers is
+ * timed against the other algorithm for numbers of growing length, and the
+ * length from which the step is always faster is suggested as the break
+ * point. The products of the step are computed with the break points in
+ * use, so the suggestions of one run depend on the others; run it again
+ * after changing them. It is not part of the test suite, and it has to be
+ * on the boot class path as it is in the {@code java.math} package; run it
+ * by hand:
+ *
+ * <pre>
+ * java -Xbootclasspath/p:&lt;classes&gt; java.math.MultiplicationBenchmark [millis per size]
+ * </pre>
+ */
+public class MultiplicationBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    private static final Random random = new Random(1);
+
+    private static long millis;
+
+    /** An algorithm timed by the benchmark. */
+    private static abstract class Algorithm {
+        final String name;
+
+        Algorithm(String name) {
+            this.name = name;
+        }
+
+        abstract BigInteger apply(BigInteger x, BigInteger y);
+    }
+
+    public static void main(String[] args) {
+        millis = args.length > 0 ? Long.parseLong(args[0]) : 50;
+
+        compare("whenUseKaratsuba", Multiplication.whenUseKaratsuba, 16, 320,
+                new Algorithm("pencil and paper") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.multiplyPAP(x, y);
+                    }
+                }, new Algorithm("Karatsuba") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.karatsuba(x, y);
+                    }
+                }, false);
+        compare("whenUseToomCook", Multiplication.whenUseToomCook, 80, 1200,
+                new Algorithm("Karatsuba") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.karatsuba(x, y);
+                    }
+                }, new Algorithm("Toom-Cook 3") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.toomCook3(x, y, false);
+                    }
+                }, false);
+        compare("whenUseKaratsubaSquare", Multiplication.whenUseKaratsubaSquare,
+                16, 320, new Algorithm("pencil and paper") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.multiplyPAP(x, x);
+                    }
+                }, new Algorithm("Karatsuba") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.karatsubaSquare(x);
+                    }
+                }, true);
+        compare("whenUseToomCookSquare", Multiplication.whenUseToomCookSquare,
+                80, 1200, new Algorithm("Karatsuba") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.karatsubaSquare(x);
+                    }
+                }, new Algorithm("Toom-Cook 3") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.toomCook3Square(x, false);
+                    }
+                }, true);
+        compare("whenUseParallel", Multiplication.whenUseParallel, 400, 40000,
+                new Algorithm("Toom-Cook 3") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.toomCook3(x, y, false);
+                    }
+                }, new Algorithm("parallel") {
+                    BigInteger apply(BigInteger x, BigInteger y) {
+                        return Multiplication.toomCook3(x, y, true);
+                    }
+                }, false);
+    }
+
+    /**
+     * Times the two algorithms for lengths from {@code from} to {@code to}
+     * digits, growing by a fifth, and prints the times and the suggested
+     * break point.
+     */
+    private static void compare(String breakPoint, int current, int from,
+            int to, Algorithm slow, Algorithm fast, boolean square) {
+        System.out.println();
+        System.out.println(breakPoint + " = " + current + ", "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        System.out.println("digits " + pad(slow.name, 18) + pad(fast.name, 18)
+                + "   (microseconds)");
+        int suggested = -1;
+        for (int length = from; length <= to; length += Math.max(1, length / 5)) {
+            BigInteger x = new BigInteger(length << 5, random).setBit(
+                    (length << 5) - 1);
+            BigInteger y = square ? x : new BigInteger(length << 5, random)
+                    .setBit((length << 5) - 1);
+            if (!slow.apply(x, y).equals(fast.apply(x, y))) {
+                throw new AssertionError(fast.name + " differs at " + length);
+            }
+            double slowTime = time(slow, x, y);
+            double fastTime = time(fast, x, y);
+            System.out.println(pad(String.valueOf(length), 6)
+                    + pad(format(slowTime), 19) + pad(format(fastTime), 18));
+            if (fastTime < slowTime) {
+                if (suggested < 0) {
+                    suggested = length;
+                }
+            } else {
+                suggested = -1;
+            }
+        }
+        System.out.println("suggested " + breakPoint + " = "
+                + (suggested < 0 ? "none up to " + to : String.valueOf(suggested)));
+    }
+
+    /**
+     * Returns the best time of one operation in microseconds.
+     */
+    private static double time(Algorithm algorithm, BigInteger x, BigInteger y) {
+        double best = Double.MAX_VALUE;
+        System.gc();
+        // the first round warms up
+        for (int round = 0; round <= ROUNDS; round++) {
+            int count = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                algorithm.apply(x, y);
+                count++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < millis * 1000000L);
+            if (round > 0) {
+                best = Math.min(best, elapsed / 1000.0 / count);
+            }
+        }
+        return best;
+    }
+
+    private static String format(double micros) {
+        return String.valueOf(Math.round(micros * 10) / 10.0);
+    }
+
+    private static String pad(String s, int width) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = s.length(); i < width; i++) {
+            sb.append(' ');
+        }
+        return sb.append(s).toString();
+    }
+}
@@ -738,6 +738,54 @@ public class BigIntegerConstructorsTest extends TestCase {
         assertEquals("incorrect sign", 0, aNumber.signum());
     }
 
+    /**
+     * Create a large number from a string value and radix 10, which takes the
+     * divide and conquer conversion.
+     */
+    public void testConstructorStringRadix10Large() {
+        StringBuilder value = new StringBuilder("-");
+        for (int i = 0; i < 50000; i++) {
+            value.append("1234567890");
+        }
+        BigInteger aNumber = new BigInteger(value.toString(), 10);
+        assertEquals("incorrect sign", -1, aNumber.signum());
+        BigInteger part = new BigInteger("1234567890");
+        BigInteger tenPow = BigInteger.TEN.pow(10);
+        BigInteger number = BigInteger.ZERO;
+        for (int i = 0; i < 50000; i++) {
+            number = number.multiply(tenPow).add(part);
+        }
+        assertEquals(number.negate(), aNumber);
+        assertEquals(value.toString(), aNumber.toString());
+
+        // a plus sign, and signs inside the digits, at the start of a part
+        // and within one
+        int[] positions = {0, 250000, 123457, 1};
+        for (int i = 0; i < positions.length; i++) {
+            StringBuilder signed = new StringBuilder(value);
+            signed.setCharAt(positions[i], (i == 0) ? '+' : '-');
+            try {
+                new BigInteger(signed.toString(), 10);
+                fail("NumberFormatException has not been caught");
+            } catch (NumberFormatException e) {
+            }
+        }
+    }
+
+    /**
+     * Create a number from a string value with a plus sign or only signs.
+     */
+    public void testConstructorStringSigns() {
+        String[] values = {"+5", "+", "-", "+-5", "--5", "++5"};
+        for (int i = 0; i < values.length; i++) {
+            try {
+                new BigInteger(values[i]);
+                fail("NumberFormatException has not been caught");
+            } catch (NumberFormatException e) {
+            }
+        }
+    }
+
     /**
      * Create a random number of 75 bits length.
      */
@@ -22,6 +22,7 @@ package org.apache.harmony.tests.java.math;
 
 import junit.framework.TestCase;
 import java.math.BigInteger;
+import java.util.Random;
 
 /**
  * Class:   java.math.BigInteger
@@ -667,4 +668,46 @@ public class BigIntegerDivideTest extends TestCase {
         }
         assertEquals("incorrect sign", 1, result.signum());
     }
+
+    /**
+     * Divide large numbers, which takes the Burnikel-Ziegler division, built
+     * from a known quotient and remainder.
+     */
+    public void testDivideLarge() {
+        Random rnd = new Random(102);
+        int bits[] = {3000, 5000, 10000, 30000, 100000};
+        for (int i = 0; i < bits.length; i++) {
+            for (int j = 0; j < bits.length; j++) {
+                BigInteger bNumber = new BigInteger(bits[i], rnd).setBit(
+                        bits[i]);
+                BigInteger quot = new BigInteger(bits[j], rnd).negate();
+                BigInteger rem = new BigInteger(bits[i], rnd).negate();
+                BigInteger aNumber = bNumber.multiply(quot).add(rem);
+                BigInteger result[] = aNumber.divideAndRemainder(bNumber);
+                assertEquals(quot, result[0]);
+                assertEquals(rem, result[1]);
+                assertEquals(quot, aNumber.divide(bNumber));
+                assertEquals(rem, aNumber.remainder(bNumber));
+                assertEquals(rem.add(bNumber), aNumber.mod(bNumber));
+            }
+        }
+    }
+
+    /**
+     * Divide large numbers whose quotient has digits of all ones, which
+     * takes the corrections of the estimated quotient digits.
+     */
+    public void testDivideLargeAllOnes() {
+        int bits[] = {4000, 10000, 30000};
+        for (int i = 0; i < bits.length; i++) {
+            BigInteger bNumber = BigInteger.ONE.shiftLeft(bits[i]).subtract(
+                    BigInteger.ONE);
+            BigInteger aNumber = bNumber.multiply(bNumber).shiftLeft(bits[i])
+                    .subtract(BigInteger.ONE);
+            BigInteger result[] = aNumber.divideAndRemainder(bNumber);
+            assertEquals(aNumber, result[0].multiply(bNumber).add(result[1]));
+            assertEquals(1, result[1].signum());
+            assertTrue(result[1].compareTo(bNumber) < 0);
+        }
+    }
 }
@@ -22,6 +22,7 @@ package org.apache.harmony.tests.java.math;
 
 import junit.framework.TestCase;
 import java.math.BigInteger;
+import java.util.Random;
 
 /**
  * Class:  java.math.BigInteger
@@ -386,4 +387,82 @@ public class BigIntegerMultiplyTest extends TestCase {
         }
         assertEquals("incorrect sign", 1, result.signum());
     }
+
+    /**
+     * Multiply large numbers of the lengths of the Karatsuba and the
+     * Toom-Cook algorithms, checking the product by division.
+     */
+    public void testMultiplyLarge() {
+        Random rnd = new Random(100);
+        int bits[] = {2000, 5000, 10000, 30000, 100000};
+        for (int i = 0; i < bits.length; i++) {
+            for (int j = 0; j < bits.length; j++) {
+                BigInteger aNumber = new BigInteger(bits[i], rnd);
+                BigInteger bNumber = new BigInteger(bits[j], rnd).negate();
+                BigInteger result = aNumber.multiply(bNumber);
+                assertEquals("incorrect sign", -1, result.signum());
+                BigInteger[] quotAndRem = result.divideAndRemainder(aNumber);
+                assertEquals(bNumber, quotAndRem[0]);
+                assertEquals(BigInteger.ZERO, quotAndRem[1]);
+                assertEquals(result, bNumber.multiply(aNumber));
+            }
+        }
+    }
+
+    /**
+     * Multiply a large number by a much shorter one of the length of the
+     * Toom-Cook algorithm, with carries through all the digits.
+     */
+    public void testMultiplyUnbalanced() {
+        int lengths[] = {240 * 32, 300 * 32, 1000 * 32};
+        int aLength = 5000 * 32;
+        BigInteger aPow = BigInteger.ONE.shiftLeft(aLength);
+        BigInteger aNumber = aPow.subtract(BigInteger.ONE);
+        for (int i = 0; i < lengths.length; i++) {
+            BigInteger bPow = BigInteger.ONE.shiftLeft(lengths[i]);
+            BigInteger bNumber = bPow.subtract(BigInteger.ONE).negate();
+            // (2^m - 1) * (2^n - 1) = 2^(m + n) - 2^m - 2^n + 1
+            BigInteger expected = aPow.shiftLeft(lengths[i]).subtract(aPow)
+                    .subtract(bPow).add(BigInteger.ONE).negate();
+            assertEquals(expected, aNumber.multiply(bNumber));
+            assertEquals(expected, bNumber.multiply(aNumber));
+        }
+    }
+
+    /**
+     * Square large numbers, which takes the square algorithms, and compare
+     * with the product of two equal numbers.
+     */
+    public void testSquareLarge() {
+        Random rnd = new Random(101);
+        int bits[] = {3000, 6000, 20000, 100000};
+        for (int i = 0; i < bits.length; i++) {
+            BigInteger aNumber = new BigInteger(bits[i], rnd).negate();
+            BigInteger bNumber = new BigInteger(aNumber.toByteArray());
+            BigInteger result = aNumber.multiply(aNumber);
+            assertEquals("incorrect sign", 1, result.signum());
+            assertEquals(aNumber.multiply(bNumber), result);
+            assertEquals(result, aNumber.pow(2));
+            assertEquals(result.multiply(bNumber), aNumber.pow(3));
+        }
+    }
+
+    /**
+     * Multiply large numbers in parallel.
+     */
+    public void testParallelMultiply() {
+        Random rnd = new Random(102);
+        BigInteger aNumber = new BigInteger(400000, rnd);
+        BigInteger bNumber = new BigInteger(300000, rnd).negate();
+        assertEquals(aNumber.multiply(bNumber), aNumber.parallelMultiply(bNumber));
+        assertEquals(aNumber.multiply(aNumber), aNumber.parallelMultiply(aNumber));
+        assertEquals(BigInteger.ZERO, aNumber.parallelMultiply(BigInteger.ZERO));
+        assertEquals(BigInteger.valueOf(-6), BigInteger.valueOf(2)
+                .parallelMultiply(BigInteger.valueOf(-3)));
+        try {
+            aNumber.parallelMultiply(null);
+            fail("NullPointerException expected");
+        } catch (NullPointerException e) {
+        }
+    }
 }
@@ -21,6 +21,7 @@
 package org.apache.harmony.tests.java.math;
 
 import java.math.BigInteger;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -149,4 +150,39 @@ public class BigIntegerToStringTest extends TestCase {
         String result = aNumber.toString(radix);
         assertTrue(result.equals(value));
     }
+
+    /**
+     * test large numbers, which take the divide and conquer conversion
+     */
+    public void testRadixLarge() {
+        BigInteger power = BigInteger.TEN.pow(30000);
+        String value = power.toString();
+        assertEquals(30001, value.length());
+        assertEquals('1', value.charAt(0));
+        for (int i = 1; i < value.length(); i++) {
+            assertEquals('0', value.charAt(i));
+        }
+        value = power.subtract(BigInteger.ONE).negate().toString(10);
+        assertEquals(30001, value.length());
+        assertEquals('-', value.charAt(0));
+        for (int i = 1; i < value.length(); i++) {
+            assertEquals('9', value.charAt(i));
+        }
+
+        Random rnd = new Random(103);
+        int radices[] = {2, 7, 10, 24, 36};
+        for (int i = 0; i < radices.length; i++) {
+            BigInteger aNumber = new BigInteger(100000, rnd).negate();
+            String result = aNumber.toString(radices[i]);
+            assertEquals(aNumber, new BigInteger(result, radices[i]));
+            BigInteger number = BigInteger.ZERO;
+            for (int j = 1; j < result.length(); j += 500) {
+                String part = result.substring(j, Math.min(j + 500, result
+                        .length()));
+                number = number.multiply(BigInteger.valueOf(radices[i]).pow(
+                        part.length())).add(new BigInteger(part, radices[i]));
+            }
+            assertEquals(aNumber, number.negate());
+        }
+    }
 }
@@ -24,48 +24,35 @@ import java.nio.channels.spi.AbstractSelectableChannel;
 import java.nio.channels.spi.AbstractSelectionKey;
 
 /*
- * Default implementation of SelectionKey
+ * Implementation of SelectionKey for EpollSelectorImpl
  */
 final class EpollSelectionKeyImpl extends AbstractSelectionKey {
 
-    private AbstractSelectableChannel channel;
+    private final AbstractSelectableChannel channel;
 
-    private int interestOps;
+    private volatile int interestOps;
 
     private int readyOps;
 
-    private EpollSelectorImpl selector;
+    private final EpollSelectorImpl selector;
 
-    private int index;
+    private final int fd;
 
-    static int stHash;
+    // the epoll events installed for fd, -1 while fd is not in the epoll set;
+    // only accessed by the selecting thread
+    private int registeredEvents = -1;
 
-    private int hashCode;
-
-    public int hashCode() {
-        return hashCode;
-    }
-
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
-        if (obj == null)
-            return false;
-        if (getClass() != obj.getClass())
-            return false;
-        final EpollSelectionKeyImpl other = (EpollSelectionKeyImpl) obj;
-        if (hashCode != other.hashCode)
-            return false;
-        return true;
-    }
+    // guarded by the selector's update lock
+    private boolean updatePending;
 
     public EpollSelectionKeyImpl(AbstractSelectableChannel channel,
-            int operations, Object attachment, EpollSelectorImpl selector) {
+            int operations, Object attachment, EpollSelectorImpl selector,
+            int fd) {
         super();
         this.channel = channel;
         interestOps = operations;
         this.selector = selector;
-        this.hashCode = stHash++;
+        this.fd = fd;
         attach(attachment);
     }
 
@@ -75,9 +62,7 @@ final class EpollSelectionKeyImpl extends AbstractSelectionKey {
 
     public int interestOps() {
         checkValid();
-        synchronized (selector.keysLock) {
-            return interestOps;
-        }
+        return interestOps;
     }
 
     public SelectionKey interestOps(int operations) {
@@ -85,10 +70,8 @@ final class EpollSelectionKeyImpl extends AbstractSelectionKey {
         if ((operations & ~(channel().validOps())) != 0) {
             throw new IllegalArgumentException();
         }
-        synchronized (selector.keysLock) {
-            interestOps = operations;
-            selector.modKey(this);
-        }
+        interestOps = operations;
+        selector.updateKey(this);
         return this;
     }
 
@@ -108,12 +91,31 @@ final class EpollSelectionKeyImpl extends AbstractSelectionKey {
         this.readyOps = readyOps;
     }
 
-    int getIndex() {
-        return index;
+    /*
+     * the interest set without the validity check, for the selector
+     */
+    int getInterestOps() {
+        return interestOps;
+    }
+
+    int getFD() {
+        return fd;
+    }
+
+    int getRegisteredEvents() {
+        return registeredEvents;
+    }
+
+    void setRegisteredEvents(int registeredEvents) {
+        this.registeredEvents = registeredEvents;
+    }
+
+    boolean isUpdatePending() {
+        return updatePending;
     }
 
-    void setIndex(int index) {
-        this.index = index;
+    void setUpdatePending(boolean updatePending) {
+        this.updatePending = updatePending;
     }
 
     private void checkValid() {
@@ -122,4 +124,4 @@ final class EpollSelectionKeyImpl extends AbstractSelectionKey {
         }
     }
 
-}
\ No newline at end of file
+}
@@ -29,18 +29,29 @@ import java.nio.channels.spi.AbstractSelectableChannel;
 import java.nio.channels.spi.AbstractSelectionKey;
 import java.nio.channels.spi.AbstractSelector;
 import java.nio.channels.spi.SelectorProvider;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.harmony.luni.platform.FileDescriptorHandler;
+import org.apache.harmony.luni.platform.Platform;
 
 /*
- * Default implementation of java.nio.channels.Selector
+ * Implementation of java.nio.channels.Selector on top of Linux epoll.
  * 
+ * The epoll set is maintained incrementally: registrations and interest
+ * changes are queued and applied with one epoll_ctl call each at the start of
+ * the next selection, and epoll_wait only reports the ready descriptors, so
+ * the cost of a selection depends on the number of ready keys rather than on
+ * the number of registered keys. Wakeups go through an eventfd when the
+ * native library provides one, otherwise through a pipe. Queuing a change
+ * also signals the wakeup descriptor, so that a selection blocked in
+ * epoll_wait applies it and waits again.
  */
 final class EpollSelectorImpl extends AbstractSelector {
 
@@ -48,276 +59,319 @@ final class EpollSelectorImpl extends AbstractSelector {
 
     private static final int MOCK_READBUF_SIZE = 8;
 
-    private static final int NA = 0;
+    static final int READABLE = 1;
 
-    private static final int READABLE = 1;
+    static final int WRITABLE = 2;
 
-    private static final int WRITABLE = 2;
+    // Requests edge-triggered notification, only honoured by the extended
+    // natives
+    static final int EDGE_TRIGGERED = 4;
 
     private static final int SELECT_BLOCK = -1;
 
     private static final int SELECT_NOW = 0;
 
-    // keysLock is used to brief synchronization when get selectionKeys snapshot
-    // before selection
-    final Object keysLock = new Object();
+    private static final int INITIAL_EVENTS = 64;
 
-    boolean keySetChanged = true;
+    private static final int MAX_EVENTS = 8192;
 
-    private SelectionKey[] keys = new SelectionKey[1];
+    private static final int INITIAL_FD_TABLE = 64;
 
-    private final Set<SelectionKey> keysSet = new HashSet<SelectionKey>();
+    /**
+     * Records whether the native library provides epoll_ctl(EPOLL_CTL_MOD),
+     * eventfd and descriptor closing. Without them an interest change is
+     * applied as a delete followed by an add and wakeups use a pipe.
+     * 
+     * Initialised in the static block.
+     */
+    static final boolean EXTENDED_NATIVES;
 
-    private Set<SelectionKey> unmodifiableKeys = Collections
-            .unmodifiableSet(keysSet);
+    static native int resolveFD(Class cfd, FileDescriptor ofd);
 
-    private final Set<SelectionKey> selectedKeys = new HashSet<SelectionKey>();
+    static native long prepare();
 
-    private Set<SelectionKey> unaddableSelectedKeys = new UnaddableSet<SelectionKey>(
-            selectedKeys);
+    static native long addFileDescriptor(long epollFD, int mode, int fd);
+
+    static native long delFileDescriptor(long epollFD, long fd);
+
+    static native int epoll(long epollFD, int count, int[] FDs, int[] ops,
+            long timeout);
+
+    /**
+     * Returns whether the natives below are available. Called only once and
+     * cached in EXTENDED_NATIVES.
+     */
+    private static native boolean isExtendedEpollSupported();
+
+    static native long modFileDescriptor(long epollFD, int mode, int fd);
+
+    static native int openEventFD();
+
+    static native void signalEventFD(int fd);
+
+    static native void drainEventFD(int fd);
+
+    static native void closeFD(long fd);
+
+    static {
+        boolean extended;
+        try {
+            extended = isExtendedEpollSupported();
+        } catch (UnsatisfiedLinkError e) {
+            // an older native library, stay with the basic calls
+            extended = false;
+        }
+        EXTENDED_NATIVES = extended;
+    }
+
+    private final boolean edgeTriggered;
 
-    // sink and source are used by wakeup()
+    private final long epollFD;
+
+    // the descriptor that wakes up epoll_wait: the eventfd or the pipe source
+    private final int wakeupFD;
+
+    // -1 when wakeups go through the pipe
+    private final int eventFD;
+
+    // sink and source are used by wakeup() when there is no eventfd
     private Pipe.SinkChannel sink;
 
     private Pipe.SourceChannel source;
 
-    private FileDescriptor sourcefd;
+    private final AtomicBoolean wakenUp = new AtomicBoolean();
 
-    private int[] keyFDs;
+    // set by wakeup() and close(), as opposed to the signals of updateKey()
+    private volatile boolean wakeupRequested;
 
-    private int[] readyFDs;
+    private final ConcurrentHashMap<SelectionKey, Boolean> keysMap = new ConcurrentHashMap<SelectionKey, Boolean>();
 
-    private int[] readyOps;
+    private final Set<SelectionKey> unmodifiableKeys = Collections
+            .unmodifiableSet(keysMap.keySet());
 
-    private int keysCount = 0;
+    private final Set<SelectionKey> selectedKeys = new HashSet<SelectionKey>();
 
-    private long epollFD;
+    private final Set<SelectionKey> unaddableSelectedKeys = new UnaddableSet<SelectionKey>(
+            selectedKeys);
 
-    private int countReady;
+    /*
+     * Keys whose epoll registration is out of date. Registering threads add
+     * to updateKeys, the selecting thread swaps it with processingKeys.
+     */
+    private final Object updateLock = new Object();
 
-    public Class fileDescriptorClass;
+    private ArrayList<EpollSelectionKeyImpl> updateKeys = new ArrayList<EpollSelectionKeyImpl>();
 
-    static native int resolveFD(Class cfd, FileDescriptor ofd);
+    private ArrayList<EpollSelectionKeyImpl> processingKeys = new ArrayList<EpollSelectionKeyImpl>();
 
-    static native long prepare();
+    // The fields below are only touched by the thread that holds the selector
+    // monitor.
 
-    static native long addFileDescriptor(long epollFD, int mode, int fd);
+    // keys in the epoll set indexed by file descriptor
+    private EpollSelectionKeyImpl[] fdTable = new EpollSelectionKeyImpl[INITIAL_FD_TABLE];
 
-    static native long delFileDescriptor(long epollFD, long fd);
+    private int registeredCount;
 
-    static native int epoll(long epollFD, int count, int[] FDs, int[] ops,
-            long timeout);
+    // limitCapacity() does not look at the table again until the number of
+    // registered keys drops below this
+    private int shrinkThreshold = INITIAL_FD_TABLE;
 
-    private InternalKeyMap<EpollSelectionKeyImpl> quickMap = new InternalKeyMap<EpollSelectionKeyImpl>();
+    private int[] readyFDs = new int[INITIAL_EVENTS];
 
-    public EpollSelectorImpl(SelectorProvider selectorProvider) {
+    private int[] readyOps = new int[INITIAL_EVENTS];
+
+    public EpollSelectorImpl(SelectorProvider selectorProvider,
+            boolean edgeTriggered) throws IOException {
         super(selectorProvider);
-        try {
+        this.edgeTriggered = edgeTriggered && EXTENDED_NATIVES;
+        epollFD = prepare();
+        if (EXTENDED_NATIVES) {
+            eventFD = openEventFD();
+            wakeupFD = eventFD;
+        } else {
             Pipe mockSelector = selectorProvider.openPipe();
             sink = mockSelector.sink();
             source = mockSelector.source();
-            sourcefd = ((FileDescriptorHandler) source).getFD();
             source.configureBlocking(false);
-
-            fileDescriptorClass = sourcefd.getClass();
-
-            keyFDs = new int[1];
-            readyFDs = new int[1];
-            readyOps = new int[1];
-
-            // register sink channel
-            keyFDs[0] = resolveFD(fileDescriptorClass, sourcefd);
-            keys[0] = source.keyFor(this);
-            epollFD = prepare();
-
-            keysCount = 1;
-
-            quickMap.put(keyFDs[0], (EpollSelectionKeyImpl) keys[0]);
-            addFileDescriptor(epollFD, 1, keyFDs[0]);
-
-        } catch (IOException e) {
-            // do nothing
+            eventFD = -1;
+            wakeupFD = resolveFD(FileDescriptor.class,
+                    ((FileDescriptorHandler) source).getFD());
         }
+        addFileDescriptor(epollFD, READABLE, wakeupFD);
     }
 
     /*
      * @see java.nio.channels.spi.AbstractSelector#implCloseSelector()
      */
     protected void implCloseSelector() throws IOException {
+        wakeupRequested = true;
+        signal();
         synchronized (this) {
-            synchronized (keysSet) {
-                synchronized (selectedKeys) {
-                    doCancel();
-                    for (int c = 0; c < keysCount; c++) {
-                        if (keys[c] != null) {
-                            deregister((AbstractSelectionKey) keys[c]);
-                        }
-                    }
-                    wakeup();
+            synchronized (selectedKeys) {
+                doCancel();
+                for (Iterator<SelectionKey> i = keysMap.keySet().iterator(); i
+                        .hasNext();) {
+                    deregister((AbstractSelectionKey) i.next());
+                }
+                keysMap.clear();
+                selectedKeys.clear();
+                fdTable = new EpollSelectionKeyImpl[0];
+                registeredCount = 0;
+                if (eventFD >= 0) {
+                    closeFD(eventFD);
+                } else {
+                    sink.close();
+                    source.close();
+                }
+                if (EXTENDED_NATIVES) {
+                    closeFD(epollFD);
+                } else {
+                    Platform.getFileSystem().close(epollFD);
                 }
             }
         }
     }
 
-    private void ensureCapacity(int c) {
-        // TODO: rewrite array handling as some internal class
-        if (c >= keys.length) {
-            SelectionKey[] t = new SelectionKey[(keys.length + 1) << 1];
-            System.arraycopy(keys, 0, t, 0, keys.length);
-            keys = t;
-        }
-
-        if (c >= readyFDs.length) {
-            int[] t = new int[(readyFDs.length + 1) << 1];
-            System.arraycopy(readyFDs, 0, t, 0, readyFDs.length);
-            readyFDs = t;
-        }
-
-        if (c >= keyFDs.length) {
-            int[] t = new int[(keyFDs.length + 1) << 1];
-            System.arraycopy(keyFDs, 0, t, 0, keyFDs.length);
-            keyFDs = t;
-        }
-
-        if (c >= readyOps.length) {
-            int[] t = new int[(readyOps.length + 1) << 1];
-            System.arraycopy(readyOps, 0, t, 0, readyOps.length);
-            readyOps = t;
+    /*
+     * @see java.nio.channels.spi.AbstractSelector#register(java.nio.channels.spi.AbstractSelectableChannel,
+     *      int, java.lang.Object)
+     */
+    protected SelectionKey register(AbstractSelectableChannel channel,
+            int operations, Object attachment) {
+        if (!provider().equals(channel.provider())) {
+            throw new IllegalSelectorException();
         }
-    }
-
-    private void limitCapacity() {
-        // TODO: implement array squeezing
+        closeCheck();
+        int fd = resolveFD(FileDescriptor.class,
+                ((FileDescriptorHandler) channel).getFD());
+        EpollSelectionKeyImpl sk = new EpollSelectionKeyImpl(channel,
+                operations, attachment, this, fd);
+        keysMap.put(sk, Boolean.TRUE);
+        updateKey(sk);
+        return sk;
     }
 
     /**
-     * Adds the specified key to storage and updates the indexes accordingly
+     * Queues the key so that the next selection brings its epoll
+     * registration in line with its interest set, and makes a selection
+     * blocked in another thread apply it right away.
      * 
      * @param sk
-     *            key to add
-     * @return index in the storage
+     *            the key that was registered or whose interest set changed
      */
-    private int addKey(SelectionKey sk) {
-
-        // make sure that enough space is available
-        ensureCapacity(keysCount);
+    void updateKey(EpollSelectionKeyImpl sk) {
+        synchronized (updateLock) {
+            if (sk.isUpdatePending()) {
+                return;
+            }
+            sk.setUpdatePending(true);
+            updateKeys.add(sk);
+        }
+        signal();
+    }
 
-        // get channel params
-        int ops = sk.interestOps();
-        int fd = resolveFD(fileDescriptorClass, ((FileDescriptorHandler) sk
-                .channel()).getFD());
+    /*
+     * Applies the queued registrations and interest changes, one epoll_ctl
+     * call per changed key.
+     */
+    private void processUpdates() {
+        ArrayList<EpollSelectionKeyImpl> pending;
+        synchronized (updateLock) {
+            if (updateKeys.isEmpty()) {
+                return;
+            }
+            pending = updateKeys;
+            updateKeys = processingKeys;
+            processingKeys = pending;
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).setUpdatePending(false);
+            }
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            EpollSelectionKeyImpl sk = pending.get(i);
+            // cancelled keys are dropped by doCancel()
+            if (!sk.isValid()) {
+                continue;
+            }
+            int fd = sk.getFD();
+            int events = toEpollEvents(sk.getInterestOps());
+            int registered = sk.getRegisteredEvents();
+            if (registered < 0) {
+                ensureCapacity(fd);
+                fdTable[fd] = sk;
+                registeredCount++;
+                addFileDescriptor(epollFD, events, fd);
+            } else if (registered != events) {
+                if (EXTENDED_NATIVES) {
+                    modFileDescriptor(epollFD, events, fd);
+                } else {
+                    delFileDescriptor(epollFD, fd);
+                    addFileDescriptor(epollFD, events, fd);
+                }
+            }
+            sk.setRegisteredEvents(events);
+        }
+        pending.clear();
+    }
 
+    private int toEpollEvents(int ops) {
         int eops = 0;
         if (((SelectionKey.OP_READ | SelectionKey.OP_ACCEPT) & ops) != 0) {
-            eops = eops + READABLE;
+            eops |= READABLE;
         }
-        ;
         if (((SelectionKey.OP_WRITE | SelectionKey.OP_CONNECT) & ops) != 0) {
-            eops = eops + WRITABLE;
-        }
-        ;
-
-        keys[keysCount] = sk;
-        keyFDs[keysCount] = fd;
-
-        quickMap.put(fd, (EpollSelectionKeyImpl) sk);
-        addFileDescriptor(epollFD, eops, fd);
-
-        return keysCount++;
-    }
-
-    /**
-     * Deletes the key from the internal storage and updates the indexes
-     * accordingly
-     * 
-     * @param sk
-     *            key to delete
-     */
-    private void delKey(SelectionKey sk) {
-
-        // get the key index in the internal storage
-        int index = ((EpollSelectionKeyImpl) sk).getIndex();
-
-        // deregister FD in native
-        delFileDescriptor(epollFD, keyFDs[index]);
-
-        if (quickMap.remove(keyFDs[index]) == null) {
-            throw new RuntimeException();
+            eops |= WRITABLE;
         }
-        // key is null now
-        keys[index] = null;
-
-        // key compaction to ensure lack of holes
-        // we can simply exchange latest and current keys
-        if (keys[keysCount - 1] != null) {
-            keys[index] = keys[keysCount - 1];
-            keys[keysCount - 1] = null;
-
-            keyFDs[index] = keyFDs[keysCount - 1];
-            keyFDs[keysCount - 1] = -1;
-
-            // update key index
-            ((EpollSelectionKeyImpl) keys[index]).setIndex(index);
+        if (edgeTriggered) {
+            eops |= EDGE_TRIGGERED;
         }
-        keysCount--;
+        return eops;
     }
 
-    /**
-     * 
-     * @param sk
-     */
-    void modKey(SelectionKey sk) {
-        // TODO: update indexes rather than recreate the key
-        synchronized (keysSet) {
-            delKey(sk);
-            addKey(sk);
+    private void ensureCapacity(int fd) {
+        if (fd >= fdTable.length) {
+            int length = fdTable.length == 0 ? INITIAL_FD_TABLE
+                    : fdTable.length;
+            while (fd >= length) {
+                length <<= 1;
+            }
+            EpollSelectionKeyImpl[] t = new EpollSelectionKeyImpl[length];
+            System.arraycopy(fdTable, 0, t, 0, fdTable.length);
+            fdTable = t;
         }
     }
 
     /*
-     * @see java.nio.channels.spi.AbstractSelector#register(java.nio.channels.spi.AbstractSelectableChannel,
-     *      int, java.lang.Object)
+     * Shrinks the descriptor table once most of its keys were cancelled and
+     * the remaining descriptors fit into a smaller table.
      */
-    protected SelectionKey register(AbstractSelectableChannel channel,
-            int operations, Object attachment) {
-        if (!provider().equals(channel.provider())) {
-            throw new IllegalSelectorException();
+    private void limitCapacity() {
+        if (fdTable.length <= INITIAL_FD_TABLE
+                || registeredCount >= shrinkThreshold
+                || registeredCount >= fdTable.length >> 2) {
+            return;
         }
-        synchronized (this) {
-            synchronized (keysSet) {
-
-                // System.out.println("Registering channel");
-                // create the key
-                SelectionKey sk = new EpollSelectionKeyImpl(channel,
-                        operations, attachment, this);
-
-                int index = addKey(sk);
-                ((EpollSelectionKeyImpl) sk).setIndex(index);
-
-                // System.out.println(" channel registered with index = " +
-                // index);
-                return sk;
-            }
+        int highest = fdTable.length - 1;
+        while (highest >= 0 && fdTable[highest] == null) {
+            highest--;
         }
+        int length = fdTable.length;
+        while (length > INITIAL_FD_TABLE && (length >> 1) > highest) {
+            length >>= 1;
+        }
+        if (length < fdTable.length) {
+            EpollSelectionKeyImpl[] t = new EpollSelectionKeyImpl[length];
+            System.arraycopy(fdTable, 0, t, 0, length);
+            fdTable = t;
+        }
+        shrinkThreshold = registeredCount >> 1;
     }
 
     /*
      * @see java.nio.channels.Selector#keys()
      */
-    public synchronized Set<SelectionKey> keys() {
+    public Set<SelectionKey> keys() {
         closeCheck();
-
-        keysSet.clear();
-
-        if (keys.length != keysCount) {
-            SelectionKey[] chompedKeys = new SelectionKey[keysCount];
-            System.arraycopy(keys, 0, chompedKeys, 0, keysCount);
-            keysSet.addAll(Arrays.asList(chompedKeys));
-        } else {
-            keysSet.addAll(Arrays.asList(keys));
-        }
-
-        keysSet.remove(source.keyFor(this));
         return unmodifiableKeys;
     }
 
@@ -354,28 +408,44 @@ final class EpollSelectorImpl extends AbstractSelector {
     private int selectInternal(long timeout) throws IOException {
         closeCheck();
         synchronized (this) {
-            synchronized (keysSet) {
-                synchronized (selectedKeys) {
-                    doCancel();
-                    boolean isBlock = (SELECT_NOW != timeout);
+            synchronized (selectedKeys) {
+                doCancel();
+                boolean isBlock = (SELECT_NOW != timeout);
+                long deadline = (timeout > 0) ? System.currentTimeMillis()
+                        + timeout : 0;
+                long remaining = timeout;
+                int selected;
+                while (true) {
+                    processUpdates();
+                    int countReady;
                     try {
                         if (isBlock) {
                             begin();
                         }
-                        // System.out.println("calling native epoll(): keysCount
-                        // = " + keysCount + ", readyFDs.length = " +
-                        // readyFDs.length + ", readyOps.length = " +
-                        // readyOps.length);
-                        countReady = epoll(epollFD, keysCount, readyFDs,
-                                readyOps, timeout);
-                        // System.out.println(" returns " + countReady);
+                        countReady = epoll(epollFD, readyFDs.length, readyFDs,
+                                readyOps, remaining);
                     } finally {
                         if (isBlock) {
                             end();
                         }
                     }
-                    return processSelectResult();
+                    selected = processSelectResult(countReady);
+                    // keys cancelled while waiting are dropped right away
+                    doCancel();
+                    if (selected > 0 || !isBlock || wakeupRequested
+                            || !isOpen()) {
+                        break;
+                    }
+                    // woken up by a registration or interest change only
+                    if (timeout > 0) {
+                        remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                    }
                 }
+                wakeupRequested = false;
+                return selected;
             }
         }
     }
@@ -389,42 +459,27 @@ final class EpollSelectorImpl extends AbstractSelector {
     }
 
     /*
-     * Analyses selected channels and adds keys of ready channels to
-     * selectedKeys list.
-     * 
-     * readyChannels are encoded as concatenated array of flags for readable
-     * channels followed by writable channels.
+     * Analyses the ready descriptors reported by epoll and adds the keys of
+     * ready channels to selectedKeys.
      */
-    private int processSelectResult() throws IOException {
-        if (0 == countReady) {
+    private int processSelectResult(int countReady) throws IOException {
+        if (countReady <= 0) {
             return 0;
         }
-        if (-1 == countReady) {
-            return 0;
-        }
-        // if the mock channel is selected, read the content.
-        if (READABLE == readyOps[0]) {
-            ByteBuffer readbuf = ByteBuffer.allocate(MOCK_READBUF_SIZE);
-            while (source.read(readbuf) > 0) {
-                readbuf.flip();
-            }
-        }
         int selected = 0;
-
-        EpollSelectionKeyImpl key = null;
         for (int i = 0; i < countReady; i++) {
-
-            // System.out.println("processSelectResults(): mapping readyFDs[" +
-            // i + "]");
-            // Lookup the key, map the index in readyFDs to real key
-            key = (EpollSelectionKeyImpl) quickMap.get(readyFDs[i]);
-
-            if (null == key) {
+            int fd = readyFDs[i];
+            if (fd == wakeupFD) {
+                drainWakeup();
+                continue;
+            }
+            EpollSelectionKeyImpl key = fd < fdTable.length ? fdTable[fd]
+                    : null;
+            if (null == key || !key.isValid()) {
                 continue;
             }
-            // System.out.println(" ready key = " + key.getIndex());
 
-            int ops = key.interestOps();
+            int ops = key.getInterestOps();
             int selectedOp = 0;
 
             if ((readyOps[i] & READABLE) != 0) {
@@ -452,17 +507,20 @@ final class EpollSelectorImpl extends AbstractSelector {
                     selected++;
                 }
             }
-
         }
 
-        // System.out.println("processSelectResult(): selected = " + selected);
+        // a full batch means more descriptors may be ready than reported
+        if (countReady == readyFDs.length && readyFDs.length < MAX_EVENTS) {
+            readyFDs = new int[readyFDs.length << 1];
+            readyOps = new int[readyOps.length << 1];
+        }
         return selected;
     }
 
     /*
      * @see java.nio.channels.Selector#selectedKeys()
      */
-    public synchronized Set<SelectionKey> selectedKeys() {
+    public Set<SelectionKey> selectedKeys() {
         closeCheck();
         return unaddableSelectedKeys;
     }
@@ -472,13 +530,24 @@ final class EpollSelectorImpl extends AbstractSelector {
         synchronized (cancelledKeys) {
             if (cancelledKeys.size() > 0) {
                 for (SelectionKey currentkey : cancelledKeys) {
-                    delKey(currentkey);
-                    deregister((AbstractSelectionKey) currentkey);
-                    selectedKeys.remove(currentkey);
+                    EpollSelectionKeyImpl key = (EpollSelectionKeyImpl) currentkey;
+                    if (key.getRegisteredEvents() >= 0) {
+                        int fd = key.getFD();
+                        delFileDescriptor(epollFD, fd);
+                        // the descriptor may already belong to a new key
+                        if (fdTable[fd] == key) {
+                            fdTable[fd] = null;
+                        }
+                        key.setRegisteredEvents(-1);
+                        registeredCount--;
+                    }
+                    keysMap.remove(key);
+                    selectedKeys.remove(key);
+                    deregister(key);
                 }
+                cancelledKeys.clear();
+                limitCapacity();
             }
-            cancelledKeys.clear();
-            limitCapacity();
         }
     }
 
@@ -486,152 +555,43 @@ final class EpollSelectorImpl extends AbstractSelector {
      * @see java.nio.channels.Selector#wakeup()
      */
     public Selector wakeup() {
-        try {
-            sink.write(ByteBuffer.allocate(MOCK_WRITEBUF_SIZE));
-        } catch (IOException e) {
-            // do nothing
+        if (isOpen()) {
+            wakeupRequested = true;
+            signal();
         }
         return this;
     }
 
-    private static class InternalKeyMap<E> {
-
-        Entry<E>[] storage;
-
-        int size;
-
-        Entry deleted = new Entry(-1, null);
-
-        static final int threshRatio = 4;
-
-        public InternalKeyMap() {
-            this(1);
-        }
-
-        public InternalKeyMap(int initialSize) {
-            storage = new Entry[initialSize];
-            size = 0;
-        }
-
-        private E putEntryNoCheck(Entry<E>[] storage, int key, Entry<E> entry) {
-
-            for (int tryCount = 0; tryCount < storage.length; tryCount++) {
-
-                int hash = hash(key, tryCount);
-                int index = hash % storage.length;
-
-                // System.out.println("put: hash: " + hash + ", index: " + index
-                // + ", key: " + key + ", size: " + size + ", tryCount: " +
-                // tryCount + ", storage.length=" + storage.length);
-
-                if (storage[index] == null) {
-                    if (entry != deleted) {
-                        storage[index] = entry;
-                    }
-                    return null;
-                } else if (storage[index].key == key
-                        || (storage[index] == deleted && entry != deleted)) {
-                    E t = storage[index].value;
-                    storage[index] = entry;
-                    return t;
-                }
-            }
-
-            throw new ArrayIndexOutOfBoundsException(key);
-        }
-
-        private E putEntry(int key, Entry<E> entry) {
-            if (size >= storage.length
-                    || (storage.length / (storage.length - size)) >= threshRatio) {
-                rehash();
-            }
-
-            E result = putEntryNoCheck(storage, key, entry);
-            if (result == null) {
-                size++;
-            }
-
-            return result;
-        }
-
-        public void put(int key, E value) {
-            Entry<E> t = new Entry<E>(key, value);
-            putEntry(key, t);
-        }
-
-        public E remove(int key) {
-            E result = putEntryNoCheck(storage, key, deleted);
-
-            if (result != null) {
-                size--;
-            }
-
-            return result;
-        }
-
-        public E get(int key) {
-            if (storage == null) {
-                // System.out.println(" FAIL, storage=null");
-                return null;
-            }
-
-            for (int tryCount = 0; tryCount < storage.length; tryCount++) {
-                int hash = hash(key, tryCount);
-                int index = hash % storage.length;
-
-                // System.out.println("get: hash: " + hash + ", index: " + index
-                // + ", key: " + key + ", size: " + size + ", tryCount: " +
-                // tryCount + ", storage.length=" + storage.length);
-
-                if (storage[index] == null) {
-                    // System.out.println("Lookup FAIL, reached end");
-                    return null;
-                }
-
-                if (storage[index].key == key) {
-                    // System.out.println("Lookup OK!");
-                    return storage[index].value;
+    /*
+     * Makes the current or next epoll call return, at most one pending
+     * signal is kept.
+     */
+    private void signal() {
+        if (wakenUp.compareAndSet(false, true)) {
+            if (eventFD >= 0) {
+                signalEventFD(eventFD);
+            } else {
+                try {
+                    sink.write(ByteBuffer.allocate(MOCK_WRITEBUF_SIZE));
+                } catch (IOException e) {
+                    // do nothing
                 }
-
             }
-            // System.out.println(" FAIL, tryCount > storage.length");
-            return null;
-        }
-
-        private void rehash() {
-            Entry<E>[] newStorage = new Entry[storage.length << 1];
-            int newSize = 0;
-            for (int c = 0; c < storage.length; c++) {
-                if (storage[c] == null)
-                    continue;
-                if (storage[c] == deleted)
-                    continue;
-                putEntryNoCheck(newStorage, storage[c].key, storage[c]);
-                newSize++;
-            }
-            storage = newStorage;
-            size = newSize;
-        }
-
-        private int hash(int key, int tryCount) {
-            int t1 = key * 31 + 1;
-            int t2 = 2 * key + 1;
-            return (t1 + (t2 * tryCount)) & 0x7FFFFFFF;
         }
+    }
 
-        private static class Entry<E> {
-
-            final int key;
-
-            final E value;
-
-            public Entry(int iKey, E iValue) {
-                key = iKey;
-                value = iValue;
+    private void drainWakeup() throws IOException {
+        // clear the flag first, a wakeup racing with the drain then costs
+        // one spurious return instead of being lost
+        wakenUp.set(false);
+        if (eventFD >= 0) {
+            drainEventFD(eventFD);
+        } else {
+            ByteBuffer readbuf = ByteBuffer.allocate(MOCK_READBUF_SIZE);
+            while (source.read(readbuf) > 0) {
+                readbuf.clear();
             }
-
         }
-
     }
 
     private static class UnaddableSet<E> implements Set<E> {
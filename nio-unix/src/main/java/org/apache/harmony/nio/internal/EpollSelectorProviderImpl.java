@@ -24,18 +24,37 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelector;
 import java.nio.channels.spi.SelectorProvider;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 
 /*
- * Internal implementation of SelectorProvider.
+ * Internal implementation of SelectorProvider whose selectors use epoll.
+ * 
+ * It is chosen by starting the VM with
+ * -Djava.nio.channels.spi.SelectorProvider=org.apache.harmony.nio.internal.EpollSelectorProviderImpl
+ * and its selectors register channels edge-triggered when the
+ * org.apache.harmony.nio.epoll.edgeTriggered system property is true. In that
+ * mode a key is only selected again once new data arrives, so channels must
+ * be read or written until they would block.
  */
 public class EpollSelectorProviderImpl extends SelectorProvider {
 
+    private static final String EDGE_TRIGGERED_PROPERTY = "org.apache.harmony.nio.epoll.edgeTriggered"; //$NON-NLS-1$
+
+    private final boolean edgeTriggered;
+
     /*
      * Constructor for this class.
      */
     public EpollSelectorProviderImpl() {
         super();
-        System.out.println("Now using EpollSelectorProvider");
+        edgeTriggered = AccessController
+                .doPrivileged(new PrivilegedAction<Boolean>() {
+                    public Boolean run() {
+                        return Boolean.valueOf(Boolean
+                                .getBoolean(EDGE_TRIGGERED_PROPERTY));
+                    }
+                }).booleanValue();
     }
 
     /*
@@ -59,7 +78,7 @@ public class EpollSelectorProviderImpl extends SelectorProvider {
      * @see java.nio.channels.spi.SelectorProvider#openSelector()
      */
     public AbstractSelector openSelector() throws IOException {
-        return new EpollSelectorImpl(this);
+        return new EpollSelectorImpl(this, edgeTriggered);
     }
 
     /*
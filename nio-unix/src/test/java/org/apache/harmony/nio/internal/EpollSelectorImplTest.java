@@ -0,0 +1,140 @@
+/* Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.nio.internal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+
+import junit.framework.TestCase;
+
+public class EpollSelectorImplTest extends TestCase {
+
+    private SelectorProvider provider;
+
+    private Selector selector;
+
+    private ServerSocketChannel server;
+
+    private Socket client;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        provider = new EpollSelectorProviderImpl();
+        selector = provider.openSelector();
+        server = provider.openServerSocketChannel();
+        server.socket().bind(new InetSocketAddress("localhost", 0));
+        server.configureBlocking(false);
+        // a pending connection makes the server channel ready to accept
+        client = new Socket("localhost", server.socket().getLocalPort());
+    }
+
+    protected void tearDown() throws Exception {
+        selector.close();
+        client.close();
+        server.close();
+        super.tearDown();
+    }
+
+    /**
+     * A channel registered while another thread is blocked in select() is
+     * selected by that select().
+     */
+    public void testRegisterWhileSelecting() throws Exception {
+        SelectingThread selecting = new SelectingThread();
+        selecting.start();
+        // let it block in epoll_wait
+        Thread.sleep(500);
+        assertTrue(selecting.isAlive());
+
+        SelectionKey key = server.register(selector, SelectionKey.OP_ACCEPT);
+        selecting.join(5000);
+        assertFalse("select() did not see the new key", selecting.isAlive());
+        assertNull(selecting.exception);
+        assertEquals(1, selecting.selected);
+        assertTrue(selector.selectedKeys().contains(key));
+        assertTrue(key.isAcceptable());
+    }
+
+    /**
+     * A key whose interest set is changed while another thread is blocked in
+     * select() is selected by that select().
+     */
+    public void testInterestOpsWhileSelecting() throws Exception {
+        SelectionKey key = server.register(selector, 0);
+        assertEquals(0, selector.selectNow());
+
+        SelectingThread selecting = new SelectingThread();
+        selecting.start();
+        Thread.sleep(500);
+        assertTrue(selecting.isAlive());
+
+        key.interestOps(SelectionKey.OP_ACCEPT);
+        selecting.join(5000);
+        assertFalse("select() did not see the interest change", selecting
+                .isAlive());
+        assertNull(selecting.exception);
+        assertEquals(1, selecting.selected);
+        assertTrue(key.isAcceptable());
+    }
+
+    /**
+     * A registration does not make a blocked select() return without a
+     * selected key.
+     */
+    public void testRegisterNotReadyWhileSelecting() throws Exception {
+        ServerSocketChannel idle = provider.openServerSocketChannel();
+        try {
+            idle.socket().bind(new InetSocketAddress("localhost", 0));
+            idle.configureBlocking(false);
+            SelectingThread selecting = new SelectingThread();
+            selecting.start();
+            Thread.sleep(500);
+
+            idle.register(selector, SelectionKey.OP_ACCEPT);
+            Thread.sleep(500);
+            assertTrue("select() returned without a selected key", selecting
+                    .isAlive());
+
+            selector.wakeup();
+            selecting.join(5000);
+            assertFalse(selecting.isAlive());
+            assertEquals(0, selecting.selected);
+        } finally {
+            idle.close();
+        }
+    }
+
+    private class SelectingThread extends Thread {
+
+        volatile int selected = -1;
+
+        volatile IOException exception;
+
+        public void run() {
+            try {
+                selected = selector.select();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+    }
+}
@@ -283,7 +283,9 @@ public final class Pattern implements Serializable {
     /**
      * Compiles a regular expression, creating a new {@code Pattern} instance in
      * the process. Allows to set some flags that modify the behavior of the
-     * {@code Pattern}.
+     * {@code Pattern}. Recently compiled patterns are cached, so compiling
+     * the same expression with the same flags again may return the same
+     * instance.
      *
      * @param pattern
      *            the regular expression.
@@ -313,7 +315,15 @@ public final class Pattern implements Serializable {
     	        	
     	    throw new IllegalArgumentException(Messages.getString("regex.1C"));
     	}
-    	
+
+        return PatternCache.get(pattern, flags);
+    }
+
+    /**
+     * Compiles a regular expression without looking it up in the cache.
+     */
+    static Pattern compileUncached(String pattern, int flags)
+            throws PatternSyntaxException {
         AbstractSet.counter = 1;
 
         return new Pattern().compileImpl(pattern, flags);
@@ -0,0 +1,194 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package java.util.regex;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of compiled patterns, used by
+ * {@link Pattern#compile(String, int)}. A {@code Pattern} is immutable, so
+ * the same instance can be returned to every caller compiling the same
+ * expression with the same flags.
+ * <p>
+ * Lookups do not block: the patterns are held in a concurrent map, and the
+ * recency list is only reordered if its lock is free. When the cache is
+ * full, the least recently used pattern is removed.
+ * <p>
+ * The maximum number of patterns is given by the system property
+ * <code>org.apache.harmony.regex.pattern.cache.size</code>, 256 by default.
+ * A size of 0 disables the cache.
+ */
+final class PatternCache {
+
+    private static final String CACHE_SIZE_PROPERTY = "org.apache.harmony.regex.pattern.cache.size"; //$NON-NLS-1$
+
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private static final class Entry {
+
+        // the expression, or an ExpressionKey if the flags are not 0
+        final Object key;
+
+        final Pattern pattern;
+
+        // recency list, guarded by lock
+        Entry prev, next;
+
+        Entry(Object key, Pattern pattern) {
+            this.key = key;
+            this.pattern = pattern;
+        }
+    }
+
+    /**
+     * The key of an expression compiled with flags.
+     */
+    private static final class ExpressionKey {
+
+        final String expression;
+
+        final int flags;
+
+        ExpressionKey(String expression, int flags) {
+            this.expression = expression;
+            this.flags = flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return expression.hashCode() * 31 + flags;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ExpressionKey)) {
+                return false;
+            }
+            ExpressionKey other = (ExpressionKey) obj;
+            return flags == other.flags && expression.equals(other.expression);
+        }
+    }
+
+    private static final int cacheSize;
+
+    /*
+     * Expressions without flags, the common case, are keyed by the
+     * expression itself, so that a lookup allocates nothing.
+     */
+    private static final ConcurrentHashMap<Object, Entry> cache;
+
+    /**
+     * Sentinel of the recency list, the least recently used entry is
+     * <code>head.next</code>.
+     */
+    private static final Entry head = new Entry(null, null);
+
+    /**
+     * Guards the recency list, and all changes to the map.
+     */
+    private static final ReentrantLock lock = new ReentrantLock();
+
+    static {
+        String value = AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                return System.getProperty(CACHE_SIZE_PROPERTY);
+            }
+        });
+        int size = DEFAULT_CACHE_SIZE;
+        try {
+            if (value != null) {
+                size = Math.max(0, Integer.parseInt(value));
+            }
+        } catch (NumberFormatException e) {
+            // use default size
+        }
+        cacheSize = size;
+        cache = new ConcurrentHashMap<Object, Entry>(size + (size >> 1));
+        head.prev = head.next = head;
+    }
+
+    private PatternCache() {
+    }
+
+    /**
+     * Returns the compiled pattern of the expression, compiling and caching
+     * it if it is not in the cache.
+     * 
+     * @throws PatternSyntaxException
+     *             if the expression is syntactically incorrect.
+     */
+    static Pattern get(String expression, int flags) {
+        if (cacheSize == 0) {
+            return Pattern.compileUncached(expression, flags);
+        }
+
+        Object key = flags == 0 ? (Object) expression : new ExpressionKey(
+                expression, flags);
+        Entry entry = cache.get(key);
+        if (entry != null) {
+            if (head.prev != entry && lock.tryLock()) {
+                try {
+                    // the entry may have been removed meanwhile
+                    if (entry.next != null) {
+                        unlink(entry);
+                        linkLast(entry);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return entry.pattern;
+        }
+
+        Pattern pattern = Pattern.compileUncached(expression, flags);
+        entry = new Entry(key, pattern);
+        lock.lock();
+        try {
+            Entry old = cache.put(key, entry);
+            if (old != null) {
+                unlink(old);
+            }
+            linkLast(entry);
+            if (cache.size() > cacheSize) {
+                Entry eldest = head.next;
+                cache.remove(eldest.key);
+                unlink(eldest);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return pattern;
+    }
+
+    private static void linkLast(Entry entry) {
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private static void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = entry.next = null;
+    }
+}
@@ -405,6 +405,22 @@ public class PatternTest extends TestCase {
         mat.group(1);
     }
 
+    public void testCompileCached() {
+        Pattern p = Pattern.compile("a+b");
+        assertSame(p, Pattern.compile("a+b"));
+        Pattern ci = Pattern.compile("a+b", Pattern.CASE_INSENSITIVE);
+        assertNotSame(p, ci);
+        assertEquals(Pattern.CASE_INSENSITIVE, ci.flags());
+        assertTrue(ci.matcher("AAB").matches());
+        assertFalse(Pattern.compile("a+b").matcher("AAB").matches());
+        try {
+            Pattern.compile("b)a");
+            fail("Expected a PatternSyntaxException");
+        } catch (PatternSyntaxException e) {
+            // pass
+        }
+    }
+
     public void testMatches() {
         String[][] posSeq = {
                 { "abb", "ababb", "abababbababb", "abababbababbabababbbbbabb" },
@@ -87,4 +87,21 @@ public class ReplaceTest extends TestCase {
         s = target.replaceAll(pattern, repl);
         assertEquals("foo$3bar$3$3foo", s);
     }
+
+    public void testStringReplaceLiteral() {
+        String target = "a.b.c";
+        assertEquals("a-b-c", target.replaceAll("\\.", "-"));
+        assertEquals("a-b.c", target.replaceFirst("\\.", "-"));
+        assertEquals("a.b.c", target.replaceAll(",", "-"));
+        assertEquals("a.b.c", target.replaceFirst(",", "-"));
+        assertEquals("x.x.x", target.replaceAll("[a-c]", "x"));
+        assertEquals("ab.c", target.replaceFirst("a.", "a"));
+        assertEquals("$.b.c", target.replaceFirst("a", "\\$"));
+        assertEquals("ba.b.c", target.replaceFirst("a", "b$0"));
+        assertTrue(target.matches("a.b.c"));
+        assertTrue("ab".matches("ab"));
+        assertFalse("abc".matches("ab"));
+        assertTrue(".".matches("\\."));
+        assertFalse("a".matches("\\."));
+    }
 }
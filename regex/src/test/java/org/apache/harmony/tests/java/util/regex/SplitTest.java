@@ -168,4 +168,24 @@ public class SplitTest extends TestCase {
         assertEquals("b", s[3]);
         assertEquals("", s[4]);
     }
+
+    public void testStringSplitLiteral() {
+        String[] inputs = { "", ",", "a,b,,c,,", ",a,b", "a.b|c", "a\\b",
+                "abab", "a::b::::c" };
+        String[] exprs = { ",", "\\.", "\\|", "\\\\", "ab", "::" };
+        for (String input : inputs) {
+            for (String expr : exprs) {
+                Pattern p = Pattern.compile(expr);
+                for (int limit = -1; limit <= 3; limit++) {
+                    String[] expected = p.split(input, limit);
+                    String[] actual = input.split(expr, limit);
+                    assertEquals(input + " " + expr + " " + limit,
+                            expected.length, actual.length);
+                    for (int j = 0; j < expected.length; j++) {
+                        assertEquals(expected[j], actual[j]);
+                    }
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.apache.harmony.tests.java.util.regex;
+
+import java.util.regex.Pattern;
+
+/**
+ * Measures the String methods taking a regular expression, for the literal
+ * expressions which do not use the regex engine and for expressions which
+ * look up the pattern cache, against matching with a precompiled
+ * {@code Pattern}. It is not part of the test suite; run it by hand:
+ *
+ * <pre>
+ * java org.apache.harmony.tests.java.util.regex.StringRegexBenchmark [iterations]
+ * </pre>
+ *
+ * To compare with compiling the expression on every call, run it again with
+ * <code>-Dorg.apache.harmony.regex.pattern.cache.size=0</code>; the literal
+ * expressions are not affected.
+ */
+public class StringRegexBenchmark {
+
+    private static final String LINE = "2009-11-03,14:02:17,INFO,worker-12,"
+            + "request completed,  status 200,   size 5127,elapsed 31ms";
+
+    private static final Pattern COMMA = Pattern.compile(",");
+
+    private static final Pattern DOT = Pattern.compile("\\.");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    /** Keeps the results alive so the work is not optimized away. */
+    static volatile int sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        // warm up before measuring
+        runAll(iterations / 10, false);
+        runAll(iterations, true);
+    }
+
+    private static void runAll(int n, boolean print) {
+        report(print, "split(\",\")", splitString(n), splitPattern(n));
+        report(print, "split(\"\\\\.\")", splitEscaped(n), splitEscapedPattern(n));
+        report(print, "replaceAll(\",\", \";\")", replaceString(n),
+                replacePattern(n));
+        report(print, "replaceAll(\"\\\\s+\", \" \")", replaceRegexString(n),
+                replaceRegexPattern(n));
+        report(print, "matches(date)", matchesString(n), matchesPattern(n));
+    }
+
+    private static void report(boolean print, String name, long string,
+            long pattern) {
+        if (print) {
+            System.out.println(name + "\tString ms " + string
+                    + "\tprecompiled Pattern ms " + pattern);
+        }
+    }
+
+    private static long splitString(int n) {
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += LINE.split(",").length;
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long splitPattern(int n) {
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += COMMA.split(LINE).length;
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long splitEscaped(int n) {
+        String host = "build.lab.example.org";
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += host.split("\\.").length;
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long splitEscapedPattern(int n) {
+        String host = "build.lab.example.org";
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += DOT.split(host).length;
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long replaceString(int n) {
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += LINE.replaceAll(",", ";").length();
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long replacePattern(int n) {
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += COMMA.matcher(LINE).replaceAll(";").length();
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long replaceRegexString(int n) {
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += LINE.replaceAll("\\s+", " ").length();
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long replaceRegexPattern(int n) {
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += WHITESPACE.matcher(LINE).replaceAll(" ").length();
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long matchesString(int n) {
+        String date = LINE.substring(0, 10);
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            if (date.matches("\\d{4}-\\d{2}-\\d{2}")) {
+                sum++;
+            }
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+
+    private static long matchesPattern(int n) {
+        String date = LINE.substring(0, 10);
+        long begin = System.nanoTime();
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            if (DATE.matcher(date).matches()) {
+                sum++;
+            }
+        }
+        sink = sum;
+        return (System.nanoTime() - begin) / 1000000;
+    }
+}
@@ -149,6 +149,17 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
 
     private boolean isNotifyListener = true;
 
+    /**
+     * The secondary indexes on columns, keyed by column index.
+     */
+    private HashMap<Integer, ColumnIndex> indexes;
+
+    /**
+     * The number of changes to the rows and their values, used to tell
+     * whether an index is out of date.
+     */
+    protected transient int modCount;
+
     protected static final Map<Integer, Class<?>> TYPE_MAPPING = initialTypeMapping();
 
     public static final String PROVIDER_ID = "Apache Harmony HYOptimisticProvider"; //$NON-NLS-1$
@@ -215,6 +226,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
 
     public void setRows(ArrayList<CachedRow> data, int cloumnCount) {
         rows = data;
+        modCount++;
         this.columnCount = cloumnCount;
     }
 
@@ -952,6 +964,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
             }
         }
         rows.removeAll(insertedRows);
+        modCount++;
         insertRow = null;
         isCursorOnInsert = false;
         deletedRowCount = 0;
@@ -1025,6 +1038,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
 
         if (rowDeleted()) {
             rows.remove(currentRow);
+            modCount++;
             deletedRowCount--;
         } else if (rowUpdated() || rowInserted()) {
             currentRow.setOriginal();
@@ -1137,6 +1151,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
             throw new SQLException(Messages.getString("rowset.4")); //$NON-NLS-1$
         }
         rows.remove(currentRow);
+        modCount++;
         next();
         if (isNotifyListener) {
             notifyRowChanged();
@@ -1153,6 +1168,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
             currentRow = new CachedRow(new Object[columnCount]);
         } else if (rowUpdated()) {
             currentRow.restoreOriginal();
+            modCount++;
         }
 
         if (isNotifyListener) {
@@ -1339,6 +1355,59 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
         Arrays.fill(matchColumnNames, 0, columnName.length, null);
     }
 
+    /**
+     * Creates a secondary index on the given column, typically a match
+     * column. JoinRowSetImpl looks up the rows matching a join value in the
+     * index of the match column, and FilteredRowSetImpl uses it to find the
+     * rows of a RangeFilter on the column. The index is rebuilt on first use
+     * after the rows have changed.
+     * 
+     * @param columnIndex
+     *            the index of the column
+     * @throws SQLException
+     *             if the column index is invalid
+     */
+    public void createIndex(int columnIndex) throws SQLException {
+        checkColumnValid(columnIndex);
+        if (indexes == null) {
+            indexes = new HashMap<Integer, ColumnIndex>();
+        }
+        Integer key = Integer.valueOf(columnIndex);
+        if (!indexes.containsKey(key)) {
+            indexes.put(key, new ColumnIndex(columnIndex));
+        }
+    }
+
+    public void createIndex(String columnName) throws SQLException {
+        createIndex(getIndexByName(columnName));
+    }
+
+    public void dropIndex(int columnIndex) throws SQLException {
+        if (indexes != null) {
+            indexes.remove(Integer.valueOf(columnIndex));
+        }
+    }
+
+    public void dropIndex(String columnName) throws SQLException {
+        dropIndex(getIndexByName(columnName));
+    }
+
+    /**
+     * Returns the up to date index on the given column, or null if there is
+     * no usable index on it.
+     */
+    ColumnIndex getIndex(int columnIndex) {
+        if (indexes == null || rows == null || columnIndex <= 0
+                || columnIndex > columnCount) {
+            return null;
+        }
+        ColumnIndex index = indexes.get(Integer.valueOf(columnIndex));
+        if (index == null || !index.update(rows, modCount)) {
+            return null;
+        }
+        return index;
+    }
+
     public boolean absolute(int row) throws SQLException {
         return doAbsolute(getIndexIncludeDeletedRows(row), true);
     }
@@ -1425,6 +1494,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
 
         if (rowUpdated()) {
             currentRow.restoreOriginal();
+            modCount++;
             if (isNotifyListener) {
                 notifyRowChanged();
             }
@@ -1450,6 +1520,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
         isLastColNull = false;
         matchColumnNames = null;
         matchColumnIndexes = null;
+        indexes = null;
         conn = null;
     }
 
@@ -2166,6 +2237,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
         } else {
             rows.add(rememberedCursorPosition, insertRow);
         }
+        modCount++;
         insertRow = null;
         if (isNotifyListener) {
             notifyRowChanged();
@@ -2321,6 +2393,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
             throw new SQLException(Messages.getString("rowset.0")); //$NON-NLS-1$
         }
         currentRow.restoreOriginal();
+        modCount++;
     }
 
     public boolean relative(int moveRows) throws SQLException {
@@ -2633,6 +2706,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
         checkValidRow();
         checkColumnValid(columnIndex);
         currentRow.updateObject(columnIndex, null);
+        modCount++;
     }
 
     public void updateNull(String columnName) throws SQLException {
@@ -2647,6 +2721,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
         checkColumnValid(columnIndex);
         initInsertRow(columnIndex, x);
         currentRow.updateObject(columnIndex, x);
+        modCount++;
     }
 
     public void updateObject(int columnIndex, Object x, int scale)
@@ -2673,6 +2748,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
         }
         initInsertRow(columnIndex, x);
         currentRow.updateObject(columnIndex, x);
+        modCount++;
     }
 
     public void updateObject(String columnName, Object x) throws SQLException {
@@ -2737,6 +2813,7 @@ public class CachedRowSetImpl extends BaseRowSet implements CachedRowSet,
         initInsertRow(columnIndex, value);
         currentRow.updateObject(columnIndex, convertUpdateValue(columnIndex,
                 value));
+        modCount++;
     }
 
     /**
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.harmony.sql.internal.rowset;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * A secondary index on one column of a CachedRowSetImpl. It keeps the
+ * positions of the rows with a non-null value in the column, sorted by that
+ * value, and rows with equal values in row order. The index is a snapshot:
+ * it is rebuilt on first use after the rows of the rowset have changed.
+ */
+class ColumnIndex implements Serializable {
+
+    private static final long serialVersionUID = -2785309221412371465L;
+
+    private final int columnIndex;
+
+    // The rows the index was built for, and their modification count.
+    private transient ArrayList<CachedRow> indexedRows;
+
+    private transient int indexedSize;
+
+    private transient int indexedModCount;
+
+    // Sorted values of the column, and the positions (0-based) of their rows.
+    private transient Object[] keys;
+
+    private transient int[] positions;
+
+    // Whether the values in the column can't be ordered.
+    private transient boolean isUnordered;
+
+    ColumnIndex(int columnIndex) {
+        this.columnIndex = columnIndex;
+    }
+
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    /**
+     * Brings the index up to date with the given rows.
+     *
+     * @return false if the values of the column can't be ordered, in which
+     *         case the index can't be used
+     */
+    boolean update(ArrayList<CachedRow> rows, int modCount) {
+        if (rows == indexedRows && rows.size() == indexedSize
+                && modCount == indexedModCount) {
+            return !isUnordered;
+        }
+
+        int count = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getObject(columnIndex) != null) {
+                count++;
+            }
+        }
+
+        Integer[] order = new Integer[count];
+        count = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getObject(columnIndex) != null) {
+                order[count++] = Integer.valueOf(i);
+            }
+        }
+
+        isUnordered = false;
+        try {
+            // Arrays.sort is stable, so equal values stay in row order
+            final ArrayList<CachedRow> sortedRows = rows;
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    return compareValues(sortedRows.get(o1.intValue())
+                            .getObject(columnIndex), sortedRows.get(
+                            o2.intValue()).getObject(columnIndex));
+                }
+            });
+
+            keys = new Object[count];
+            positions = new int[count];
+            for (int i = 0; i < count; i++) {
+                positions[i] = order[i].intValue();
+                keys[i] = rows.get(positions[i]).getObject(columnIndex);
+            }
+        } catch (ClassCastException e) {
+            isUnordered = true;
+            keys = null;
+            positions = null;
+        }
+
+        indexedRows = rows;
+        indexedSize = rows.size();
+        indexedModCount = modCount;
+        return !isUnordered;
+    }
+
+    @SuppressWarnings("unchecked")
+    static int compareValues(Object value1, Object value2) {
+        return ((Comparable<Object>) value1).compareTo(value2);
+    }
+
+    /**
+     * Returns the first position in the sorted keys whose value is not less
+     * than (or, if <code>inclusive</code> is false, greater than) the given
+     * value.
+     */
+    private int lowerBound(Object value, boolean inclusive) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int result = compareValues(keys[mid], value);
+            if (result < 0 || (result == 0 && !inclusive)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the positions of the rows whose value equals the given value,
+     * in row order.
+     */
+    int[] lookup(Object value) {
+        int from = lowerBound(value, true);
+        int to = lowerBound(value, false);
+        int[] result = new int[to - from];
+        System.arraycopy(positions, from, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Sets the positions of the rows whose value lies in the given range in
+     * <code>result</code>. A null bound leaves the range open on that side.
+     */
+    void range(Object low, boolean lowInclusive, Object high,
+            boolean highInclusive, BitSet result) {
+        int from = low == null ? 0 : lowerBound(low, lowInclusive);
+        int to = high == null ? keys.length : lowerBound(high, !highInclusive);
+        for (int i = from; i < to; i++) {
+            result.set(positions[i]);
+        }
+    }
+}
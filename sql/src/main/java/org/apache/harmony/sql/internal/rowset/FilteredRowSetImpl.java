@@ -17,6 +17,8 @@
 package org.apache.harmony.sql.internal.rowset;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
 
 import javax.sql.rowset.FilteredRowSet;
 import javax.sql.rowset.Predicate;
@@ -30,6 +32,16 @@ public class FilteredRowSetImpl extends WebRowSetImpl implements FilteredRowSet
 
     private Predicate predicate;
 
+    /*
+     * The rows accepted by a RangeFilter, found in the index of its column,
+     * and the rows and modification count they were found for.
+     */
+    private transient BitSet acceptedRows;
+
+    private transient ArrayList<CachedRow> acceptedRowsOf;
+
+    private transient int acceptedModCount;
+
     public FilteredRowSetImpl() throws SyncFactoryException {
         super();
     }
@@ -40,6 +52,48 @@ public class FilteredRowSetImpl extends WebRowSetImpl implements FilteredRowSet
 
     public void setFilter(Predicate p) throws SQLException {
         this.predicate = p;
+        acceptedRows = null;
+        acceptedRowsOf = null;
+    }
+
+    /**
+     * Returns the positions (0-based) of the rows accepted by the filter, if
+     * it is a RangeFilter on an indexed column, or null if the filter has to
+     * be evaluated on each row.
+     */
+    private BitSet getAcceptedRows() throws SQLException {
+        if (!(predicate instanceof RangeFilter)) {
+            return null;
+        }
+        if (acceptedRows != null && acceptedRowsOf == rows
+                && acceptedModCount == modCount) {
+            return acceptedRows;
+        }
+
+        RangeFilter filter = (RangeFilter) predicate;
+        int columnIndex;
+        try {
+            columnIndex = filter.getColumnIndex(this);
+        } catch (SQLException e) {
+            // An unknown column, the filter rejects every row.
+            return null;
+        }
+        ColumnIndex index = getIndex(columnIndex);
+        if (index == null) {
+            return null;
+        }
+
+        BitSet accepted = new BitSet(rows.size());
+        try {
+            index.range(filter.getLow(), true, filter.getHigh(), true,
+                    accepted);
+        } catch (ClassCastException e) {
+            return null;
+        }
+        acceptedRows = accepted;
+        acceptedRowsOf = rows;
+        acceptedModCount = modCount;
+        return accepted;
     }
 
     @Override
@@ -119,6 +173,17 @@ public class FilteredRowSetImpl extends WebRowSetImpl implements FilteredRowSet
         if (predicate == null) {
             return super.next();
         }
+        BitSet accepted = getAcceptedRows();
+        if (accepted != null) {
+            for (int i = accepted.nextSetBit(currentRowIndex); i >= 0; i = accepted
+                    .nextSetBit(i + 1)) {
+                if (getShowDeleted() || !rows.get(i).isDelete()) {
+                    return doAbsolute(i + 1, false);
+                }
+            }
+            doAbsolute(rows.size() + 1, false);
+            return false;
+        }
         while (super.next()) {
             if (predicate.evaluate(this)) {
                 return true;
@@ -132,6 +197,17 @@ public class FilteredRowSetImpl extends WebRowSetImpl implements FilteredRowSet
         if (predicate == null) {
             return super.previous();
         }
+        BitSet accepted = getAcceptedRows();
+        if (accepted != null) {
+            for (int i = Math.min(currentRowIndex, rows.size() + 1) - 2; i >= 0; i--) {
+                if (accepted.get(i)
+                        && (getShowDeleted() || !rows.get(i).isDelete())) {
+                    return doAbsolute(i + 1, true);
+                }
+            }
+            doAbsolute(0, true);
+            return false;
+        }
         while (super.previous()) {
             if (predicate.evaluate(this)) {
                 return true;
@@ -16,15 +16,18 @@
  */
 package org.apache.harmony.sql.internal.rowset;
 
+import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 
 import javax.sql.RowSet;
@@ -589,19 +592,20 @@ public class JoinRowSetImpl extends WebRowSetImpl implements JoinRowSet {
             // the rows between these two rowSets.
             CachedRowComparator comparator;
 
-            // If the rows can be sorted on the object of match index, call
-            // sortJoinRows.
-            // Otherwise call iterativeJoinRows.
-            if (isSortable()) {
+            // If the rows can't be sorted, they match when their objects are
+            // equal, so hashJoinRows always applies. If they can be sorted,
+            // hashJoinRows applies when the objects are equal exactly when
+            // they compare as equal. Otherwise call sortJoinRows.
+            Class<?> matchType = columnTypes[matchIndex - 1];
+            if (!isSortable()) {
+                hashJoinRows(rowSetToAdd, matchIndex, matchIndexOfToAdd, null);
+            } else if (!isHashable(matchType)
+                    || !hashJoinRows(rowSetToAdd, matchIndex,
+                            matchIndexOfToAdd, matchType)) {
                 comparator = new CachedRowComparator(matchIndex,
                         matchIndexOfToAdd, true);
                 sortJoinRows(rowSetToAdd, matchIndex, matchIndexOfToAdd,
                         comparator);
-            } else {
-                comparator = new CachedRowComparator(matchIndex,
-                        matchIndexOfToAdd, false);
-                iterativeJoinRows(rowSetToAdd, matchIndex, matchIndexOfToAdd,
-                        comparator);
             }
 
             // Set the cursor of rowSetToAdd to the last.
@@ -628,21 +632,51 @@ public class JoinRowSetImpl extends WebRowSetImpl implements JoinRowSet {
         }
     }
 
-    private void iterativeJoinRows(CachedRowSetImpl rowSetToAdd,
+    /**
+     * How many times more rows rowSetToAdd must have than itself for
+     * hashJoinRows to use an index of rowSetToAdd.
+     */
+    private static final int INDEX_JOIN_RATIO = 4;
+
+    /**
+     * Whether objects of the given type are equal exactly when they compare
+     * as equal, so that rows sorted on them can be joined by hashing them.
+     */
+    private static boolean isHashable(Class<?> type) {
+        return type == String.class || type == Integer.class
+                || type == Long.class || type == Short.class
+                || type == Byte.class || type == Boolean.class
+                || type == Double.class || type == Float.class
+                || type == BigInteger.class;
+    }
+
+    /**
+     * Joins the rows by looking up the rows with an equal object in the match
+     * column in a hash table, or in an index of rowSetToAdd.
+     * <p>
+     * The rows come in the same order as from the join they replace. When the
+     * objects can't be sorted, that is the order of comparing each row of
+     * itself with each row of rowSetToAdd, as iterativeJoinRows used to. When
+     * they can, the rows follow the order of rowSetToAdd, as in sortJoinRows,
+     * and rows of rowSetToAdd matching several rows of itself are joined with
+     * them in the order of its own rows.
+     * 
+     * @param matchType
+     *            the class every object in the match columns must have, or
+     *            null if the objects can be of any class and can't be sorted
+     * @return false, without changing the rows, if an object in a match
+     *         column doesn't have the given class
+     */
+    private boolean hashJoinRows(CachedRowSetImpl rowSetToAdd,
             int matchColumnIndex, int matchColumnIndexOfToAdd,
-            CachedRowComparator comparator) throws SQLException {
+            Class<?> matchType) throws SQLException {
         // The row from itself.
         CachedRow row;
         // The row from rowSet to add.
         CachedRow rowToAdd;
-        // The row will be created to join the row and rowToAdd.
-        CachedRow newRow;
+        Object value;
+        HashMap<Object, Object> table;
 
-        /*
-         * Create a new arrayList to store the copied data. Since the size will
-         * surely less then the min of the two rowSets, so initialing the list
-         * with half of the min will improve performance.
-         */
         ArrayList<CachedRow> newRows = new ArrayList<CachedRow>(Math.min(rows
                 .size(), rowSetToAdd.rows.size()) / 2);
 
@@ -652,40 +686,188 @@ public class JoinRowSetImpl extends WebRowSetImpl implements JoinRowSet {
          */
         int addedColumnCount = rowSetToAdd.getMetaData().getColumnCount();
         int resultColumnCount = this.getMetaData().getColumnCount();
-
-        /*
-         * Since only one matched index is supported, and these two matched
-         * columns will merge to one column, so the original column count is
-         * just the minus of result comlumn count and added column count plus 1.
-         */
         int originalColumnCount = resultColumnCount + 1 - addedColumnCount;
 
+        if (matchType == null) {
+            /*
+             * Put the rows of rowSetToAdd in a hash table, and look up each
+             * row of itself.
+             */
+            table = hashRows(rowSetToAdd, matchColumnIndexOfToAdd, null);
+            this.beforeFirst();
+            while (this.next()) {
+                row = this.getCurrentRow();
+                value = row.getObject(matchColumnIndex);
+                // Null won't match anything, even null.
+                if (value == null) {
+                    continue;
+                }
+                List<CachedRow> rowsToAdd = getHashedRows(table, value);
+                for (int i = 0; i < rowsToAdd.size(); i++) {
+                    newRows.add(constructNewRow(row, rowsToAdd.get(i),
+                            matchColumnIndex, matchColumnIndexOfToAdd,
+                            resultColumnCount, originalColumnCount));
+                }
+            }
+            setRows(newRows, resultColumnCount);
+            return true;
+        }
+
         /*
-         * Iterates two rowsets, compare rowNum1 * rowNum2 times. If match,
-         * construct a new row, add it to the row list.
+         * An index compares the objects, so it can only be used when they are
+         * of a hashable type. It has all the rows of rowSetToAdd, so they are
+         * checked as its cursor would: a filter would have to be evaluated.
+         * Looking up the rows of itself in the index only pays when it has
+         * far fewer rows than rowSetToAdd.
          */
-        this.beforeFirst();
-        while (this.next()) {
-            row = this.getCurrentRow();
-            // If the value is null, just jump to next row.
-            // Since null won't match anything, even null.
-            if (row.getObject(matchColumnIndex) != null) {
-                rowSetToAdd.beforeFirst();
-                while (rowSetToAdd.next()) {
-                    rowToAdd = rowSetToAdd.getCurrentRow();
-                    if (comparator.compare(row, rowToAdd) == 0) {
-                        // It match, construct a new row, add it to list.
-                        newRow = constructNewRow(row, rowToAdd,
-                                matchColumnIndex, matchColumnIndexOfToAdd,
-                                resultColumnCount, originalColumnCount);
-                        newRows.add(newRow);
+        ColumnIndex index = null;
+        if (rows.size() * INDEX_JOIN_RATIO < rowSetToAdd.rows.size()
+                && !(rowSetToAdd instanceof FilteredRowSetImpl && ((FilteredRowSetImpl) rowSetToAdd)
+                        .getFilter() != null)) {
+            index = rowSetToAdd.getIndex(matchColumnIndexOfToAdd);
+        }
+
+        if (index != null) {
+            /*
+             * Each match is recorded as the position of the row of
+             * rowSetToAdd in the high half, and the number of the row of
+             * itself in the low half, so that sorting the matches puts them
+             * in the order of rowSetToAdd.
+             */
+            boolean showDeletedOfToAdd = rowSetToAdd.getShowDeleted();
+            ArrayList<CachedRow> ownRows = new ArrayList<CachedRow>();
+            long[] matches = new long[16];
+            int count = 0;
+            this.beforeFirst();
+            while (this.next()) {
+                row = this.getCurrentRow();
+                value = row.getObject(matchColumnIndex);
+                if (value == null) {
+                    continue;
+                }
+                if (value.getClass() != matchType) {
+                    return false;
+                }
+                int[] positions;
+                try {
+                    positions = index.lookup(value);
+                } catch (ClassCastException e) {
+                    // The index has objects of another type.
+                    return false;
+                }
+                int ordinal = ownRows.size();
+                ownRows.add(row);
+                for (int i = 0; i < positions.length; i++) {
+                    rowToAdd = rowSetToAdd.rows.get(positions[i]);
+                    if (showDeletedOfToAdd || !rowToAdd.isDelete()) {
+                        if (count == matches.length) {
+                            long[] grown = new long[count * 2];
+                            System.arraycopy(matches, 0, grown, 0, count);
+                            matches = grown;
+                        }
+                        matches[count++] = ((long) positions[i] << 32)
+                                | ordinal;
                     }
                 }
             }
+            Arrays.sort(matches, 0, count);
+            for (int i = 0; i < count; i++) {
+                rowToAdd = rowSetToAdd.rows.get((int) (matches[i] >>> 32));
+                row = ownRows.get((int) matches[i]);
+                newRows.add(constructNewRow(row, rowToAdd, matchColumnIndex,
+                        matchColumnIndexOfToAdd, resultColumnCount,
+                        originalColumnCount));
+            }
+            setRows(newRows, resultColumnCount);
+            return true;
+        }
+
+        /*
+         * Put the rows of itself in a hash table, and look up each row of
+         * rowSetToAdd.
+         */
+        table = hashRows(this, matchColumnIndex, matchType);
+        if (table == null) {
+            return false;
+        }
+        rowSetToAdd.beforeFirst();
+        while (rowSetToAdd.next()) {
+            rowToAdd = rowSetToAdd.getCurrentRow();
+            value = rowToAdd.getObject(matchColumnIndexOfToAdd);
+            if (value == null) {
+                continue;
+            }
+            if (value.getClass() != matchType) {
+                return false;
+            }
+            List<CachedRow> ownRows = getHashedRows(table, value);
+            for (int i = 0; i < ownRows.size(); i++) {
+                newRows.add(constructNewRow(ownRows.get(i), rowToAdd,
+                        matchColumnIndex, matchColumnIndexOfToAdd,
+                        resultColumnCount, originalColumnCount));
+            }
         }
 
         // Sets the rows and column count.
         setRows(newRows, resultColumnCount);
+        return true;
+    }
+
+    /**
+     * Puts the rows of the rowSet, in the order of its cursor, in a hash table
+     * by the object in the given column. Rows with a null object are left out.
+     * 
+     * @param matchType
+     *            the class every object in the column must have, or null if
+     *            the objects can be of any class
+     * @return the table, or null if an object doesn't have the given class
+     */
+    @SuppressWarnings("unchecked")
+    private static HashMap<Object, Object> hashRows(CachedRowSetImpl rowSet,
+            int columnIndex, Class<?> matchType) throws SQLException {
+        HashMap<Object, Object> table = new HashMap<Object, Object>();
+        rowSet.beforeFirst();
+        while (rowSet.next()) {
+            CachedRow row = rowSet.getCurrentRow();
+            Object value = row.getObject(columnIndex);
+            // Null won't match anything, even null.
+            if (value == null) {
+                continue;
+            }
+            if (matchType != null && value.getClass() != matchType) {
+                return null;
+            }
+
+            // A single row is stored as itself, more rows in a list.
+            Object hashed = table.get(value);
+            if (hashed == null) {
+                table.put(value, row);
+            } else if (hashed instanceof CachedRow) {
+                ArrayList<CachedRow> list = new ArrayList<CachedRow>(2);
+                list.add((CachedRow) hashed);
+                list.add(row);
+                table.put(value, list);
+            } else {
+                ((ArrayList<CachedRow>) hashed).add(row);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns the rows put in the table by hashRows for the given object.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<CachedRow> getHashedRows(HashMap<Object, Object> table,
+            Object value) {
+        Object hashed = table.get(value);
+        if (hashed == null) {
+            return Collections.emptyList();
+        }
+        if (hashed instanceof CachedRow) {
+            return Collections.singletonList((CachedRow) hashed);
+        }
+        return (List<CachedRow>) hashed;
     }
 
     private void sortJoinRows(CachedRowSetImpl rowSetToAdd,
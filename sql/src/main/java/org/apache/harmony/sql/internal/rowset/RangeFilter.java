@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.harmony.sql.internal.rowset;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+
+import javax.sql.RowSet;
+import javax.sql.rowset.Predicate;
+
+/**
+ * A filter accepting the rows whose value in one column lies between two
+ * bounds, both inclusive. A null bound leaves the range open on that side,
+ * and null values are never accepted. When the column has an index, see
+ * CachedRowSetImpl.createIndex(int), FilteredRowSetImpl finds the accepted
+ * rows in the index instead of evaluating every row.
+ */
+public class RangeFilter implements Predicate, Serializable {
+
+    private static final long serialVersionUID = 6093165387254683227L;
+
+    private final int columnIndex;
+
+    private final String columnName;
+
+    private final Object low;
+
+    private final Object high;
+
+    public RangeFilter(int columnIndex, Object low, Object high) {
+        this.columnIndex = columnIndex;
+        this.columnName = null;
+        this.low = low;
+        this.high = high;
+    }
+
+    public RangeFilter(String columnName, Object low, Object high) {
+        if (columnName == null) {
+            throw new NullPointerException();
+        }
+        this.columnIndex = -1;
+        this.columnName = columnName;
+        this.low = low;
+        this.high = high;
+    }
+
+    public Object getLow() {
+        return low;
+    }
+
+    public Object getHigh() {
+        return high;
+    }
+
+    /**
+     * Returns the index of the filtered column in the given rowset.
+     */
+    int getColumnIndex(RowSet rs) throws SQLException {
+        return columnName == null ? columnIndex : rs.findColumn(columnName);
+    }
+
+    public boolean evaluate(RowSet rs) {
+        try {
+            return isInRange(rs.getObject(getColumnIndex(rs)));
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    public boolean evaluate(Object value, int column) throws SQLException {
+        if (columnName != null || column != columnIndex) {
+            return true;
+        }
+        return isInRange(value);
+    }
+
+    public boolean evaluate(Object value, String name) throws SQLException {
+        if (columnName == null || !columnName.equalsIgnoreCase(name)) {
+            return true;
+        }
+        return isInRange(value);
+    }
+
+    private boolean isInRange(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (low != null && ColumnIndex.compareValues(value, low) < 0) {
+            return false;
+        }
+        if (high != null && ColumnIndex.compareValues(value, high) > 0) {
+            return false;
+        }
+        return true;
+    }
+}
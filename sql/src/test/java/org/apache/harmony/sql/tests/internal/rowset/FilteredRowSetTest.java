@@ -24,6 +24,9 @@ import javax.sql.RowSet;
 import javax.sql.rowset.FilteredRowSet;
 import javax.sql.rowset.Predicate;
 
+import org.apache.harmony.sql.internal.rowset.FilteredRowSetImpl;
+import org.apache.harmony.sql.internal.rowset.RangeFilter;
+
 public class FilteredRowSetTest extends CachedRowSetTestCase {
 
     public final static int EVALUATE_DEFAULT = 0;
@@ -642,6 +645,57 @@ public class FilteredRowSetTest extends CachedRowSetTestCase {
 
     }
 
+    public void testRangeFilter_Index() throws Exception {
+        if (!"true".equals(System.getProperty("Testing Harmony"))) {
+            return;
+        }
+        FilteredRowSetImpl filteredRowSet = new FilteredRowSetImpl();
+        rs = st.executeQuery("SELECT * FROM USER_INFO");
+        filteredRowSet.populate(rs);
+        filteredRowSet.createIndex(1);
+        filteredRowSet.setFilter(new RangeFilter(1, Integer.valueOf(2),
+                Integer.valueOf(3)));
+
+        filteredRowSet.beforeFirst();
+        assertTrue(filteredRowSet.next());
+        assertEquals(2, filteredRowSet.getInt(1));
+        assertTrue(filteredRowSet.next());
+        assertEquals(3, filteredRowSet.getInt(1));
+        assertFalse(filteredRowSet.next());
+        assertTrue(filteredRowSet.isAfterLast());
+
+        assertTrue(filteredRowSet.previous());
+        assertEquals(3, filteredRowSet.getInt(1));
+        assertTrue(filteredRowSet.previous());
+        assertEquals(2, filteredRowSet.getInt(1));
+        assertFalse(filteredRowSet.previous());
+        assertTrue(filteredRowSet.isBeforeFirst());
+
+        // the index follows updates of the rows
+        assertTrue(filteredRowSet.next());
+        filteredRowSet.updateInt(1, 10);
+        filteredRowSet.updateRow();
+        filteredRowSet.beforeFirst();
+        assertTrue(filteredRowSet.next());
+        assertEquals(3, filteredRowSet.getInt(1));
+        assertFalse(filteredRowSet.next());
+
+        filteredRowSet.setFilter(new RangeFilter("ID", Integer.valueOf(4),
+                null));
+        filteredRowSet.beforeFirst();
+        assertTrue(filteredRowSet.next());
+        assertEquals(10, filteredRowSet.getInt(1));
+        assertTrue(filteredRowSet.next());
+        assertEquals(4, filteredRowSet.getInt(1));
+        assertFalse(filteredRowSet.next());
+
+        // an unknown column matches no row
+        filteredRowSet.setFilter(new RangeFilter("NO_SUCH_COLUMN", Integer
+                .valueOf(4), null));
+        filteredRowSet.beforeFirst();
+        assertFalse(filteredRowSet.next());
+    }
+
     public void testPagingInMemory() throws Exception {
         insertMoreData(10);
         FilteredRowSet filteredRowSet = newFilterRowSet();
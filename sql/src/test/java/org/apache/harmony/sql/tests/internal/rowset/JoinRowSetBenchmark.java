@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.harmony.sql.tests.internal.rowset;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Random;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+import org.apache.harmony.sql.internal.rowset.CachedRowSetImpl;
+import org.apache.harmony.sql.internal.rowset.FilteredRowSetImpl;
+import org.apache.harmony.sql.internal.rowset.JoinRowSetImpl;
+import org.apache.harmony.sql.internal.rowset.RangeFilter;
+
+/**
+ * Measures JoinRowSetImpl joins and FilteredRowSetImpl range filters on
+ * large in-memory rowsets, without a database. It is not part of the test
+ * suite; run it by hand:
+ *
+ * <pre>
+ * java org.apache.harmony.sql.tests.internal.rowset.JoinRowSetBenchmark [rows]
+ * </pre>
+ *
+ * Both rowsets carry the same key in an INTEGER and a DECIMAL column. A join
+ * on the DECIMAL column takes the sort and binary search join, which was
+ * also the join for INTEGER columns before the hash join; a join on the
+ * INTEGER column takes the hash join, or the index of the added rowset when
+ * it has one.
+ */
+public class JoinRowSetBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        CachedRowSetImpl authors = newRowSet(rows, "AUTHORS", new Random(1));
+        CachedRowSetImpl books = newRowSet(rows, "BOOKS", new Random(2));
+
+        System.out.println(rows + " x " + rows + " rows, best of " + ROUNDS
+                + " rounds");
+        long sorted = Long.MAX_VALUE;
+        long hashed = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            sorted = Math.min(sorted, join(authors, books, 2));
+            hashed = Math.min(hashed, join(authors, books, 1));
+        }
+        System.out.println("sort join (DECIMAL)       " + sorted + " us");
+        System.out.println("hash join (INTEGER)       " + hashed + " us");
+
+        // An index is only used to join fewer rows to it.
+        CachedRowSetImpl few = newRowSet(rows / 100, "AUTHORS", new Random(3));
+        hashed = Long.MAX_VALUE;
+        long indexed = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            hashed = Math.min(hashed, join(few, books, 1));
+        }
+        // The index is built by the first join, and then reused.
+        books.createIndex(1);
+        for (int i = 0; i <= ROUNDS; i++) {
+            long elapsed = join(few, books, 1);
+            if (i > 0) {
+                indexed = Math.min(indexed, elapsed);
+            }
+        }
+        System.out.println((rows / 100) + " x " + rows + " rows");
+        System.out.println("hash join (INTEGER)       " + hashed + " us");
+        System.out.println("index join (INTEGER)      " + indexed + " us");
+
+        FilteredRowSetImpl filtered = new FilteredRowSetImpl();
+        filtered.populate(newResultSet(rows, "BOOKS", new Random(2)));
+        filtered.setFilter(new RangeFilter(1, Integer.valueOf(rows / 2),
+                Integer.valueOf(rows / 2 + rows / 100)));
+        long scanned = Long.MAX_VALUE;
+        long ranged = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            scanned = Math.min(scanned, scan(filtered));
+        }
+        filtered.createIndex(1);
+        for (int i = 0; i <= ROUNDS; i++) {
+            long elapsed = scan(filtered);
+            if (i > 0) {
+                ranged = Math.min(ranged, elapsed);
+            }
+        }
+        System.out.println("range filter, evaluated   " + scanned + " us");
+        System.out.println("range filter, indexed     " + ranged + " us");
+    }
+
+    /**
+     * Joins the rowsets on the given column and returns the elapsed time in
+     * microseconds.
+     */
+    private static long join(CachedRowSetImpl first, CachedRowSetImpl second,
+            int column) throws SQLException {
+        JoinRowSetImpl jrs = new JoinRowSetImpl();
+        jrs.addRowSet(first, column);
+        long start = System.nanoTime();
+        jrs.addRowSet(second, column);
+        long elapsed = (System.nanoTime() - start) / 1000;
+        if (jrs.size() == 0) {
+            throw new AssertionError("empty join");
+        }
+        return elapsed;
+    }
+
+    /**
+     * Visits the rows accepted by the filter and returns the elapsed time in
+     * microseconds.
+     */
+    private static long scan(FilteredRowSetImpl filtered) throws SQLException {
+        long start = System.nanoTime();
+        int count = 0;
+        filtered.beforeFirst();
+        while (filtered.next()) {
+            count++;
+        }
+        long elapsed = (System.nanoTime() - start) / 1000;
+        if (count == 0) {
+            throw new AssertionError("no rows accepted");
+        }
+        return elapsed;
+    }
+
+    private static CachedRowSetImpl newRowSet(int rows, String table,
+            Random random) throws SQLException {
+        CachedRowSetImpl crset = new CachedRowSetImpl();
+        crset.populate(newResultSet(rows, table, random));
+        return crset;
+    }
+
+    /**
+     * Returns a result set of the given number of rows with a random key in
+     * an INTEGER and a DECIMAL column, and a VARCHAR column.
+     */
+    private static ResultSet newResultSet(int rows, String table,
+            Random random) throws SQLException {
+        final RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+        meta.setColumnCount(3);
+        meta.setColumnName(1, "ID");
+        meta.setColumnType(1, Types.INTEGER);
+        meta.setColumnName(2, "DEC");
+        meta.setColumnType(2, Types.DECIMAL);
+        meta.setColumnName(3, "NAME");
+        meta.setColumnType(3, Types.VARCHAR);
+        for (int i = 1; i <= 3; i++) {
+            meta.setTableName(i, table);
+        }
+
+        final Object[][] data = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            int key = random.nextInt(rows);
+            data[i] = new Object[] { Integer.valueOf(key),
+                    BigDecimal.valueOf(key), table + i };
+        }
+
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class
+                .getClassLoader(), new Class[] { ResultSet.class },
+                new InvocationHandler() {
+                    private int row = -1;
+
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("next")) {
+                            return Boolean.valueOf(++row < data.length);
+                        } else if (name.equals("getObject")) {
+                            return data[row][((Integer) args[0]).intValue() - 1];
+                        } else if (name.equals("getMetaData")) {
+                            return meta;
+                        } else if (name.equals("getWarnings")
+                                || name.equals("getCursorName")
+                                || name.equals("getStatement")) {
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+}
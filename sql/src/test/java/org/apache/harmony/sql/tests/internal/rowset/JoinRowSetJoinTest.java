@@ -18,10 +18,15 @@ package org.apache.harmony.sql.tests.internal.rowset;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
 
 import javax.sql.rowset.CachedRowSet;
 import javax.sql.rowset.spi.SyncProvider;
 
+import org.apache.harmony.sql.internal.rowset.CachedRowSetImpl;
+import org.apache.harmony.sql.internal.rowset.JoinRowSetImpl;
+
 public class JoinRowSetJoinTest extends JoinRowSetTestCase {
 
     public void testJoin_DataEqual() throws Exception {
@@ -865,4 +870,87 @@ public class JoinRowSetJoinTest extends JoinRowSetTestCase {
         
     }
 
+    public void testJoin_Index() throws Exception {
+        if (!"true".equals(System.getProperty("Testing Harmony"))) {
+            return;
+        }
+        CachedRowSet crset1 = newNoInitialInstance();
+        rs = st.executeQuery("select * from USER_INFO where ID = 1");
+        crset1.populate(rs);
+
+        // few rows are joined to the indexed rows
+        CachedRowSetImpl crset2 = new CachedRowSetImpl();
+        rs = st.executeQuery("select * from BOOKS");
+        crset2.populate(rs);
+        crset2.createIndex(1);
+
+        jrs = new JoinRowSetImpl();
+        jrs.addRowSet(crset1, 1);
+        jrs.addRowSet(crset2, 1);
+
+        CachedRowSet dbJoinCrset = newNoInitialInstance();
+        rs = st
+                .executeQuery("select USER_INFO.ID, USER_INFO.NAME, USER_INFO.BIGINT_T, USER_INFO.NUMERIC_T, USER_INFO.DECIMAL_T, "
+                        + "USER_INFO.SMALLINT_T, USER_INFO.FLOAT_T, USER_INFO.REAL_T, USER_INFO.DOUBLE_T, USER_INFO.DATE_T, USER_INFO.TIME_T, USER_INFO.TIMESTAMP_T, "
+                        + "BOOKS.SN, BOOKS.NAME"
+                        + " from USER_INFO, BOOKS "
+                        + "where USER_INFO.ID = BOOKS.AUTHORID and USER_INFO.ID = 1");
+        dbJoinCrset.populate(rs);
+        assertEquals(2, dbJoinCrset.size());
+
+        if (!dataEqualsIgnoreOrder(jrs, dbJoinCrset)) {
+            fail("The data is jrs and dbJoinCrset should be equal.");
+        }
+
+        // deleted rows are not joined
+        crset2.setShowDeleted(false);
+        crset2.absolute(2);
+        crset2.deleteRow();
+        jrs = new JoinRowSetImpl();
+        jrs.addRowSet(crset1, 1);
+        jrs.addRowSet(crset2, 1);
+        assertEquals(1, jrs.size());
+        assertTrue(jrs.first());
+        assertEquals("sn1-1", jrs.getString(13));
+    }
+
+    public void testJoin_OrderOfAddedRows() throws Exception {
+        if (!"true".equals(System.getProperty("Testing Harmony"))) {
+            return;
+        }
+        CachedRowSet crset1 = newNoInitialInstance();
+        rs = st.executeQuery("select * from USER_INFO order by ID");
+        crset1.populate(rs);
+
+        // the keys of the added rows are out of order
+        CachedRowSet crset2 = newNoInitialInstance();
+        rs = st.executeQuery("select * from BOOKS order by AUTHORID desc, NAME");
+        crset2.populate(rs);
+
+        jrs = new JoinRowSetImpl();
+        jrs.addRowSet(crset1, 1);
+        jrs.addRowSet(crset2, 1);
+
+        HashSet<Integer> ids = new HashSet<Integer>();
+        crset1.beforeFirst();
+        while (crset1.next()) {
+            ids.add(Integer.valueOf(crset1.getInt(1)));
+        }
+        ArrayList<String> expected = new ArrayList<String>();
+        crset2.beforeFirst();
+        while (crset2.next()) {
+            if (ids.contains(Integer.valueOf(crset2.getInt(1)))) {
+                expected.add(crset2.getString(3));
+            }
+        }
+        assertTrue(expected.size() > 1);
+
+        // the joined rows follow the order of the added rows
+        ArrayList<String> joined = new ArrayList<String>();
+        jrs.beforeFirst();
+        while (jrs.next()) {
+            joined.add(jrs.getString(14));
+        }
+        assertEquals(expected, joined);
+    }
 }
@@ -30,7 +30,6 @@ import java.security.PublicKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
-import java.util.Enumeration;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyAgreement;
@@ -38,8 +37,6 @@ import javax.crypto.interfaces.DHKey;
 import javax.crypto.interfaces.DHPublicKey;
 import javax.crypto.spec.DHParameterSpec;
 import javax.crypto.spec.DHPublicKeySpec;
-import javax.net.ssl.SSLSession;
-import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.X509ExtendedKeyManager;
 
 /**
@@ -90,6 +87,7 @@ public class ClientHandshakeImpl extends HandshakeProtocol {
             session = new SSLSessionImpl(parameters.getSecureRandom());
             session.protocol = ProtocolVersion.getLatestVersion(parameters
                     .getEnabledProtocols());
+            session.setPeer(getPeerHost(), getPeerPort());
             recordProtocol.setVersion(session.protocol.version);
         } else {
             fatalAlert(AlertProtocol.HANDSHAKE_FAILURE, "SSL Session may not be created ");
@@ -107,6 +105,7 @@ public class ClientHandshakeImpl extends HandshakeProtocol {
             session = new SSLSessionImpl(parameters.getSecureRandom());
             session.protocol = ProtocolVersion.getLatestVersion(parameters
                     .getEnabledProtocols());
+            session.setPeer(getPeerHost(), getPeerPort());
             recordProtocol.setVersion(session.protocol.version);
             startSession();
         } else {
@@ -125,8 +124,14 @@ public class ClientHandshakeImpl extends HandshakeProtocol {
         } else {
             cipher_suites = parameters.enabledCipherSuites;
         }
+        byte[] ticket = null;
+        if (parameters.getClientSessionContext().getSessionTicketsEnabled()) {
+            // ask for a ticket if there is none to present
+            ticket = isResuming && session.ticket != null ? session.ticket
+                    : new byte[0];
+        }
         clientHello = new ClientHello(parameters.getSecureRandom(),
-                session.protocol.version, session.id, cipher_suites);
+                session.protocol.version, session.id, cipher_suites, ticket);
         session.clientRandom = clientHello.random;
         send(clientHello);
         status = NEED_UNWRAP;
@@ -238,12 +243,38 @@ public class ClientHandshakeImpl extends HandshakeProtocol {
                             computerReferenceVerifyDataSSLv3(SSLv3Constants.server);
                         }
                     }
+                    if (serverHello.session_ticket
+                            && clientHello.session_ticket == null) {
+                        fatalAlert(AlertProtocol.HANDSHAKE_FAILURE,
+                                "Unexpected session ticket extension");
+                    }
+                    if (!isResuming) {
+                        session.ticket = null;
+                    }
                     session.protocol = servProt;
                     recordProtocol.setVersion(session.protocol.version);
                     session.cipherSuite = serverHello.cipher_suite;
                     session.id = serverHello.session_id.clone();
                     session.serverRandom = serverHello.random;
                     break;
+                case 4: // NEW_SESSION_TICKET
+                    if (serverHello == null || !serverHello.session_ticket
+                            || newSessionTicket != null || changeCipherSpecReceived
+                            || (!isResuming && clientFinished == null)) {
+                        unexpectedMessage();
+                        return;
+                    }
+                    newSessionTicket = new NewSessionTicket(io_stream, length);
+                    if (newSessionTicket.ticket.length != 0) {
+                        session.ticket = newSessionTicket.ticket;
+                    }
+                    // server finished covers the ticket
+                    if (serverHello.server_version[1] == 1) {
+                        computerReferenceVerifyDataTLS("server finished");
+                    } else {
+                        computerReferenceVerifyDataSSLv3(SSLv3Constants.server);
+                    }
+                    break;
                 case 11: // CERTIFICATE
                     if (serverHello == null || serverKeyExchange != null
                             || serverCert != null || isResuming) {
@@ -591,36 +622,38 @@ public class ClientHandshakeImpl extends HandshakeProtocol {
         } else if (clientFinished == null) {
             unexpectedMessage();
         } 
+        if (serverHello.session_ticket && newSessionTicket == null) {
+            unexpectedMessage();
+        }
         changeCipherSpecReceived = true;
     }
 
     // Find session to resume in client session context
     private SSLSessionImpl findSessionToResume() {
-        String host;
-        int port;
-        if (engineOwner != null) {
-            host = engineOwner.getPeerHost();
-            port = engineOwner.getPeerPort();
-        } else {
-            host = socketOwner.getInetAddress().getHostName();
-            port = socketOwner.getPort();
-        }
+        String host = getPeerHost();
+        int port = getPeerPort();
         if (host == null || port == -1) {
             return null; // starts new session
         }
-        
-        byte[] id;
-        SSLSession ses;
-        SSLSessionContext context = parameters.getClientSessionContext();
-        for (Enumeration<?> en = context.getIds(); en.hasMoreElements();) {
-            id = (byte[])en.nextElement();
-            ses = context.getSession(id);
-            if (host.equals(ses.getPeerHost()) && port == ses.getPeerPort()) {
-                return (SSLSessionImpl)((SSLSessionImpl)ses).clone(); // resume
-            }            
+        SSLSessionImpl ses = parameters.getClientSessionContext().getSession(host, port);
+        if (ses == null) {
+            return null; // starts new session
         }
-        return null; // starts new session
+        return (SSLSessionImpl) ses.clone(); // resume
     }
 
-}
+    private String getPeerHost() {
+        if (engineOwner != null) {
+            return engineOwner.getPeerHost();
+        }
+        return socketOwner.getInetAddress().getHostName();
+    }
+
+    private int getPeerPort() {
+        if (engineOwner != null) {
+            return engineOwner.getPeerPort();
+        }
+        return socketOwner.getPort();
+    }
 
+}
@@ -54,6 +54,13 @@ public class ClientHello extends Message {
      */
     final byte[] compression_methods;
 
+    /**
+     * Session ticket extension: null if the client does not support
+     * session tickets, empty if it has no ticket to present
+     * @see RFC 5077, 3.2. SessionTicket TLS Extension
+     */
+    final byte[] session_ticket;
+
     /**
      * Creates outbound message
      * @param sr
@@ -63,6 +70,20 @@ public class ClientHello extends Message {
      */
     public ClientHello(SecureRandom sr, byte[] version, byte[] ses_id,
             CipherSuite[] cipher_suite) {
+        this(sr, version, ses_id, cipher_suite, null);
+    }
+
+    /**
+     * Creates outbound message with the session ticket extension
+     * @param sr
+     * @param version
+     * @param ses_id
+     * @param cipher_suite
+     * @param ticket session ticket, empty if there is none,
+     * or null to send no extension
+     */
+    public ClientHello(SecureRandom sr, byte[] version, byte[] ses_id,
+            CipherSuite[] cipher_suite, byte[] ticket) {
         client_version = version;
         long gmt_unix_time = System.currentTimeMillis()/1000;
         sr.nextBytes(random);
@@ -73,8 +94,12 @@ public class ClientHello extends Message {
         session_id = ses_id;
         this.cipher_suites = cipher_suite;
         compression_methods = new byte[] { 0 }; // CompressionMethod.null
+        session_ticket = ticket;
         length = 38 + session_id.length + (this.cipher_suites.length << 1)
                 + compression_methods.length;
+        if (session_ticket != null) {
+            length += 6 + session_ticket.length;
+        }
     }
 
     /**
@@ -111,6 +136,29 @@ public class ClientHello extends Message {
         if (this.length > length) {
             fatalAlert(AlertProtocol.DECODE_ERROR, "DECODE ERROR: incorrect ClientHello");
         }
+        byte[] ticket = null;
+        if (this.length + 2 <= length) {
+            // hello extensions
+            int extensions = in.readUint16();
+            this.length += 2;
+            while (extensions >= 4 && this.length + 4 <= length) {
+                int type = in.readUint16();
+                int extension_length = in.readUint16();
+                extensions -= 4 + extension_length;
+                this.length += 4 + extension_length;
+                if (extensions < 0 || this.length > length) {
+                    fatalAlert(AlertProtocol.DECODE_ERROR,
+                            "DECODE ERROR: incorrect ClientHello extensions");
+                }
+                if (type == Handshake.EXT_SESSION_TICKET) {
+                    ticket = new byte[extension_length];
+                    in.read(ticket, 0, extension_length);
+                } else {
+                    in.skip(extension_length);
+                }
+            }
+        }
+        session_ticket = ticket;
         // for forward compatibility, extra data is permitted;
         // must be ignored
         if (this.length < length) {
@@ -142,6 +190,7 @@ public class ClientHello extends Message {
             fatalAlert(AlertProtocol.DECODE_ERROR, "DECODE ERROR: incorrect V2ClientHello, short challenge data");
         }
         session_id = new byte[0];
+        session_ticket = null;
         cipher_suites = new CipherSuite[cipher_spec_length/3];
         for (int i = 0; i < cipher_suites.length; i++) {
             byte b0 = (byte) in.read();
@@ -185,6 +234,12 @@ public class ClientHello extends Message {
         for (int i = 0; i < compression_methods.length; i++) {
             out.write(compression_methods[i]);
         }
+        if (session_ticket != null) {
+            out.writeUint16(4 + session_ticket.length);
+            out.writeUint16(Handshake.EXT_SESSION_TICKET);
+            out.writeUint16(session_ticket.length);
+            out.write(session_ticket);
+        }
     }
 
     /**
@@ -44,6 +44,13 @@ public class Handshake {
      */
     public static final byte SERVER_HELLO = 2;
 
+    /**
+     * 
+     * new_session_ticket handshake type
+     * @see RFC 5077, 3.3. NewSessionTicket Handshake Message
+     */
+    public static final byte NEW_SESSION_TICKET = 4;
+
     /**
      * 
      * certificate handshake type
@@ -86,4 +93,11 @@ public class Handshake {
      */
     public static final byte FINISHED = 20;
 
+    /**
+     * 
+     * session_ticket hello extension type
+     * @see RFC 5077, 3.2. SessionTicket TLS Extension
+     */
+    public static final int EXT_SESSION_TICKET = 35;
+
 }
@@ -105,6 +105,7 @@ public abstract class HandshakeProtocol {
     protected ServerKeyExchange serverKeyExchange;
     protected CertificateRequest certificateRequest;
     protected ServerHelloDone serverHelloDone;
+    protected NewSessionTicket newSessionTicket;
     protected CertificateMessage clientCert;
     protected ClientKeyExchange clientKeyExchange;
     protected CertificateVerify certificateVerify;
@@ -488,6 +489,7 @@ public abstract class HandshakeProtocol {
         serverKeyExchange = null;
         certificateRequest = null;
         serverHelloDone = null;
+        newSessionTicket = null;
         clientCert = null;
         clientKeyExchange = null;
         certificateVerify = null;
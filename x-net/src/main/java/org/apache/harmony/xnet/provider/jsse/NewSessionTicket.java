@@ -0,0 +1,89 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.harmony.xnet.provider.jsse;
+
+import org.apache.harmony.xnet.provider.jsse.Message;
+
+import java.io.IOException;
+
+/**
+ * 
+ * Represents New Session Ticket message
+ * @see RFC 5077, 3.3. NewSessionTicket Handshake Message
+ * (http://www.ietf.org/rfc/rfc5077.txt)
+ * 
+ */
+public class NewSessionTicket extends Message {
+
+    /**
+     * Lifetime of the ticket in seconds, 0 if unspecified
+     */
+    long ticket_lifetime_hint;
+
+    /**
+     * Session ticket, empty if the server issues no ticket
+     */
+    byte[] ticket;
+
+    /**
+     * Creates outbound message
+     * @param lifetime
+     * @param ticket
+     */
+    public NewSessionTicket(long lifetime, byte[] ticket) {
+        ticket_lifetime_hint = lifetime;
+        this.ticket = ticket;
+        length = 6 + ticket.length;
+    }
+
+    /**
+     * Creates inbound message
+     * @param in
+     * @param length
+     * @throws IOException
+     */
+    public NewSessionTicket(HandshakeIODataStream in, int length)
+            throws IOException {
+        ticket_lifetime_hint = in.readUint32();
+        int size = in.readUint16();
+        ticket = in.read(size);
+        this.length = 6 + ticket.length;
+        if (this.length != length) {
+            fatalAlert(AlertProtocol.DECODE_ERROR, "DECODE ERROR: incorrect NewSessionTicket");
+        }
+    }
+
+    /**
+     * Sends message
+     * @param out
+     */
+    @Override
+    public void send(HandshakeIODataStream out) {
+        out.writeUint32(ticket_lifetime_hint);
+        out.writeUint16(ticket.length);
+        out.write(ticket);
+    }
+
+    /**
+     * Returns message type 
+     * @return
+     */
+    @Override
+    public int getType() {
+        return Handshake.NEW_SESSION_TICKET;
+    }
+}
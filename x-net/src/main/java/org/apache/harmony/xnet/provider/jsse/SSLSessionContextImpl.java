@@ -16,35 +16,91 @@
  */
 package org.apache.harmony.xnet.provider.jsse;
 
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSessionContext;
 
 /**
- * 
+ *
  * SSLSessionContext implementation
+ * <p>
+ * Sessions are held in a concurrent map, so lookups do not block, and in a
+ * recency list that is only reordered by a lookup if its lock is free. When
+ * the cache is full the least recently used session is removed, and expired
+ * sessions are removed when they are looked up or reach the end of the list.
+ * <p>
+ * Client sessions are also indexed by the host and port of the peer, which
+ * is how the client looks for a session to resume.
+ * <p>
+ * With session tickets enabled, a server context encodes the state of its
+ * sessions in tickets kept by the clients (RFC 5077) instead of caching
+ * them, and a client context asks servers for tickets.
  * @see javax.net.ssl.SSLSessionContext
  */
 public class SSLSessionContextImpl implements SSLSessionContext {
 
-    private int cacheSize = 0;
+    private static final class Entry {
+        final IdKey key;
+
+        final String peer;
+
+        final SSLSessionImpl session;
 
-    private long timeout = 0;
+        // recency list, guarded by lock
+        Entry prev, next;
+
+        Entry(IdKey key, String peer, SSLSessionImpl session) {
+            this.key = key;
+            this.peer = peer;
+            this.session = session;
+        }
+    }
 
-    private final Hashtable<IdKey, SSLSessionImpl> sessions = new Hashtable<IdKey, SSLSessionImpl>();
+    private volatile int cacheSize = 0;
+
+    private volatile long timeout = 0;
+
+    private final ConcurrentHashMap<IdKey, Entry> sessions = new ConcurrentHashMap<IdKey, Entry>();
+
+    // client sessions by "host:port" of the peer
+    private final ConcurrentHashMap<String, Entry> peers = new ConcurrentHashMap<String, Entry>();
+
+    /*
+     * Sentinel of the recency list, the least recently used session is
+     * head.next.
+     */
+    private final Entry head = new Entry(null, null, null);
+
+    /*
+     * Guards the recency list, and all changes to the maps.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile boolean ticketsEnabled;
+
+    // keys of the issued tickets, the current key first
+    private volatile SessionTicket.Keys[] ticketKeys;
+
+    public SSLSessionContextImpl() {
+        head.prev = head.next = head;
+    }
 
     @SuppressWarnings("unchecked")
     public Enumeration getIds() {
         return new Enumeration() {
-            Enumeration<IdKey> keys = sessions.keys();
+            Iterator<IdKey> keys = sessions.keySet().iterator();
             public boolean hasMoreElements() {
-                return keys.hasMoreElements();
+                return keys.hasNext();
             }
             public Object nextElement() {
-                return keys.nextElement().id;
+                return keys.next().id;
             }
         };
     }
@@ -53,8 +109,17 @@ public class SSLSessionContextImpl implements SSLSessionContext {
      *
      * @see javax.net.ssl.SSLSessionContext.getSession(byte[] sessionId)
      */
-    public SSLSession getSession(byte[] sessionId) {      
-        return sessions.get(new IdKey(sessionId));
+    public SSLSession getSession(byte[] sessionId) {
+        return lookup(sessions.get(new IdKey(sessionId)));
+    }
+
+    /**
+     * Returns the most recent valid session with the peer, or null.
+     * @param host
+     * @param port
+     */
+    SSLSessionImpl getSession(String host, int port) {
+        return lookup(peers.get(peerKey(host, port)));
     }
 
     /**
@@ -78,56 +143,245 @@ public class SSLSessionContextImpl implements SSLSessionContext {
         if (size < 0) {
             throw new IllegalArgumentException("size < 0");
         }
-        cacheSize = size;
-        if (size > 0 && sessions.size() < size) {
-            // remove size-sessions.size() oldest sessions
-            removeOldest(size - sessions.size());
+        lock.lock();
+        try {
+            cacheSize = size;
+            trim();
+        } finally {
+            lock.unlock();
         }
-
     }
 
     public void setSessionTimeout(int seconds) throws IllegalArgumentException {
         if (seconds < 0) {
             throw new IllegalArgumentException("seconds < 0");
         }
-        timeout = seconds * 1000;
+        timeout = seconds * 1000L;
 
         // Check timeouts and remove expired sessions
-        for (Enumeration<IdKey> en = sessions.keys(); en.hasMoreElements();) {
-            IdKey key = en.nextElement();
-            SSLSessionImpl ses = (sessions.get(key));
-            if (!ses.isValid()) {
-                sessions.remove(key);
+        lock.lock();
+        try {
+            for (Entry e = head.next; e != head;) {
+                Entry next = e.next;
+                if (!e.session.isValid()) {
+                    remove(e);
+                }
+                e = next;
             }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether session tickets are used with this context.
+     */
+    public boolean getSessionTicketsEnabled() {
+        return ticketsEnabled;
+    }
+
+    /**
+     * Enables session tickets. A server context then issues tickets holding
+     * the state of its sessions to the clients that support them, and keeps
+     * no state for those sessions. A client context asks the servers for
+     * tickets, and presents them to resume sessions.
+     * <p>
+     * Unless {@link #setSessionTicketKey(byte[])} is called, the tickets are
+     * protected with a random key, and can only be used with this context.
+     *
+     * @param enabled
+     */
+    public void setSessionTicketsEnabled(boolean enabled) {
+        ticketsEnabled = enabled;
+    }
+
+    /**
+     * Sets the secret the keys protecting the session tickets are derived
+     * from. Servers sharing the secret accept each other's tickets. The
+     * tickets issued with the previous secret are still accepted, until the
+     * secret is changed again.
+     *
+     * @param secret
+     *            at least 16 bytes
+     */
+    public void setSessionTicketKey(byte[] secret) {
+        if (secret == null || secret.length < 16) {
+            throw new IllegalArgumentException("secret is shorter than 16 bytes");
+        }
+        SessionTicket.Keys keys;
+        try {
+            keys = new SessionTicket.Keys(secret);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        lock.lock();
+        try {
+            SessionTicket.Keys[] current = ticketKeys;
+            ticketKeys = new SessionTicket.Keys[] { keys,
+                    current == null ? null : current[0] };
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Returns the ticket holding the state of the server session, or null if
+     * it can not be issued.
+     * @param ses
+     * @param sr
+     */
+    byte[] issueTicket(SSLSessionImpl ses, SecureRandom sr) {
+        try {
+            SessionTicket.Keys[] keys = ticketKeys;
+            if (keys == null) {
+                byte[] secret = new byte[32];
+                sr.nextBytes(secret);
+                keys = new SessionTicket.Keys[] { new SessionTicket.Keys(secret) };
+                lock.lock();
+                try {
+                    if (ticketKeys == null) {
+                        ticketKeys = keys;
+                    } else {
+                        keys = ticketKeys;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return SessionTicket.encode(ses, keys[0], sr);
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the server session restored from the ticket, or null if the
+     * ticket is not valid or the session has expired.
+     * @param ticket
+     */
+    SSLSessionImpl resumeTicket(byte[] ticket) {
+        SessionTicket.Keys[] keys = ticketKeys;
+        if (keys == null) {
+            return null;
+        }
+        SSLSessionImpl ses = SessionTicket.decode(ticket, keys);
+        if (ses == null) {
+            return null;
+        }
+        ses.context = this;
+        return ses.isValid() ? ses : null;
+    }
+
     /**
      * Adds session to the session cache
      * @param ses
      */
     void putSession(SSLSessionImpl ses) {
-        if (cacheSize > 0 && sessions.size() == cacheSize) {
-            // remove 1 oldest session
-            removeOldest(1);
-        }
         ses.context = this;
-        sessions.put(new IdKey(ses.getId()), ses);
+        IdKey key = new IdKey(ses.getId());
+        String peer = ses.isServer || ses.getPeerHost() == null ? null
+                : peerKey(ses.getPeerHost(), ses.getPeerPort());
+        Entry entry = new Entry(key, peer, ses);
+        lock.lock();
+        try {
+            Entry old = sessions.put(key, entry);
+            if (old != null) {
+                unlink(old);
+                if (old.peer != null) {
+                    peers.remove(old.peer, old);
+                }
+            }
+            linkLast(entry);
+            if (peer != null) {
+                peers.put(peer, entry);
+            }
+            trim();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Returns the session of the entry if it is valid, and marks it as the
+     * most recently used if no other thread is changing the cache.
+     */
+    private SSLSessionImpl lookup(Entry entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.session.isValid()) {
+            lock.lock();
+            try {
+                if (entry.next != null) {
+                    remove(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        }
+        if (head.prev != entry && lock.tryLock()) {
+            try {
+                // the entry may have been removed meanwhile
+                if (entry.next != null) {
+                    unlink(entry);
+                    linkLast(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return entry.session;
+    }
+
+    /*
+     * Removes the least recently used sessions beyond the cache size, and
+     * the expired sessions at the end of the list. Called with the lock held.
+     */
+    private void trim() {
+        int size = cacheSize;
+        while (head.next != head
+                && ((size > 0 && sessions.size() > size) || !head.next.session.isValid())) {
+            remove(head.next);
+        }
+    }
+
+    // called with the lock held
+    private void remove(Entry entry) {
+        sessions.remove(entry.key, entry);
+        if (entry.peer != null) {
+            peers.remove(entry.peer, entry);
+        }
+        unlink(entry);
+    }
+
+    private void linkLast(Entry entry) {
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    private void unlink(Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = entry.next = null;
     }
 
-    // removes invalidated/oldest sessions from the session cache
-    private void removeOldest(int num) {
-        //TODO
-        // ses.context = null;
+    private static String peerKey(String host, int port) {
+        return host + ':' + port;
     }
-    
-    private class IdKey {
-        private byte[] id;
-        
+
+    private static final class IdKey {
+        private final byte[] id;
+
+        private final int hash;
+
         private IdKey(byte[] id) {
             this.id = id;
+            this.hash = Arrays.hashCode(id);
         }
-        
+
         @Override
         public boolean equals(Object o) {
             if (!(o instanceof IdKey)) {
@@ -135,10 +389,10 @@ public class SSLSessionContextImpl implements SSLSessionContext {
             }
             return Arrays.equals(id, ((IdKey)o).id);
         }
-        
+
         @Override
         public int hashCode() {
-            return Arrays.hashCode(id);
+            return hash;
         }
     }
 
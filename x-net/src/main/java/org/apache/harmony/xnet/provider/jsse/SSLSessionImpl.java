@@ -157,6 +157,11 @@ public class SSLSessionImpl implements SSLSession, Cloneable  {
      */
     byte[] serverRandom;
 
+    /**
+     * Session ticket issued by the server, client side only
+     */
+    byte[] ticket;
+
     /**
      * True if this entity is considered the server
      */
@@ -198,6 +203,21 @@ public class SSLSessionImpl implements SSLSession, Cloneable  {
         this(null, sr);
     }
 
+    /**
+     * Creates server session restored from a session ticket. The session id
+     * is the one sent by the client.
+     * 
+     * @param cipher_suite
+     * @param creationTime
+     */
+    SSLSessionImpl(CipherSuite cipher_suite, long creationTime) {
+        this.creationTime = creationTime;
+        lastAccessedTime = creationTime;
+        this.cipherSuite = cipher_suite;
+        id = new byte[0];
+        isServer = true;
+    }
+
     public int getApplicationBufferSize() {
         return SSLRecordProtocol.MAX_DATA_LENGTH;
     }
@@ -309,7 +329,7 @@ public class SSLSessionImpl implements SSLSession, Cloneable  {
 
     public boolean isValid() {
         if (isValid && context != null && context.getSessionTimeout() != 0
-                && lastAccessedTime + context.getSessionTimeout() > System.currentTimeMillis()) {
+                && System.currentTimeMillis() - lastAccessedTime >= context.getSessionTimeout() * 1000L) {
             isValid = false;
         }
         return isValid;
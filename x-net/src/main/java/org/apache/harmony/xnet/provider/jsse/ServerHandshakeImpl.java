@@ -292,7 +292,16 @@ public class ServerHandshakeImpl extends HandshakeProtocol {
 
                     clientFinished = new Finished(io_stream, length);
                     verifyFinished(clientFinished.getData());
-                    parameters.getServerSessionContext().putSession(session);
+                    if (!isResuming && serverHello.session_ticket) {
+                        sendNewSessionTicket();
+                    }
+                    if (newSessionTicket != null
+                            && newSessionTicket.ticket.length != 0) {
+                        // the client holds the state of the session
+                        session.context = parameters.getServerSessionContext();
+                    } else {
+                        parameters.getServerSessionContext().putSession(session);
+                    }
                     if (!isResuming) {
                         sendChangeCipherSpec();
                     } else {
@@ -368,6 +377,9 @@ public class ServerHandshakeImpl extends HandshakeProtocol {
         }
 
         isResuming = false;
+        SSLSessionContextImpl context = parameters.getServerSessionContext();
+        boolean useTicket = clientHello.session_ticket != null
+                && context.getSessionTicketsEnabled();
         FIND: if (clientHello.session_id.length != 0) {
             // client wishes to reuse session
 
@@ -384,8 +396,17 @@ public class ServerHandshakeImpl extends HandshakeProtocol {
                 reuseCurrent = true;
             }
             
-            // find session in cash
-            sessionToResume = findSessionToResume(clientHello.session_id);
+            // restore session from the ticket, or find it in cash
+            sessionToResume = null;
+            if (useTicket && clientHello.session_ticket.length != 0) {
+                sessionToResume = context.resumeTicket(clientHello.session_ticket);
+                if (sessionToResume != null) {
+                    sessionToResume.id = clientHello.session_id.clone();
+                }
+            }
+            if (sessionToResume == null) {
+                sessionToResume = findSessionToResume(clientHello.session_id);
+            }
             if (sessionToResume == null || !sessionToResume.isValid()) {
                 if (!parameters.getEnableSessionCreation()) {
                     if (reuseCurrent) {
@@ -437,10 +458,14 @@ public class ServerHandshakeImpl extends HandshakeProtocol {
         // create server hello message
         serverHello = new ServerHello(parameters.getSecureRandom(), 
                 clientHello.client_version,
-                session.getId(), cipher_suite, (byte) 0); //CompressionMethod.null
+                session.getId(), cipher_suite, (byte) 0, //CompressionMethod.null
+                useTicket);
         session.serverRandom = serverHello.random;
         send(serverHello);
         if (isResuming) {
+            if (useTicket) {
+                sendNewSessionTicket();
+            }
             sendChangeCipherSpec();
             return;
         }
@@ -658,6 +683,19 @@ public class ServerHandshakeImpl extends HandshakeProtocol {
         }
     }
 
+    /*
+     * Sends the ticket holding the state of the session, or an empty ticket
+     * if it can not be issued, in which case the session is cached.
+     */
+    private void sendNewSessionTicket() {
+        SSLSessionContextImpl context = parameters.getServerSessionContext();
+        session.lastAccessedTime = System.currentTimeMillis();
+        byte[] ticket = context.issueTicket(session, parameters.getSecureRandom());
+        newSessionTicket = new NewSessionTicket(context.getSessionTimeout(),
+                ticket == null ? new byte[0] : ticket);
+        send(newSessionTicket);
+    }
+
     // find session in the session hash
     private SSLSessionImpl findSessionToResume(byte[] session_id) {
         return (SSLSessionImpl)parameters.getServerSessionContext().getSession(session_id);
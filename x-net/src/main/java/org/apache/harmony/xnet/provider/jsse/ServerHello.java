@@ -54,6 +54,12 @@ public class ServerHello extends Message {
      */
     byte compression_method;
 
+    /**
+     * True if the server will send a new session ticket
+     * @see RFC 5077, 3.2. SessionTicket TLS Extension
+     */
+    boolean session_ticket;
+
     /**
      * Creates outbound message
      * @param sr
@@ -64,6 +70,22 @@ public class ServerHello extends Message {
      */
     public ServerHello(SecureRandom sr, byte[] server_version,
             byte[] session_id, CipherSuite cipher_suite, byte compression_method) {
+        this(sr, server_version, session_id, cipher_suite, compression_method, false);
+    }
+
+    /**
+     * Creates outbound message with the session ticket extension if the
+     * server will send a new session ticket
+     * @param sr
+     * @param server_version
+     * @param session_id
+     * @param cipher_suite
+     * @param compression_method
+     * @param session_ticket
+     */
+    public ServerHello(SecureRandom sr, byte[] server_version,
+            byte[] session_id, CipherSuite cipher_suite, byte compression_method,
+            boolean session_ticket) {
         long gmt_unix_time = new java.util.Date().getTime() / 1000;
         sr.nextBytes(random);
         random[0] = (byte) ((gmt_unix_time & 0xFF000000) >>> 24);
@@ -74,7 +96,11 @@ public class ServerHello extends Message {
         this.cipher_suite = cipher_suite;
         this.compression_method = compression_method;
         this.server_version = server_version;
+        this.session_ticket = session_ticket;
         length = 38 + session_id.length;
+        if (session_ticket) {
+            length += 6;
+        }
     }
 
     /**
@@ -96,6 +122,28 @@ public class ServerHello extends Message {
         cipher_suite = CipherSuite.getByCode(b0, b1);
         compression_method = (byte) in.read();
         this.length = 38 + session_id.length;
+        if (this.length + 2 <= length) {
+            // hello extensions
+            int extensions = in.readUint16();
+            this.length += 2 + extensions;
+            if (this.length != length) {
+                fatalAlert(AlertProtocol.DECODE_ERROR, "DECODE ERROR: incorrect ServerHello");
+            }
+            while (extensions > 0) {
+                int type = in.readUint16();
+                int extension_length = in.readUint16();
+                extensions -= 4 + extension_length;
+                if (extensions < 0) {
+                    fatalAlert(AlertProtocol.DECODE_ERROR,
+                            "DECODE ERROR: incorrect ServerHello extensions");
+                }
+                if (type == Handshake.EXT_SESSION_TICKET && extension_length == 0) {
+                    session_ticket = true;
+                } else {
+                    in.skip(extension_length);
+                }
+            }
+        }
         if (this.length != length) {
             fatalAlert(AlertProtocol.DECODE_ERROR, "DECODE ERROR: incorrect ServerHello");
         }
@@ -115,6 +163,12 @@ public class ServerHello extends Message {
         out.write(cipher_suite.toBytes());
         out.write(compression_method);
         length = 38 + session_id.length;
+        if (session_ticket) {
+            out.writeUint16(4);
+            out.writeUint16(Handshake.EXT_SESSION_TICKET);
+            out.writeUint16(0);
+            length += 6;
+        }
     }
 
     /**
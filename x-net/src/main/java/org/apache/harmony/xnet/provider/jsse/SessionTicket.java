@@ -0,0 +1,264 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encodes the state of a server session into a session ticket, and restores
+ * the session from it. The ticket is protected with AES in CBC mode and
+ * HMAC-SHA256, in the format recommended by RFC 5077:
+ *
+ * <pre>
+ * struct {
+ *     opaque key_name[16];
+ *     opaque iv[16];
+ *     opaque encrypted_state&lt;0..2^16-1&gt;;
+ *     opaque mac[32];
+ * } ticket;
+ * </pre>
+ *
+ * @see RFC 5077, 4. Recommended Ticket Construction
+ */
+final class SessionTicket {
+
+    /**
+     * The keys protecting the tickets, derived from a secret
+     */
+    static final class Keys {
+
+        final byte[] name;
+
+        final SecretKeySpec encryptionKey;
+
+        final SecretKeySpec macKey;
+
+        Keys(byte[] secret) throws GeneralSecurityException {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, MAC_ALGORITHM));
+            name = new byte[NAME_LENGTH];
+            System.arraycopy(mac.doFinal("key name".getBytes()), 0, name, 0, NAME_LENGTH);
+            byte[] key = new byte[16];
+            System.arraycopy(mac.doFinal("encryption key".getBytes()), 0, key, 0, 16);
+            encryptionKey = new SecretKeySpec(key, "AES");
+            macKey = new SecretKeySpec(mac.doFinal("mac key".getBytes()), MAC_ALGORITHM);
+        }
+    }
+
+    private static final String CIPHER_ALGORITHM = "AES/CBC/PKCS5Padding";
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private static final int NAME_LENGTH = 16;
+
+    private static final int IV_LENGTH = 16;
+
+    private static final int MAC_LENGTH = 32;
+
+    private static final int MAX_STATE_LENGTH = 0xFFFF;
+
+    // version of the encoded session state
+    private static final int STATE_VERSION = 1;
+
+    private SessionTicket() {
+    }
+
+    /**
+     * Returns the ticket for the session, or null if its state is too large
+     * to fit in a ticket.
+     */
+    static byte[] encode(SSLSessionImpl session, Keys keys, SecureRandom sr)
+            throws GeneralSecurityException {
+        byte[] state;
+        try {
+            state = encodeState(session);
+        } catch (IOException e) {
+            // writes to memory only
+            throw new AssertionError(e);
+        }
+        byte[] iv = new byte[IV_LENGTH];
+        sr.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, keys.encryptionKey, new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(state);
+        Arrays.fill(state, (byte) 0);
+        if (encrypted.length > MAX_STATE_LENGTH) {
+            return null;
+        }
+
+        int macOffset = NAME_LENGTH + IV_LENGTH + 2 + encrypted.length;
+        byte[] ticket = new byte[macOffset + MAC_LENGTH];
+        System.arraycopy(keys.name, 0, ticket, 0, NAME_LENGTH);
+        System.arraycopy(iv, 0, ticket, NAME_LENGTH, IV_LENGTH);
+        ticket[NAME_LENGTH + IV_LENGTH] = (byte) (encrypted.length >>> 8);
+        ticket[NAME_LENGTH + IV_LENGTH + 1] = (byte) encrypted.length;
+        System.arraycopy(encrypted, 0, ticket, NAME_LENGTH + IV_LENGTH + 2, encrypted.length);
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(keys.macKey);
+        mac.update(ticket, 0, macOffset);
+        mac.doFinal(ticket, macOffset);
+        return ticket;
+    }
+
+    /**
+     * Restores the server session from a ticket protected with one of the
+     * given keys. Returns null if the ticket was not issued with any of
+     * them, or has been altered.
+     */
+    static SSLSessionImpl decode(byte[] ticket, Keys[] keys) {
+        int stateLength = ticket.length - NAME_LENGTH - IV_LENGTH - 2 - MAC_LENGTH;
+        if (stateLength <= 0
+                || stateLength != (((ticket[NAME_LENGTH + IV_LENGTH] & 0xFF) << 8)
+                        | (ticket[NAME_LENGTH + IV_LENGTH + 1] & 0xFF))) {
+            return null;
+        }
+        Keys ticketKeys = null;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && regionEquals(keys[i].name, ticket, 0)) {
+                ticketKeys = keys[i];
+                break;
+            }
+        }
+        if (ticketKeys == null) {
+            return null;
+        }
+        try {
+            int macOffset = ticket.length - MAC_LENGTH;
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(ticketKeys.macKey);
+            mac.update(ticket, 0, macOffset);
+            byte[] expected = mac.doFinal();
+            byte[] actual = new byte[MAC_LENGTH];
+            System.arraycopy(ticket, macOffset, actual, 0, MAC_LENGTH);
+            if (!MessageDigest.isEqual(expected, actual)) {
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, ticketKeys.encryptionKey,
+                    new IvParameterSpec(ticket, NAME_LENGTH, IV_LENGTH));
+            byte[] state = cipher.doFinal(ticket, NAME_LENGTH + IV_LENGTH + 2, stateLength);
+            try {
+                return decodeState(state);
+            } finally {
+                Arrays.fill(state, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encodeState(SSLSessionImpl session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(STATE_VERSION);
+        out.write(session.protocol.version);
+        out.write(session.cipherSuite.toBytes());
+        out.writeByte(session.master_secret.length);
+        out.write(session.master_secret);
+        out.writeLong(session.getCreationTime());
+        out.writeLong(session.lastAccessedTime);
+        writeCertificates(out, session.localCertificates);
+        writeCertificates(out, session.peerCertificates);
+        return bytes.toByteArray();
+    }
+
+    private static SSLSessionImpl decodeState(byte[] state) throws IOException,
+            GeneralSecurityException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(state));
+        if (in.readUnsignedByte() != STATE_VERSION) {
+            return null;
+        }
+        byte[] version = new byte[2];
+        in.readFully(version);
+        ProtocolVersion protocol = ProtocolVersion.getByVersion(version);
+        CipherSuite cipherSuite = CipherSuite.getByCode(in.readByte(), in.readByte());
+        if (protocol == null || cipherSuite == null || !cipherSuite.supported) {
+            return null;
+        }
+        byte[] masterSecret = new byte[in.readUnsignedByte()];
+        in.readFully(masterSecret);
+        long creationTime = in.readLong();
+        SSLSessionImpl session = new SSLSessionImpl(cipherSuite, creationTime);
+        session.protocol = protocol;
+        session.master_secret = masterSecret;
+        session.lastAccessedTime = in.readLong();
+        session.localCertificates = readCertificates(in);
+        session.peerCertificates = readCertificates(in);
+        return session;
+    }
+
+    private static void writeCertificates(DataOutputStream out,
+            X509Certificate[] certs) throws IOException {
+        if (certs == null) {
+            out.writeShort(0);
+            return;
+        }
+        out.writeShort(certs.length);
+        for (int i = 0; i < certs.length; i++) {
+            byte[] encoded;
+            try {
+                encoded = certs[i].getEncoded();
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e.getMessage());
+            }
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        }
+    }
+
+    private static X509Certificate[] readCertificates(DataInputStream in)
+            throws IOException, GeneralSecurityException {
+        int count = in.readUnsignedShort();
+        if (count == 0) {
+            return null;
+        }
+        CertificateFactory cf = CertificateFactory.getInstance("X509");
+        X509Certificate[] certs = new X509Certificate[count];
+        for (int i = 0; i < count; i++) {
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            certs[i] = (X509Certificate) cf.generateCertificate(new ByteArrayInputStream(encoded));
+        }
+        return certs;
+    }
+
+    private static boolean regionEquals(byte[] name, byte[] ticket, int offset) {
+        int diff = 0;
+        for (int i = 0; i < name.length; i++) {
+            diff |= name[i] ^ ticket[offset + i];
+        }
+        return diff == 0;
+    }
+}
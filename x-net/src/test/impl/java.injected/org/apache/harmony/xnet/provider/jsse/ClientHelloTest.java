@@ -80,4 +80,47 @@ public class ClientHelloTest extends TestCase {
                                                      // ignored
 	}
 
+    /*
+     * Test for ClientHello(SecureRandom, byte[], byte[], CipherSuite[], byte[])
+     * and the session ticket extension
+     */
+    public void testClientHelloSessionTicket() throws Exception {
+        byte[] ses_id = new byte[] {1,2,3,4,5,6,7,8,9,0};
+        byte[] version = new byte[] {3, 1 };
+        CipherSuite[] cipher_suite = new CipherSuite[] {
+                CipherSuite.TLS_RSA_WITH_RC4_128_MD5};
+        byte[] ticket = new byte[] {10, 20, 30};
+        ClientHello message = new ClientHello(new SecureRandom(), version,
+                ses_id, cipher_suite, ticket);
+        assertEquals("incorrect length", 60, message.length());
+
+        HandshakeIODataStream out = new HandshakeIODataStream();
+        message.send(out);
+        byte[] encoded = out.getData(1000);
+        assertEquals("incorrect out data length", message.length(), encoded.length);
+
+        HandshakeIODataStream in = new HandshakeIODataStream();
+        in.append(encoded);
+        ClientHello message_2 = new ClientHello(in, message.length());
+        assertTrue("Incorrect session ticket decoding",
+                Arrays.equals(ticket, message_2.session_ticket));
+
+        message = new ClientHello(new SecureRandom(), version, ses_id,
+                cipher_suite, new byte[0]);
+        out = new HandshakeIODataStream();
+        message.send(out);
+        in.append(out.getData(1000));
+        message_2 = new ClientHello(in, message.length());
+        assertEquals("Incorrect empty session ticket decoding", 0,
+                message_2.session_ticket.length);
+
+        message = new ClientHello(new SecureRandom(), version, ses_id,
+                cipher_suite);
+        out = new HandshakeIODataStream();
+        message.send(out);
+        in.append(out.getData(1000));
+        assertNull("Unexpected session ticket",
+                new ClientHello(in, message.length()).session_ticket);
+    }
+
 }
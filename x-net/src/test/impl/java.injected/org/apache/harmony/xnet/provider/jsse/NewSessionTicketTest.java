@@ -0,0 +1,59 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.harmony.xnet.provider.jsse;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for <code>NewSessionTicket</code> constructor and methods
+ *  
+ */
+public class NewSessionTicketTest extends TestCase {
+
+    public void testNewSessionTicket() throws Exception {
+        byte[] ticket = new byte[] { 1, 2, 3, 4, 5 };
+        NewSessionTicket message = new NewSessionTicket(3600, ticket);
+        assertEquals("incorrect type", Handshake.NEW_SESSION_TICKET, message
+                .getType());
+        assertEquals("incorrect length", 11, message.length());
+
+        HandshakeIODataStream out = new HandshakeIODataStream();
+        message.send(out);
+        byte[] encoded = out.getData(1000);
+        assertEquals("incorrect out data length", message.length(),
+                encoded.length);
+
+        HandshakeIODataStream in = new HandshakeIODataStream();
+        in.append(encoded);
+        NewSessionTicket message_2 = new NewSessionTicket(in, message.length());
+        assertEquals("incorrect message decoding", 3600,
+                message_2.ticket_lifetime_hint);
+        assertTrue("incorrect message decoding", Arrays.equals(ticket,
+                message_2.ticket));
+
+        in.append(encoded);
+        try {
+            new NewSessionTicket(in, message.length() + 1);
+            fail("Big length: No expected AlertException");
+        } catch (AlertException e) {
+        }
+    }
+
+}
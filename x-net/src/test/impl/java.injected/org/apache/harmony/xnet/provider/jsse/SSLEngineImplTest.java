@@ -86,7 +86,8 @@ public class SSLEngineImplTest extends TestCase {
      * Tests the session negotiation process.
      */
     public void testHandshake() throws Exception {
-        SSLEngine client = getEngine();
+        // no peer, so that no cached session is resumed
+        SSLEngine client = JSSETestData.getContext().createSSLEngine();
         SSLEngine server = getEngine();
 
         initEngines(client, server);
@@ -17,6 +17,7 @@
 
 package org.apache.harmony.xnet.provider.jsse;
 
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.security.SecureRandom;
 
@@ -84,4 +85,132 @@ public class SSLSessionContextImplTest extends TestCase {
         }
     }
 
+    public void testLeastRecentlyUsedRemoved() {
+        SecureRandom sr = new SecureRandom();
+        SSLSessionContextImpl context = new SSLSessionContextImpl();
+        SSLSessionImpl[] ses = new SSLSessionImpl[3];
+        for (int i = 0; i < ses.length; i++) {
+            ses[i] = new SSLSessionImpl(CipherSuite.TLS_RSA_WITH_RC4_128_MD5, sr);
+            context.putSession(ses[i]);
+        }
+        context.setSessionCacheSize(2);
+        assertNull(context.getSession(ses[0].getId()));
+        assertSame(ses[1], context.getSession(ses[1].getId()));
+
+        // ses[2] is now the least recently used
+        context.putSession(new SSLSessionImpl(CipherSuite.TLS_RSA_WITH_RC4_128_MD5, sr));
+        assertNull(context.getSession(ses[2].getId()));
+        assertSame(ses[1], context.getSession(ses[1].getId()));
+    }
+
+    public void testExpiredSessionRemoved() {
+        SecureRandom sr = new SecureRandom();
+        SSLSessionContextImpl context = new SSLSessionContextImpl();
+        context.setSessionTimeout(100);
+        SSLSessionImpl ses1 = new SSLSessionImpl(
+                CipherSuite.TLS_RSA_WITH_RC4_128_MD5, sr);
+        SSLSessionImpl ses2 = new SSLSessionImpl(
+                CipherSuite.TLS_RSA_WITH_RC4_128_MD5, sr);
+        context.putSession(ses1);
+        context.putSession(ses2);
+        assertSame(ses1, context.getSession(ses1.getId()));
+
+        ses1.lastAccessedTime -= 100 * 1000;
+        assertNull(context.getSession(ses1.getId()));
+        assertFalse(ses1.isValid());
+        assertSame(ses2, context.getSession(ses2.getId()));
+
+        ses2.invalidate();
+        assertNull(context.getSession(ses2.getId()));
+        assertFalse(context.getIds().hasMoreElements());
+    }
+
+    public void testGetSessionByPeer() {
+        SecureRandom sr = new SecureRandom();
+        SSLSessionContextImpl context = new SSLSessionContextImpl();
+        SSLSessionImpl ses1 = new SSLSessionImpl(sr);
+        ses1.id = new byte[] { 1 };
+        ses1.setPeer("localhost", 443);
+        SSLSessionImpl ses2 = new SSLSessionImpl(sr);
+        ses2.id = new byte[] { 2 };
+        ses2.setPeer("localhost", 8443);
+        context.putSession(ses1);
+        context.putSession(ses2);
+
+        assertSame(ses1, context.getSession("localhost", 443));
+        assertSame(ses2, context.getSession("localhost", 8443));
+        assertNull(context.getSession("localhost", 80));
+
+        // the most recent session with the peer is resumed
+        SSLSessionImpl ses3 = new SSLSessionImpl(sr);
+        ses3.id = new byte[] { 3 };
+        ses3.setPeer("localhost", 443);
+        context.putSession(ses3);
+        assertSame(ses3, context.getSession("localhost", 443));
+
+        ses3.invalidate();
+        assertNull(context.getSession("localhost", 443));
+        assertSame(ses1, context.getSession(ses1.getId()));
+    }
+
+    public void testSessionTickets() {
+        SecureRandom sr = new SecureRandom();
+        SSLSessionContextImpl context = new SSLSessionContextImpl();
+        assertFalse(context.getSessionTicketsEnabled());
+        context.setSessionTicketsEnabled(true);
+        assertTrue(context.getSessionTicketsEnabled());
+        context.setSessionTicketKey("0123456789abcdef".getBytes());
+
+        SSLSessionImpl ses = new SSLSessionImpl(
+                CipherSuite.TLS_RSA_WITH_RC4_128_SHA, sr);
+        ses.protocol = ProtocolVersion.TLSv1;
+        ses.master_secret = new byte[48];
+        sr.nextBytes(ses.master_secret);
+        byte[] ticket = context.issueTicket(ses, sr);
+        assertNotNull(ticket);
+
+        // the server keeps no state, any context with the key resumes
+        SSLSessionContextImpl other = new SSLSessionContextImpl();
+        other.setSessionTicketKey("0123456789abcdef".getBytes());
+        SSLSessionImpl resumed = other.resumeTicket(ticket);
+        assertNotNull(resumed);
+        assertTrue(resumed.isServer);
+        assertSame(other, resumed.context);
+        assertEquals(ses.cipherSuite, resumed.cipherSuite);
+        assertEquals(ses.protocol, resumed.protocol);
+        assertEquals(ses.getCreationTime(), resumed.getCreationTime());
+        assertTrue(Arrays.equals(ses.master_secret, resumed.master_secret));
+        assertFalse(other.getIds().hasMoreElements());
+
+        // tickets of the previous key are still accepted
+        other.setSessionTicketKey("fedcba9876543210".getBytes());
+        assertNotNull(other.resumeTicket(ticket));
+        other.setSessionTicketKey("0000000000000000".getBytes());
+        assertNull(other.resumeTicket(ticket));
+
+        ticket[ticket.length / 2] ^= 1;
+        assertNull(context.resumeTicket(ticket));
+        assertNull(context.resumeTicket(new byte[10]));
+
+        try {
+            context.setSessionTicketKey(new byte[15]);
+            fail("No expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testExpiredTicketRejected() {
+        SecureRandom sr = new SecureRandom();
+        SSLSessionContextImpl context = new SSLSessionContextImpl();
+        context.setSessionTimeout(100);
+        SSLSessionImpl ses = new SSLSessionImpl(
+                CipherSuite.TLS_RSA_WITH_RC4_128_SHA, sr);
+        ses.protocol = ProtocolVersion.SSLv3;
+        ses.master_secret = new byte[48];
+        assertNotNull(context.resumeTicket(context.issueTicket(ses, sr)));
+
+        ses.lastAccessedTime -= 100 * 1000;
+        assertNull(context.resumeTicket(context.issueTicket(ses, sr)));
+    }
+
 }
\ No newline at end of file
@@ -80,4 +80,41 @@ public class ServerHelloTest extends TestCase {
         }
     }
 
+    public void testServerHelloSessionTicket() throws Exception {
+        byte[] session_id = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 0 };
+        CipherSuite cipher_suite = CipherSuite.TLS_RSA_WITH_RC4_128_MD5;
+        byte[] server_version = new byte[] { 3, 1 };
+        ServerHello message = new ServerHello(new SecureRandom(),
+                server_version, session_id, cipher_suite, (byte) 0, true);
+        assertEquals("incorrect length", 54, message.length());
+
+        HandshakeIODataStream out = new HandshakeIODataStream();
+        message.send(out);
+        byte[] encoded = out.getData(1000);
+        assertEquals("incorrect out data length", message.length(),
+                encoded.length);
+
+        HandshakeIODataStream in = new HandshakeIODataStream();
+        in.append(encoded);
+        ServerHello message_2 = new ServerHello(in, message.length());
+        assertTrue("incorrect session ticket decoding", message_2.session_ticket);
+        assertEquals("incorrect message decoding", message.cipher_suite,
+                message_2.cipher_suite);
+
+        // unknown extensions are ignored
+        in.append(new byte[] { 3, 1 });
+        in.append(message.random);
+        in.append(new byte[] { 0, 0, 4, 0, 0, 9, (byte) 0xFF, 1, 0, 1, 0,
+                0, 0x23, 0, 0 });
+        message_2 = new ServerHello(in, 49);
+        assertTrue("incorrect session ticket decoding", message_2.session_ticket);
+
+        in.append(encoded);
+        try {
+            new ServerHello(in, message.length() - 1);
+            fail("Small length: No expected AlertException");
+        } catch (AlertException e) {
+        }
+    }
+
 }
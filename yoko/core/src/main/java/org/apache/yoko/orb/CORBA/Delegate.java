@@ -562,6 +562,11 @@ public final class Delegate extends org.omg.CORBA_2_4.portable.Delegate {
 
     public void releaseReply(org.omg.CORBA.Object self,
             org.omg.CORBA.portable.InputStream in) {
+        //
+        // The stub is done with the reply, so its data can be reused
+        //
+        if (in instanceof InputStream)
+            ((InputStream) in)._OB_buffer().release();
     }
 
     public org.omg.CORBA.Policy get_policy(org.omg.CORBA.Object self,
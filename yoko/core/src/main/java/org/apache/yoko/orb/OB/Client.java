@@ -28,6 +28,8 @@ public abstract class Client {
     //
     final public static int Blocking = 0;
 
+    final public static int Reactive = 1;
+
     final public static int Threaded = 2;
 
     protected int concModel_;
@@ -55,6 +55,11 @@ final public class DispatchRequest_impl extends org.omg.CORBA.LocalObject
     public void invoke() {
         poa_._OB_dispatch(oid_, upcall_);
 
+        //
+        // The upcall is complete, so the request data can be reused
+        //
+        upcall_.input()._OB_buffer().release();
+
         upcall_ = null;
     }
 }
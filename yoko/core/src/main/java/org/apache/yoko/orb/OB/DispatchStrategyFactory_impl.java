@@ -321,30 +321,14 @@ public class DispatchStrategyFactory_impl extends org.omg.CORBA.LocalObject
             } else if (value.equals("thread_per_request")) {
                 logger.fine("Using thread per request dispatch strategy"); 
                 return create_thread_per_request_strategy();
-            } else if (value.equals("thread_pool")) {
+            } else if (value.equals("thread_pool")
+                    || value.equals("reactive")) {
                 //
-                // If there is no default thread pool yet then create one,
-                // with a default of 10 threads.
+                // The reactive model must not run the servants on its
+                // I/O threads, so it dispatches to the thread pool too
                 //
-                if (!haveDefaultThreadPool_) {
-                    haveDefaultThreadPool_ = true;
-                    value = properties.getProperty("yoko.orb.oa.thread_pool");
-                    int nthreads = 0;
-                    if (value != null) {
-                        nthreads = Integer.parseInt(value);
-                    }
-                    if (nthreads == 0) {
-                        nthreads = 10;
-                    }
-                    logger.fine("Creating a thread pool of size " + nthreads); 
-                    defaultThreadPool_ = create_thread_pool(nthreads);
-                }
-                try {
-                    logger.fine("Using a thread pool dispatch strategy"); 
-                    return create_thread_pool_strategy(defaultThreadPool_);
-                } catch (InvalidThreadPool ex) {
-                    Assert._OB_assert(ex);
-                }
+                logger.fine("Using a thread pool dispatch strategy"); 
+                return _OB_getDefaultThreadPoolStrategy();
             } else {
                 String err = "yoko.orb.oa.conc_model: Unknown value `";
                 err += value;
@@ -373,6 +357,35 @@ public class DispatchStrategyFactory_impl extends org.omg.CORBA.LocalObject
         orbInstance_ = orbInstance;
     }
 
+    //
+    // Returns a strategy dispatching to the default thread pool. If
+    // there is no default thread pool yet then create one, with the
+    // number of threads given by yoko.orb.oa.thread_pool or a default
+    // of 10 threads.
+    //
+    public synchronized DispatchStrategy _OB_getDefaultThreadPoolStrategy() {
+        if (!haveDefaultThreadPool_) {
+            String value = orbInstance_.getProperties().getProperty(
+                    "yoko.orb.oa.thread_pool");
+            int nthreads = 0;
+            if (value != null) {
+                nthreads = Integer.parseInt(value);
+            }
+            if (nthreads == 0) {
+                nthreads = 10;
+            }
+            logger.fine("Creating a thread pool of size " + nthreads); 
+            defaultThreadPool_ = create_thread_pool(nthreads);
+            haveDefaultThreadPool_ = true;
+        }
+        try {
+            return create_thread_pool_strategy(defaultThreadPool_);
+        } catch (InvalidThreadPool ex) {
+            Assert._OB_assert(ex);
+            return null;
+        }
+    }
+
     protected synchronized void _OB_destroy() {
         //
         // The ORB destroys this object, so it's an initialization error
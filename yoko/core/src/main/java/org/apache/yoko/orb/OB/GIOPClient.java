@@ -212,9 +212,21 @@ final class GIOPClient extends Client {
             //
             // Create new worker
             //
-            Assert._OB_assert(concModel_ == Threaded);
-            connection_ = new GIOPConnectionThreaded(orbInstance_, transport,
-                    this);
+            Assert._OB_assert(concModel_ == Threaded || concModel_ == Reactive);
+            java.nio.channels.SelectableChannel channel = null;
+            if (concModel_ == Reactive)
+                channel = GIOPConnectionReactive.selectableChannel(transport);
+
+            //
+            // Fall back to the threaded model if the transport can't be
+            // used with the reactor
+            //
+            if (channel != null)
+                connection_ = new GIOPConnectionReactive(orbInstance_,
+                        transport, channel, this);
+            else
+                connection_ = new GIOPConnectionThreaded(orbInstance_,
+                        transport, this);
             ownsWorker_ = true;
 
             //
@@ -510,7 +522,7 @@ final class GIOPClient extends Client {
             org.apache.yoko.orb.OCI.ProfileInfo profileInfo = down
                     .profileInfo();
             org.apache.yoko.orb.OCI.Buffer buf = new org.apache.yoko.orb.OCI.Buffer(
-                    12);
+                    12, true);
             buf.pos(12);
             out.value = new org.apache.yoko.orb.CORBA.OutputStream(buf,
                     codeConverters(), (profileInfo.major << 8)
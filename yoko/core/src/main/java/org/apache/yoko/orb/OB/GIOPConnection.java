@@ -23,6 +23,7 @@ import org.omg.IOP.ServiceContext;
 import org.omg.SendingContext.CodeBase;
 
 abstract public class GIOPConnection implements DowncallEmitter, UpcallReturn {
+    static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(GIOPConnection.class.getName());
     // ----------------------------------------------------------------
     // Inner classes
     // ----------------------------------------------------------------
@@ -175,6 +176,11 @@ abstract public class GIOPConnection implements DowncallEmitter, UpcallReturn {
 
     protected ACMTask acmTask_ = null;
 
+    //
+    // sending mutex to prevent multiple threads from sending at once
+    //
+    protected java.lang.Object sendMutex_ = new java.lang.Object();
+
     // ----------------------------------------------------------------
     // Protected methods
     // ----------------------------------------------------------------
@@ -363,9 +369,11 @@ abstract public class GIOPConnection implements DowncallEmitter, UpcallReturn {
 
         case org.omg.GIOP.MsgType_1_1._LocateRequest:
             processLocateRequest(msg);
+            msg.release();
             break;
 
         case org.omg.GIOP.MsgType_1_1._CancelRequest:
+            msg.release();
             break;
 
         case org.omg.GIOP.MsgType_1_1._LocateReply:
@@ -374,10 +382,12 @@ abstract public class GIOPConnection implements DowncallEmitter, UpcallReturn {
 
         case org.omg.GIOP.MsgType_1_1._CloseConnection:
             processCloseConnection(msg);
+            msg.release();
             break;
 
         case org.omg.GIOP.MsgType_1_1._MessageError:
             processMessageError(msg);
+            msg.release();
             break;
 
         case org.omg.GIOP.MsgType_1_1._Fragment:
@@ -694,7 +704,7 @@ abstract public class GIOPConnection implements DowncallEmitter, UpcallReturn {
             // Send back locate reply message
             //
             org.apache.yoko.orb.OCI.Buffer buf = new org.apache.yoko.orb.OCI.Buffer(
-                    12);
+                    12, true);
             buf.pos(12);
             org.apache.yoko.orb.CORBA.OutputStream out = new org.apache.yoko.orb.CORBA.OutputStream(
                     buf);
@@ -1019,13 +1029,180 @@ abstract public class GIOPConnection implements DowncallEmitter, UpcallReturn {
     //
     // shutdown the connection forcefully and immediately
     //
-    abstract protected void abortiveShutdown();
+    protected void abortiveShutdown() {
+        //
+        // disable any ACM timeouts now
+        //
+        ACM_disableIdleMonitor();
+
+        //
+        // The transport must be able to send in order to send the error
+        // message...
+        // 
+        if (transport_.mode() != org.apache.yoko.orb.OCI.SendReceiveMode.ReceiveOnly) {
+            try {
+                //
+                // Send a MessageError message
+                //
+                org.apache.yoko.orb.OCI.Buffer buf = new org.apache.yoko.orb.OCI.Buffer(
+                        12, true);
+                org.apache.yoko.orb.CORBA.OutputStream out = new org.apache.yoko.orb.CORBA.OutputStream(
+                        buf);
+
+                org.apache.yoko.orb.OCI.ProfileInfo profileInfo = new org.apache.yoko.orb.OCI.ProfileInfo();
+
+                synchronized (this) {
+                    profileInfo.major = giopVersion_.major;
+                    profileInfo.minor = giopVersion_.minor;
+                }
+
+                GIOPOutgoingMessage outgoing = new GIOPOutgoingMessage(
+                        orbInstance_, out, profileInfo);
+
+                outgoing.writeMessageHeader(
+                        org.omg.GIOP.MsgType_1_1.MessageError, false, 0);
+                out._OB_pos(0);
+
+                synchronized (sendMutex_) {
+                    transport_.send(out._OB_buffer(), true);
+                }
+                Assert._OB_assert(out._OB_buffer().is_full());
+                out._OB_buffer().release();
+            } catch (org.omg.CORBA.SystemException ex) {
+                processException(State.Closed, ex, false);
+                return;
+            }
+        }
+
+        //
+        // If we are in StateError, we don't go through all the hula hoop
+        // with continuing to receive messages until the peer
+        // closes. Instead, we just close the connection, meaning that we
+        // can't be 100% sure that the peer gets the last message.
+        //
+        processException(State.Closed, new org.omg.CORBA.TRANSIENT(org.apache.yoko.orb.OB.MinorCodes
+                .describeTransient(org.apache.yoko.orb.OB.MinorCodes.MinorForcedShutdown),
+                org.apache.yoko.orb.OB.MinorCodes.MinorForcedShutdown,
+                org.omg.CORBA.CompletionStatus.COMPLETED_MAYBE), false);
+
+    }
 
     //
     // shutdown the connection gracefully
     //
     abstract protected void gracefulShutdown();
 
+    //
+    // add a CloseConnection message to the message queue
+    // Assumes 'this' is synchronized on entry
+    //
+    protected void queueCloseConnection() {
+        org.apache.yoko.orb.OCI.Buffer buf = new org.apache.yoko.orb.OCI.Buffer(
+                12, true);
+        org.apache.yoko.orb.CORBA.OutputStream out = new org.apache.yoko.orb.CORBA.OutputStream(
+                buf);
+
+        org.apache.yoko.orb.OCI.ProfileInfo profileInfo = new org.apache.yoko.orb.OCI.ProfileInfo();
+        profileInfo.major = giopVersion_.major;
+        profileInfo.minor = giopVersion_.minor;
+
+        GIOPOutgoingMessage outgoing = new GIOPOutgoingMessage(
+                orbInstance_, out, profileInfo);
+        outgoing.writeMessageHeader(
+                org.omg.GIOP.MsgType_1_1.CloseConnection, false, 0);
+
+        messageQueue_.add(orbInstance_, out._OB_buffer());
+    }
+
+    //
+    // send off the queued messages, blocking
+    //
+    protected void sendQueuedMessages() {
+        boolean msgSentMarked = false;
+
+        synchronized (this) {
+            //
+            // if we can't write messages then don't bother to proceed
+            //
+            if ((enabledOps_ & AccessOp.Write) == 0)
+                return;
+
+            //
+            // check if we've sent a message before while we are locked
+            //
+            if ((properties_ & Property.RequestSent) != 0)
+                msgSentMarked = true;
+        }
+
+        //
+        // another check if we can write or not
+        // 
+        if (transport_.mode() == org.apache.yoko.orb.OCI.SendReceiveMode.ReceiveOnly)
+            return;
+
+        //
+        // now send off any queued messages
+        // 
+        while (true) {
+            org.apache.yoko.orb.OCI.Buffer buf;
+            Downcall dummy;
+
+            try {
+                synchronized (this) {
+                    //
+                    // stop when no messages left
+                    // 
+                    if (!messageQueue_.hasUnsent())
+                        break;
+
+                    buf = messageQueue_.getFirstUnsentBuffer();
+                    buf.pos(0);
+                    dummy = messageQueue_.moveFirstUnsentToPending();
+                }
+
+                //
+                // make sure no two threads are sending at once
+                // 
+                synchronized (sendMutex_) {
+                    transport_.send(buf, true);
+                }
+
+                //
+                // check if the buffer is full
+                // Some of the OCI plugins (bidir for example) will
+                // simply return instead of throwing an exception if the
+                // send fails
+                //
+                if (!buf.is_full())
+                    throw new org.omg.CORBA.COMM_FAILURE(org.apache.yoko.orb.OB.MinorCodes
+                            .describeCommFailure(org.apache.yoko.orb.OB.MinorCodes.MinorSend),
+                            org.apache.yoko.orb.OB.MinorCodes.MinorSend,
+                            org.omg.CORBA.CompletionStatus.COMPLETED_NO);
+
+                //
+                // the message is sent, its buffer can be reused
+                //
+                buf.release();
+
+                //
+                // mark the message sent flag
+                //
+                if (!msgSentMarked && (dummy != null)) {
+                    if (dummy.responseExpected()
+                            && dummy.operation().equals("_locate")) {
+                        synchronized (this) {
+                            msgSentMarked = true;
+                            properties_ |= Property.RequestSent;
+                        }
+                    }
+                }
+            } catch (org.omg.CORBA.SystemException ex) {
+                processException(State.Closed, ex, false);
+                return;
+            }
+        }
+    }
+
     //
     // turn on ACM idle connection monitoring
     //
@@ -1586,7 +1763,243 @@ abstract public class GIOPConnection implements DowncallEmitter, UpcallReturn {
     //
     // callback method when the ACM signals a timeout
     //
-    abstract public void ACM_callback();
+    synchronized public void ACM_callback() {
+        if (acmTimer_ != null) {
+            acmTimer_.cancel();
+            acmTimer_ = null;
+        }
+
+        if (acmTask_ != null) {
+            acmTask_.cancel();
+            acmTask_ = null;
+        }
+
+        //
+        // don't shutdown if there are unsent messages or if there are
+        // upcalls in progress
+        // 
+        if (messageQueue_.hasUnsent() || (upcallsInProgress_ > 0)) {
+            ACM_enableIdleMonitor();
+            return;
+        }
+
+        //
+        // shutdown gracefully
+        //
+        setState(State.Closing);
+    }
+
+    //
+    // client-side send method (from DowncallEmitter)
+    //
+    public boolean send(Downcall down, boolean block) {
+        Assert._OB_assert(transport_.mode() != org.apache.yoko.orb.OCI.SendReceiveMode.ReceiveOnly);
+        Assert._OB_assert(down.unsent() == true);
+        
+        logger.fine("Sending a request with Downcall of type " + down.getClass().getName() + " for operation " + down.operation() + " on transport " + transport_); 
+
+        //
+        // if we send off a message in the loop, this var might help us
+        // to prevent a further locking to check the status
+        //
+        boolean msgSentMarked = false;
+
+        //
+        // if we don't have writing turned on then we must throw a
+        // TRANSIENT to the caller indicating this
+        //
+        synchronized (this) {
+            if ((enabledOps_ & AccessOp.Write) == 0) {
+                logger.fine("writing not enabled for this connection"); 
+                down.setFailureException(new org.omg.CORBA.TRANSIENT());
+                return true;
+            }
+
+            //
+            // make the downcall thread-safe
+            //
+            if (down.responseExpected()) {
+                down.initStateMonitor();
+            }
+
+            // 
+            // buffer the request
+            //
+            messageQueue_.add(orbInstance_, down);
+
+            //
+            // check the sent status while we're locked
+            //
+            if ((properties_ & Property.RequestSent) != 0) {
+                msgSentMarked = true;
+            }
+        }
+
+        //
+        // now prepare to send it either blocking or non-blocking
+        // depending on the call mode param
+        // 
+        if (block) {
+            //
+            // Get the request timeout
+            //
+            int t = down.policies().requestTimeout;
+
+            //
+            // now we can start sending off the messages
+            // 
+            while (true) {
+                //
+                // Get a message to send from the unsent queue
+                //
+                org.apache.yoko.orb.OCI.Buffer buf;
+                Downcall nextDown;
+
+                synchronized (this) {
+                    if (!down.unsent()) {
+                        break;
+                    }
+
+                    Assert._OB_assert(messageQueue_.hasUnsent());
+
+                    buf = messageQueue_.getFirstUnsentBuffer();
+                    nextDown = messageQueue_.moveFirstUnsentToPending();
+                }
+
+                //
+                // Send the message
+                //
+                try {
+                    synchronized (sendMutex_) {
+                        if (t <= 0) {
+                            //
+                            // Send buffer, blocking
+                            //
+                            transport_.send(buf, true);
+                            Assert._OB_assert(buf.is_full());
+                        } else {
+                            //
+                            // Send buffer, with timeout
+                            //
+                            transport_.send_timeout(buf, t);
+
+                            // 
+                            // Timeout?
+                            // 
+                            if (!buf.is_full()) {
+                                throw new org.omg.CORBA.NO_RESPONSE();
+                            }
+                        }
+                    }
+                } catch (org.omg.CORBA.SystemException ex) {
+                    processException(State.Closed, ex, false);
+                    return true;
+                }
+
+                buf.release();
+
+                //
+                // a message should be sent by now so we have to
+                // mark it as sent for the GIOPClient
+                //
+                if (!msgSentMarked && (nextDown != null)
+                        && !nextDown.operation().equals("_locate")) {
+                    msgSentMarked = true;
+                    properties_ |= Property.RequestSent;
+                }
+            }
+        } else // Non blocking
+        {
+            synchronized (this) {
+                while (true) {
+                    if (!down.unsent())
+                        break;
+
+                    Assert._OB_assert(messageQueue_.hasUnsent());
+
+                    //
+                    // get the first message to send
+                    //
+                    org.apache.yoko.orb.OCI.Buffer buf = messageQueue_
+                            .getFirstUnsentBuffer();
+
+                    //
+                    // send this buffer, non-blocking
+                    //
+                    try {
+                        synchronized (sendMutex_) {
+                            transport_.send(buf, false);
+                        }
+                    } catch (org.omg.CORBA.SystemException ex) {
+                        processException(State.Closed, ex, false);
+                        return true;
+                    }
+
+                    //
+                    // if the buffer isn't full, it hasn't been sent because
+                    // the call would have blocked.
+                    //
+                    if (!buf.is_full())
+                        return false;
+
+                    buf.release();
+
+                    //
+                    // now move to the pending pile
+                    //
+                    Downcall dummy = messageQueue_.moveFirstUnsentToPending();
+
+                    //
+                    // update the message sent property
+                    //
+                    if (!msgSentMarked && dummy != null) {
+                        if (dummy.responseExpected()
+                                && dummy.operation().equals("_locate")) {
+                            msgSentMarked = true;
+                            properties_ |= Property.RequestSent;
+                        }
+                    }
+                }
+            }
+        }
+
+        logger.fine(" Request send completed with Downcall of type " + down.getClass().getName()); 
+        return !down.responseExpected();
+    }
+
+    //
+    // client-side receive method (from DowncallEmitter)
+    //
+    public boolean receive(Downcall down, boolean block) {
+        logger.fine("Receiving response with Downcall of type " + down.getClass().getName() + " for operation " + down.operation() + " from transport " + transport_); 
+        //
+        // Try to receive the reply
+        //
+        try {
+            boolean result = down.waitUntilCompleted(block);
+            logger.fine("Completed eceiving response with Downcall of type " + down.getClass().getName()); 
+            return result; 
+        } catch (org.omg.CORBA.SystemException ex) {
+            processException(State.Closed, ex, false);
+            return true;
+        }
+    }
+
+    //
+    // client-side sendReceive (from DowncallEmitter)
+    //
+    public boolean sendReceive(Downcall down) {
+        ACM_disableIdleMonitor();
+
+        try {
+            if (send(down, true)) {
+                return true;
+            }
+            return receive(down, true);
+        } finally {
+            ACM_enableIdleMonitor();
+        }
+    }
 
     //
     // activate the connection
@@ -0,0 +1,386 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+*  contributor license agreements.  See the NOTICE file distributed with
+*  this work for additional information regarding copyright ownership.
+*  The ASF licenses this file to You under the Apache License, Version 2.0
+*  (the "License"); you may not use this file except in compliance with
+*  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.yoko.orb.OB;
+
+import java.util.logging.Logger;
+
+//
+// A GIOP connection of the reactive concurrency model. Instead of
+// dedicating receiver threads to the connection, its channel is
+// registered with the ORB's Reactor, and one of the reactor's I/O
+// threads reads and frames the messages as the data arrives. Complete
+// requests are handed to the dispatch strategy of their POA, so the
+// I/O threads never run servants. Messages are sent by the threads
+// issuing them, as with GIOPConnectionThreaded.
+//
+public final class GIOPConnectionReactive extends GIOPConnection {
+    static final Logger logger = Logger.getLogger(GIOPConnectionReactive.class.getName());
+
+    // ----------------------------------------------------------------
+    // Inner helper classes
+    // ----------------------------------------------------------------
+
+    //
+    // task to handle connection shutdown on the I/O thread
+    //
+    final class ShutdownTask implements Runnable {
+        public void run() {
+            try {
+                execShutdown();
+            } catch (RuntimeException ex) {
+                Assert._OB_assert(ex);
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Member data
+    // ----------------------------------------------------------------
+
+    //
+    // the registration of the channel with the reactor
+    //
+    protected Reactor.Registration registration_;
+
+    //
+    // the message being received, and its buffer; only used by the
+    // I/O thread of the connection
+    //
+    protected GIOPIncomingMessage inMsg_;
+
+    protected org.apache.yoko.orb.OCI.Buffer buf_ = null;
+
+    protected boolean haveHeader_ = false;
+
+    //
+    // are we holding or not
+    //
+    protected boolean holding_ = true;
+
+    //
+    // has the shutdown been handed to the I/O thread
+    //
+    protected boolean shutdownStarted_ = false;
+
+    //
+    // the strategy for upcalls which would otherwise run on the I/O
+    // thread
+    //
+    protected DispatchStrategy poolStrategy_ = null;
+
+    // ----------------------------------------------------------------
+    // Protected Methods
+    // ----------------------------------------------------------------
+
+    //
+    // turn reading of the channel on or off to match the state of the
+    // connection
+    //
+    protected void updateReading() {
+        boolean destroyed;
+        boolean reading;
+        synchronized (this) {
+            destroyed = (properties_ & Property.Destroyed) != 0;
+            reading = !holding_ && (enabledOps_ & AccessOp.Read) != 0;
+        }
+
+        if (destroyed)
+            registration_.cancel();
+        else
+            registration_.setReading(reading);
+    }
+
+    //
+    // hand a complete request to its dispatch strategy
+    //
+    protected void dispatch(Upcall upcall) {
+        DispatchStrategy strategy = upcall.dispatchStrategy_;
+        if (strategy == null || strategy.id() != SAME_THREAD.value) {
+            upcall.invoke();
+            return;
+        }
+
+        //
+        // The servant must not run on the I/O thread, so upcalls of a
+        // POA with the SAME_THREAD strategy go to the default thread
+        // pool instead
+        //
+        try {
+            synchronized (this) {
+                if (poolStrategy_ == null) {
+                    poolStrategy_ = ((DispatchStrategyFactory_impl) orbInstance_
+                            .getDispatchStrategyFactory())
+                            ._OB_getDefaultThreadPoolStrategy();
+                }
+            }
+            poolStrategy_.dispatch(upcall.dispatchRequest_);
+        } catch (org.omg.CORBA.SystemException ex) {
+            upcall.setSystemException(ex);
+        }
+    }
+
+    //
+    // graceful shutdown method
+    //
+    synchronized protected void gracefulShutdown() {
+        //
+        // disable any ACM idle timeouts now
+        //
+        ACM_disableIdleMonitor();
+
+        //
+        // don't shutdown if there are pending upcalls
+        // 
+        if (upcallsInProgress_ > 0 || state_ != State.Closing
+                || shutdownStarted_)
+            return;
+
+        //
+        // send a CloseConnection if we can
+        //
+        if (canSendCloseConnection())
+            queueCloseConnection();
+
+        //
+        // The caller may hold locks, so the shutdown is done on the
+        // I/O thread of the connection
+        //
+        shutdownStarted_ = true;
+        registration_.post(new ShutdownTask());
+    }
+
+    // ----------------------------------------------------------------
+    // Public Methods
+    // ----------------------------------------------------------------
+
+    //
+    // Returns the channel of the transport, switched to non-blocking
+    // mode, or null if the transport can't be used with the reactor
+    //
+    public static java.nio.channels.SelectableChannel selectableChannel(
+            org.apache.yoko.orb.OCI.Transport transport) {
+        if (!(transport instanceof org.apache.yoko.orb.OCI.SelectableTransport)
+                || transport.mode() != org.apache.yoko.orb.OCI.SendReceiveMode.SendReceive)
+            return null;
+
+        return ((org.apache.yoko.orb.OCI.SelectableTransport) transport)
+                .configureNonBlocking();
+    }
+
+    //
+    // client-side constructor
+    //
+    public GIOPConnectionReactive(ORBInstance orbInstance,
+            org.apache.yoko.orb.OCI.Transport transport,
+            java.nio.channels.SelectableChannel channel, GIOPClient client) {
+        super(orbInstance, transport, client);
+        inMsg_ = new GIOPIncomingMessage(orbInstance_);
+        registration_ = orbInstance_.getReactor().register(this, channel);
+        start();
+    }
+
+    //
+    // server-side constructor
+    //
+    public GIOPConnectionReactive(ORBInstance orbInstance,
+            org.apache.yoko.orb.OCI.Transport transport,
+            java.nio.channels.SelectableChannel channel, OAInterface oa) {
+        super(orbInstance, transport, oa);
+        inMsg_ = new GIOPIncomingMessage(orbInstance_);
+        registration_ = orbInstance_.getReactor().register(this, channel);
+    }
+
+    //
+    // called from the I/O thread to initiate shutdown
+    //
+    public void execShutdown() {
+        if (canSendCloseConnection()
+                && transport_.mode() != org.apache.yoko.orb.OCI.SendReceiveMode.ReceiveOnly) {
+            try {
+                synchronized (this) {
+                    while (messageQueue_.hasUnsent()) {
+                        //
+                        // Its possible the CloseConnection message got sent
+                        // via another means.
+                        //
+                        org.apache.yoko.orb.OCI.Buffer buf = messageQueue_
+                                .getFirstUnsentBuffer();
+                        if (buf != null) {
+                            synchronized (sendMutex_) {
+                                transport_.send(buf, true);
+                            }
+
+                            messageQueue_.moveFirstUnsentToPending();
+                            buf.release();
+                        }
+                    }
+                }
+            } catch (org.omg.CORBA.SystemException ex) {
+                processException(State.Closed, ex, false);
+                return;
+            }
+        }
+
+        //
+        // shutdown the transport and close the connection. There is no
+        // receiver thread to wait for.
+        //
+        transport_.shutdown();
+
+        processException(State.Closed, new org.omg.CORBA.TRANSIENT(org.apache.yoko.orb.OB.MinorCodes
+                .describeTransient(org.apache.yoko.orb.OB.MinorCodes.MinorForcedShutdown),
+                org.apache.yoko.orb.OB.MinorCodes.MinorForcedShutdown,
+                org.omg.CORBA.CompletionStatus.COMPLETED_MAYBE), false);
+    }
+
+    //
+    // called from the I/O thread when the channel is readable; reads
+    // as much as is available without blocking
+    //
+    public void execReceive() {
+        while (true) {
+            //
+            // Setup the incoming message buffer
+            //
+            if (buf_ == null) {
+                buf_ = new org.apache.yoko.orb.OCI.Buffer(12, true);
+                haveHeader_ = false;
+            }
+
+            //
+            // Receive, non-blocking, detect connection loss
+            //
+            if (!buf_.is_full()) {
+                try {
+                    transport_.receive(buf_, false);
+                } catch (org.omg.CORBA.SystemException ex) {
+                    processException(State.Closed, ex, false);
+                    return;
+                }
+
+                //
+                // Wait for the rest of the message
+                //
+                if (!buf_.is_full())
+                    return;
+            }
+
+            if (!haveHeader_) {
+                //
+                // Header is complete
+                //
+                try {
+                    inMsg_.extractHeader(buf_);
+                    logger.fine("Header received for message of size " + inMsg_.size()); 
+                    buf_.realloc(12 + inMsg_.size());
+                } catch (org.omg.CORBA.SystemException ex) {
+                    processException(State.Error, ex, false);
+                    return;
+                }
+                haveHeader_ = true;
+
+                if (!buf_.is_full())
+                    continue;
+            }
+
+            //
+            // The message is complete. Keep it until reading is turned
+            // on again if we are holding, or are not allowed to read.
+            //
+            synchronized (this) {
+                if (holding_ || (enabledOps_ & AccessOp.Read) == 0)
+                    return;
+            }
+
+            //
+            // the upcall to invoke
+            // 
+            Upcall upcall = null;
+
+            try {
+                org.apache.yoko.orb.OCI.Buffer bufCopy = buf_;
+                buf_ = null;
+                if (inMsg_.consumeBuffer(bufCopy) == true) {
+                    upcall = processMessage(inMsg_);
+                }
+            } catch (org.omg.CORBA.SystemException ex) {
+                processException(State.Error, ex, false);
+                return;
+            }
+
+            // 
+            // A valid upcall means we have a full message and not just
+            // a fragment or error, so we can proceed to dispatch it
+            // 
+            if (upcall != null) {
+                logger.fine("Processing message using upcall " + upcall.getClass().getName()); 
+                dispatch(upcall);
+            }
+        }
+    }
+
+    //
+    // connection start (from GIOPConnection)
+    //
+    public void start() {
+        synchronized (this) {
+            holding_ = false;
+        }
+
+        updateReading();
+    }
+
+    //
+    // connection refresh status (from GIOPConnection)
+    //
+    public void refresh() {
+        //
+        // like GIOPConnectionThreaded, resume reading
+        //
+        synchronized (this) {
+            holding_ = false;
+        }
+
+        updateReading();
+
+        //
+        // now send off any queued messages
+        //
+        sendQueuedMessages();
+    }
+
+    //
+    // connection pause (from GIOPConnection)
+    //
+    public void pause() {
+        synchronized (this) {
+            holding_ = true;
+        }
+
+        updateReading();
+    }
+
+    //
+    // enabled connection 'sides' (from GIOPConnection)
+    //
+    public void enableConnectionModes(boolean client, boolean server) {
+        //
+        // do nothing
+        // 
+    }
+}
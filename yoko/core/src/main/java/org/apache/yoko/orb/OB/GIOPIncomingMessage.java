@@ -208,6 +208,17 @@ final public class GIOPIncomingMessage {
         return result;
     }
 
+    //
+    // Give the buffer of a message which was handled without handing
+    // off its input stream back to the buffer pool
+    //
+    void release() {
+        if (in_ != null) {
+            in_._OB_buffer().release();
+            in_ = null;
+        }
+    }
+
     void extractHeader(org.apache.yoko.orb.OCI.Buffer buf) {
         in_ = null;
 
@@ -445,6 +456,11 @@ final public class GIOPIncomingMessage {
                 //
                 lastFragment_.add(orbInstance_, buf);
 
+                //
+                // The data was copied, the Fragment message is done with
+                //
+                buf.release();
+
                 //
                 // If we haven't read the request ID yet, then try to
                 // get it now
@@ -523,6 +539,8 @@ final public class GIOPIncomingMessage {
                         complete = frag;
                     }
                 }
+
+                buf.release();
             }
 
             //
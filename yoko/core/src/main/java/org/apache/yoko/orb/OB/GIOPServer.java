@@ -61,8 +61,9 @@ final class GIOPServer extends Server {
         try {
             switch (concModel_) {
             case Threaded:
+            case Reactive:
                 starter_ = new GIOPServerStarterThreaded(orbInstance_,
-                        acceptor_, oaInterface_);
+                        acceptor_, oaInterface_, concModel_);
                 break;
             }
         } catch (RuntimeException ex) {
@@ -61,9 +61,8 @@ final class GIOPServerStarterThreaded extends GIOPServerStarter {
                 }
 
                 try {
-                    GIOPConnection connection = new GIOPConnectionThreaded(
-                            starter_.orbInstance_, transport,
-                            starter_.oaInterface_);
+                    GIOPConnection connection = starter_
+                            .createConnection(transport);
 
                     connection.setState(GIOPConnection.State.Closing);
                 } catch (org.omg.CORBA.SystemException ex) {
@@ -85,13 +84,44 @@ final class GIOPServerStarterThreaded extends GIOPServerStarter {
 
     protected Thread starterThread_;
 
+    //
+    // The concurrency model of the connections, Server.Threaded or
+    // Server.Reactive. Connections are accepted by the starter thread
+    // in both models.
+    //
+    protected int concModel_;
+
+    // ----------------------------------------------------------------------
+    // GIOPServerStarterThreaded private and protected member implementation
+    // ----------------------------------------------------------------------
+
+    //
+    // Create a connection for an accepted transport. Reactive
+    // connections fall back to the threaded model if the transport
+    // can't be used with the reactor.
+    //
+    protected GIOPConnection createConnection(
+            org.apache.yoko.orb.OCI.Transport transport) {
+        if (concModel_ == Server.Reactive) {
+            java.nio.channels.SelectableChannel channel = GIOPConnectionReactive
+                    .selectableChannel(transport);
+            if (channel != null)
+                return new GIOPConnectionReactive(orbInstance_, transport,
+                        channel, oaInterface_);
+        }
+
+        return new GIOPConnectionThreaded(orbInstance_, transport, oaInterface_);
+    }
+
     // ----------------------------------------------------------------------
     // GIOPServerStarterThreaded package member implementation
     // ----------------------------------------------------------------------
 
     GIOPServerStarterThreaded(ORBInstance orbInstance,
-            org.apache.yoko.orb.OCI.Acceptor acceptor, OAInterface oaInterface) {
+            org.apache.yoko.orb.OCI.Acceptor acceptor, OAInterface oaInterface,
+            int concModel) {
         super(orbInstance, acceptor, oaInterface);
+        concModel_ = concModel;
 
         logger.fine("GIOPServer thread started " + this + " using acceptor " + acceptor); 
         try {
@@ -237,8 +267,7 @@ final class GIOPServerStarterThreaded extends GIOPServerStarter {
                             // If we're active, we create and add a new
                             // worker to the worker list
                             //
-                            GIOPConnection connection = new GIOPConnectionThreaded(
-                                    orbInstance_, transport, oaInterface_);
+                            GIOPConnection connection = createConnection(transport);
                             connections_.addElement(connection);
                             connection.setState(GIOPConnection.State.Active);
                         } else {
@@ -250,8 +279,7 @@ final class GIOPServerStarterThreaded extends GIOPServerStarter {
                             //
                             Assert._OB_assert(state_ == StateClosed);
 
-                            GIOPConnection connection = new GIOPConnectionThreaded(
-                                    orbInstance_, transport, oaInterface_);
+                            GIOPConnection connection = createConnection(transport);
 
                             connection.setState(GIOPConnection.State.Closing);
                         }
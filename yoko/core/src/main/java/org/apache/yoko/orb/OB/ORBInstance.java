@@ -109,6 +109,12 @@ public final class ORBInstance {
     //
     OrbAsyncHandler asyncHandler_ = null;
 
+    //
+    // the reactor of the reactive concurrency model, created with the
+    // first reactive connection
+    //
+    private Reactor reactor_ = null;
+
     // ----------------------------------------------------------------------
     // ORBInstance private and protected member implementations
     // ----------------------------------------------------------------------
@@ -343,6 +349,16 @@ public final class ORBInstance {
         //
         asyncHandler_.shutdown();
         asyncHandler_ = null;
+
+        //
+        // Destroy the reactor
+        //
+        synchronized (this) {
+            if (reactor_ != null) {
+                reactor_.destroy();
+                reactor_ = null;
+            }
+        }
     }
 
     //
@@ -478,4 +494,33 @@ public final class ORBInstance {
     public OrbAsyncHandler getAsyncHandler() {
         return asyncHandler_;
     }
+
+    //
+    // Get the reactor, starting its I/O threads on first use. The
+    // number of threads is given by yoko.orb.reactor_threads and
+    // defaults to the number of processors.
+    //
+    synchronized Reactor getReactor() {
+        if (destroy_)
+            throw new org.omg.CORBA.INITIALIZE(org.apache.yoko.orb.OB.MinorCodes
+                    .describeInitialize(org.apache.yoko.orb.OB.MinorCodes.MinorORBDestroyed),
+                    org.apache.yoko.orb.OB.MinorCodes.MinorORBDestroyed,
+                    org.omg.CORBA.CompletionStatus.COMPLETED_NO);
+
+        if (reactor_ == null) {
+            String value = properties_.getProperty("yoko.orb.reactor_threads");
+            int nthreads = 0;
+            if (value != null)
+                nthreads = Integer.parseInt(value);
+            if (nthreads <= 0)
+                nthreads = Runtime.getRuntime().availableProcessors();
+
+            //
+            // The I/O threads must not be in the worker groups, as the
+            // server shutdown waits for those to terminate
+            //
+            reactor_ = new Reactor(serverWorkerGroup_.getParent(), nthreads);
+        }
+        return reactor_;
+    }
 }
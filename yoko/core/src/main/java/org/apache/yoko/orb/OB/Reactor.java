@@ -0,0 +1,355 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+*  contributor license agreements.  See the NOTICE file distributed with
+*  this work for additional information regarding copyright ownership.
+*  The ASF licenses this file to You under the Apache License, Version 2.0
+*  (the "License"); you may not use this file except in compliance with
+*  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.yoko.orb.OB;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//
+// The reactor of the reactive concurrency model. A small, fixed set of
+// I/O threads wait on selectors for the channels of the
+// GIOPConnectionReactive connections, and let each connection read
+// whatever arrived on its channel. A connection stays with the I/O
+// thread it was registered with, so its messages are read in order by
+// a single thread.
+//
+final class Reactor {
+    static final Logger logger = Logger.getLogger(Reactor.class.getName());
+
+    // ----------------------------------------------------------------
+    // Inner helper classes
+    // ----------------------------------------------------------------
+
+    //
+    // a connection registered with an I/O thread
+    //
+    final class Registration implements Runnable {
+        private IOThread thread_;
+
+        private java.nio.channels.SelectableChannel channel_;
+
+        private GIOPConnectionReactive connection_;
+
+        //
+        // the selection key, only used by the I/O thread
+        //
+        private java.nio.channels.SelectionKey key_ = null;
+
+        //
+        // the requested state, applied by the I/O thread
+        //
+        private boolean reading_ = false;
+
+        private boolean cancelled_ = false;
+
+        private boolean updatePending_ = false;
+
+        Registration(IOThread thread,
+                java.nio.channels.SelectableChannel channel,
+                GIOPConnectionReactive connection) {
+            thread_ = thread;
+            channel_ = channel;
+            connection_ = connection;
+        }
+
+        //
+        // turn reading of the channel on or off
+        //
+        void setReading(boolean reading) {
+            synchronized (this) {
+                if (cancelled_ || reading_ == reading)
+                    return;
+
+                reading_ = reading;
+                if (updatePending_)
+                    return;
+                updatePending_ = true;
+            }
+
+            thread_.post(this);
+        }
+
+        //
+        // remove the channel from the selector
+        //
+        void cancel() {
+            synchronized (this) {
+                if (cancelled_)
+                    return;
+
+                cancelled_ = true;
+                if (updatePending_)
+                    return;
+                updatePending_ = true;
+            }
+
+            thread_.post(this);
+        }
+
+        //
+        // run a task on the I/O thread of the connection
+        //
+        void post(Runnable task) {
+            thread_.post(task);
+        }
+
+        //
+        // apply the requested state, called by the I/O thread
+        //
+        public void run() {
+            boolean reading;
+            boolean cancelled;
+            synchronized (this) {
+                updatePending_ = false;
+                reading = reading_;
+                cancelled = cancelled_;
+            }
+
+            if (cancelled) {
+                if (key_ != null)
+                    key_.cancel();
+
+                //
+                // break cyclic dependency with the connection
+                //
+                connection_ = null;
+                return;
+            }
+
+            try {
+                if (key_ == null)
+                    key_ = channel_.register(thread_.selector_, 0, this);
+
+                if (key_.isValid())
+                    key_.interestOps(reading ? java.nio.channels.SelectionKey.OP_READ
+                            : 0);
+            } catch (java.nio.channels.ClosedChannelException ex) {
+                //
+                // The connection was closed in the meantime
+                //
+            } catch (java.nio.channels.CancelledKeyException ex) {
+                //
+                // The connection was closed in the meantime
+                //
+            }
+
+            //
+            // A message may have been held while reading was off
+            //
+            if (reading)
+                ready();
+        }
+
+        //
+        // the channel is readable, called by the I/O thread
+        //
+        void ready() {
+            GIOPConnectionReactive connection = connection_;
+            if (connection != null)
+                connection.execReceive();
+        }
+    }
+
+    //
+    // an I/O thread and its selector
+    //
+    final class IOThread extends Thread {
+        private java.nio.channels.Selector selector_;
+
+        //
+        // the tasks to run on this thread, guarded by this
+        //
+        private java.util.LinkedList tasks_ = new java.util.LinkedList();
+
+        private boolean destroy_ = false;
+
+        IOThread(ThreadGroup group, int n) throws java.io.IOException {
+            super(group, "Yoko:Reactor:IOThread-" + n);
+            selector_ = java.nio.channels.Selector.open();
+        }
+
+        //
+        // queue a task and wake up the selector
+        //
+        void post(Runnable task) {
+            synchronized (this) {
+                tasks_.addLast(task);
+            }
+
+            if (Thread.currentThread() != this)
+                selector_.wakeup();
+        }
+
+        //
+        // stop the thread once the pending tasks are done
+        //
+        void shutdown() {
+            synchronized (this) {
+                destroy_ = true;
+            }
+
+            selector_.wakeup();
+        }
+
+        public void run() {
+            while (true) {
+                //
+                // Run the queued tasks, such as registrations and changes
+                // of the interest set, which must not race with select()
+                //
+                while (true) {
+                    Runnable task;
+                    synchronized (this) {
+                        if (tasks_.isEmpty())
+                            break;
+                        task = (Runnable) tasks_.removeFirst();
+                    }
+
+                    try {
+                        task.run();
+                    } catch (RuntimeException ex) {
+                        logger.log(Level.WARNING, "Reactor task failed", ex);
+                    }
+                }
+
+                synchronized (this) {
+                    if (destroy_)
+                        break;
+                }
+
+                try {
+                    selector_.select();
+                } catch (java.io.IOException ex) {
+                    logger.log(Level.SEVERE, "Reactor select failed", ex);
+                    break;
+                }
+
+                java.util.Iterator i = selector_.selectedKeys().iterator();
+                while (i.hasNext()) {
+                    java.nio.channels.SelectionKey key = (java.nio.channels.SelectionKey) i
+                            .next();
+                    i.remove();
+
+                    if (!key.isValid())
+                        continue;
+
+                    try {
+                        ((Registration) key.attachment()).ready();
+                    } catch (RuntimeException ex) {
+                        logger.log(Level.WARNING, "Reactor receive failed", ex);
+                    }
+                }
+            }
+
+            try {
+                selector_.close();
+            } catch (java.io.IOException ex) {
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Member data
+    // ----------------------------------------------------------------
+
+    //
+    // the I/O threads
+    //
+    private IOThread[] threads_;
+
+    //
+    // the I/O thread to register the next connection with
+    //
+    private int next_ = 0;
+
+    //
+    // True if destroy() was called
+    //
+    private boolean destroy_ = false;
+
+    // ----------------------------------------------------------------
+    // Package methods
+    // ----------------------------------------------------------------
+
+    //
+    // Start a reactor with the given number of I/O threads, in a new
+    // thread group under the given parent
+    //
+    Reactor(ThreadGroup parent, int nthreads) {
+        Assert._OB_assert(nthreads > 0);
+
+        ThreadGroup group = new ThreadGroup(parent, "Reactor");
+        threads_ = new IOThread[nthreads];
+        try {
+            for (int i = 0; i < nthreads; i++) {
+                threads_[i] = new IOThread(group, i);
+                threads_[i].setDaemon(true);
+                threads_[i].start();
+            }
+        } catch (java.io.IOException ex) {
+            destroy();
+            throw (org.omg.CORBA.INITIALIZE) new org.omg.CORBA.INITIALIZE(
+                    "unable to open a selector: " + ex.getMessage())
+                    .initCause(ex);
+        }
+    }
+
+    //
+    // Register the channel of a connection with one of the I/O
+    // threads. The channel is not read until reading is turned on.
+    //
+    synchronized Registration register(GIOPConnectionReactive connection,
+            java.nio.channels.SelectableChannel channel) {
+        if (destroy_)
+            throw new org.omg.CORBA.INITIALIZE("Reactor is destroyed");
+
+        IOThread thread = threads_[next_];
+        next_ = (next_ + 1) % threads_.length;
+
+        Registration registration = new Registration(thread, channel,
+                connection);
+        thread.post(registration);
+        return registration;
+    }
+
+    //
+    // Stop the I/O threads
+    //
+    void destroy() {
+        synchronized (this) {
+            if (destroy_)
+                return;
+            destroy_ = true;
+        }
+
+        for (int i = 0; i < threads_.length; i++) {
+            if (threads_[i] != null)
+                threads_[i].shutdown();
+        }
+
+        for (int i = 0; i < threads_.length; i++) {
+            if (threads_[i] == null || threads_[i] == Thread.currentThread())
+                continue;
+
+            try {
+                threads_[i].join();
+            } catch (InterruptedException ex) {
+            }
+        }
+    }
+}
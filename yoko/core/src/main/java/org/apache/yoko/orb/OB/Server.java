@@ -23,6 +23,8 @@ abstract public class Server {
     //
     final public static int Blocking = 0;
 
+    final public static int Reactive = 1;
+
     final public static int Threaded = 2;
 
     protected int concModel_ = Blocking;
@@ -178,7 +178,7 @@ public class Upcall {
 
     public void createOutputStream(int offset) {
         org.apache.yoko.orb.OCI.Buffer buf = new org.apache.yoko.orb.OCI.Buffer(
-                offset);
+                offset, true);
         buf.pos(offset);
         out_ = new org.apache.yoko.orb.CORBA.OutputStream(buf, in_
                 ._OB_codeConverters(), (profileInfo_.major << 8)
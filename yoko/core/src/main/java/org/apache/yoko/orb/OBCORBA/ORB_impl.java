@@ -931,6 +931,9 @@ public class ORB_impl extends org.apache.yoko.orb.CORBA.ORBSingleton {
                 if (value.equals("threaded")) {
                     concModel = org.apache.yoko.orb.OB.Client.Threaded;
                 }
+                else if (value.equals("reactive")) {
+                    concModel = org.apache.yoko.orb.OB.Client.Reactive;
+                }
                 else {
                     logger.warning("ORB.init: unknown value for "
                             + "yoko.orb.conc_model: " + value);
@@ -1044,6 +1047,8 @@ public class ORB_impl extends org.apache.yoko.orb.CORBA.ORBSingleton {
                 }
             } else if (key.equals("yoko.orb.ami_workers")) {
                 // ignore
+            } else if (key.equals("yoko.orb.reactor_threads")) {
+                // Used by ORBInstance
             } else {
                 logger.warning("ORB.init: unknown property `" + key + "'");
             }
@@ -539,7 +539,7 @@ final public class POAManager_impl extends org.omg.CORBA.LocalObject implements
             commsPolicyPresent = true;
             short value = commsPolicy.value();
             if (value == COMMUNICATIONS_CONCURRENCY_POLICY_REACTIVE.value) {
-                concModel = org.apache.yoko.orb.OB.Server.Blocking;
+                concModel = org.apache.yoko.orb.OB.Server.Reactive;
             } else if (value == COMMUNICATIONS_CONCURRENCY_POLICY_THREADED.value) {
                 concModel = org.apache.yoko.orb.OB.Server.Threaded;
             } else {
@@ -606,6 +606,8 @@ final public class POAManager_impl extends org.omg.CORBA.LocalObject implements
                 if (key.equals("conc_model") && !commsPolicyPresent) {
                     if (value.equals("threaded"))
                         concModel = org.apache.yoko.orb.OB.Server.Threaded;
+                    else if (value.equals("reactive"))
+                        concModel = org.apache.yoko.orb.OB.Server.Reactive;
                     //
                     // Technically the only valid values for
                     // yoko.orb.poamanager.*.conc_model are "reactive" and
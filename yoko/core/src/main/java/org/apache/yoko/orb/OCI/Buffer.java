@@ -26,6 +26,8 @@ public final class Buffer {
 
     public int pos_; // The position counter
 
+    private boolean pooled_; // True if data_ is from the BufferPool
+
     // ------------------------------------------------------------------
     // Standard IDL to Java Mapping
     // ------------------------------------------------------------------
@@ -82,10 +84,11 @@ public final class Buffer {
     // ------------------------------------------------------------------
 
     public void alloc(int len) {
-        max_ = len;
-        len_ = len;
         try {
-            data_ = new byte[max_];
+            if (pooled_)
+                data_ = BufferPool.allocate(len);
+            else
+                data_ = new byte[len];
         } catch (OutOfMemoryError ex) {
             throw new org.omg.CORBA.NO_MEMORY(
                     org.apache.yoko.orb.OB.MinorCodes
@@ -93,6 +96,8 @@ public final class Buffer {
                     org.apache.yoko.orb.OB.MinorCodes.MinorAllocationFailure,
                     org.omg.CORBA.CompletionStatus.COMPLETED_MAYBE);
         }
+        max_ = data_.length;
+        len_ = len;
         pos_ = 0;
     }
 
@@ -107,7 +112,10 @@ public final class Buffer {
                 int newMax = len > 2 * max_ ? len : 2 * max_;
                 byte[] newData = null;
                 try {
-                    newData = new byte[newMax];
+                    if (pooled_)
+                        newData = BufferPool.allocate(newMax);
+                    else
+                        newData = new byte[newMax];
                 } catch (OutOfMemoryError ex) {
                     throw new org.omg.CORBA.NO_MEMORY(
                             org.apache.yoko.orb.OB.MinorCodes
@@ -116,14 +124,17 @@ public final class Buffer {
                             org.omg.CORBA.CompletionStatus.COMPLETED_MAYBE);
                 }
                 System.arraycopy(data_, 0, newData, 0, len_);
+                if (pooled_)
+                    BufferPool.release(data_, len_);
                 data_ = newData;
                 len_ = len;
-                max_ = newMax;
+                max_ = newData.length;
             }
         }
     }
 
     public void data(byte[] data, int len) {
+        pooled_ = false;
         data_ = data;
         len_ = len;
         max_ = len;
@@ -135,10 +146,30 @@ public final class Buffer {
         len_ = buf.len_;
         max_ = buf.max_;
         pos_ = buf.pos_;
+        pooled_ = buf.pooled_;
         buf.data_ = null;
         buf.len_ = 0;
         buf.max_ = 0;
         buf.pos_ = 0;
+        buf.pooled_ = false;
+    }
+
+    //
+    // Give the data of a pooled buffer back to the pool, leaving the
+    // buffer empty. Must only be called once nothing refers to the
+    // data anymore, such as when a GIOP message has been sent, or
+    // its request or reply has been unmarshalled. Does nothing for
+    // buffers which are not pooled.
+    //
+    public void release() {
+        if (!pooled_ || data_ == null)
+            return;
+
+        BufferPool.release(data_, len_);
+        data_ = null;
+        len_ = 0;
+        max_ = 0;
+        pos_ = 0;
     }
 
     // ------------------------------------------------------------------
@@ -159,4 +190,13 @@ public final class Buffer {
     public Buffer(int len) {
         alloc(len);
     }
+
+    //
+    // Create a buffer for a GIOP message. If pooled is true, the data
+    // is taken from a pool of octet arrays and given back by release().
+    //
+    public Buffer(int len, boolean pooled) {
+        pooled_ = pooled;
+        alloc(len);
+    }
 }
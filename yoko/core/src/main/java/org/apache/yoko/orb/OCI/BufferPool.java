@@ -0,0 +1,166 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+*  contributor license agreements.  See the NOTICE file distributed with
+*  this work for additional information regarding copyright ownership.
+*  The ASF licenses this file to You under the Apache License, Version 2.0
+*  (the "License"); you may not use this file except in compliance with
+*  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.yoko.orb.OCI;
+
+//
+// A pool of the octet arrays of GIOP message buffers. The arrays come
+// in size classes of powers of two from 256 octets to 64 KB, larger
+// arrays are left to the garbage collector. Each thread caches a few
+// of the smaller arrays, so a thread sending or receiving message
+// after message reuses the same arrays without locking. The arrays a
+// thread can't cache, such as those released by a dispatcher thread
+// for messages read by a receiver thread, go to a shared list for
+// their size class, bounded in size as well.
+//
+// The arrays in the pool are always cleared, so a pooled buffer looks
+// just like a newly allocated one.
+//
+final class BufferPool {
+    //
+    // The smallest and largest size classes, as powers of two
+    //
+    private static final int MIN_SHIFT = 8;
+
+    private static final int MAX_SHIFT = 16;
+
+    private static final int CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+
+    //
+    // The size classes cached per thread (up to 8 KB), and the number
+    // of arrays cached for each of them
+    //
+    private static final int THREAD_CLASSES = 6;
+
+    private static final int THREAD_CACHE_SIZE = 2;
+
+    //
+    // The number of arrays kept in each shared list
+    //
+    private static final int SHARED_SIZE = 32;
+
+    // ------------------------------------------------------------------
+    // Private member implementations
+    // ------------------------------------------------------------------
+
+    private static final class ThreadCache {
+        byte[][][] arrays_ = new byte[THREAD_CLASSES][THREAD_CACHE_SIZE][];
+
+        int[] count_ = new int[THREAD_CLASSES];
+    }
+
+    private static final ThreadLocal cache_ = new ThreadLocal() {
+        protected Object initialValue() {
+            return new ThreadCache();
+        }
+    };
+
+    //
+    // The shared lists, each guarded by itself
+    //
+    private static final byte[][][] shared_ = new byte[CLASSES][SHARED_SIZE][];
+
+    private static final int[] sharedCount_ = new int[CLASSES];
+
+    //
+    // Returns the size class for arrays of at least len octets, or -1
+    // if they are too large to be pooled
+    //
+    private static int sizeClass(int len) {
+        int c = 0;
+        while ((1 << (c + MIN_SHIFT)) < len) {
+            if (++c == CLASSES)
+                return -1;
+        }
+        return c;
+    }
+
+    private BufferPool() {
+    }
+
+    // ------------------------------------------------------------------
+    // Package member implementations
+    // ------------------------------------------------------------------
+
+    //
+    // Get a cleared array of at least len octets
+    //
+    static byte[] allocate(int len) {
+        int c = sizeClass(len);
+        if (c < 0)
+            return new byte[len];
+
+        if (c < THREAD_CLASSES) {
+            ThreadCache cache = (ThreadCache) cache_.get();
+            int n = cache.count_[c];
+            if (n > 0) {
+                byte[] data = cache.arrays_[c][--n];
+                cache.arrays_[c][n] = null;
+                cache.count_[c] = n;
+                return data;
+            }
+        }
+
+        byte[][] shared = shared_[c];
+        synchronized (shared) {
+            int n = sharedCount_[c];
+            if (n > 0) {
+                byte[] data = shared[--n];
+                shared[n] = null;
+                sharedCount_[c] = n;
+                return data;
+            }
+        }
+
+        return new byte[1 << (c + MIN_SHIFT)];
+    }
+
+    //
+    // Give back an array obtained from allocate(), of which only the
+    // first len octets were used
+    //
+    static void release(byte[] data, int len) {
+        //
+        // Only arrays of the exact size of a class are taken back
+        //
+        int c = sizeClass(data.length);
+        if (c < 0 || data.length != 1 << (c + MIN_SHIFT))
+            return;
+
+        java.util.Arrays.fill(data, 0, len < data.length ? len : data.length,
+                (byte) 0);
+
+        if (c < THREAD_CLASSES) {
+            ThreadCache cache = (ThreadCache) cache_.get();
+            int n = cache.count_[c];
+            if (n < THREAD_CACHE_SIZE) {
+                cache.arrays_[c][n] = data;
+                cache.count_[c] = n + 1;
+                return;
+            }
+        }
+
+        byte[][] shared = shared_[c];
+        synchronized (shared) {
+            int n = sharedCount_[c];
+            if (n < SHARED_SIZE) {
+                shared[n] = data;
+                sharedCount_[c] = n + 1;
+            }
+        }
+    }
+}
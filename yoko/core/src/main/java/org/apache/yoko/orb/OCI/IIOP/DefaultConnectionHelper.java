@@ -26,8 +26,13 @@ package org.apache.yoko.orb.OCI.IIOP;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Enumeration;
+import java.util.Properties;
 
 import org.omg.CORBA.ORB;
 import org.omg.CORBA.Policy;
@@ -35,24 +40,72 @@ import org.omg.IOP.IOR;
 
 
 public class DefaultConnectionHelper implements ConnectionHelper {
+    //
+    // True if the sockets are created with channels, which the reactive
+    // concurrency model needs to drive connections with a selector
+    //
+    private boolean channels_ = false;
+
     public void init(ORB orb, String parms) {
         // no initializer parameters required by this version.
+        if (orb instanceof org.apache.yoko.orb.CORBA.ORB)
+            channels_ = reactive(((org.apache.yoko.orb.CORBA.ORB) orb).properties());
     }
 
     public Socket createSocket(IOR ior, Policy[] policies, InetAddress address, int port) throws IOException, ConnectException {
+        if (channels_)
+            return SocketChannel.open(new InetSocketAddress(address, port)).socket();
         return new Socket(address, port);
     }
 
     public Socket createSelfConnection(InetAddress address, int port) throws IOException, ConnectException {
+        if (channels_)
+            return SocketChannel.open(new InetSocketAddress(address, port)).socket();
         return new Socket(address, port);
     }
 
     public ServerSocket createServerSocket(int port, int backlog)  throws IOException, ConnectException {
+        if (channels_)
+            return openServerSocket(port, backlog, null);
         return new ServerSocket(port, backlog);
     }
 
     public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException, ConnectException {
+        if (channels_)
+            return openServerSocket(port, backlog, address);
         return new ServerSocket(port, backlog, address);
     }
+
+    //
+    // Returns true if the client or any POAManager uses the reactive
+    // concurrency model
+    //
+    private static boolean reactive(Properties props) {
+        Enumeration keys = props.keys();
+        while (keys.hasMoreElements()) {
+            String key = (String) keys.nextElement();
+            if (key.equals("yoko.orb.conc_model")
+                    || key.equals("yoko.orb.oa.conc_model")
+                    || (key.startsWith("yoko.orb.poamanager.") && key.endsWith(".conc_model"))) {
+                if ("reactive".equals(props.getProperty(key)))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    //
+    // A server socket whose accepted sockets have channels
+    //
+    private static ServerSocket openServerSocket(int port, int backlog, InetAddress address) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.socket().bind(new InetSocketAddress(address, port), backlog);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        return channel.socket();
+    }
 }
 
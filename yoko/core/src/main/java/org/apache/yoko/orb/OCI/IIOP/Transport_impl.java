@@ -23,7 +23,8 @@ import java.util.logging.Logger;
 import org.apache.yoko.orb.OCI.IIOP.PLUGIN_ID;
 
 final public class Transport_impl extends org.omg.CORBA.LocalObject implements
-        org.apache.yoko.orb.OCI.Transport {
+        org.apache.yoko.orb.OCI.Transport,
+        org.apache.yoko.orb.OCI.SelectableTransport {
     // This data member must not be private because the info object
     // must be able to access it
     public java.net.Socket socket_; // The socket
@@ -37,7 +38,160 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
     private int soTimeout_ = 0; // The value for setSoTimeout()
 
     private TransportInfo_impl info_; // Transport information
+
+    //
+    // Streams over the socket's channel, used in place of the socket's
+    // own streams once the channel is switched to non-blocking mode. A
+    // read or write which can't proceed waits on the stream's selector for
+    // at most its timeout, and then raises SocketTimeoutException just
+    // like the socket's streams. Reads use the socket timeout, writes
+    // have their own, as the receiving and sending threads differ.
+    //
+    private final class ChannelInputStream extends java.io.InputStream {
+        private final java.nio.channels.SocketChannel channel_;
+
+        private final ChannelSelector selector_;
+
+        ChannelInputStream(java.nio.channels.SocketChannel channel) {
+            channel_ = channel;
+            selector_ = new ChannelSelector(channel,
+                    java.nio.channels.SelectionKey.OP_READ);
+        }
+
+        public int read() throws java.io.IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) <= 0 ? -1 : b[0] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws java.io.IOException {
+            if (len == 0)
+                return 0;
+
+            java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(b, off, len);
+            while (true) {
+                int result = channel_.read(bb);
+                if (result != 0)
+                    return result;
+                if (!selector_.await(soTimeout_))
+                    throw new java.net.SocketTimeoutException();
+            }
+        }
+    }
+
+    private final class ChannelOutputStream extends java.io.OutputStream {
+        private final java.nio.channels.SocketChannel channel_;
+
+        private final ChannelSelector selector_;
+
+        private int timeout_ = 0;
+
+        ChannelOutputStream(java.nio.channels.SocketChannel channel) {
+            channel_ = channel;
+            selector_ = new ChannelSelector(channel,
+                    java.nio.channels.SelectionKey.OP_WRITE);
+        }
+
+        public void write(int b) throws java.io.IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws java.io.IOException {
+            java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(b, off, len);
+            while (bb.hasRemaining()) {
+                if (channel_.write(bb) == 0 && !selector_.await(timeout_)) {
+                    java.io.InterruptedIOException ex = new java.net.SocketTimeoutException();
+                    ex.bytesTransferred = bb.position() - off;
+                    throw ex;
+                }
+            }
+        }
+    }
     
+    //
+    // The selector a stream waits on for its channel to become ready for
+    // the stream's operation. It is opened on the first wait and then kept
+    // until the transport is closed, rather than opened for every wait.
+    //
+    private static final class ChannelSelector {
+        private final java.nio.channels.SocketChannel channel_;
+
+        private final int op_;
+
+        private volatile java.nio.channels.Selector selector_;
+
+        private volatile boolean closed_;
+
+        ChannelSelector(java.nio.channels.SocketChannel channel, int op) {
+            channel_ = channel;
+            op_ = op;
+        }
+
+        //
+        // Wait for the channel to become ready, for at most the timeout.
+        // Returns false if the timeout expires. A timeout of 1ms stands
+        // for a non-blocking call (see setBlock()) and returns at once.
+        //
+        synchronized boolean await(int timeout) throws java.io.IOException {
+            if (timeout == 1)
+                return false;
+
+            java.nio.channels.Selector selector = open();
+            try {
+                long deadline = System.currentTimeMillis() + timeout;
+                long wait = timeout;
+                while (selector.select(wait) == 0) {
+                    if (closed_)
+                        throw new java.nio.channels.ClosedChannelException();
+                    if (timeout > 0) {
+                        wait = deadline - System.currentTimeMillis();
+                        if (wait <= 0)
+                            return false;
+                    }
+                }
+                selector.selectedKeys().clear();
+                return true;
+            } catch (java.nio.channels.ClosedSelectorException ex) {
+                throw new java.nio.channels.ClosedChannelException();
+            }
+        }
+
+        private java.nio.channels.Selector open() throws java.io.IOException {
+            if (selector_ == null) {
+                java.nio.channels.Selector selector = java.nio.channels.Selector
+                        .open();
+                try {
+                    channel_.register(selector, op_);
+                } catch (java.io.IOException ex) {
+                    selector.close();
+                    throw ex;
+                }
+                selector_ = selector;
+            }
+            //
+            // Don't leak a selector opened while close() was running
+            //
+            if (closed_) {
+                selector_.close();
+                throw new java.nio.channels.ClosedChannelException();
+            }
+            return selector_;
+        }
+
+        //
+        // Close the selector, waking up a thread waiting on it
+        //
+        void close() {
+            closed_ = true;
+            java.nio.channels.Selector selector = selector_;
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (java.io.IOException ex) {
+                }
+            }
+        }
+    }
+
     // the real logger backing instance.  We use the interface class as the locator
     static final Logger logger = Logger.getLogger(org.apache.yoko.orb.OCI.Transport.class.getName());
 
@@ -81,6 +235,25 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
             setSoTimeout(1);
     }
 
+    //
+    // Set the timeout for sending. The socket timeout only applies to
+    // reads, so with a channel the writes are given their own timeout,
+    // leaving alone the timeout of a concurrent read by the I/O thread.
+    //
+    private void setSendTimeout(int t) {
+        if (out_ instanceof ChannelOutputStream)
+            ((ChannelOutputStream) out_).timeout_ = t;
+        else
+            setSoTimeout(t);
+    }
+
+    private void setSendBlock(boolean block) {
+        if (block)
+            setSendTimeout(0);
+        else
+            setSendTimeout(1);
+    }
+
     //
     // Shutdown the sending or receiving side of a socket. If how == 0,
     // shutdown the receiving side. If how == 1, shutdown the sending
@@ -120,6 +293,10 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
             // the socket has already been closed.
             // This exception can be ignored.
             //
+        } catch (java.nio.channels.ClosedChannelException ex) {
+            //
+            // Likewise for sockets with a channel
+            //
         } catch (java.io.IOException ex) {
             logger.log(Level.FINE, "Socket shutdown error", ex); 
             throw (InternalError)new InternalError().initCause(ex);
@@ -176,6 +353,14 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
             saveSocket.close();
         } catch (java.io.IOException ex) {
         }
+
+        //
+        // Close the selectors of the channel streams
+        //
+        if (in_ instanceof ChannelInputStream)
+            ((ChannelInputStream) in_).selector_.close();
+        if (out_ instanceof ChannelOutputStream)
+            ((ChannelOutputStream) out_).selector_.close();
     }
 
     public void shutdown() {
@@ -330,7 +515,7 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
     }
 
     public void send(org.apache.yoko.orb.OCI.Buffer buf, boolean block) {
-        setBlock(block);
+        setSendBlock(block);
         
         logger.fine("Sending buffer of size " + buf.rest_length() + " to " + socket_); 
         
@@ -365,7 +550,7 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
     }
 
     public boolean send_detect(org.apache.yoko.orb.OCI.Buffer buf, boolean block) {
-        setBlock(block);
+        setSendBlock(block);
 
         while (!buf.is_full()) {
             try {
@@ -396,7 +581,7 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
             return;
         }
 
-        setSoTimeout(t);
+        setSendTimeout(t);
 
         while (!buf.is_full()) {
             try {
@@ -433,7 +618,7 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
         if (t == 0)
             return send_detect(buf, false);
 
-        setSoTimeout(t);
+        setSendTimeout(t);
 
         while (!buf.is_full()) {                                 
             try {
@@ -457,6 +642,36 @@ final public class Transport_impl extends org.omg.CORBA.LocalObject implements
         return info_;
     }
 
+    // ------------------------------------------------------------------
+    // SelectableTransport
+    // ------------------------------------------------------------------
+
+    public java.nio.channels.SelectableChannel configureNonBlocking() {
+        java.nio.channels.SocketChannel channel = socket_.getChannel();
+        if (channel == null)
+            return null;
+
+        try {
+            channel.configureBlocking(false);
+        } catch (java.io.IOException ex) {
+            logger.log(Level.FINE, "Socket setup error", ex); 
+            throw (org.omg.CORBA.COMM_FAILURE)new org.omg.CORBA.COMM_FAILURE(
+                    org.apache.yoko.orb.OB.MinorCodes
+                            .describeCommFailure(org.apache.yoko.orb.OB.MinorCodes.MinorSocket)
+                            + ": unable to configure non-blocking channel: "
+                            + ex.getMessage(),
+                    org.apache.yoko.orb.OB.MinorCodes.MinorSocket,
+                    org.omg.CORBA.CompletionStatus.COMPLETED_NO).initCause(ex);
+        }
+
+        //
+        // The socket's streams can't be used with a non-blocking channel
+        //
+        in_ = new ChannelInputStream(channel);
+        out_ = new ChannelOutputStream(channel);
+        return channel;
+    }
+
     // ------------------------------------------------------------------
     // Yoko internal functions
     // Application programs must not use these functions directly
@@ -0,0 +1,32 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+*  contributor license agreements.  See the NOTICE file distributed with
+*  this work for additional information regarding copyright ownership.
+*  The ASF licenses this file to You under the Apache License, Version 2.0
+*  (the "License"); you may not use this file except in compliance with
+*  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.yoko.orb.OCI;
+
+//
+// Implemented by transports which can be driven by a
+// java.nio.channels.Selector instead of a receiver thread
+//
+public interface SelectableTransport {
+    //
+    // Switch the transport to non-blocking I/O on its channel and
+    // return the channel, or return null if the transport has no
+    // channel. Once switched, send() and receive() keep their
+    // blocking, non-blocking and timeout semantics.
+    //
+    java.nio.channels.SelectableChannel configureNonBlocking();
+}
@@ -0,0 +1,370 @@
+/**
+*
+* Licensed to the Apache Software Foundation (ASF) under one or more
+*  contributor license agreements.  See the NOTICE file distributed with
+*  this work for additional information regarding copyright ownership.
+*  The ASF licenses this file to You under the Apache License, Version 2.0
+*  (the "License"); you may not use this file except in compliance with
+*  the License.  You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing, software
+*  distributed under the License is distributed on an "AS IS" BASIS,
+*  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+*  See the License for the specific language governing permissions and
+*  limitations under the License.
+*/
+
+package org.apache.yoko.rmi.impl;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.ConstantPoolGen;
+import org.apache.bcel.generic.FieldGen;
+import org.apache.bcel.generic.InstructionConstants;
+import org.apache.bcel.generic.InstructionFactory;
+import org.apache.bcel.generic.InstructionHandle;
+import org.apache.bcel.generic.InstructionList;
+import org.apache.bcel.generic.MethodGen;
+import org.apache.bcel.generic.ObjectType;
+import org.apache.bcel.generic.PUSH;
+import org.apache.bcel.generic.Type;
+import org.omg.CORBA.MARSHAL;
+
+/**
+ * Reads and writes the fields of one class slice of a value type.
+ *
+ * The subclasses are generated with BCEL at first use, one per class. A
+ * generated marshaller reads and writes the primitive fields straight
+ * between the stream and the object, in one method without per-field
+ * dispatch or logging, and hands the other fields to their
+ * <code>FieldDescriptor</code>. It is only used when the system property
+ * <code>org.apache.yoko.rmi.impl.generateFieldMarshallers</code> is set;
+ * otherwise, or if the class can't be generated, the fields are marshalled
+ * one by one through their descriptors.
+ */
+abstract class FieldMarshaller {
+    static final Logger logger = Logger.getLogger(FieldMarshaller.class
+            .getName());
+
+    static final boolean ENABLED = Boolean
+            .getBoolean("org.apache.yoko.rmi.impl.generateFieldMarshallers");
+
+    private String _java_name;
+
+    private FieldDescriptor[] _fields;
+
+    abstract void read(ObjectReader reader, Object obj) throws IOException;
+
+    abstract void write(ObjectWriter writer, Object obj) throws IOException;
+
+    /**
+     * Called by the generated read() when the field at <code>index</code>
+     * can't be read. Returns the exception to throw, which names the field
+     * like the errors of ValueDescriptor.defaultReadValue() do.
+     */
+    final MARSHAL readFailed(MARSHAL ex, int index) {
+        if (ex.getMessage() != null) {
+            return ex;
+        }
+        MARSHAL exx = new MARSHAL(ex.getMessage() + ", while reading "
+                + _java_name + "." + _fields[index].getJavaName(), ex.minor,
+                ex.completed);
+        exx.initCause(ex);
+        return exx;
+    }
+
+    /**
+     * Generate a marshaller for the given fields of <code>type</code>, or
+     * return null if marshallers are not enabled or can't be generated.
+     * <code>javaName</code> is the name of the value type used in errors.
+     */
+    static FieldMarshaller make(Class type, String javaName,
+            FieldDescriptor[] fields) {
+        if (!ENABLED || fields == null || fields.length == 0) {
+            return null;
+        }
+
+        //
+        // The generated class overrides package private methods, so it must
+        // be defined in the runtime package of this class
+        //
+        ClassLoader loader = FieldMarshaller.class.getClassLoader();
+        if (!(loader instanceof java.security.SecureClassLoader)) {
+            logger.fine("cannot generate field marshallers in " + loader);
+            return null;
+        }
+
+        String className;
+        synchronized (FieldMarshaller.class) {
+            className = FieldMarshaller.class.getName() + "$$" + counter++;
+        }
+
+        try {
+            byte[] classData = generate(className, fields);
+
+            Class marshallerClass = org.apache.yoko.rmi.util.stub.Util
+                    .defineClass(loader, className, classData, 0,
+                            classData.length);
+            if (marshallerClass.getClassLoader() != loader) {
+                return null;
+            }
+
+            for (int i = 0; i < fields.length; i++) {
+                java.lang.reflect.Field f;
+
+                if (isDirect(fields[i])) {
+                    f = marshallerClass.getDeclaredField(fieldFieldName(i));
+                    f.setAccessible(true);
+                    f.set(null, fields[i].field);
+                } else {
+                    f = marshallerClass.getDeclaredField(descriptorFieldName(i));
+                    f.setAccessible(true);
+                    f.set(null, fields[i]);
+                }
+            }
+
+            FieldMarshaller marshaller = (FieldMarshaller) marshallerClass
+                    .newInstance();
+            marshaller._java_name = javaName;
+            marshaller._fields = fields;
+            return marshaller;
+
+        } catch (Exception ex) {
+            logger.log(Level.FINE, "cannot generate field marshaller for "
+                    + type.getName(), ex);
+        } catch (LinkageError ex) {
+            logger.log(Level.FINE, "cannot generate field marshaller for "
+                    + type.getName(), ex);
+        }
+
+        return null;
+    }
+
+    static int counter = 0;
+
+    static String descriptorFieldName(int i) {
+        return "__descriptor$" + i;
+    }
+
+    static String fieldFieldName(int i) {
+        return "__field$" + i;
+    }
+
+    //
+    // primitive fields with a java field are read and written directly
+    //
+    private static boolean isDirect(FieldDescriptor desc) {
+        return desc.isPrimitive() && desc.field != null;
+    }
+
+    static final Type OBJECT_READER = new ObjectType(ObjectReader.class
+            .getName());
+
+    static final Type OBJECT_WRITER = new ObjectType(ObjectWriter.class
+            .getName());
+
+    static final Type FIELD_DESCRIPTOR = new ObjectType(
+            FieldDescriptor.class.getName());
+
+    static final Type FIELD = new ObjectType(
+            org.apache.yoko.rmi.util.corba.Field.class.getName());
+
+    static final ObjectType MARSHAL_TYPE = new ObjectType(MARSHAL.class
+            .getName());
+
+    private static byte[] generate(String className, FieldDescriptor[] fields) {
+        ClassGen clazz = new ClassGen(className, FieldMarshaller.class
+                .getName(), "generated", Constants.ACC_PUBLIC
+                | Constants.ACC_FINAL | Constants.ACC_SUPER, null);
+        ConstantPoolGen cp = clazz.getConstantPool();
+        InstructionFactory fac = new InstructionFactory(clazz, cp);
+
+        //
+        // static fields holding the java fields of the primitive fields,
+        // and the descriptors of the others
+        //
+        for (int i = 0; i < fields.length; i++) {
+            if (isDirect(fields[i])) {
+                clazz.addField(new FieldGen(Constants.ACC_PRIVATE
+                        | Constants.ACC_STATIC, FIELD, fieldFieldName(i), cp)
+                        .getField());
+            } else {
+                clazz.addField(new FieldGen(Constants.ACC_PRIVATE
+                        | Constants.ACC_STATIC, FIELD_DESCRIPTOR,
+                        descriptorFieldName(i), cp).getField());
+            }
+        }
+
+        clazz.addEmptyConstructor(Constants.ACC_PUBLIC);
+
+        //
+        // void read(ObjectReader reader, Object obj)
+        //
+        InstructionList il = new InstructionList();
+        MethodGen mg = new MethodGen(Constants.ACC_FINAL, Type.VOID,
+                new Type[] { OBJECT_READER, Type.OBJECT }, new String[] {
+                        "reader", "obj" }, "read", className, il, cp);
+        mg.addException(IOException.class.getName());
+
+        //
+        // local 3 holds the index of the field being read, for the
+        // MARSHAL handler below
+        //
+        il.append(new PUSH(cp, 0));
+        il.append(InstructionFactory.createStore(Type.INT, 3));
+        InstructionHandle start = null;
+
+        for (int i = 0; i < fields.length; i++) {
+            InstructionHandle ih = il.append(new PUSH(cp, i));
+            il.append(InstructionFactory.createStore(Type.INT, 3));
+            if (start == null) {
+                start = ih;
+            }
+
+            if (isDirect(fields[i])) {
+                // field.setXXX(obj, reader.readXXX())
+                Type type = primitiveType(fields[i].type);
+                il.append(fac.createGetStatic(className, fieldFieldName(i),
+                        FIELD));
+                il.append(InstructionFactory.createLoad(Type.OBJECT, 2));
+                il.append(InstructionFactory.createLoad(OBJECT_READER, 1));
+                il.append(fac.createInvoke(ObjectReader.class.getName(),
+                        "read" + accessorSuffix(fields[i].type), type,
+                        Type.NO_ARGS, Constants.INVOKEVIRTUAL));
+                il.append(fac.createInvoke(FIELD.toString(), "set"
+                        + accessorSuffix(fields[i].type), Type.VOID,
+                        new Type[] { Type.OBJECT, type },
+                        Constants.INVOKEVIRTUAL));
+            } else {
+                // descriptor.read(reader, obj)
+                il.append(fac.createGetStatic(className,
+                        descriptorFieldName(i), FIELD_DESCRIPTOR));
+                il.append(InstructionFactory.createLoad(OBJECT_READER, 1));
+                il.append(InstructionFactory.createLoad(Type.OBJECT, 2));
+                il.append(fac.createInvoke(FIELD_DESCRIPTOR.toString(),
+                        "read", Type.VOID, new Type[] { OBJECT_READER,
+                                Type.OBJECT }, Constants.INVOKEVIRTUAL));
+            }
+        }
+        InstructionHandle end = il.append(InstructionConstants.RETURN);
+
+        // catch (MARSHAL ex) { throw readFailed(ex, index); }
+        InstructionHandle handler = il.append(InstructionFactory.createStore(
+                MARSHAL_TYPE, 4));
+        il.append(InstructionFactory.createLoad(Type.OBJECT, 0));
+        il.append(InstructionFactory.createLoad(MARSHAL_TYPE, 4));
+        il.append(InstructionFactory.createLoad(Type.INT, 3));
+        il.append(fac.createInvoke(FieldMarshaller.class.getName(),
+                "readFailed", MARSHAL_TYPE, new Type[] { MARSHAL_TYPE,
+                        Type.INT }, Constants.INVOKEVIRTUAL));
+        il.append(InstructionConstants.ATHROW);
+        mg.addExceptionHandler(start, end.getPrev(), handler, MARSHAL_TYPE);
+
+        mg.setMaxStack();
+        mg.setMaxLocals();
+        clazz.addMethod(mg.getMethod());
+        il.dispose();
+
+        //
+        // void write(ObjectWriter writer, Object obj)
+        //
+        il = new InstructionList();
+        mg = new MethodGen(Constants.ACC_FINAL, Type.VOID, new Type[] {
+                OBJECT_WRITER, Type.OBJECT },
+                new String[] { "writer", "obj" }, "write", className, il, cp);
+        mg.addException(IOException.class.getName());
+
+        for (int i = 0; i < fields.length; i++) {
+            if (isDirect(fields[i])) {
+                // writer.writeXXX(field.getXXX(obj))
+                Type type = primitiveType(fields[i].type);
+                il.append(InstructionFactory.createLoad(OBJECT_WRITER, 1));
+                il.append(fac.createGetStatic(className, fieldFieldName(i),
+                        FIELD));
+                il.append(InstructionFactory.createLoad(Type.OBJECT, 2));
+                il.append(fac.createInvoke(FIELD.toString(), "get"
+                        + accessorSuffix(fields[i].type), type,
+                        new Type[] { Type.OBJECT }, Constants.INVOKEVIRTUAL));
+                il.append(fac.createInvoke(ObjectWriter.class.getName(),
+                        "write" + accessorSuffix(fields[i].type), Type.VOID,
+                        new Type[] { writeType(type) },
+                        Constants.INVOKEVIRTUAL));
+            } else {
+                // descriptor.write(writer, obj)
+                il.append(fac.createGetStatic(className,
+                        descriptorFieldName(i), FIELD_DESCRIPTOR));
+                il.append(InstructionFactory.createLoad(OBJECT_WRITER, 1));
+                il.append(InstructionFactory.createLoad(Type.OBJECT, 2));
+                il.append(fac.createInvoke(FIELD_DESCRIPTOR.toString(),
+                        "write", Type.VOID, new Type[] { OBJECT_WRITER,
+                                Type.OBJECT }, Constants.INVOKEVIRTUAL));
+            }
+        }
+        il.append(InstructionConstants.RETURN);
+
+        mg.setMaxStack();
+        mg.setMaxLocals();
+        clazz.addMethod(mg.getMethod());
+        il.dispose();
+
+        JavaClass javaClass = clazz.getJavaClass();
+
+        try {
+            if (Boolean.getBoolean("org.apache.yoko.rmi.util.stub.debug")) {
+                javaClass.dump(new java.io.File(className + ".class"));
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "", ex);
+        }
+
+        return javaClass.getBytes();
+    }
+
+    //
+    // the suffix of the Field, ObjectReader and ObjectWriter methods for a
+    // primitive type, e.g. "Int" for readInt()
+    //
+    private static String accessorSuffix(Class type) {
+        String name = type.getName();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static Type primitiveType(Class type) {
+        if (type == Boolean.TYPE) {
+            return Type.BOOLEAN;
+        } else if (type == Byte.TYPE) {
+            return Type.BYTE;
+        } else if (type == Short.TYPE) {
+            return Type.SHORT;
+        } else if (type == Character.TYPE) {
+            return Type.CHAR;
+        } else if (type == Integer.TYPE) {
+            return Type.INT;
+        } else if (type == Long.TYPE) {
+            return Type.LONG;
+        } else if (type == Float.TYPE) {
+            return Type.FLOAT;
+        } else if (type == Double.TYPE) {
+            return Type.DOUBLE;
+        } else {
+            throw new InternalError("not a primitive field type: " + type);
+        }
+    }
+
+    //
+    // DataOutput takes byte, short and char values as int
+    //
+    private static Type writeType(Type type) {
+        if (type == Type.BYTE || type == Type.SHORT || type == Type.CHAR) {
+            return Type.INT;
+        }
+        return type;
+    }
+}
@@ -70,6 +70,10 @@ public class ValueDescriptor extends TypeDescriptor {
 
     protected FieldDescriptor[] _fields;
 
+    private FieldMarshaller _field_marshaller;
+
+    private volatile boolean _field_marshaller_made;
+
     protected ObjectDeserializer _object_deserializer;
 
     protected boolean _is_immutable_value;
@@ -578,6 +582,12 @@ public class ValueDescriptor extends TypeDescriptor {
             return;
         }
 
+        FieldMarshaller marshaller = getFieldMarshaller();
+        if (marshaller != null) {
+            marshaller.write(writer, val);
+            return;
+        }
+
         for (int i = 0; i < fields.length; i++) {
             logger.finer("writing field " + _fields[i].getJavaName());
 
@@ -735,6 +745,13 @@ public class ValueDescriptor extends TypeDescriptor {
 
         logger.fine("reading fields for " + getJavaClass().getName());
 
+        FieldMarshaller marshaller = getFieldMarshaller();
+        if (marshaller != null) {
+            // the marshaller names the failing field like the loop below
+            marshaller.read(reader, value);
+            return;
+        }
+
         for (int i = 0; i < _fields.length; i++) {
 
             logger.fine("reading field " + _fields[i].getJavaName() + " of type " + _fields[i].getType().getName() + " using " + _fields[i].getClass().getName());
@@ -758,6 +775,21 @@ public class ValueDescriptor extends TypeDescriptor {
         }
     }
 
+    /**
+     * Returns the generated marshaller for the fields of this class, or null
+     * if the fields are marshalled through their descriptors. The marshaller
+     * is generated at first use.
+     */
+    private FieldMarshaller getFieldMarshaller() {
+        if (!_field_marshaller_made) {
+            _field_marshaller = FieldMarshaller.make(getJavaClass(), getJavaName(),
+                    _fields);
+            _field_marshaller_made = true;
+        }
+
+        return _field_marshaller;
+    }
+
     java.util.Map readFields(ObjectReader reader) throws java.io.IOException {
         if (_fields == null || _fields.length == 0) {
             return Collections.EMPTY_MAP;
@@ -26,7 +26,7 @@ import java.security.PrivilegedAction;
 import java.security.SecureClassLoader;
 import java.security.cert.Certificate;
 
-class Util {
+public class Util {
 
     static String getPackageName(Class clazz) {
         String class_name = clazz.getName();
@@ -65,7 +65,7 @@ class Util {
         }
     }
 
-    static Class defineClass(final ClassLoader loader, String className,
+    public static Class defineClass(final ClassLoader loader, String className,
             byte[] data, int off, int len) {
 
         final Object[] args = new Object[5];